@@ -95,6 +95,22 @@ public class ApiSparkService extends Service {
      */
     private long agentAnalyticsPostPeriodInSecond = 60;
 
+    /**
+     * The maximum number of analytics waiting to be sent to the APISpark
+     * service. Beyond this capacity, analytics are dropped.
+     */
+    private int agentAnalyticsQueueCapacity = 10000;
+
+    /**
+     * The sampling rate applied to analytics when the queue is more than half
+     * full. One means no sampling: analytics are only dropped when the queue
+     * is full.
+     */
+    private int agentAnalyticsSamplingRate = 1;
+
+    /** Indicates if the analytics are posted GZip compressed. */
+    private boolean agentAnalyticsCompressed = true;
+
     /** The timer that triggers agent re-configuration */
     private Timer agentRefreshTimer;
 
@@ -222,6 +238,9 @@ public class ApiSparkService extends Service {
         apiSparkConfig.setReverseProxyTargetUrl(reverseProxyTargetUrl);
         apiSparkConfig.setAgentAnalyticsBufferSize(agentAnalyticsBufferSize);
         apiSparkConfig.setAgentAnalyticsPostPeriodInSecond(agentAnalyticsPostPeriodInSecond);
+        apiSparkConfig.setAgentAnalyticsQueueCapacity(agentAnalyticsQueueCapacity);
+        apiSparkConfig.setAgentAnalyticsSamplingRate(agentAnalyticsSamplingRate);
+        apiSparkConfig.setAgentAnalyticsCompressed(agentAnalyticsCompressed);
 
         apiSparkFilter = new ApiSparkFilter(context, apiSparkConfig,
                 agentEnabled, firewallEnabled, firewallRules);
@@ -265,6 +284,24 @@ public class ApiSparkService extends Service {
         return agentAnalyticsPostPeriodInSecond;
     }
 
+    /**
+     * Returns the agent Analytics module queue capacity.
+     * 
+     * @return The agent Analytics module queue capacity.
+     */
+    public int getAgentAnalyticsQueueCapacity() {
+        return agentAnalyticsQueueCapacity;
+    }
+
+    /**
+     * Returns the agent Analytics module sampling rate.
+     * 
+     * @return The agent Analytics module sampling rate.
+     */
+    public int getAgentAnalyticsSamplingRate() {
+        return agentAnalyticsSamplingRate;
+    }
+
     /**
      * Returns the password used to connect to the APISpark platform.
      * 
@@ -337,6 +374,15 @@ public class ApiSparkService extends Service {
         return reverseProxyTargetUrl;
     }
 
+    /**
+     * Indicates if the analytics are posted GZip compressed.
+     * 
+     * @return True if the analytics are posted GZip compressed.
+     */
+    public boolean isAgentAnalyticsCompressed() {
+        return agentAnalyticsCompressed;
+    }
+
     /**
      * Indicates if the APISpark agent is enabled.
      * 
@@ -484,6 +530,36 @@ public class ApiSparkService extends Service {
         this.agentAnalyticsPostPeriodInSecond = agentAnalyticsPostPeriodInSecond;
     }
 
+    /**
+     * Sets the agent Analytics module queue capacity.
+     * 
+     * @param agentAnalyticsQueueCapacity
+     *            The agent Analytics module queue capacity.
+     */
+    public void setAgentAnalyticsQueueCapacity(int agentAnalyticsQueueCapacity) {
+        this.agentAnalyticsQueueCapacity = agentAnalyticsQueueCapacity;
+    }
+
+    /**
+     * Sets the agent Analytics module sampling rate.
+     * 
+     * @param agentAnalyticsSamplingRate
+     *            The agent Analytics module sampling rate.
+     */
+    public void setAgentAnalyticsSamplingRate(int agentAnalyticsSamplingRate) {
+        this.agentAnalyticsSamplingRate = agentAnalyticsSamplingRate;
+    }
+
+    /**
+     * Indicates if the analytics are posted GZip compressed.
+     * 
+     * @param agentAnalyticsCompressed
+     *            True if the analytics are posted GZip compressed.
+     */
+    public void setAgentAnalyticsCompressed(boolean agentAnalyticsCompressed) {
+        this.agentAnalyticsCompressed = agentAnalyticsCompressed;
+    }
+
     /**
      * Sets the password used to connect to the APISpark platform.
      * 
@@ -592,12 +668,19 @@ public class ApiSparkService extends Service {
         this.reverseProxyTargetUrl = reverseProxyTargetUrl;
     }
 
-    /** Stops the service and its timer */
+    /**
+     * Stops the service, its timer and its filter. Stopping the filter stops
+     * the agent modules, letting the analytics module post the remaining call
+     * logs.
+     */
     @Override
     public synchronized void stop() throws Exception {
         super.stop();
         if (agentRefreshTimer != null) {
             agentRefreshTimer.cancel();
         }
+        if (apiSparkFilter != null) {
+            apiSparkFilter.stop();
+        }
     }
 }
@@ -32,6 +32,9 @@ import org.restlet.ext.apispark.internal.firewall.rule.FirewallCounterRule;
 import org.restlet.ext.apispark.internal.firewall.rule.FirewallIpFilteringRule;
 import org.restlet.ext.apispark.internal.firewall.rule.FirewallRule;
 import org.restlet.ext.apispark.internal.firewall.rule.PeriodicFirewallCounterRule;
+import org.restlet.ext.apispark.internal.firewall.rule.SlidingWindowFirewallCounterRule;
+import org.restlet.ext.apispark.internal.firewall.rule.counter.CounterStore;
+import org.restlet.ext.apispark.internal.firewall.rule.policy.CountingPolicy;
 import org.restlet.ext.apispark.internal.firewall.rule.policy.HostDomainCountingPolicy;
 import org.restlet.ext.apispark.internal.firewall.rule.policy.IpAddressCountingPolicy;
 import org.restlet.ext.apispark.internal.firewall.rule.policy.UserCountingPolicy;
@@ -49,9 +52,21 @@ import java.util.concurrent.TimeUnit;
  */
 public class FirewallConfig {
 
+    /**
+     * The store shared by the sliding window counters, or null to keep the
+     * counts of each rule in memory.
+     */
+    private volatile CounterStore counterStore;
+
     /** The list of associated {@link FirewallRule}. */
     private List<FirewallRule> rules;
 
+    /**
+     * Indicates if the periodic counters count requests on a sliding period
+     * rather than on fixed periods.
+     */
+    private volatile boolean slidingWindow;
+
     /**
      * Private Constructor.
      */
@@ -101,9 +116,10 @@ public class FirewallConfig {
      */
     public void addHostDomainPeriodicCounter(int period, TimeUnit periodUnit,
             int limit) {
-        FirewallCounterRule rule = new PeriodicFirewallCounterRule(period,
+        FirewallCounterRule rule = createPeriodicCounterRule(period,
                 periodUnit, new HostDomainCountingPolicy());
         rule.addHandler(new BlockingHandler(new UniqueLimitPolicy(limit)));
+        add(rule);
     }
 
     /**
@@ -144,7 +160,7 @@ public class FirewallConfig {
      */
     public void addIpAddressesPeriodicCounter(int period, TimeUnit periodUnit,
             int limit) {
-        FirewallCounterRule rule = new PeriodicFirewallCounterRule(period,
+        FirewallCounterRule rule = createPeriodicCounterRule(period,
                 periodUnit, new IpAddressCountingPolicy());
         rule.addHandler(new BlockingHandler(new UniqueLimitPolicy(limit)));
         add(rule);
@@ -226,10 +242,82 @@ public class FirewallConfig {
      */
     public void addRolesPeriodicCounter(int period, TimeUnit periodUnit,
             Map<String, Integer> limitsPerRole, int defaultLimit) {
-        FirewallCounterRule rule = new PeriodicFirewallCounterRule(period,
+        FirewallCounterRule rule = createPeriodicCounterRule(period,
                 periodUnit, new UserCountingPolicy());
         rule.addHandler(new BlockingHandler(new RoleLimitPolicy(limitsPerRole,
                 defaultLimit)));
         add(rule);
     }
+
+    /**
+     * Creates a rule counting requests by period of time, either on fixed
+     * periods or on a sliding period depending on {@link #isSlidingWindow()}.
+     * 
+     * @param period
+     *            The period of time.
+     * @param periodUnit
+     *            Period time unit associated to the rule.
+     * @param countingPolicy
+     *            The counting policy.
+     * @return The new rule.
+     */
+    private FirewallCounterRule createPeriodicCounterRule(int period,
+            TimeUnit periodUnit, CountingPolicy countingPolicy) {
+        if (!isSlidingWindow()) {
+            return new PeriodicFirewallCounterRule(period, periodUnit,
+                    countingPolicy);
+        } else if (getCounterStore() == null) {
+            return new SlidingWindowFirewallCounterRule(period, periodUnit,
+                    countingPolicy);
+        }
+
+        // Distinguish the rules sharing the same store
+        return new SlidingWindowFirewallCounterRule(period, periodUnit,
+                countingPolicy, getCounterStore(), "rule" + rules.size() + ":");
+    }
+
+    /**
+     * Returns the store shared by the sliding window counters, or null if the
+     * counts of each rule are kept in memory.
+     * 
+     * @return The store shared by the sliding window counters.
+     */
+    public CounterStore getCounterStore() {
+        return counterStore;
+    }
+
+    /**
+     * Indicates if the periodic counters added afterwards count requests on a
+     * sliding period rather than on fixed periods. Default is false.
+     * 
+     * @return True if the periodic counters count requests on a sliding
+     *         period.
+     */
+    public boolean isSlidingWindow() {
+        return slidingWindow;
+    }
+
+    /**
+     * Sets the store shared by the sliding window counters added afterwards,
+     * typically backed by an external store shared by several nodes. Set to
+     * null to keep the counts of each rule in memory.
+     * 
+     * @param counterStore
+     *            The store shared by the sliding window counters.
+     */
+    public void setCounterStore(CounterStore counterStore) {
+        this.counterStore = counterStore;
+    }
+
+    /**
+     * Indicates if the periodic counters added afterwards count requests on a
+     * sliding period rather than on fixed periods.
+     * 
+     * @param slidingWindow
+     *            True if the periodic counters count requests on a sliding
+     *            period.
+     */
+    public void setSlidingWindow(boolean slidingWindow) {
+        this.slidingWindow = slidingWindow;
+    }
 }
@@ -50,6 +50,12 @@ public class ApiSparkConfig {
 
     private long agentAnalyticsPostPeriodInSecond;
 
+    private int agentAnalyticsQueueCapacity;
+
+    private int agentAnalyticsSamplingRate;
+
+    private boolean agentAnalyticsCompressed;
+
     public String getAgentPassword() {
         return agentPassword != null ? new String(agentPassword) : null;
     }
@@ -127,4 +133,28 @@ public class ApiSparkConfig {
         this.agentAnalyticsPostPeriodInSecond = agentAnalyticsPostPeriodInSecond;
     }
 
+    public int getAgentAnalyticsQueueCapacity() {
+        return agentAnalyticsQueueCapacity;
+    }
+
+    public void setAgentAnalyticsQueueCapacity(int agentAnalyticsQueueCapacity) {
+        this.agentAnalyticsQueueCapacity = agentAnalyticsQueueCapacity;
+    }
+
+    public int getAgentAnalyticsSamplingRate() {
+        return agentAnalyticsSamplingRate;
+    }
+
+    public void setAgentAnalyticsSamplingRate(int agentAnalyticsSamplingRate) {
+        this.agentAnalyticsSamplingRate = agentAnalyticsSamplingRate;
+    }
+
+    public boolean isAgentAnalyticsCompressed() {
+        return agentAnalyticsCompressed;
+    }
+
+    public void setAgentAnalyticsCompressed(boolean agentAnalyticsCompressed) {
+        this.agentAnalyticsCompressed = agentAnalyticsCompressed;
+    }
+
 }
@@ -58,6 +58,28 @@ public abstract class AgentUtils {
     public static <T> T getClientResource(ApiSparkConfig apiSparkConfig,
             ModulesSettings modulesSettings, Class<T> resourceClass,
             String resourcePath) {
+        return getClientResource(apiSparkConfig, modulesSettings,
+                resourcePath).wrap(resourceClass,
+                AgentUtils.class.getClassLoader());
+    }
+
+    /**
+     * Returns a client resource configured to communicate with the APISpark
+     * connector cell.
+     * 
+     * @param apiSparkConfig
+     *            The agent configuration.
+     * @param modulesSettings
+     *            The optional modules settings.
+     * @param resourcePath
+     *            The resource path.
+     * 
+     * @return A client resource configured to communicate with the apispark
+     *         connector cell.
+     */
+    public static ClientResource getClientResource(
+            ApiSparkConfig apiSparkConfig, ModulesSettings modulesSettings,
+            String resourcePath) {
 
         ClientResource clientResource = new ClientResource(buildResourcePath(
                 apiSparkConfig, resourcePath));
@@ -79,7 +101,7 @@ public abstract class AgentUtils {
                     modulesSettings.getCellRevision());
         }
 
-        return clientResource.wrap(resourceClass, AgentUtils.class.getClassLoader());
+        return clientResource;
     }
 
     /**
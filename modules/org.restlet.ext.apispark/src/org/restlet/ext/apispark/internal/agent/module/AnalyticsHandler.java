@@ -24,39 +24,39 @@
 
 package org.restlet.ext.apispark.internal.agent.module;
 
-import java.util.Collections;
-import java.util.Date;
-import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.Comparator;
+import java.util.PriorityQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Logger;
 
 import org.restlet.Request;
 import org.restlet.Response;
+import org.restlet.data.Encoding;
+import org.restlet.data.MediaType;
+import org.restlet.engine.application.EncodeRepresentation;
 import org.restlet.ext.apispark.internal.ApiSparkConfig;
 import org.restlet.ext.apispark.internal.agent.AgentUtils;
-import org.restlet.ext.apispark.internal.agent.bean.CallLog;
 import org.restlet.ext.apispark.internal.agent.bean.CallLogs;
 import org.restlet.ext.apispark.internal.agent.bean.ModulesSettings;
-import org.restlet.ext.apispark.internal.agent.resource.AnalyticsResource;
-
-import com.google.common.collect.Lists;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.restlet.representation.Representation;
+import org.restlet.resource.ClientResource;
 
+/**
+ * Collects the call logs and posts them to the APISpark analytics service. The
+ * request threads only add primitive records to a lock-free
+ * {@link CallLogBuffer}. A single background poster drains it, either every
+ * post period or as soon as the buffer size is reached, and posts the batches
+ * as optionally GZip compressed JSON. Failed posts are rescheduled instead of
+ * blocking the poster, so that new batches keep being posted meanwhile.
+ */
 public class AnalyticsHandler {
 
     /** Internal logger. */
     protected static Logger LOGGER = Logger.getLogger(AnalyticsHandler.class
             .getName());
 
-    /** Maximum number of concurrent call logs post threads */
-    private static final int THREAD_MAX_NUMBER = 3;
-
     /**
      * Number of buffered calls. Asynchronous post of analytics is triggered
      * either every POST_PERIOD or when the buffer exceeds this number.
@@ -72,7 +72,7 @@ public class AnalyticsHandler {
      * service in milliseconds.
      * 
      * This number is multiplied at each attempt. See
-     * {@link AsyncCallLogsPostTask#getRetryTime(int)} for more details.
+     * {@link #getRetryTime(int)} for more details.
      */
     private static final long RETRY_AFTER = 500;
 
@@ -88,17 +88,35 @@ public class AnalyticsHandler {
      */
     private static final long MAX_TIME = TimeUnit.SECONDS.toMillis(10);
 
-    /** Timer trigerring call logs post to APISpark */
-    private Timer asyncPostTimer;
+    /**
+     * Maximum time to wait for the poster to flush the remaining call logs
+     * when stopping.
+     */
+    private static final long STOP_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
+    /** Client resource used to post call logs to APISpark */
+    private final ClientResource analyticsClientResource;
+
+    /** Buffer of call records */
+    private final CallLogBuffer callLogs;
+
+    /** Indicates if the posted call logs are compressed */
+    private final boolean compressed;
 
-    /** Client resourceused to post call logs to APISpark */
-    private AnalyticsResource analyticsClientResource;
+    /** Thread posting the call logs to APISpark */
+    private final Thread poster;
 
-    /** Executor service used for async tasks */
-    private ExecutorService executorService;
+    /** Indicates if the poster is waiting for call logs */
+    private final AtomicBoolean posterWaiting;
 
-    /** List of call logs */
-    private final List<CallLog> callLogs;
+    /**
+     * Posts waiting for a new attempt, ordered by attempt time. Only accessed
+     * by the poster thread.
+     */
+    private final PriorityQueue<PendingPost> retries;
+
+    /** Indicates if the handler is running */
+    private volatile boolean running;
 
     /**
      * Create a new analytics handler with the specified settings.
@@ -111,34 +129,38 @@ public class AnalyticsHandler {
     public AnalyticsHandler(ApiSparkConfig apiSparkConfig,
             ModulesSettings modulesSettings) {
         analyticsClientResource = AgentUtils.getClientResource(apiSparkConfig,
-                modulesSettings, AnalyticsResource.class,
-                AnalyticsModule.ANALYTICS_PATH);
-        callLogs = Collections.synchronizedList(Lists
-                .<CallLog> newArrayListWithExpectedSize(bufferSize));
-
-        bufferSize = apiSparkConfig.getAgentAnalyticsBufferSize();
-        executorService = new ThreadPoolExecutor(1, THREAD_MAX_NUMBER, 0L,
-                TimeUnit.SECONDS,
-                new LinkedBlockingQueue<Runnable>(bufferSize),
-                new ThreadFactoryBuilder().setNameFormat("analytics-poster-%d")
-                        .build());
-
-        postPeriodInSecond = apiSparkConfig.getAgentAnalyticsPostPeriodInSecond();
-        long postPeriodInMs = TimeUnit.SECONDS.toMillis(postPeriodInSecond);
-
-        asyncPostTimer = new Timer();
-        asyncPostTimer.schedule(new TimerTask() {
+                modulesSettings, AnalyticsModule.ANALYTICS_PATH);
+        bufferSize = Math.max(1, apiSparkConfig.getAgentAnalyticsBufferSize());
+        callLogs = new CallLogBuffer(Math.max(bufferSize,
+                apiSparkConfig.getAgentAnalyticsQueueCapacity()),
+                apiSparkConfig.getAgentAnalyticsSamplingRate());
+        compressed = apiSparkConfig.isAgentAnalyticsCompressed();
+        postPeriodInSecond = Math.max(1,
+                apiSparkConfig.getAgentAnalyticsPostPeriodInSecond());
+        posterWaiting = new AtomicBoolean();
+        retries = new PriorityQueue<PendingPost>(11,
+                new Comparator<PendingPost>() {
+                    @Override
+                    public int compare(PendingPost post1, PendingPost post2) {
+                        return Long.signum(post1.nextAttempt
+                                - post2.nextAttempt);
+                    }
+                });
+        running = true;
 
+        poster = new Thread(new Runnable() {
             @Override
             public void run() {
-                flushLogs();
-
+                postLoop();
             }
-        }, postPeriodInMs, postPeriodInMs);
+        }, "analytics-poster");
+        poster.setDaemon(true);
+        poster.start();
     }
 
     /**
-     * Generates a CallLog for the request and adds it to the buffer.
+     * Adds a call record for the request to the buffer. It neither locks nor
+     * allocates. If the buffer size is reached, the poster is woken up.
      * 
      * @param request
      *            The Request object associated with the request.
@@ -152,65 +174,145 @@ public class AnalyticsHandler {
      */
     public void addCallLogToBuffer(Request request, Response response,
             int duration, long startTime) {
+        // Capture the path now, as the reference may change afterwards
+        String path = (request.getResourceRef() == null) ? null : request
+                .getResourceRef().getPath();
+        boolean added = callLogs.offer(startTime, duration, request
+                .getMethod().getName(), path, request.getClientInfo()
+                .getUpstreamAddress(), response.getStatus()
+                .getCode(), request.getClientInfo().getAgent(), (request
+                .getClientInfo().getUser() == null) ? "" : request
+                .getClientInfo().getUser().getIdentifier());
+
+        if (added && (callLogs.size() >= bufferSize)
+                && posterWaiting.compareAndSet(true, false)) {
+            LockSupport.unpark(poster);
+        }
+    }
 
-        CallLog callLog = new CallLog();
-        callLog.setDate(new Date(startTime));
-        callLog.setDuration(duration);
-        callLog.setMethod(request.getMethod().getName());
-        callLog.setPath(request.getResourceRef().getPath());
-        callLog.setRemoteIp(request.getClientInfo().getUpstreamAddress());
-        callLog.setStatusCode(response.getStatus().getCode());
-        callLog.setUserAgent(request.getClientInfo().getAgent());
+    /**
+     * Posts all the buffered call logs to APISpark. Must only be called by the
+     * poster thread.
+     */
+    private void flushLogs() {
+        long dropped = callLogs.getDropped();
 
-        callLog.setUserToken((request.getClientInfo().getUser() == null) ? ""
-                : request.getClientInfo().getUser().getIdentifier());
+        if (dropped > 0) {
+            LOGGER.warning(dropped
+                    + " call logs dropped because the analytics buffer was full.");
+        }
 
-        callLogs.add(callLog);
+        while (callLogs.size() > 0) {
+            CallLogs logsToPost = new CallLogs(Math.min(callLogs.size(),
+                    callLogs.getCapacity()));
 
-        if (callLogs.size() >= bufferSize) {
-            flushLogs();
+            if (callLogs.drain(logsToPost, Integer.MAX_VALUE) == 0) {
+                // Claimed records not published yet
+                return;
+            }
+
+            post(new PendingPost(logsToPost));
         }
     }
 
     /**
-     * Creates a new Thread that asynchronously posts call logs to APISpark
+     * Loop of the poster thread. Flushes the buffered call logs every post
+     * period or as soon as the buffer size is reached, and retries the failed
+     * posts when their time has come. When stopped, flushes the remaining call
+     * logs and makes a last attempt for the failed posts.
      */
-    public void flushLogs() {
-        if (callLogs.isEmpty()) {
-            return;
-        }
+    private void postLoop() {
+        long postPeriod = TimeUnit.SECONDS.toNanos(postPeriodInSecond);
+        long nextPost = System.nanoTime() + postPeriod;
 
-        CallLogs logsToPost;
-        synchronized (callLogs) {
-            if (callLogs.isEmpty()) {
-                return;
+        while (running) {
+            long now = System.nanoTime();
+            PendingPost retry = retries.peek();
+
+            if ((retry != null) && (now - retry.nextAttempt >= 0)) {
+                post(retries.poll());
+            } else if (now - nextPost >= 0) {
+                flushLogs();
+                nextPost = now + postPeriod;
+            } else if (callLogs.size() >= bufferSize) {
+                flushLogs();
+            } else {
+                long wakeUp = ((retry != null) && (retry.nextAttempt
+                        - nextPost < 0)) ? retry.nextAttempt : nextPost;
+                posterWaiting.set(true);
+
+                // Check again to avoid missing a wake up
+                if (running && (callLogs.size() < bufferSize)) {
+                    LockSupport.parkNanos(this, wakeUp - now);
+                }
+
+                posterWaiting.set(false);
             }
-            logsToPost = new CallLogs(callLogs.size());
-            logsToPost.addAll(callLogs);
-            callLogs.clear();
         }
 
-        postLogs(logsToPost);
+        flushLogs();
+
+        for (PendingPost retry = retries.poll(); retry != null; retry = retries
+                .poll()) {
+            retry.attempts = MAX_ATTEMPTS - 1;
+            post(retry);
+        }
     }
 
     /**
-     * Adds a task to the executor service to post call logs to the APISpark
-     * analytics service.
+     * Makes an attempt to post call logs. On failure, the post is rescheduled
+     * unless the maximum number of attempts is reached. Must only be called by
+     * the poster thread.
      * 
-     * If the executor service cannot satisfy the request, the call logs are
-     * lost and an error message is logged with the reason of the failure.
+     * @param pendingPost
+     *            The call logs to post.
+     */
+    private void post(PendingPost pendingPost) {
+        CallLogs logsToPost = pendingPost.logsToPost;
+        pendingPost.attempts++;
+
+        try {
+            postLogs(logsToPost);
+            LOGGER.fine(logsToPost.size()
+                    + " call logs sent to the analytics service.");
+        } catch (Exception e) {
+            if (pendingPost.attempts >= MAX_ATTEMPTS) {
+                LOGGER.severe("Posting " + logsToPost.size()
+                        + " call logs failed permanently after "
+                        + pendingPost.attempts + " attempts.");
+                errorSendLog(logsToPost);
+            } else {
+                LOGGER.warning("Error sending " + logsToPost.size()
+                        + " call logs to the analytics service during attempt n°"
+                        + pendingPost.attempts + " because \"" + e.getMessage()
+                        + "\".");
+                pendingPost.nextAttempt = System.nanoTime()
+                        + TimeUnit.MILLISECONDS.toNanos(getRetryTime(
+                                pendingPost.attempts));
+                retries.add(pendingPost);
+            }
+        }
+    }
+
+    /**
+     * Posts call logs to the APISpark analytics service.
      * 
      * @param logsToPost
      *            The call logs to post to the APISpark analytics service.
+     * @throws Exception
      */
-    private void postLogs(CallLogs logsToPost) {
-        try {
-            executorService.execute(new AsyncCallLogsPostTask(logsToPost));
-        } catch (RejectedExecutionException e) {
-            LOGGER.severe("Posting " + logsToPost.size()
-                    + " call logs failed permanently due to \""
-                    + e.getCause().getMessage() + "\".");
-            errorSendLog(logsToPost);
+    private void postLogs(CallLogs logsToPost) throws Exception {
+        Representation entity = analyticsClientResource.toRepresentation(
+                logsToPost, MediaType.APPLICATION_JSON);
+
+        if (compressed) {
+            entity = new EncodeRepresentation(Encoding.GZIP, entity);
+        }
+
+        Representation result = analyticsClientResource.post(entity);
+
+        if (result != null) {
+            result.release();
         }
     }
 
@@ -225,71 +327,66 @@ public class AnalyticsHandler {
     }
 
     /**
-     * Asynchronous task posting the call logs to APISpark and implementing
-     * fall-back methods if attempts are not successful.
+     * Returns the time to wait between two attempts to reach the APISpark
+     * analytics service.
      * 
-     * @author Cyprien Quilici
+     * It is multiplied by 2 each attempt with a maximum limit of
+     * {@link AnalyticsHandler#MAX_TIME}.
      * 
+     * @param attemptNumber
+     *            The number of the attempt.
+     * @return The time to wait between two attempts to reach the APISpark
+     *         analytics service.
+     */
+    private long getRetryTime(int attemptNumber) {
+        long newTime = RETRY_AFTER * ((int) Math.pow(2.0, attemptNumber - 1));
+        return Math.min(newTime, MAX_TIME);
+    }
+
+    /**
+     * Call logs waiting to be posted to APISpark, with the state of their
+     * attempts.
      */
-    private class AsyncCallLogsPostTask implements Runnable {
+    private static class PendingPost {
 
-        private CallLogs logsToPost;
+        /** The number of attempts already made. */
+        private int attempts;
 
-        public AsyncCallLogsPostTask(CallLogs logsToPost) {
-            this.logsToPost = logsToPost;
-        }
+        /** The call logs to post. */
+        private final CallLogs logsToPost;
 
-        @Override
-        public void run() {
-            for (int attemptNumber = 1; attemptNumber <= MAX_ATTEMPTS + 1; attemptNumber++) {
-                try {
-                    analyticsClientResource.postLogs(logsToPost);
-                    LOGGER.fine(logsToPost.size()
-                            + " call logs sent to the analytics service.");
-                    break;
-                } catch (Exception e) {
-                    if (attemptNumber == MAX_ATTEMPTS) {
-                        LOGGER.severe("Posting " + logsToPost.size()
-                                + " call logs failed permanently after "
-                                + MAX_ATTEMPTS + " attempts.");
-                        errorSendLog(logsToPost);
-                    } else {
-                        LOGGER.warning("Error sending "
-                                + logsToPost.size()
-                                + " call logs to the analytics service during attempt n°"
-                                + attemptNumber + " because \""
-                                + e.getMessage() + "\".");
-                        try {
-                            Thread.sleep(getRetryTime(attemptNumber));
-                        } catch (InterruptedException e1) {
-                            // ignore
-                        }
-                    }
-                }
-            }
-        }
+        /** The time of the next attempt, as given by System.nanoTime(). */
+        private long nextAttempt;
 
         /**
-         * Returns the time to wait between two attempts to reach the APISpark
-         * analytics service.
-         * 
-         * It is multiplied by 2 each attempt with a maximum limit of
-         * {@link AnalyticsHandler#MAX_TIME}.
+         * Constructor.
          * 
-         * @param attemptNumber
-         *            The number of the attempt.
-         * @return The time to wait between two attempts to reach the APISpark
-         *         analytics service.
+         * @param logsToPost
+         *            The call logs to post.
          */
-        private long getRetryTime(int attemptNumber) {
-            long newTime = RETRY_AFTER
-                    * ((int) Math.pow(2.0, attemptNumber - 1));
-            return Math.min(newTime, MAX_TIME);
+        private PendingPost(CallLogs logsToPost) {
+            this.logsToPost = logsToPost;
         }
     }
 
+    /**
+     * Stops the handler. Waits for the poster to flush the remaining call logs,
+     * at most {@link #STOP_TIMEOUT} milliseconds, so that they are posted
+     * before the client connector is stopped.
+     * 
+     * @throws Exception
+     */
     public synchronized void stop() throws Exception {
-        asyncPostTimer.cancel();
-        executorService.shutdown();
+        running = false;
+        LockSupport.unpark(poster);
+
+        if (Thread.currentThread() != poster) {
+            poster.join(STOP_TIMEOUT);
+
+            if (poster.isAlive()) {
+                LOGGER.warning("The analytics poster didn't flush the remaining call logs within "
+                        + STOP_TIMEOUT + " ms.");
+            }
+        }
     }
 }
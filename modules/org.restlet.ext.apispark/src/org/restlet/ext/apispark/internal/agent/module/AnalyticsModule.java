@@ -100,7 +100,7 @@ public class AnalyticsModule extends Filter {
                 "org.restlet.startTime");
         int duration = (int) (getTimeMillis() - startTime);
         analyticsHandler.addCallLogToBuffer(request, response, duration,
-                startTime);
+                System.currentTimeMillis() - duration);
     }
 
     /**
@@ -0,0 +1,261 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.apispark.internal.agent.module;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.restlet.ext.apispark.internal.agent.bean.CallLog;
+import org.restlet.ext.apispark.internal.agent.bean.CallLogs;
+
+/**
+ * Bounded multi-producer, single-consumer ring buffer of call records. The
+ * records are stored field by field in preallocated arrays, so adding a record
+ * neither locks nor allocates. Producers claim a slot by compare-and-set on
+ * the tail sequence then publish it, and the single consumer converts the
+ * published records into {@link CallLog} beans.<br>
+ * <br>
+ * When the buffer is full, new records are dropped. When a sampling rate
+ * greater than one is set and the buffer is more than half full, only one
+ * record out of this rate is kept.
+ * 
+ * @author Jerome Louvel
+ */
+public class CallLogBuffer {
+
+    /** The record dates. */
+    private final long[] dates;
+
+    /** The number of dropped records. */
+    private final AtomicLong dropped;
+
+    /** The record durations. */
+    private final int[] durations;
+
+    /** The sequence of the next record to consume. */
+    private volatile long head;
+
+    /** The mask giving the slot index of a sequence. */
+    private final int mask;
+
+    /** The record methods. */
+    private final String[] methods;
+
+    /** The number of records offered while the buffer is sampling. */
+    private final AtomicLong offered;
+
+    /** The record paths. */
+    private final String[] paths;
+
+    /** The sequence published in each slot, plus one. */
+    private final AtomicLongArray published;
+
+    /** The record remote IP addresses. */
+    private final String[] remoteIps;
+
+    /** The sampling rate applied when the buffer is more than half full. */
+    private final int samplingRate;
+
+    /** The record status codes. */
+    private final int[] statusCodes;
+
+    /** The sequence of the next record to claim. */
+    private final AtomicLong tail;
+
+    /** The record user agents. */
+    private final String[] userAgents;
+
+    /** The record user tokens. */
+    private final String[] userTokens;
+
+    /**
+     * Constructor.
+     * 
+     * @param capacity
+     *            The minimum capacity, rounded to the next power of two.
+     * @param samplingRate
+     *            The sampling rate applied when the buffer is more than half
+     *            full. One disables sampling.
+     */
+    public CallLogBuffer(int capacity, int samplingRate) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.mask = size - 1;
+        this.samplingRate = Math.max(1, samplingRate);
+        this.dates = new long[size];
+        this.durations = new int[size];
+        this.methods = new String[size];
+        this.paths = new String[size];
+        this.remoteIps = new String[size];
+        this.statusCodes = new int[size];
+        this.userAgents = new String[size];
+        this.userTokens = new String[size];
+        this.published = new AtomicLongArray(size);
+        this.dropped = new AtomicLong();
+        this.offered = new AtomicLong();
+        this.tail = new AtomicLong();
+    }
+
+    /**
+     * Converts the published records into call logs. Must only be called by
+     * the consumer thread.
+     * 
+     * @param callLogs
+     *            The list of call logs to update.
+     * @param max
+     *            The maximum number of records to consume.
+     * @return The number of consumed records.
+     */
+    public int drain(CallLogs callLogs, int max) {
+        long sequence = this.head;
+        int result = 0;
+
+        while ((result < max)
+                && (this.published.get(index(sequence)) == sequence + 1)) {
+            int i = index(sequence);
+            CallLog callLog = new CallLog();
+            callLog.setDate(new Date(this.dates[i]));
+            callLog.setDuration(this.durations[i]);
+            callLog.setMethod(this.methods[i]);
+            callLog.setPath(this.paths[i]);
+            callLog.setRemoteIp(this.remoteIps[i]);
+            callLog.setStatusCode(this.statusCodes[i]);
+            callLog.setUserAgent(this.userAgents[i]);
+            callLog.setUserToken(this.userTokens[i]);
+            callLogs.add(callLog);
+
+            // Release the references before freeing the slot
+            this.methods[i] = null;
+            this.paths[i] = null;
+            this.remoteIps[i] = null;
+            this.userAgents[i] = null;
+            this.userTokens[i] = null;
+            this.head = ++sequence;
+            result++;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the capacity.
+     * 
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return this.mask + 1;
+    }
+
+    /**
+     * Returns the number of records dropped since the last call, and resets
+     * it.
+     * 
+     * @return The number of records dropped since the last call.
+     */
+    public long getDropped() {
+        return this.dropped.getAndSet(0);
+    }
+
+    /**
+     * Returns the slot index of a sequence.
+     * 
+     * @param sequence
+     *            The sequence.
+     * @return The slot index.
+     */
+    private int index(long sequence) {
+        return (int) sequence & this.mask;
+    }
+
+    /**
+     * Adds a call record if the buffer isn't full and the record isn't sampled
+     * out.
+     * 
+     * @param date
+     *            The call date, in milliseconds since the epoch.
+     * @param duration
+     *            The call duration in milliseconds.
+     * @param method
+     *            The method name.
+     * @param path
+     *            The path of the resource reference, captured at call time.
+     * @param remoteIp
+     *            The remote IP address.
+     * @param statusCode
+     *            The response status code.
+     * @param userAgent
+     *            The user agent name.
+     * @param userToken
+     *            The user identifier.
+     * @return True if the record has been added.
+     */
+    public boolean offer(long date, int duration, String method,
+            String path, String remoteIp, int statusCode,
+            String userAgent, String userToken) {
+        long sequence = this.tail.get();
+
+        if ((sequence - this.head) > this.mask) {
+            this.dropped.incrementAndGet();
+            return false;
+        } else if ((this.samplingRate > 1)
+                && ((sequence - this.head) > (this.mask >> 1))
+                && ((this.offered.getAndIncrement() % this.samplingRate) != 0)) {
+            this.dropped.incrementAndGet();
+            return false;
+        }
+
+        // Claim the next slot unless the buffer is full
+        while (!this.tail.compareAndSet(sequence, sequence + 1)) {
+            sequence = this.tail.get();
+
+            if ((sequence - this.head) > this.mask) {
+                this.dropped.incrementAndGet();
+                return false;
+            }
+        }
+
+        int i = index(sequence);
+        this.dates[i] = date;
+        this.durations[i] = duration;
+        this.methods[i] = method;
+        this.paths[i] = path;
+        this.remoteIps[i] = remoteIp;
+        this.statusCodes[i] = statusCode;
+        this.userAgents[i] = userAgent;
+        this.userTokens[i] = userToken;
+        this.published.lazySet(i, sequence + 1);
+        return true;
+    }
+
+    /**
+     * Returns the number of records claimed and not yet consumed.
+     * 
+     * @return The number of records claimed and not yet consumed.
+     */
+    public int size() {
+        return (int) (this.tail.get() - this.head);
+    }
+
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.apispark.internal.firewall.rule;
+
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.ext.apispark.internal.firewall.rule.counter.CounterStore;
+import org.restlet.ext.apispark.internal.firewall.rule.counter.MemoryCounterStore;
+import org.restlet.ext.apispark.internal.firewall.rule.policy.CountingPolicy;
+
+/**
+ * {@link FirewallCounterRule} counting requests on a sliding period of time.
+ * Unlike the {@link PeriodicFirewallCounterRule} which resets its counters at
+ * fixed instants, a burst straddling two periods can't exceed the limit: the
+ * consumed value is the count of the current window plus the count of the
+ * previous window weighted by the part of it still covered by the sliding
+ * period.<br>
+ * <br>
+ * The counts are kept in a {@link CounterStore}, in memory by default. Counting
+ * never takes a lock.
+ * 
+ * @author Jerome Louvel
+ */
+public class SlidingWindowFirewallCounterRule extends FirewallCounterRule {
+
+    /** The prefix of the keys in the counter store. */
+    private final String keyPrefix;
+
+    /** Period in milliseconds. */
+    private final long period;
+
+    /** The store of the counts. */
+    private final CounterStore store;
+
+    /**
+     * Constructor. Uses a {@link MemoryCounterStore}.
+     * 
+     * @param period
+     *            The sliding period.
+     * @param periodUnit
+     *            The sliding period time unit.
+     * @param countingPolicy
+     *            The associated counting policy.
+     */
+    public SlidingWindowFirewallCounterRule(int period, TimeUnit periodUnit,
+            CountingPolicy countingPolicy) {
+        this(period, periodUnit, countingPolicy, new MemoryCounterStore(), "");
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param period
+     *            The sliding period.
+     * @param periodUnit
+     *            The sliding period time unit.
+     * @param countingPolicy
+     *            The associated counting policy.
+     * @param store
+     *            The store of the counts.
+     * @param keyPrefix
+     *            The prefix of the keys in the store, distinguishing this rule
+     *            from the other rules sharing the same store.
+     */
+    public SlidingWindowFirewallCounterRule(int period, TimeUnit periodUnit,
+            CountingPolicy countingPolicy, CounterStore store, String keyPrefix) {
+        super(countingPolicy);
+        this.period = Math.max(1, periodUnit.toMillis(period));
+        this.store = store;
+        this.keyPrefix = keyPrefix;
+    }
+
+    /**
+     * Returns the current time in milliseconds since the epoch.
+     * 
+     * @return The current time in milliseconds since the epoch.
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Does nothing.
+     */
+    @Override
+    protected void decrementCounter(String countedValue) {
+    }
+
+    @Override
+    protected CounterResult incrementCounter(String countedValue) {
+        long now = currentTimeMillis();
+        long window = now / this.period;
+        long offset = now % this.period;
+        String key = this.keyPrefix + countedValue;
+
+        int current = this.store.increment(key, window, (window + 2)
+                * this.period);
+        int previous = this.store.get(key, window - 1);
+
+        CounterResult result = new CounterResult();
+        result.setConsumed(current
+                + (int) ((previous * (this.period - offset)) / this.period));
+        result.setElapsed(TimeUnit.MILLISECONDS.toSeconds(offset));
+        result.setReset(TimeUnit.MILLISECONDS.toSeconds((window + 1)
+                * this.period));
+        return result;
+    }
+
+}
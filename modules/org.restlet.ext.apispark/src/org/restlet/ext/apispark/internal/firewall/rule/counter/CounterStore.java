@@ -0,0 +1,64 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.apispark.internal.firewall.rule.counter;
+
+import org.restlet.ext.apispark.internal.firewall.rule.SlidingWindowFirewallCounterRule;
+
+/**
+ * Stores the request counts of a {@link SlidingWindowFirewallCounterRule} by
+ * counted value and by time window. Only the current and the previous windows
+ * of each key need to be retained. Implementations can keep this state in
+ * memory or in an external store shared by several nodes.
+ * 
+ * @author Jerome Louvel
+ */
+public interface CounterStore {
+
+    /**
+     * Returns the count of the given key in the given time window.
+     * 
+     * @param key
+     *            The counter key.
+     * @param window
+     *            The index of the time window.
+     * @return The count of the key in the window or 0 if unknown.
+     */
+    int get(String key, long window);
+
+    /**
+     * Increments the count of the given key in the given time window.
+     * 
+     * @param key
+     *            The counter key.
+     * @param window
+     *            The index of the time window.
+     * @param expiration
+     *            The time, in milliseconds since the epoch, after which the
+     *            counts of this key can be discarded.
+     * @return The updated count of the key in the window.
+     */
+    int increment(String key, long window, long expiration);
+
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.apispark.internal.firewall.rule.counter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link CounterStore} keeping the counts in memory. The state of each key is
+ * an immutable snapshot updated by compare-and-set, so increments never block.
+ * Expired keys are periodically swept by the incrementing threads.
+ * 
+ * @author Jerome Louvel
+ */
+public class MemoryCounterStore implements CounterStore {
+
+    /**
+     * Immutable counts of a key for the current and previous windows.
+     */
+    private static final class Window {
+
+        /** The count in the current window. */
+        private final int count;
+
+        /** The expiration time in milliseconds. */
+        private final long expiration;
+
+        /** The index of the current window. */
+        private final long index;
+
+        /** The count in the previous window. */
+        private final int previous;
+
+        /**
+         * Constructor.
+         * 
+         * @param index
+         *            The index of the current window.
+         * @param count
+         *            The count in the current window.
+         * @param previous
+         *            The count in the previous window.
+         * @param expiration
+         *            The expiration time in milliseconds.
+         */
+        public Window(long index, int count, int previous, long expiration) {
+            this.index = index;
+            this.count = count;
+            this.previous = previous;
+            this.expiration = expiration;
+        }
+    }
+
+    /** The default interval between two sweeps of the expired keys. */
+    private static final long SWEEP_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    /** The time of the next sweep of the expired keys. */
+    private final AtomicLong nextSweep;
+
+    /** The state of each key. */
+    private final ConcurrentHashMap<String, AtomicReference<Window>> windows;
+
+    /**
+     * Constructor.
+     */
+    public MemoryCounterStore() {
+        this.nextSweep = new AtomicLong(System.currentTimeMillis()
+                + SWEEP_INTERVAL);
+        this.windows = new ConcurrentHashMap<String, AtomicReference<Window>>();
+    }
+
+    @Override
+    public int get(String key, long window) {
+        AtomicReference<Window> ref = this.windows.get(key);
+        Window current = (ref == null) ? null : ref.get();
+
+        if (current == null) {
+            return 0;
+        } else if (current.index == window) {
+            return current.count;
+        } else if (current.index == window + 1) {
+            return current.previous;
+        }
+
+        return 0;
+    }
+
+    @Override
+    public int increment(String key, long window, long expiration) {
+        sweep();
+
+        for (;;) {
+            AtomicReference<Window> ref = this.windows.get(key);
+
+            if (ref == null) {
+                ref = new AtomicReference<Window>(new Window(window, 0, 0,
+                        expiration));
+                AtomicReference<Window> existing = this.windows.putIfAbsent(
+                        key, ref);
+
+                if (existing != null) {
+                    ref = existing;
+                }
+            }
+
+            int result;
+            Window current;
+            Window next;
+
+            do {
+                current = ref.get();
+
+                if (current.index == window) {
+                    result = current.count + 1;
+                    next = new Window(window, result, current.previous,
+                            expiration);
+                } else if (current.index < window) {
+                    // Roll the window
+                    result = 1;
+                    next = new Window(window, result,
+                            (current.index == window - 1) ? current.count : 0,
+                            expiration);
+                } else if (current.index == window + 1) {
+                    // Late increment of the previous window
+                    result = current.previous + 1;
+                    next = new Window(current.index, current.count, result,
+                            current.expiration);
+                } else {
+                    return 0;
+                }
+            } while (!ref.compareAndSet(current, next));
+
+            // Retry if the key has been swept concurrently
+            if (this.windows.get(key) == ref) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Removes the expired keys if the sweep interval has elapsed. Only one of
+     * the concurrent callers actually sweeps.
+     */
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        long next = this.nextSweep.get();
+
+        if ((now >= next)
+                && this.nextSweep.compareAndSet(next, now + SWEEP_INTERVAL)) {
+            for (Map.Entry<String, AtomicReference<Window>> entry : this.windows
+                    .entrySet()) {
+                if (entry.getValue().get().expiration < now) {
+                    this.windows.remove(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+}
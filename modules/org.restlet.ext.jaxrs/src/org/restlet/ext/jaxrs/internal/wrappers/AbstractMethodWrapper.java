@@ -32,6 +32,7 @@ import javax.ws.rs.Encoded;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 
+import org.restlet.engine.util.MemberInvoker;
 import org.restlet.ext.jaxrs.internal.core.ThreadLocalizedContext;
 import org.restlet.ext.jaxrs.internal.exceptions.ConvertRepresentationException;
 import org.restlet.ext.jaxrs.internal.exceptions.IllegalMethodParamTypeException;
@@ -62,6 +63,9 @@ public abstract class AbstractMethodWrapper extends AbstractJaxRsWrapper {
      */
     final Method executeMethod;
 
+    /** The invoker of the {@link #executeMethod}. */
+    final MemberInvoker executeInvoker;
+
     final ParameterList parameters;
 
     final ResourceClass resourceClass;
@@ -97,6 +101,7 @@ public abstract class AbstractMethodWrapper extends AbstractJaxRsWrapper {
         super(PathRegExp.createForMethod(annotatedMethod));
         this.executeMethod = executeMethod;
         this.executeMethod.setAccessible(true);
+        this.executeInvoker = new MemberInvoker(executeMethod);
         // NICE log message, if an Exception with no exc mapper is declared.
         this.resourceClass = resourceClass;
         final boolean leaveEncoded = resourceClass.isLeaveEncoded()
@@ -159,7 +164,7 @@ public abstract class AbstractMethodWrapper extends AbstractJaxRsWrapper {
             WebApplicationException {
         final Object[] args = this.parameters.get();
         final Object jaxRsResourceObj = resourceObject.getJaxRsResourceObject();
-        return this.executeMethod.invoke(jaxRsResourceObj, args);
+        return this.executeInvoker.invokeMethod(jaxRsResourceObj, args);
     }
 
     @Override
@@ -29,6 +29,7 @@ import java.util.logging.Logger;
 
 import javax.ws.rs.WebApplicationException;
 
+import org.restlet.engine.util.MemberInvoker;
 import org.restlet.ext.jaxrs.InstantiateException;
 import org.restlet.ext.jaxrs.ObjectFactory;
 import org.restlet.ext.jaxrs.internal.core.ThreadLocalizedContext;
@@ -51,6 +52,9 @@ import org.restlet.ext.jaxrs.internal.wrappers.provider.JaxRsProviders;
  */
 public class PerRequestRootResourceClass extends RootResourceClass {
 
+    /** The invoker of the constructor, bound once for all the instances. */
+    private final MemberInvoker constructorInvoker;
+
     /**
      * @param jaxRsClass
      * @param tlContext
@@ -75,6 +79,7 @@ public class PerRequestRootResourceClass extends RootResourceClass {
             IllegalBeanSetterTypeException, IllegalPathParamTypeException {
         super(jaxRsClass, tlContext, jaxRsProviders, extensionBackwardMapping,
                 logger);
+        this.constructorInvoker = new MemberInvoker(this.constructor);
     }
 
     /**
@@ -99,7 +104,8 @@ public class PerRequestRootResourceClass extends RootResourceClass {
         if (instance == null) {
             try {
                 final Object[] args = this.constructorParameters.get();
-                instance = WrapperUtil.createInstance(this.constructor, args);
+                instance = WrapperUtil.createInstance(this.constructorInvoker,
+                        args);
             } catch (ConvertRepresentationException e) {
                 // is (or should be :-) ) not possible
                 throw new ImplementationException("Must not be possible", e);
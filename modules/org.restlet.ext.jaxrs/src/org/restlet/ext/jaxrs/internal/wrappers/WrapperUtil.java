@@ -45,6 +45,7 @@ import javax.ws.rs.core.UriInfo;
 
 import org.restlet.Request;
 import org.restlet.data.MediaType;
+import org.restlet.engine.util.MemberInvoker;
 import org.restlet.ext.jaxrs.InstantiateException;
 import org.restlet.ext.jaxrs.internal.exceptions.IllegalTypeException;
 import org.restlet.ext.jaxrs.internal.exceptions.MissingConstructorException;
@@ -199,6 +200,33 @@ public class WrapperUtil {
         }
     }
 
+    /**
+     * Creates an instance of the root resource class, using a constructor
+     * invoker bound once for all the instances.
+     * 
+     * @param constructorInvoker
+     * @param args
+     * @return the created instance
+     * @throws InvocationTargetException
+     * @throws InstantiateException
+     */
+    public static Object createInstance(MemberInvoker constructorInvoker,
+            Object... args) throws InvocationTargetException,
+            InstantiateException {
+        try {
+            return constructorInvoker.newInstance(args);
+        } catch (IllegalArgumentException e) {
+            throw new InstantiateException("Could not instantiate "
+                    + constructorInvoker.getMember(), e);
+        } catch (InstantiationException e) {
+            throw new InstantiateException("Could not instantiate "
+                    + constructorInvoker.getMember(), e);
+        } catch (IllegalAccessException e) {
+            throw new InstantiateException("Could not instantiate "
+                    + constructorInvoker.getMember(), e);
+        }
+    }
+
     /**
      * Finds the constructor to use by the JAX-RS runtime.
      * 
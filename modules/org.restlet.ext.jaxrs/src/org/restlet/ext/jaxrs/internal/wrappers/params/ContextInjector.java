@@ -44,6 +44,7 @@ import javax.ws.rs.core.UriInfo;
 import javax.ws.rs.ext.ContextResolver;
 import javax.ws.rs.ext.Providers;
 
+import org.restlet.engine.util.MemberInvoker;
 import org.restlet.ext.jaxrs.ExtendedUriInfo;
 import org.restlet.ext.jaxrs.internal.core.ThreadLocalizedContext;
 import org.restlet.ext.jaxrs.internal.core.ThreadLocalizedExtendedUriInfo;
@@ -70,9 +71,12 @@ public class ContextInjector {
 
         private final Method beanSetter;
 
+        private final MemberInvoker invoker;
+
         private BeanSetter(Method beanSetter) {
             this.beanSetter = beanSetter;
             this.beanSetter.setAccessible(true);
+            this.invoker = new MemberInvoker(beanSetter);
         }
 
         /**
@@ -84,7 +88,12 @@ public class ContextInjector {
         public void injectInto(Object resource, Object toInject,
                 boolean allMustBeAvailable) throws IllegalArgumentException,
                 InjectException, InvocationTargetException {
-            Util.inject(resource, this.beanSetter, toInject);
+            try {
+                this.invoker.invokeMethod(resource, toInject);
+            } catch (IllegalAccessException e) {
+                throw new InjectException("Could not inject the " + toInject
+                        + " with bean setter " + this.beanSetter, e);
+            }
         }
 
     }
@@ -142,9 +151,12 @@ public class ContextInjector {
 
         private final Field field;
 
+        private final MemberInvoker setter;
+
         private FieldWrapper(Field field) {
             this.field = field;
             this.field.setAccessible(true);
+            this.setter = new MemberInvoker(field);
         }
 
         /**
@@ -156,7 +168,21 @@ public class ContextInjector {
         public void injectInto(Object resource, Object toInject,
                 boolean allMustBeAvailable) throws IllegalArgumentException,
                 InjectException, InvocationTargetException {
-            Util.inject(resource, this.field, toInject);
+            try {
+                this.setter.setValue(resource, toInject);
+            } catch (IllegalAccessException e) {
+                throw new InjectException("Could not inject the " + toInject
+                        + " into field " + this.field + " of object "
+                        + resource, e);
+            } catch (InvocationTargetException e) {
+                throw new InjectException("Could not inject the " + toInject
+                        + " into field " + this.field + " of object "
+                        + resource, e.getCause());
+            } catch (RuntimeException e) {
+                throw new InjectException("Could not inject the " + toInject
+                        + " into field " + this.field + " of object "
+                        + resource, e);
+            }
         }
     }
 
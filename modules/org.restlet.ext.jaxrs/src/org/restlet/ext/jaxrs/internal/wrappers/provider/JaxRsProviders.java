@@ -30,6 +30,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -49,6 +50,7 @@ import javax.ws.rs.ext.Providers;
 
 import org.restlet.Context;
 import org.restlet.data.MediaType;
+import org.restlet.engine.util.BoundedCache;
 import org.restlet.ext.jaxrs.InstantiateException;
 import org.restlet.ext.jaxrs.ObjectFactory;
 import org.restlet.ext.jaxrs.internal.core.ThreadLocalizedContext;
@@ -70,6 +72,69 @@ import org.restlet.ext.jaxrs.internal.util.Converter;
 public class JaxRsProviders implements javax.ws.rs.ext.Providers,
         MessageBodyReaderSet {
 
+    /**
+     * Key of the provider resolution caches. The annotations are part of the
+     * key, as the isReadable() and isWriteable() methods of the providers may
+     * depend on them.
+     */
+    private static final class ResolutionKey {
+
+        private final Annotation[] annotations;
+
+        private final Type genericType;
+
+        private final int hashCode;
+
+        private final Object mediaType;
+
+        private final Class<?> type;
+
+        private ResolutionKey(Class<?> type, Type genericType,
+                Annotation[] annotations, Object mediaType) {
+            this.type = type;
+            this.genericType = genericType;
+            this.annotations = annotations;
+            this.mediaType = mediaType;
+            int result = (type == null) ? 0 : type.hashCode();
+            result = 31 * result
+                    + ((genericType == null) ? 0 : genericType.hashCode());
+            result = 31 * result + Arrays.hashCode(annotations);
+            result = 31 * result
+                    + ((mediaType == null) ? 0 : mediaType.hashCode());
+            this.hashCode = result;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+
+            if (!(object instanceof ResolutionKey)) {
+                return false;
+            }
+
+            ResolutionKey other = (ResolutionKey) object;
+            return (this.hashCode == other.hashCode)
+                    && equals(this.type, other.type)
+                    && equals(this.genericType, other.genericType)
+                    && equals(this.mediaType, other.mediaType)
+                    && Arrays.equals(this.annotations, other.annotations);
+        }
+
+        private static boolean equals(Object o1, Object o2) {
+            return (o1 == null) ? (o2 == null) : o1.equals(o2);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+
+    /** The maximum number of entries of each resolution cache. */
+    private static final int CACHE_SIZE = 1000;
+
     private static final Logger localLogger = Context.getCurrentLogger();
 
     /**
@@ -109,8 +174,17 @@ public class JaxRsProviders implements javax.ws.rs.ext.Providers,
 
     private volatile ObjectFactory objectFactory;
 
+    /** The cache of the reader selected for a given criteria. */
+    private final BoundedCache<ResolutionKey, ProviderWrapper> readerCache;
+
     private final ThreadLocalizedContext tlContext;
 
+    /** The cache of the writer selected for a given criteria. */
+    private final BoundedCache<ResolutionKey, ProviderWrapper> writerCache;
+
+    /** The cache of the writers supporting a given entity class. */
+    private final BoundedCache<ResolutionKey, List<ProviderWrapper>> writerSubSetCache;
+
     /**
      * Creates a new JaxRsProviders.
      * 
@@ -127,6 +201,12 @@ public class JaxRsProviders implements javax.ws.rs.ext.Providers,
         this.messageBodyWriterWrappers = new CopyOnWriteArrayList<ProviderWrapper>();
         this.contextResolvers = new CopyOnWriteArraySet<ProviderWrapper>();
         this.excMappers = new ConcurrentHashMap<Class<? extends Throwable>, ProviderWrapper>();
+        this.readerCache = new BoundedCache<ResolutionKey, ProviderWrapper>(
+                CACHE_SIZE);
+        this.writerCache = new BoundedCache<ResolutionKey, ProviderWrapper>(
+                CACHE_SIZE);
+        this.writerSubSetCache = new BoundedCache<ResolutionKey, List<ProviderWrapper>>(
+                CACHE_SIZE);
 
         this.objectFactory = objectFactory;
         this.tlContext = tlContext;
@@ -159,6 +239,7 @@ public class JaxRsProviders implements javax.ws.rs.ext.Providers,
         if (provider.isExceptionMapper())
             this.addExcMapper(provider);
         this.all.add(provider);
+        clearCaches();
     }
 
     /**
@@ -253,6 +334,16 @@ public class JaxRsProviders implements javax.ws.rs.ext.Providers,
         return true;
     }
 
+    /**
+     * Clears the provider resolution caches. Called each time the set of
+     * providers changes.
+     */
+    private void clearCaches() {
+        this.readerCache.clear();
+        this.writerCache.clear();
+        this.writerSubSetCache.clear();
+    }
+
     /**
      * converts the cause of the given InvocationTargetException to a
      * {@link Response}, if an {@link ExceptionMapper} could be found.<br>
@@ -308,7 +399,20 @@ public class JaxRsProviders implements javax.ws.rs.ext.Providers,
      */
     public MessageBodyReader getBestReader(Class<?> paramType,
             Type genericType, Annotation[] annotations, MediaType mediaType) {
-        // NICE optimization: may be cached for speed.
+        ResolutionKey key = new ResolutionKey(paramType, genericType,
+                annotations, mediaType);
+        ProviderWrapper cached = this.readerCache.get(key);
+
+        if (cached != null) {
+            try {
+                return cached.getInitializedReader();
+            } catch (ProviderNotInitializableException e) {
+                this.readerCache.remove(key);
+            } catch (WebApplicationException e) {
+                this.readerCache.remove(key);
+            }
+        }
+
         for (ProviderWrapper mbrw : this.messageBodyReaderWrappers) {
             if (mbrw.supportsRead(mediaType)) {
                 MessageBodyReader mbr;
@@ -320,8 +424,10 @@ public class JaxRsProviders implements javax.ws.rs.ext.Providers,
                     continue;
                 }
                 if (mbr.isReadable(paramType, genericType, annotations,
-                        Converter.toJaxRsMediaType(mediaType)))
+                        Converter.toJaxRsMediaType(mediaType))) {
+                    this.readerCache.put(key, mbrw);
                     return mbr;
+                }
             }
         }
         return null;
@@ -461,6 +567,21 @@ public class JaxRsProviders implements javax.ws.rs.ext.Providers,
     public <T> javax.ws.rs.ext.MessageBodyWriter<T> getMessageBodyWriter(
             Class<T> type, Type genericType, Annotation[] annotations,
             javax.ws.rs.core.MediaType mediaType) {
+        ResolutionKey key = new ResolutionKey(type, genericType, annotations,
+                mediaType);
+        ProviderWrapper cached = this.writerCache.get(key);
+
+        if (cached != null) {
+            try {
+                return (javax.ws.rs.ext.MessageBodyWriter<T>) cached
+                        .getInitializedWriter().getJaxRsWriter();
+            } catch (ProviderNotInitializableException e) {
+                this.writerCache.remove(key);
+            } catch (WebApplicationException e) {
+                this.writerCache.remove(key);
+            }
+        }
+
         MediaType restletMediaType = Converter.toRestletMediaType(mediaType);
         for (ProviderWrapper mbww : this.messageBodyWriterWrappers) {
             if (mbww.supportsWrite(restletMediaType)) {
@@ -472,9 +593,11 @@ public class JaxRsProviders implements javax.ws.rs.ext.Providers,
                 } catch (WebApplicationException e) {
                     continue;
                 }
-                if (mbw.isWriteable(type, genericType, annotations, mediaType))
+                if (mbw.isWriteable(type, genericType, annotations, mediaType)) {
+                    this.writerCache.put(key, mbww);
                     return (javax.ws.rs.ext.MessageBodyWriter<T>) mbw
                             .getJaxRsWriter();
+                }
             }
         }
         return null;
@@ -525,6 +648,7 @@ public class JaxRsProviders implements javax.ws.rs.ext.Providers,
         this.contextResolvers.remove(provider);
         this.messageBodyReaderWrappers.remove(provider);
         this.messageBodyWriterWrappers.remove(provider);
+        clearCaches();
         Iterator<Map.Entry<Class<? extends Throwable>, ProviderWrapper>> excMapperEntryIter = this.excMappers
                 .entrySet().iterator();
         while (excMapperEntryIter.hasNext()) {
@@ -560,19 +684,44 @@ public class JaxRsProviders implements javax.ws.rs.ext.Providers,
      */
     public MessageBodyWriterSubSet writerSubSet(Class<?> entityClass,
             Type genericType) {
+        ResolutionKey key = new ResolutionKey(entityClass, genericType, null,
+                null);
+        List<ProviderWrapper> wrappers = this.writerSubSetCache.get(key);
         final List<MessageBodyWriter> mbws = new ArrayList<MessageBodyWriter>();
-        for (ProviderWrapper mbww : this.messageBodyWriterWrappers) {
-            MessageBodyWriter mbw;
-            try {
-                mbw = mbww.getInitializedWriter();
-            } catch (ProviderNotInitializableException e) {
-                continue;
+
+        if (wrappers != null) {
+            for (ProviderWrapper mbww : wrappers) {
+                try {
+                    mbws.add(mbww.getInitializedWriter());
+                } catch (ProviderNotInitializableException e) {
+                    continue;
+                }
             }
-            if (mbw.supportsWrite(entityClass, genericType)) {
-                mbws.add(mbw);
+        } else {
+            wrappers = new ArrayList<ProviderWrapper>();
+            boolean complete = true;
+
+            for (ProviderWrapper mbww : this.messageBodyWriterWrappers) {
+                MessageBodyWriter mbw;
+                try {
+                    mbw = mbww.getInitializedWriter();
+                } catch (ProviderNotInitializableException e) {
+                    complete = false;
+                    continue;
+                }
+                if (mbw.supportsWrite(entityClass, genericType)) {
+                    mbws.add(mbw);
+                    wrappers.add(mbww);
+                }
+            }
+
+            // Only cache complete results, as the failing providers may be
+            // usable for later requests.
+            if (complete) {
+                this.writerSubSetCache.put(key, wrappers);
             }
         }
-        // NICE optimization: may be cached for speed.
+
         return new MessageBodyWriterSubSet(mbws, entityClass, genericType);
     }
 }
@@ -28,12 +28,19 @@ import java.io.IOException;
 import java.net.CookieStore;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.logging.Level;
 
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.io.ssl.SslClientConnectionFactory;
+import org.eclipse.jetty.spdy.client.NPNClientConnectionFactory;
+import org.eclipse.jetty.spdy.client.SPDYClient;
+import org.eclipse.jetty.spdy.client.SPDYClientConnectionFactory;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
@@ -45,7 +52,9 @@ import org.restlet.engine.adapter.ClientCall;
 import org.restlet.engine.ssl.DefaultSslContextFactory;
 import org.restlet.engine.util.ReferenceUtils;
 import org.restlet.ext.jetty.internal.JettyClientCall;
+import org.restlet.ext.jetty.internal.JettySpdyClientCall;
 import org.restlet.ext.jetty.internal.RestletSslContextFactory;
+import org.restlet.ext.jetty.internal.SpdyDestination;
 
 /**
  * HTTP client connector using the Jetty project. Here is the list of parameters
@@ -136,6 +145,30 @@ import org.restlet.ext.jetty.internal.RestletSslContextFactory;
  * <td>The size in bytes of the buffer used to read responses</td>
  * </tr>
  * <tr>
+ * <td>spdy.version</td>
+ * <td>int</td>
+ * <td>0</td>
+ * <td>SPDY version; can be 0, 2, or 3; if 0, SPDY is not used. When used, the
+ * calls to a destination are multiplexed over a single connection, spoken
+ * directly for HTTP URIs, like HTTP/2 with prior knowledge ("h2c"), or
+ * negotiated with NPN for HTTPS URIs. Make sure to install the NPN boot jar
+ * matching the JVM in its boot classpath for HTTPS.</td>
+ * </tr>
+ * <tr>
+ * <td>spdy.maxConcurrentStreams</td>
+ * <td>int</td>
+ * <td>100</td>
+ * <td>SPDY max number of concurrent streams per destination, further bounded
+ * by the limit advertised by the server; when -1, only the server limit
+ * applies</td>
+ * </tr>
+ * <tr>
+ * <td>spdy.initialWindowSize</td>
+ * <td>int</td>
+ * <td>65536</td>
+ * <td>SPDY initial flow-control window size of each stream in bytes</td>
+ * </tr>
+ * <tr>
  * <td>stopTimeout</td>
  * <td>long</td>
  * <td>60000</td>
@@ -184,6 +217,26 @@ public class HttpClientHelper extends
      */
     private volatile HttpClient httpClient;
 
+    /**
+     * The wrapped Jetty SPDY client for HTTP URIs.
+     */
+    private volatile SPDYClient spdyClient;
+
+    /**
+     * The wrapped Jetty SPDY client factory.
+     */
+    private volatile SPDYClient.Factory spdyClientFactory;
+
+    /**
+     * The SPDY destinations.
+     */
+    private final ConcurrentMap<String, SpdyDestination> spdyDestinations;
+
+    /**
+     * The wrapped Jetty SPDY client for HTTPS URIs.
+     */
+    private volatile SPDYClient spdySslClient;
+
     /**
      * Constructor.
      * 
@@ -192,10 +245,24 @@ public class HttpClientHelper extends
      */
     public HttpClientHelper(Client client) {
         super(client);
+        this.spdyDestinations = new ConcurrentHashMap<String, SpdyDestination>();
         getProtocols().add(Protocol.HTTP);
         getProtocols().add(Protocol.HTTPS);
     }
 
+    /**
+     * Configures a Jetty SPDY client.
+     * 
+     * @param spdyClient
+     *            The SPDY client to configure.
+     */
+    private void configure(SPDYClient spdyClient) {
+        spdyClient.setBindAddress(getBindAddress());
+        spdyClient.setDispatchIO(isDispatchIO());
+        spdyClient.setIdleTimeout(getIdleTimeout());
+        spdyClient.setInitialWindowSize(getSpdyInitialWindowSize());
+    }
+
     /**
      * Creates a low-level HTTP client call from a high-level uniform call.
      * 
@@ -207,9 +274,15 @@ public class HttpClientHelper extends
         ClientCall result = null;
 
         try {
-            result = new JettyClientCall(this, request.getMethod().toString(),
-                    ReferenceUtils.update(request.getResourceRef(), request)
-                            .toString());
+            if (getSpdyVersion() > 0) {
+                result = new JettySpdyClientCall(this, request.getMethod()
+                        .toString(), ReferenceUtils.update(
+                        request.getResourceRef(), request).toString());
+            } else {
+                result = new JettyClientCall(this, request.getMethod()
+                        .toString(), ReferenceUtils.update(
+                        request.getResourceRef(), request).toString());
+            }
         } catch (IOException e) {
             getLogger().log(Level.WARNING,
                     "Unable to create the Jetty HTTP/HTTPS client call", e);
@@ -221,19 +294,11 @@ public class HttpClientHelper extends
     /**
      * Creates a Jetty HTTP client.
      * 
+     * @param sslContextFactory
+     *            The SSL context factory or null.
      * @return A new HTTP client.
      */
-    private HttpClient createHttpClient() {
-        SslContextFactory sslContextFactory = null;
-
-        try {
-            sslContextFactory = new RestletSslContextFactory(
-                    org.restlet.engine.ssl.SslUtils.getSslContextFactory(this));
-        } catch (Exception e) {
-            getLogger().log(Level.WARNING,
-                    "Unable to create the SSL context factory.", e);
-        }
-
+    private HttpClient createHttpClient(SslContextFactory sslContextFactory) {
         HttpClient httpClient = new HttpClient(sslContextFactory);
         httpClient.setAddressResolutionTimeout(getAddressResolutionTimeout());
         httpClient.setBindAddress(getBindAddress());
@@ -270,6 +335,55 @@ public class HttpClientHelper extends
         return httpClient;
     }
 
+    /**
+     * Creates the Jetty SPDY clients, sharing a common factory. HTTP URIs are
+     * handled by a client speaking SPDY directly, HTTPS URIs by a client
+     * negotiating SPDY with NPN.
+     * 
+     * @param sslContextFactory
+     *            The SSL context factory or null.
+     */
+    private void createSpdyClients(SslContextFactory sslContextFactory) {
+        short version = (short) getSpdyVersion();
+        this.spdyClientFactory = new SPDYClient.Factory(getExecutor(),
+                getScheduler(), null, getConnectTimeout());
+        this.spdyClient = this.spdyClientFactory.newSPDYClient(version);
+        configure(this.spdyClient);
+
+        if (sslContextFactory != null) {
+            this.spdySslClient = this.spdyClientFactory.newSPDYClient(version);
+            configure(this.spdySslClient);
+            this.spdySslClient
+                    .setClientConnectionFactory(new SslClientConnectionFactory(
+                            sslContextFactory, this.spdyClientFactory
+                                    .getByteBufferPool(),
+                            this.spdyClientFactory.getExecutor(),
+                            new NPNClientConnectionFactory(
+                                    this.spdyClientFactory.getExecutor(),
+                                    new SPDYClientConnectionFactory(), "spdy/"
+                                            + version)));
+        }
+    }
+
+    /**
+     * Creates a Jetty SSL context factory.
+     * 
+     * @return A new SSL context factory or null.
+     */
+    private SslContextFactory createSslContextFactory() {
+        SslContextFactory result = null;
+
+        try {
+            result = new RestletSslContextFactory(
+                    org.restlet.engine.ssl.SslUtils.getSslContextFactory(this));
+        } catch (Exception e) {
+            getLogger().log(Level.WARNING,
+                    "Unable to create the SSL context factory.", e);
+        }
+
+        return result;
+    }
+
     /**
      * The timeout in milliseconds for the DNS resolution of host addresses.
      * Defaults to 15000.
@@ -426,6 +540,87 @@ public class HttpClientHelper extends
         return null;
     }
 
+    /**
+     * Returns the SPDY destination of a request URI, creating it if needed.
+     * 
+     * @param requestUri
+     *            The request URI.
+     * @return The SPDY destination.
+     * @throws IOException
+     */
+    public SpdyDestination getSpdyDestination(URI requestUri)
+            throws IOException {
+        boolean secure = Protocol.HTTPS.getSchemeName().equalsIgnoreCase(
+                requestUri.getScheme());
+        SPDYClient spdyClient = secure ? this.spdySslClient : this.spdyClient;
+
+        if (spdyClient == null) {
+            throw new IOException("The SPDY client isn't started or "
+                    + "doesn't support the " + requestUri.getScheme()
+                    + " scheme");
+        }
+
+        int port = requestUri.getPort();
+
+        if (port == -1) {
+            port = secure ? Protocol.HTTPS.getDefaultPort() : Protocol.HTTP
+                    .getDefaultPort();
+        }
+
+        String key = requestUri.getScheme().toLowerCase() + "://"
+                + requestUri.getHost() + ":" + port;
+        SpdyDestination result = this.spdyDestinations.get(key);
+
+        if (result == null) {
+            result = new SpdyDestination(spdyClient, new InetSocketAddress(
+                    requestUri.getHost(), port),
+                    getSpdyMaxConcurrentStreams());
+            SpdyDestination current = this.spdyDestinations.putIfAbsent(key,
+                    result);
+
+            if (current != null) {
+                result = current;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * SPDY initial flow-control window size of each stream in bytes. Defaults
+     * to 65536.
+     * 
+     * @return SPDY initial window size.
+     */
+    public int getSpdyInitialWindowSize() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "spdy.initialWindowSize", "65536"));
+    }
+
+    /**
+     * SPDY max number of concurrent streams per destination. Defaults to 100.
+     * When -1, only the limit advertised by the server applies.
+     * 
+     * @return SPDY max concurrent streams.
+     */
+    public int getSpdyMaxConcurrentStreams() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "spdy.maxConcurrentStreams", "100"));
+    }
+
+    /**
+     * SPDY version. Defaults to 0.
+     * <p>
+     * Can be 0, 2, or 3. If 0, SPDY is not used and calls are sent with
+     * HTTP/1.1 over the connection pools of the wrapped Jetty HTTP client.
+     * 
+     * @return SPDY version.
+     */
+    public int getSpdyVersion() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "spdy.version", "0"));
+    }
+
     /**
      * Stop timeout in milliseconds. Defaults to 60000.
      * <p>
@@ -518,14 +713,25 @@ public class HttpClientHelper extends
     public void start() throws Exception {
         super.start();
 
-        if (this.httpClient == null)
-            this.httpClient = createHttpClient();
+        if (this.httpClient == null) {
+            SslContextFactory sslContextFactory = createSslContextFactory();
+            this.httpClient = createHttpClient(sslContextFactory);
+
+            if (getSpdyVersion() > 0)
+                createSpdyClients(sslContextFactory);
+        }
 
         final HttpClient httpClient = getHttpClient();
         if (httpClient != null) {
             getLogger().info("Starting a Jetty HTTP/HTTPS client");
             httpClient.start();
         }
+
+        if (this.spdyClientFactory != null) {
+            getLogger().info(
+                    "Starting a Jetty SPDY/" + getSpdyVersion() + " client");
+            this.spdyClientFactory.start();
+        }
     }
 
     @Override
@@ -536,6 +742,13 @@ public class HttpClientHelper extends
             httpClient.stop();
         }
 
+        if (this.spdyClientFactory != null) {
+            getLogger().info(
+                    "Stopping a Jetty SPDY/" + getSpdyVersion() + " client");
+            this.spdyClientFactory.stop();
+            this.spdyDestinations.clear();
+        }
+
         super.stop();
     }
 }
@@ -41,9 +41,13 @@ import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.LowResourceMonitor;
 import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.spdy.api.Session;
+import org.eclipse.jetty.spdy.api.Settings;
+import org.eclipse.jetty.spdy.api.SettingsInfo;
 import org.eclipse.jetty.spdy.server.NPNServerConnectionFactory;
 import org.eclipse.jetty.spdy.server.http.HTTPSPDYServerConnectionFactory;
 import org.eclipse.jetty.spdy.server.http.PushStrategy;
+import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
 import org.eclipse.jetty.util.thread.Scheduler;
@@ -217,6 +221,27 @@ import org.restlet.ext.jetty.internal.JettyServerCall;
  * classpath in order to make it work.</td>
  * </tr>
  * <tr>
+ * <td>spdy.priorKnowledge</td>
+ * <td>boolean</td>
+ * <td>false</td>
+ * <td>Indicates if SPDY is spoken directly on new connections, without prior
+ * NPN negotiation, like HTTP/2 with prior knowledge ("h2c"); clients must then
+ * use SPDY too</td>
+ * </tr>
+ * <tr>
+ * <td>spdy.maxConcurrentStreams</td>
+ * <td>int</td>
+ * <td>100</td>
+ * <td>SPDY max number of concurrent streams per connection advertised to the
+ * clients; when -1, no limit is advertised</td>
+ * </tr>
+ * <tr>
+ * <td>spdy.initialWindowSize</td>
+ * <td>int</td>
+ * <td>65536</td>
+ * <td>SPDY initial flow-control window size of each stream in bytes</td>
+ * </tr>
+ * <tr>
  * <td>spdy.pushStrategy</td>
  * <td>String</td>
  * <td>null</td>
@@ -359,11 +384,19 @@ public abstract class JettyServerHelper extends
             }
 
             // SDPY connection factories
-            HTTPSPDYServerConnectionFactory spdy3 = spdyVersion == 3 ? new HTTPSPDYServerConnectionFactory(
+            HTTPSPDYServerConnectionFactory spdy3 = spdyVersion == 3 ? createSpdyConnectionFactory(
                     3, configuration, pushStrategy) : null;
-            HTTPSPDYServerConnectionFactory spdy2 = new HTTPSPDYServerConnectionFactory(
+            HTTPSPDYServerConnectionFactory spdy2 = createSpdyConnectionFactory(
                     2, configuration, pushStrategy);
 
+            // Prior knowledge, SPDY is the default protocol
+            if (isSpdyPriorKnowledge()) {
+                if (spdyVersion == 3)
+                    return new ConnectionFactory[] { spdy3, http };
+                else
+                    return new ConnectionFactory[] { spdy2, http };
+            }
+
             // NPN connection factory
             NPNServerConnectionFactory npn;
 
@@ -418,6 +451,49 @@ public abstract class JettyServerHelper extends
         return connector;
     }
 
+    /**
+     * Creates a Jetty SPDY connection factory, advertising the maximum number
+     * of concurrent streams and the initial window size to the clients.
+     * 
+     * @param version
+     *            The SPDY version.
+     * @param configuration
+     *            The HTTP configuration.
+     * @param pushStrategy
+     *            The push strategy.
+     * @return A Jetty SPDY connection factory.
+     */
+    private HTTPSPDYServerConnectionFactory createSpdyConnectionFactory(
+            int version, HttpConfiguration configuration,
+            PushStrategy pushStrategy) {
+        final Settings settings = new Settings();
+        final int maxConcurrentStreams = getSpdyMaxConcurrentStreams();
+        final int initialWindowSize = getSpdyInitialWindowSize();
+
+        if (maxConcurrentStreams >= 0)
+            settings.put(new Settings.Setting(
+                    Settings.ID.MAX_CONCURRENT_STREAMS, maxConcurrentStreams));
+        settings.put(new Settings.Setting(Settings.ID.INITIAL_WINDOW_SIZE,
+                initialWindowSize));
+
+        final HTTPSPDYServerConnectionFactory result = new HTTPSPDYServerConnectionFactory(
+                version, configuration, pushStrategy) {
+            @Override
+            protected boolean sessionOpened(Session session) {
+                boolean opened = super.sessionOpened(session);
+
+                if (opened)
+                    session.settings(new SettingsInfo(settings),
+                            new Callback.Adapter());
+
+                return opened;
+            }
+        };
+
+        result.setInitialWindowSize(initialWindowSize);
+        return result;
+    }
+
     /**
      * Creates a Jetty low resource monitor.
      * 
@@ -716,6 +792,28 @@ public abstract class JettyServerHelper extends
                 "lowResource.threads", "true"));
     }
 
+    /**
+     * SPDY initial flow-control window size of each stream in bytes. Defaults
+     * to 65536.
+     * 
+     * @return SPDY initial window size.
+     */
+    public int getSpdyInitialWindowSize() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "spdy.initialWindowSize", "65536"));
+    }
+
+    /**
+     * SPDY max number of concurrent streams per connection advertised to the
+     * clients. Defaults to 100. When -1, no limit is advertised.
+     * 
+     * @return SPDY max concurrent streams.
+     */
+    public int getSpdyMaxConcurrentStreams() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "spdy.maxConcurrentStreams", "100"));
+    }
+
     /**
      * SPDY push strategy. Defaults to null.
      * <p>
@@ -807,6 +905,20 @@ public abstract class JettyServerHelper extends
         return this.wrappedServer;
     }
 
+    /**
+     * Indicates if SPDY is spoken directly on new connections, without prior
+     * NPN negotiation. Defaults to false.
+     * <p>
+     * This is the SPDY equivalent of HTTP/2 with prior knowledge ("h2c").
+     * Clients must then use SPDY too.
+     * 
+     * @return True if SPDY is spoken with prior knowledge.
+     */
+    public boolean isSpdyPriorKnowledge() {
+        return Boolean.parseBoolean(getHelpedParameters().getFirstValue(
+                "spdy.priorKnowledge", "false"));
+    }
+
     /**
      * Sets the wrapped Jetty server.
      * 
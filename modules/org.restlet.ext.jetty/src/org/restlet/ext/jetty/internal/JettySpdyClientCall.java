@@ -0,0 +1,517 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.jetty.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+import org.eclipse.jetty.spdy.api.BytesDataInfo;
+import org.eclipse.jetty.spdy.api.DataInfo;
+import org.eclipse.jetty.spdy.api.ReplyInfo;
+import org.eclipse.jetty.spdy.api.RstInfo;
+import org.eclipse.jetty.spdy.api.Session;
+import org.eclipse.jetty.spdy.api.Stream;
+import org.eclipse.jetty.spdy.api.StreamFrameListener;
+import org.eclipse.jetty.spdy.api.StreamStatus;
+import org.eclipse.jetty.spdy.api.SynInfo;
+import org.eclipse.jetty.spdy.http.HTTPSPDYHeader;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Fields;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Uniform;
+import org.restlet.data.Header;
+import org.restlet.data.Protocol;
+import org.restlet.data.Status;
+import org.restlet.engine.adapter.ClientCall;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.ext.jetty.HttpClientHelper;
+import org.restlet.representation.Representation;
+
+/**
+ * HTTP client connector call multiplexed as a stream of a SPDY session shared
+ * with the other calls to the same destination.
+ * 
+ * @author Jerome Louvel
+ */
+public class JettySpdyClientCall extends ClientCall {
+
+    /**
+     * Chunk of response entity received in a data frame.
+     */
+    private static final class Chunk {
+
+        /** The copied bytes. */
+        private final byte[] bytes;
+
+        /** The data frame to consume, reopening the flow-control window. */
+        private final DataInfo dataInfo;
+
+        /** The failure ending the entity or null. */
+        private final Throwable failure;
+
+        /** Indicates if this is the last chunk. */
+        private final boolean last;
+
+        /**
+         * Constructor.
+         * 
+         * @param bytes
+         *            The copied bytes.
+         * @param dataInfo
+         *            The data frame to consume.
+         * @param failure
+         *            The failure ending the entity or null.
+         * @param last
+         *            Indicates if this is the last chunk.
+         */
+        private Chunk(byte[] bytes, DataInfo dataInfo, Throwable failure,
+                boolean last) {
+            this.bytes = bytes;
+            this.dataInfo = dataInfo;
+            this.failure = failure;
+            this.last = last;
+        }
+    }
+
+    /**
+     * Response entity stream reading the received chunks. The data frames are
+     * only consumed when their bytes are read, so that the server is slowed
+     * down by the flow-control window if the entity isn't read quickly enough.
+     */
+    private class ResponseStream extends InputStream {
+
+        /** The current chunk. */
+        private Chunk chunk;
+
+        /** Indicates if the end of the entity was reached. */
+        private boolean end;
+
+        /** The read position in the current chunk. */
+        private int position;
+
+        @Override
+        public int available() throws IOException {
+            return (this.chunk == null) ? 0 : this.chunk.bytes.length
+                    - this.position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!this.end) {
+                this.end = true;
+                cancel();
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return (read(b, 0, 1) == -1) ? -1 : (b[0] & 0xff);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (!this.end
+                    && ((this.chunk == null) || (this.position == this.chunk.bytes.length))) {
+                if ((this.chunk != null) && this.chunk.last) {
+                    this.end = true;
+                } else {
+                    try {
+                        this.chunk = chunks.poll(
+                                clientHelper.getIdleTimeout(),
+                                TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        throw new IOException(
+                                "Interrupted while reading the SPDY stream", e);
+                    }
+
+                    this.position = 0;
+
+                    if (this.chunk == null) {
+                        this.end = true;
+                        cancel();
+                        throw new IOException(
+                                "Timeout while reading the SPDY stream");
+                    } else if (this.chunk.failure != null) {
+                        this.end = true;
+                        throw new IOException("SPDY stream failure",
+                                this.chunk.failure);
+                    }
+                }
+            }
+
+            if (this.end) {
+                return -1;
+            }
+
+            int result = Math.min(len, this.chunk.bytes.length - this.position);
+            System.arraycopy(this.chunk.bytes, this.position, b, off, result);
+            this.position += result;
+            this.chunk.dataInfo.consume(result);
+            return result;
+        }
+    }
+
+    /**
+     * Listener of the response frames.
+     */
+    private class ResponseListener extends StreamFrameListener.Adapter {
+
+        @Override
+        public void onData(Stream stream, DataInfo dataInfo) {
+            chunks.add(new Chunk(dataInfo.asBytes(false), dataInfo, null,
+                    dataInfo.isClose()));
+
+            if (dataInfo.isClose()) {
+                release();
+            }
+        }
+
+        @Override
+        public void onFailure(Stream stream, Throwable x) {
+            failure = x;
+            chunks.add(new Chunk(null, null, x, true));
+            replied.countDown();
+            release();
+        }
+
+        @Override
+        public void onReply(Stream stream, ReplyInfo replyInfo) {
+            short version = stream.getSession().getVersion();
+
+            for (Fields.Field field : replyInfo.getHeaders()) {
+                if (HTTPSPDYHeader.STATUS.name(version).equals(field.getName())) {
+                    String status = field.getValue();
+                    int index = status.indexOf(' ');
+                    setStatusCode(Integer.parseInt((index == -1) ? status
+                            : status.substring(0, index)));
+                    setReasonPhrase((index == -1) ? null : status
+                            .substring(index + 1));
+                } else if (HTTPSPDYHeader.from(version, field.getName()) == null) {
+                    for (String value : field.getValues()) {
+                        getResponseHeaders().add(field.getName(), value);
+                    }
+                }
+            }
+
+            if (replyInfo.isClose()) {
+                chunks.add(new Chunk(new byte[0], null, null, true));
+                release();
+            }
+
+            replied.countDown();
+        }
+    }
+
+    /** The received response entity chunks. */
+    private final BlockingQueue<Chunk> chunks;
+
+    /** The associated HTTP client. */
+    private final HttpClientHelper clientHelper;
+
+    /** The SPDY destination. */
+    private final SpdyDestination destination;
+
+    /** The stream failure or null. */
+    private volatile Throwable failure;
+
+    /** Indicates if the stream was released. */
+    private final AtomicBoolean released;
+
+    /** Signals the reception of the reply or of a failure. */
+    private final CountDownLatch replied;
+
+    /** The request URI. */
+    private final URI requestUri;
+
+    /** The response entity stream. */
+    private final ResponseStream responseStream;
+
+    /** The SPDY stream. */
+    private volatile Stream stream;
+
+    /**
+     * Constructor.
+     * 
+     * @param helper
+     *            The parent HTTP client helper.
+     * @param method
+     *            The method name.
+     * @param requestUri
+     *            The request URI.
+     * @throws IOException
+     */
+    public JettySpdyClientCall(HttpClientHelper helper, String method,
+            String requestUri) throws IOException {
+        super(helper, method, requestUri);
+
+        if (!requestUri.startsWith("http")) {
+            throw new IllegalArgumentException(
+                    "Only HTTP or HTTPS resource URIs are allowed here");
+        }
+
+        this.chunks = new LinkedBlockingQueue<Chunk>();
+        this.clientHelper = helper;
+        this.released = new AtomicBoolean(true);
+        this.replied = new CountDownLatch(1);
+        this.requestUri = URI.create(requestUri);
+        this.responseStream = new ResponseStream();
+        setConfidential(this.requestUri.getScheme().equalsIgnoreCase(
+                Protocol.HTTPS.getSchemeName()));
+        this.destination = helper.getSpdyDestination(this.requestUri);
+    }
+
+    /**
+     * Cancels the stream if it is still open and releases it.
+     */
+    private void cancel() {
+        Stream stream = getStream();
+
+        if ((stream != null) && !stream.isClosed() && !stream.isReset()) {
+            stream.getSession().rst(
+                    new RstInfo(stream.getId(), StreamStatus.CANCEL_STREAM),
+                    new Callback.Adapter());
+        }
+
+        release();
+    }
+
+    /**
+     * Creates the SPDY headers of the request, including the special ones
+     * replacing the request line.
+     * 
+     * @param version
+     *            The SPDY version.
+     * @return The SPDY headers of the request.
+     */
+    private Fields createRequestFields(short version) {
+        Fields result = new Fields();
+        String path = this.requestUri.getRawPath();
+
+        if ((path == null) || path.isEmpty()) {
+            path = "/";
+        }
+
+        if (this.requestUri.getRawQuery() != null) {
+            path = path + '?' + this.requestUri.getRawQuery();
+        }
+
+        result.put(HTTPSPDYHeader.METHOD.name(version), getMethod());
+        result.put(HTTPSPDYHeader.URI.name(version), path);
+        result.put(HTTPSPDYHeader.VERSION.name(version), "HTTP/1.1");
+        result.put(HTTPSPDYHeader.SCHEME.name(version),
+                this.requestUri.getScheme());
+        result.put(HTTPSPDYHeader.HOST.name(version),
+                this.requestUri.getRawAuthority());
+
+        for (Header header : getRequestHeaders()) {
+            String name = header.getName();
+
+            // Connection specific headers are forbidden
+            if (!HeaderConstants.HEADER_CONNECTION.equalsIgnoreCase(name)
+                    && !HeaderConstants.HEADER_HOST.equalsIgnoreCase(name)
+                    && !"Keep-Alive".equalsIgnoreCase(name)
+                    && !"Proxy-Connection".equalsIgnoreCase(name)
+                    && !HeaderConstants.HEADER_TRANSFER_ENCODING
+                            .equalsIgnoreCase(name)) {
+                result.add(name.toLowerCase(Locale.ENGLISH), header.getValue());
+            }
+        }
+
+        return result;
+    }
+
+    public WritableByteChannel getRequestEntityChannel() {
+        return null;
+    }
+
+    public OutputStream getRequestEntityStream() {
+        return null;
+    }
+
+    public OutputStream getRequestHeadStream() {
+        return null;
+    }
+
+    public ReadableByteChannel getResponseEntityChannel(long size) {
+        return null;
+    }
+
+    public InputStream getResponseEntityStream(long size) {
+        return this.responseStream;
+    }
+
+    /**
+     * Returns the response address.<br>
+     * Corresponds to the IP address of the responding server.
+     * 
+     * @return The response address.
+     */
+    @Override
+    public String getServerAddress() {
+        return this.requestUri.getHost();
+    }
+
+    /**
+     * Returns the SPDY stream.
+     * 
+     * @return The SPDY stream.
+     */
+    public Stream getStream() {
+        return this.stream;
+    }
+
+    /**
+     * Releases the stream slot in the destination, once.
+     */
+    private void release() {
+        if (this.released.compareAndSet(false, true)) {
+            this.destination.release();
+        }
+    }
+
+    /**
+     * Sends the request entity in data frames, blocking while the flow-control
+     * window is exhausted.
+     * 
+     * @param entity
+     *            The request entity.
+     * @throws Exception
+     */
+    private void sendEntity(Representation entity) throws Exception {
+        long timeout = this.clientHelper.getIdleTimeout();
+        byte[] buffer = new byte[this.clientHelper.getRequestBufferSize()];
+        InputStream is = entity.getStream();
+
+        try {
+            for (int count = is.read(buffer); count != -1; count = is
+                    .read(buffer)) {
+                if (count > 0) {
+                    this.stream.data(new BytesDataInfo(timeout,
+                            TimeUnit.MILLISECONDS, buffer, 0, count, false));
+                }
+            }
+        } finally {
+            is.close();
+        }
+
+        this.stream.data(new BytesDataInfo(timeout, TimeUnit.MILLISECONDS,
+                new byte[0], true));
+    }
+
+    /**
+     * Sends the request to the client. Opens a new stream in the session of
+     * the destination then sends the headers and the optional entity.
+     * 
+     * @param request
+     *            The high-level request.
+     * @return The result status.
+     */
+    @Override
+    public Status sendRequest(Request request) {
+        Status result = null;
+        long timeout = this.clientHelper.getIdleTimeout();
+        Representation entity = request.isEntityAvailable() ? request
+                .getEntity() : null;
+
+        try {
+            this.destination.acquire(timeout);
+            this.released.set(false);
+            Session session = this.destination.getSession();
+
+            try {
+                this.stream = session.syn(new SynInfo(timeout,
+                        TimeUnit.MILLISECONDS, createRequestFields(session
+                                .getVersion()), entity == null, (byte) 0),
+                        new ResponseListener());
+            } catch (ExecutionException e) {
+                // The session was probably closed, retry once with a new one
+                this.destination.invalidate(session);
+                session = this.destination.getSession();
+                this.stream = session.syn(new SynInfo(timeout,
+                        TimeUnit.MILLISECONDS, createRequestFields(session
+                                .getVersion()), entity == null, (byte) 0),
+                        new ResponseListener());
+            }
+
+            if (entity != null) {
+                sendEntity(entity);
+            }
+
+            if (!this.replied.await(timeout, TimeUnit.MILLISECONDS)) {
+                throw new TimeoutException("No SPDY reply before the timeout");
+            } else if (this.failure != null) {
+                throw new ExecutionException(this.failure);
+            }
+
+            result = new Status(getStatusCode(), getReasonPhrase());
+        } catch (TimeoutException e) {
+            this.clientHelper.getLogger().log(Level.WARNING,
+                    "The SPDY request timed out.", e);
+            result = new Status(Status.CONNECTOR_ERROR_COMMUNICATION, e);
+            cancel();
+        } catch (InterruptedException e) {
+            this.clientHelper.getLogger().log(Level.WARNING,
+                    "The SPDY request thread was interrupted.", e);
+            result = new Status(Status.CONNECTOR_ERROR_COMMUNICATION, e);
+            cancel();
+        } catch (Exception e) {
+            this.clientHelper.getLogger().log(Level.WARNING,
+                    "An error occurred while processing the SPDY request.", e);
+            result = new Status(Status.CONNECTOR_ERROR_COMMUNICATION, e);
+            cancel();
+        }
+
+        return result;
+    }
+
+    @Override
+    public void sendRequest(Request request, Response response, Uniform callback)
+            throws Exception {
+        sendRequest(request);
+
+        final Uniform getOnSent = request.getOnSent();
+        if (getOnSent != null)
+            getOnSent.handle(request, response);
+
+        if (callback != null)
+            // Transmit to the callback, if any
+            callback.handle(request, response);
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.jetty.internal;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.jetty.spdy.api.GoAwayResultInfo;
+import org.eclipse.jetty.spdy.api.Session;
+import org.eclipse.jetty.spdy.api.SessionFrameListener;
+import org.eclipse.jetty.spdy.api.Settings;
+import org.eclipse.jetty.spdy.api.SettingsInfo;
+import org.eclipse.jetty.spdy.client.SPDYClient;
+
+/**
+ * SPDY destination multiplexing the calls to a given server address over a
+ * single session. The number of concurrent streams is bounded by the limit set
+ * on the client side and by the one advertised by the server. Calls exceeding
+ * this limit wait for a stream to be released.
+ * 
+ * @author Jerome Louvel
+ */
+public class SpdyDestination extends SessionFrameListener.Adapter {
+
+    /** The number of streams currently acquired. */
+    private int activeStreams;
+
+    /** The server address. */
+    private final InetSocketAddress address;
+
+    /** The SPDY client connecting the session. */
+    private final SPDYClient client;
+
+    /** The max number of concurrent streams set on the client side. */
+    private final int maxConcurrentStreams;
+
+    /** The current max number of concurrent streams. */
+    private volatile int maxStreams;
+
+    /** The current session. */
+    private volatile Session session;
+
+    /**
+     * Constructor.
+     * 
+     * @param client
+     *            The SPDY client connecting the session.
+     * @param address
+     *            The server address.
+     * @param maxConcurrentStreams
+     *            The max number of concurrent streams, or -1 if unlimited.
+     */
+    public SpdyDestination(SPDYClient client, InetSocketAddress address,
+            int maxConcurrentStreams) {
+        this.activeStreams = 0;
+        this.address = address;
+        this.client = client;
+        this.maxConcurrentStreams = (maxConcurrentStreams < 0) ? Integer.MAX_VALUE
+                : Math.max(1, maxConcurrentStreams);
+        this.maxStreams = this.maxConcurrentStreams;
+        this.session = null;
+    }
+
+    /**
+     * Acquires a stream, waiting for one to be released if the max number of
+     * concurrent streams is reached.
+     * 
+     * @param timeout
+     *            The max time to wait in milliseconds.
+     * @throws InterruptedException
+     * @throws TimeoutException
+     */
+    public synchronized void acquire(long timeout) throws InterruptedException,
+            TimeoutException {
+        long deadline = System.currentTimeMillis() + timeout;
+
+        while (this.activeStreams >= this.maxStreams) {
+            long remaining = deadline - System.currentTimeMillis();
+
+            if (remaining <= 0) {
+                throw new TimeoutException(
+                        "No SPDY stream available before the timeout");
+            }
+
+            wait(remaining);
+        }
+
+        this.activeStreams++;
+    }
+
+    /**
+     * Returns the number of streams currently acquired.
+     * 
+     * @return The number of streams currently acquired.
+     */
+    public synchronized int getActiveStreams() {
+        return this.activeStreams;
+    }
+
+    /**
+     * Returns the server address.
+     * 
+     * @return The server address.
+     */
+    public InetSocketAddress getAddress() {
+        return this.address;
+    }
+
+    /**
+     * Returns the current max number of concurrent streams.
+     * 
+     * @return The current max number of concurrent streams.
+     */
+    public int getMaxStreams() {
+        return this.maxStreams;
+    }
+
+    /**
+     * Returns the current session, connecting a new one if needed.
+     * 
+     * @return The current session.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public synchronized Session getSession() throws IOException,
+            InterruptedException {
+        if (this.session == null) {
+            try {
+                this.session = this.client.connect(this.address, this);
+            } catch (ExecutionException e) {
+                throw new IOException("Unable to connect the SPDY session to "
+                        + this.address, e.getCause());
+            }
+        }
+
+        return this.session;
+    }
+
+    /**
+     * Invalidates a session so that the next calls connect a new one.
+     * 
+     * @param session
+     *            The session to invalidate.
+     */
+    public synchronized void invalidate(Session session) {
+        if ((session != null) && (this.session == session)) {
+            this.session = null;
+            this.maxStreams = this.maxConcurrentStreams;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public void onFailure(Session session, Throwable x) {
+        invalidate(session);
+    }
+
+    @Override
+    public void onGoAway(Session session, GoAwayResultInfo goAwayResultInfo) {
+        invalidate(session);
+    }
+
+    @Override
+    public void onSettings(Session session, SettingsInfo settingsInfo) {
+        Settings.Setting setting = settingsInfo.getSettings().get(
+                Settings.ID.MAX_CONCURRENT_STREAMS);
+
+        if (setting != null) {
+            synchronized (this) {
+                if (this.session == session) {
+                    this.maxStreams = Math.max(1,
+                            Math.min(this.maxConcurrentStreams, setting.value()));
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases a stream previously acquired.
+     */
+    public synchronized void release() {
+        this.activeStreams--;
+        notifyAll();
+    }
+
+}
@@ -0,0 +1,653 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.ext.odata;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.CharacterSet;
+import org.restlet.data.Header;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Reference;
+import org.restlet.data.Status;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.header.HeaderUtils;
+import org.restlet.ext.odata.internal.reflect.ReflectUtils;
+import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.resource.ClientResource;
+import org.restlet.resource.ResourceException;
+import org.restlet.util.Series;
+
+/**
+ * Groups several modification requests into a single OData $batch request.
+ * The operations are recorded in change sets that the remote service applies
+ * atomically, then sent at once by the {@link #execute()} method which returns
+ * one response per recorded operation, in the same order.<br>
+ * <br>
+ * Instances are obtained via {@link Service#createBatch()} and are not
+ * thread-safe.
+ * 
+ * @author Jerome Louvel
+ * @see <a
+ *      href="http://www.odata.org/documentation/odata-version-2-0/batch-processing/">OData
+ *      batch processing</a>
+ */
+public class Batch {
+
+    /**
+     * A modification request recorded in a change set.
+     */
+    private static class Operation {
+        /** The serialized entity, if any. */
+        private final String body;
+
+        /** The index of the change set. */
+        private final int changeSet;
+
+        /** The media type of the serialized entity, if any. */
+        private final MediaType mediaType;
+
+        /** The method of the request. */
+        private final Method method;
+
+        /** The reference of the target resource. */
+        private final Reference reference;
+
+        /** The ETag value the target entity must match, if any. */
+        private final String tag;
+
+        /**
+         * Constructor.
+         * 
+         * @param changeSet
+         *            The index of the change set.
+         * @param method
+         *            The method of the request.
+         * @param reference
+         *            The reference of the target resource.
+         * @param body
+         *            The serialized entity, if any.
+         * @param mediaType
+         *            The media type of the serialized entity, if any.
+         * @param tag
+         *            The ETag value the target entity must match, if any.
+         */
+        private Operation(int changeSet, Method method, Reference reference,
+                String body, MediaType mediaType, String tag) {
+            this.changeSet = changeSet;
+            this.method = method;
+            this.reference = reference;
+            this.body = body;
+            this.mediaType = mediaType;
+            this.tag = tag;
+        }
+    }
+
+    /** The line separator of the multipart messages. */
+    private static final String CRLF = "\r\n";
+
+    /** The media type of batch requests and change sets. */
+    private static final MediaType MULTIPART_MIXED = MediaType
+            .valueOf("multipart/mixed");
+
+    /** The index of the current change set. */
+    private int changeSet;
+
+    /** The recorded operations. */
+    private final List<Operation> operations;
+
+    /** The underlying service. */
+    private final Service service;
+
+    /**
+     * Constructor.
+     * 
+     * @param service
+     *            The underlying service.
+     */
+    Batch(Service service) {
+        this.service = service;
+        this.operations = new ArrayList<Operation>();
+    }
+
+    /**
+     * Records the addition of an entity to an entity set.
+     * 
+     * @param entitySetName
+     *            The path of the entity set relatively to the service URI.
+     * @param entity
+     *            The entity to add.
+     * @throws Exception
+     */
+    public void addEntity(String entitySetName, Object entity) throws Exception {
+        if (entity != null) {
+            if (service.getMetadata() == null) {
+                throw new Exception("Can't add entity to this entity set "
+                        + entitySetName
+                        + " due to the lack of the service's metadata.");
+            }
+
+            add(Method.POST, entitySetName, toAtom(entity),
+                    MediaType.APPLICATION_ATOM, null);
+        }
+    }
+
+    /**
+     * Records the addition of an association between the source and the
+     * target entity via the given property name.
+     * 
+     * @param source
+     *            The source entity to update.
+     * @param sourceProperty
+     *            The name of the property of the source entity.
+     * @param target
+     *            The entity to add to the source entity.
+     * @throws Exception
+     */
+    public void addLink(Object source, String sourceProperty, Object target)
+            throws Exception {
+        if (service.getMetadata() == null || source == null) {
+            return;
+        }
+        if (target != null) {
+            addEntity(service.getSubpath(source, sourceProperty), target);
+        }
+    }
+
+    /**
+     * Records an operation in the current change set.
+     * 
+     * @param method
+     *            The method of the request.
+     * @param subpath
+     *            The path of the target resource relatively to the service
+     *            URI.
+     * @param body
+     *            The serialized entity, if any.
+     * @param mediaType
+     *            The media type of the serialized entity, if any.
+     * @param tag
+     *            The ETag value the target entity must match, if any.
+     */
+    private void add(Method method, String subpath, String body,
+            MediaType mediaType, String tag) {
+        this.operations.add(new Operation(this.changeSet, method, service
+                .createReference(subpath), body, mediaType, tag));
+    }
+
+    /**
+     * Appends the request of an operation as a part of a change set.
+     * 
+     * @param sb
+     *            The buffer to update.
+     * @param operation
+     *            The operation to append.
+     * @param contentId
+     *            The identifier of the part in the batch.
+     */
+    private void append(StringBuilder sb, Operation operation, int contentId) {
+        sb.append("Content-Type: application/http").append(CRLF);
+        sb.append("Content-Transfer-Encoding: binary").append(CRLF);
+        sb.append("Content-ID: ").append(contentId).append(CRLF);
+        sb.append(CRLF);
+        sb.append(operation.method.getName()).append(' ')
+                .append(operation.reference.toString()).append(" HTTP/1.1")
+                .append(CRLF);
+
+        if (operation.tag != null) {
+            sb.append(HeaderConstants.HEADER_IF_MATCH).append(": \"")
+                    .append(operation.tag).append('"').append(CRLF);
+        }
+
+        if (operation.body != null) {
+            sb.append(HeaderConstants.HEADER_CONTENT_TYPE).append(": ")
+                    .append(operation.mediaType.getName())
+                    .append(";charset=utf-8").append(CRLF);
+            sb.append(HeaderConstants.HEADER_CONTENT_LENGTH).append(": ")
+                    .append(getByteLength(operation.body)).append(CRLF);
+            sb.append(CRLF);
+            sb.append(operation.body);
+        } else {
+            sb.append(CRLF);
+        }
+
+        sb.append(CRLF);
+    }
+
+    /**
+     * Removes all the recorded operations.
+     */
+    public void clear() {
+        this.operations.clear();
+        this.changeSet = 0;
+    }
+
+    /**
+     * Records the deletion of an entity.
+     * 
+     * @param entity
+     *            The entity to delete.
+     */
+    public void deleteEntity(Object entity) {
+        if (service.getMetadata() == null) {
+            return;
+        }
+
+        deleteEntity(service.getSubpath(entity));
+    }
+
+    /**
+     * Records the deletion of an entity.
+     * 
+     * @param entitySubpath
+     *            The path of the entity to delete.
+     */
+    public void deleteEntity(String entitySubpath) {
+        add(Method.DELETE, entitySubpath, null, null, null);
+    }
+
+    /**
+     * Records the removal of the association between a source entity and a
+     * target entity via the given property name.
+     * 
+     * @param source
+     *            The source entity to update.
+     * @param sourceProperty
+     *            The name of the property of the source entity.
+     * @param target
+     *            The entity to delete from the source entity.
+     */
+    public void deleteLink(Object source, String sourceProperty, Object target) {
+        if (service.getMetadata() == null) {
+            return;
+        }
+
+        deleteEntity(service.getSubpath(source, sourceProperty, target));
+    }
+
+    /**
+     * Sends the recorded operations in a single $batch request, then clears
+     * them so that the batch can be reused. Each change set is applied
+     * atomically by the remote service: when one of its operations fails, the
+     * error response is returned for all the operations of the change set.
+     * 
+     * @return The responses to the recorded operations, in the same order.
+     * @throws ResourceException
+     *             If the $batch request itself failed.
+     */
+    public List<Response> execute() throws ResourceException {
+        if (this.operations.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        String boundary = "batch_" + UUID.randomUUID();
+        ClientResource resource = service.createResource("$batch");
+        List<Response> result = null;
+
+        try {
+            Representation rep = resource.post(new StringRepresentation(
+                    toMultipart(boundary), new MediaType(
+                            "multipart/mixed; boundary=" + boundary),
+                    null, CharacterSet.UTF_8));
+            result = toResponses(rep);
+        } catch (ResourceException re) {
+            throw new ResourceException(re.getStatus(),
+                    "Can't execute this batch " + resource.getReference());
+        } catch (IOException e) {
+            throw new ResourceException(e);
+        } finally {
+            service.setLatestRequest(resource.getRequest());
+            service.setLatestResponse(resource.getResponse());
+            clear();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the length in bytes of the UTF-8 encoding of the given text.
+     * 
+     * @param text
+     *            The text.
+     * @return The length in bytes of the UTF-8 encoding of the given text.
+     */
+    private static int getByteLength(String text) {
+        int result = 0;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+
+            if (c < 0x80) {
+                result++;
+            } else if (c < 0x800) {
+                result += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                result += 4;
+                i++;
+            } else {
+                result += 3;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the parts of a multipart message.
+     * 
+     * @param text
+     *            The multipart message.
+     * @param boundary
+     *            The boundary separating the parts.
+     * @return The list of parts, including their headers.
+     */
+    private static List<String> getParts(String text, String boundary) {
+        List<String> result = new ArrayList<String>();
+        String delimiter = "--" + boundary;
+        int index = text.indexOf(delimiter);
+
+        while (index != -1
+                && !text.startsWith("--", index + delimiter.length())) {
+            int start = text.indexOf('\n', index);
+            int end = (start == -1) ? -1 : text.indexOf("\n" + delimiter,
+                    start);
+
+            if (end == -1) {
+                break;
+            }
+
+            int last = (text.charAt(end - 1) == '\r') ? end - 1 : end;
+            result.add(text.substring(start + 1, Math.max(start + 1, last)));
+            index = end + 1;
+        }
+
+        return result;
+    }
+
+    /**
+     * Starts a new change set. The following operations will be applied
+     * atomically by the remote service, independently of the previous ones.
+     */
+    public void newChangeSet() {
+        if (!this.operations.isEmpty()
+                && this.operations.get(this.operations.size() - 1).changeSet == this.changeSet) {
+            this.changeSet++;
+        }
+    }
+
+    /**
+     * Reads the headers of a message and returns its body.
+     * 
+     * @param message
+     *            The message to read.
+     * @param firstLine
+     *            Receives the first line when not null, for example the
+     *            status line of an HTTP response.
+     * @param headers
+     *            The headers to update.
+     * @return The body of the message.
+     */
+    private static String readMessage(String message, StringBuilder firstLine,
+            Series<Header> headers) {
+        int index = 0;
+        boolean first = (firstLine != null);
+
+        while (index < message.length()) {
+            int end = message.indexOf('\n', index);
+            String line = (end == -1) ? message.substring(index) : message
+                    .substring(index, end);
+            index = (end == -1) ? message.length() : end + 1;
+
+            if (line.endsWith("\r")) {
+                line = line.substring(0, line.length() - 1);
+            }
+
+            if (first) {
+                firstLine.append(line);
+                first = false;
+            } else if (line.length() == 0) {
+                break;
+            } else {
+                int colon = line.indexOf(':');
+
+                if (colon != -1) {
+                    headers.add(line.substring(0, colon).trim(), line
+                            .substring(colon + 1).trim());
+                }
+            }
+        }
+
+        return message.substring(index);
+    }
+
+    /**
+     * Records the association between the source and the target entity via
+     * the given property name. If target is set to null, the call represents a
+     * delete link operation.
+     * 
+     * @param source
+     *            The source entity to update.
+     * @param sourceProperty
+     *            The name of the property of the source entity.
+     * @param target
+     *            The entity to add to the source entity.
+     * @throws Exception
+     */
+    public void setLink(Object source, String sourceProperty, Object target)
+            throws Exception {
+        if (service.getMetadata() == null || source == null) {
+            return;
+        }
+        if (target != null) {
+            StringBuilder sb = new StringBuilder("<uri xmlns=\"");
+            sb.append(Service.WCF_DATASERVICES_NAMESPACE);
+            sb.append("\">");
+            sb.append(service.getServiceRef().toString());
+            sb.append(service.getSubpath(target));
+            sb.append("</uri>");
+
+            add(Method.PUT, service.getSubpath(source) + "/$links/"
+                    + sourceProperty, sb.toString(), MediaType.APPLICATION_XML,
+                    null);
+        } else {
+            ReflectUtils.invokeSetter(source, sourceProperty, null);
+            updateEntity(source);
+        }
+    }
+
+    /**
+     * Returns the number of recorded operations.
+     * 
+     * @return The number of recorded operations.
+     */
+    public int size() {
+        return this.operations.size();
+    }
+
+    /**
+     * Serializes an entity as an Atom entry.
+     * 
+     * @param entity
+     *            The entity to serialize.
+     * @return The Atom entry.
+     * @throws IOException
+     */
+    private String toAtom(Object entity) throws IOException {
+        StringWriter writer = new StringWriter();
+        service.toEntry(entity).write(writer);
+        return writer.toString();
+    }
+
+    /**
+     * Serializes the recorded operations as a multipart message.
+     * 
+     * @param boundary
+     *            The boundary separating the change sets.
+     * @return The multipart message.
+     */
+    private String toMultipart(String boundary) {
+        StringBuilder sb = new StringBuilder();
+        String changeSetBoundary = null;
+
+        for (int i = 0; i < this.operations.size(); i++) {
+            Operation operation = this.operations.get(i);
+
+            if (i == 0
+                    || operation.changeSet != this.operations.get(i - 1).changeSet) {
+                if (changeSetBoundary != null) {
+                    sb.append("--").append(changeSetBoundary).append("--")
+                            .append(CRLF);
+                }
+
+                changeSetBoundary = "changeset_" + UUID.randomUUID();
+                sb.append("--").append(boundary).append(CRLF);
+                sb.append("Content-Type: multipart/mixed; boundary=")
+                        .append(changeSetBoundary).append(CRLF);
+                sb.append(CRLF);
+            }
+
+            sb.append("--").append(changeSetBoundary).append(CRLF);
+            append(sb, operation, i + 1);
+        }
+
+        sb.append("--").append(changeSetBoundary).append("--").append(CRLF);
+        sb.append("--").append(boundary).append("--").append(CRLF);
+        return sb.toString();
+    }
+
+    /**
+     * Parses an HTTP response embedded in a batch response.
+     * 
+     * @param operation
+     *            The operation the response answers to.
+     * @param message
+     *            The embedded HTTP response.
+     * @return The parsed response.
+     */
+    private Response toResponse(Operation operation, String message) {
+        Response result = new Response(new Request(operation.method,
+                operation.reference));
+        StringBuilder statusLine = new StringBuilder();
+        Series<Header> headers = new Series<Header>(Header.class);
+        String body = readMessage(message, statusLine, headers);
+        String[] tokens = statusLine.toString().split(" ", 3);
+
+        if (tokens.length > 1) {
+            try {
+                result.setStatus(Status.valueOf(Integer.parseInt(tokens[1])));
+            } catch (NumberFormatException e) {
+                result.setStatus(Status.CONNECTOR_ERROR_INTERNAL);
+            }
+        } else {
+            result.setStatus(Status.CONNECTOR_ERROR_INTERNAL);
+        }
+
+        result.getAttributes().put(HeaderConstants.ATTRIBUTE_HEADERS, headers);
+        HeaderUtils.copyResponseTransportHeaders(headers, result);
+        result.setEntity(HeaderUtils.extractEntityHeaders(headers,
+                (body.length() == 0) ? null : new StringRepresentation(body)));
+        return result;
+    }
+
+    /**
+     * Parses the batch response.
+     * 
+     * @param representation
+     *            The batch response.
+     * @return The responses to the recorded operations, in the same order.
+     * @throws IOException
+     */
+    private List<Response> toResponses(Representation representation)
+            throws IOException {
+        List<Response> result = new ArrayList<Response>(this.operations.size());
+        String boundary = (representation == null || representation
+                .getMediaType() == null) ? null : representation.getMediaType()
+                .getParameters().getFirstValue("boundary", true);
+
+        if (boundary == null) {
+            throw new IOException("The batch response isn't a multipart message");
+        }
+
+        int index = 0;
+
+        for (String part : getParts(representation.getText(), boundary)) {
+            if (index >= this.operations.size()) {
+                break;
+            }
+
+            Series<Header> headers = new Series<Header>(Header.class);
+            String content = readMessage(part, null, headers);
+            MediaType type = MediaType.valueOf(headers.getFirstValue(
+                    HeaderConstants.HEADER_CONTENT_TYPE, true));
+            int changeSet = this.operations.get(index).changeSet;
+
+            if (type != null && MULTIPART_MIXED.includes(type)) {
+                // The change set succeeded, one response per operation
+                for (String response : getParts(content, type.getParameters()
+                        .getFirstValue("boundary", true))) {
+                    if (index >= this.operations.size()) {
+                        break;
+                    }
+
+                    result.add(toResponse(this.operations.get(index++),
+                            readMessage(response, null, new Series<Header>(
+                                    Header.class))));
+                }
+            } else {
+                // The change set failed, a single response for all operations
+                while (index < this.operations.size()
+                        && this.operations.get(index).changeSet == changeSet) {
+                    result.add(toResponse(this.operations.get(index++), content));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Records the update of an entity.
+     * 
+     * @param entity
+     *            The entity to put.
+     * @throws Exception
+     */
+    public void updateEntity(Object entity) throws Exception {
+        if (service.getMetadata() == null || entity == null) {
+            return;
+        }
+
+        add(Method.PUT, service.getSubpath(entity), toAtom(entity),
+                MediaType.APPLICATION_ATOM, service.getTag(entity));
+    }
+
+}
@@ -39,6 +39,7 @@ import org.restlet.ext.atom.Feed;
 import org.restlet.ext.atom.Link;
 import org.restlet.ext.atom.Relation;
 import org.restlet.ext.odata.internal.EntryContentHandler;
+import org.restlet.ext.odata.internal.EntryIterator;
 import org.restlet.ext.odata.internal.FeedContentHandler;
 import org.restlet.ext.odata.internal.edm.EntityType;
 import org.restlet.ext.odata.internal.edm.Metadata;
@@ -62,88 +63,6 @@ import org.restlet.util.Series;
  */
 public class Query<T> implements Iterable<T> {
 
-    /**
-     * Iterator that transparently supports sever-side paging.
-     * 
-     * @author Thierry Boileau
-     * 
-     * @param <T>
-     */
-    private class EntryIterator<E> implements Iterator<E> {
-
-        /** The class of the listed objects. */
-        private Class<?> entityClass;
-
-        /** The inner iterator. */
-        private Iterator<E> iterator;
-
-        /** The reference to the next page. */
-        private Reference nextPage;
-
-        /** The underlying service. */
-        private Service service;
-
-        /**
-         * Constructor.
-         * 
-         * @param service
-         *            The underlying service.
-         * @param iterator
-         *            The inner iterator.
-         * @param nextPage
-         *            The reference to the next page.
-         * @param entityClass
-         *            The class of the listed objects.
-         */
-        public EntryIterator(Service service, Iterator<E> iterator,
-                Reference nextPage, Class<?> entityClass) {
-            super();
-            this.iterator = iterator;
-            this.nextPage = nextPage;
-            this.service = service;
-            this.entityClass = entityClass;
-        }
-
-        @SuppressWarnings("unchecked")
-        public boolean hasNext() {
-            boolean result = false;
-
-            if (iterator != null) {
-                result = iterator.hasNext();
-            }
-
-            if (!result && nextPage != null) {
-                // Get the next page.
-                Query<E> query = service.createQuery(nextPage.toString(),
-                        (Class<E>) entityClass);
-                iterator = query.iterator();
-                if (iterator != null) {
-                    result = iterator.hasNext();
-                }
-                // Set the reference to the next page
-                nextPage = null;
-            }
-
-            return result;
-        }
-
-        public E next() {
-            E result = null;
-            if (iterator != null) {
-                if (iterator.hasNext()) {
-                    result = iterator.next();
-                }
-            }
-            return result;
-        }
-
-        public void remove() {
-            if (iterator != null) {
-                iterator.remove();
-            }
-        }
-    }
-
     // Defines the type of the current query. It has an impact on how to parse
     // the result.
     /** Type of query: complex type or property. */
@@ -205,6 +124,12 @@ public class Query<T> implements Iterable<T> {
     /** The path of the targeted entity relatively to the data service URI. */
     private String subpath;
 
+    /**
+     * Indicates if the execution updates the latest request and response of
+     * the service.
+     */
+    private boolean updatingService;
+
     /**
      * Constructor.
      * 
@@ -227,6 +152,7 @@ public class Query<T> implements Iterable<T> {
             this.entityType = null;
         }
         this.service = service;
+        this.updatingService = true;
         Reference ref = new Reference(subpath);
         if (ref.isAbsolute()) {
             this.subpath = ref.getRelativeRef(service.getServiceRef())
@@ -420,8 +346,10 @@ public class Query<T> implements Iterable<T> {
                 }
             }
 
-            service.setLatestRequest(resource.getRequest());
-            service.setLatestResponse(resource.getResponse());
+            if (isUpdatingService()) {
+                service.setLatestRequest(resource.getRequest());
+                service.setLatestResponse(resource.getResponse());
+            }
 
             setExecuted(true);
         }
@@ -632,6 +560,17 @@ public class Query<T> implements Iterable<T> {
         return executed;
     }
 
+    /**
+     * Indicates if the execution updates the latest request and response of
+     * the service. True by default.
+     * 
+     * @return True if the execution updates the latest request and response of
+     *         the service.
+     */
+    public boolean isUpdatingService() {
+        return updatingService;
+    }
+
     /**
      * Returns an iterator over a set of elements of type T. It returns null if
      * the query does not retrieve elements.
@@ -736,6 +675,19 @@ public class Query<T> implements Iterable<T> {
         this.query = query;
     }
 
+    /**
+     * Indicates if the execution updates the latest request and response of
+     * the service. Queries executed on behalf of the caller by another thread
+     * must not update them.
+     * 
+     * @param updatingService
+     *            True if the execution updates the latest request and response
+     *            of the service.
+     */
+    public void setUpdatingService(boolean updatingService) {
+        this.updatingService = updatingService;
+    }
+
     /**
      * Creates a new Query<T> with the $skip option set in the URI generated by
      * the returned query.
@@ -130,6 +130,9 @@ public class Service {
     /** The metadata of the WCF service. */
     private Metadata metadata;
 
+    /** The number of feed pages retrieved in advance while iterating. */
+    private int prefetchDepth = 0;
+
     /**
      * The version of the OData protocol extensions defined by the remote
      * service.
@@ -253,6 +256,16 @@ public class Service {
         }
     }
 
+    /**
+     * Creates a batch that groups several modification requests into a single
+     * $batch request sent to this service.
+     * 
+     * @return A new batch.
+     */
+    public Batch createBatch() {
+        return new Batch(this);
+    }
+
     /**
      * Creates a query to a specific entity hosted by this service.
      * 
@@ -268,6 +281,33 @@ public class Service {
         return new Query<T>(this, subpath, entityClass);
     }
 
+    /**
+     * Returns the absolute reference of a path relative to the service
+     * reference.
+     * 
+     * @param relativePath
+     *            The relative reference of the target resource.
+     * @return The absolute reference of the target resource.
+     */
+    Reference createReference(String relativePath) {
+        String ref = getServiceRef().toString();
+        if (ref.endsWith("/")) {
+            if (relativePath.startsWith("/")) {
+                ref = ref + relativePath.substring(1);
+            } else {
+                ref = ref + relativePath;
+            }
+        } else {
+            if (relativePath.startsWith("/")) {
+                ref = ref + relativePath;
+            } else {
+                ref = ref + "/" + relativePath;
+            }
+        }
+
+        return new Reference(ref);
+    }
+
     /**
      * Returns an instance of {@link ClientResource} given an absolute
      * reference. This resource is completed with the service credentials. This
@@ -316,22 +356,7 @@ public class Service {
      *         the service reference).
      */
     public ClientResource createResource(String relativePath) {
-        String ref = getServiceRef().toString();
-        if (ref.endsWith("/")) {
-            if (relativePath.startsWith("/")) {
-                ref = ref + relativePath.substring(1);
-            } else {
-                ref = ref + relativePath;
-            }
-        } else {
-            if (relativePath.startsWith("/")) {
-                ref = ref + relativePath;
-            } else {
-                ref = ref + "/" + relativePath;
-            }
-        }
-
-        return createResource(new Reference(ref));
+        return createResource(createReference(relativePath));
     }
 
     /**
@@ -495,6 +520,17 @@ public class Service {
         return metadata;
     }
 
+    /**
+     * Returns the number of feed pages retrieved in advance by a background
+     * thread while the current page is iterated. Zero, the default value,
+     * disables the prefetching.
+     * 
+     * @return The number of feed pages retrieved in advance.
+     */
+    public int getPrefetchDepth() {
+        return prefetchDepth;
+    }
+
     /**
      * Returns the version of the OData protocol extensions supported by the
      * remote service.
@@ -598,7 +634,7 @@ public class Service {
      * @return The path of the given entity relatively to the current WCF
      *         service.
      */
-    private String getSubpath(Object entity) {
+    String getSubpath(Object entity) {
         return ((Metadata) getMetadata()).getSubpath(entity);
     }
 
@@ -613,7 +649,7 @@ public class Service {
      * @return The path of the given entity's property relatively to the current
      *         WCF service.
      */
-    private String getSubpath(Object entity, String propertyName) {
+    String getSubpath(Object entity, String propertyName) {
         return ((Metadata) getMetadata()).getSubpath(entity, propertyName);
     }
 
@@ -630,7 +666,7 @@ public class Service {
      *            The entity linked to the source entity.
      * @return
      */
-    private String getSubpath(Object source, String sourceProperty,
+    String getSubpath(Object source, String sourceProperty,
             Object target) {
         return ((Metadata) getMetadata()).getSubpath(source, sourceProperty,
                 target);
@@ -643,7 +679,7 @@ public class Service {
      *            The given entity.
      * @return The ETag value for the given entity.
      */
-    private String getTag(Object entity) {
+    String getTag(Object entity) {
         String result = null;
         if (entity != null) {
             Metadata metadata = (Metadata) getMetadata();
@@ -1060,6 +1096,19 @@ public class Service {
         this.maxClientVersion = maxClientVersion;
     }
 
+    /**
+     * Sets the number of feed pages retrieved in advance by a background
+     * thread while the current page is iterated. Zero disables the
+     * prefetching. Note that the retrieval of the prefetched pages doesn't
+     * update the latest request and response of the service.
+     * 
+     * @param prefetchDepth
+     *            The number of feed pages retrieved in advance.
+     */
+    public void setPrefetchDepth(int prefetchDepth) {
+        this.prefetchDepth = prefetchDepth;
+    }
+
     /**
      * Sets the value of the given media entry link.
      * 
@@ -21,17 +21,31 @@
  * 
  * Restlet is a registered trademark of Restlet S.A.S.
  */
-
 package org.restlet.ext.odata.internal;
 
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
+import org.restlet.Context;
 import org.restlet.data.Reference;
 import org.restlet.ext.odata.Query;
 import org.restlet.ext.odata.Service;
 
 /**
- * Iterator that transparently supports sever-side paging.
+ * Iterator that transparently supports sever-side paging. When the look-ahead
+ * depth is strictly positive, the following pages are retrieved in advance by
+ * a small pool of daemon threads shared by all iterators, while the current
+ * one is being consumed. A page is only retrieved when fewer pages than the
+ * look-ahead depth are waiting, so an abandoned iterator never holds a thread.
  * 
  * @author Thierry Boileau
  * 
@@ -39,6 +53,73 @@ import org.restlet.ext.odata.Service;
  */
 public class EntryIterator<E> implements Iterator<E> {
 
+    /**
+     * A page of entries retrieved from the remote service.
+     * 
+     * @param <E>
+     */
+    private static class Page<E> {
+        /** The entries of the page. */
+        private final Iterator<E> entries;
+
+        /** The reference to the next page. */
+        private final Reference nextPage;
+
+        /**
+         * Constructor.
+         * 
+         * @param entries
+         *            The entries of the page.
+         * @param nextPage
+         *            The reference to the next page.
+         */
+        private Page(Iterator<E> entries, Reference nextPage) {
+            this.entries = entries;
+            this.nextPage = nextPage;
+        }
+    }
+
+    /** The maximum number of threads retrieving pages in advance. */
+    private static final int PREFETCH_THREADS = 4;
+
+    /** The executor shared by all iterators, lazily created. */
+    private static volatile ExecutorService prefetchExecutor;
+
+    /**
+     * Returns the executor retrieving the pages in advance, creating it if
+     * necessary. Its threads are daemons and die when idle.
+     * 
+     * @return The executor retrieving the pages in advance.
+     */
+    private static ExecutorService getPrefetchExecutor() {
+        ExecutorService result = prefetchExecutor;
+
+        if (result == null) {
+            synchronized (EntryIterator.class) {
+                result = prefetchExecutor;
+
+                if (result == null) {
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                            PREFETCH_THREADS, PREFETCH_THREADS, 60L,
+                            TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(),
+                            new ThreadFactory() {
+                                public Thread newThread(Runnable runnable) {
+                                    Thread thread = new Thread(runnable,
+                                            "OData-EntryIterator-Prefetch");
+                                    thread.setDaemon(true);
+                                    return thread;
+                                }
+                            });
+                    executor.allowCoreThreadTimeOut(true);
+                    prefetchExecutor = result = executor;
+                }
+            }
+        }
+
+        return result;
+    }
+
     /** The class of the listed objects. */
     private Class<?> entityClass;
 
@@ -48,11 +129,26 @@ public class EntryIterator<E> implements Iterator<E> {
     /** The reference to the next page. */
     private Reference nextPage;
 
+    /**
+     * The pages being retrieved or retrieved in advance, in order. Null when
+     * the prefetching isn't started. Guarded by itself.
+     */
+    private LinkedList<Future<Page<E>>> pages;
+
+    /**
+     * The reference of the page following the retrieved ones, waiting for a
+     * free slot in the look-ahead window. Guarded by {@link #pages}.
+     */
+    private Reference pendingPage;
+
+    /** The number of pages retrieved in advance. */
+    private final int prefetchDepth;
+
     /** The underlying service. */
     private Service service;
 
     /**
-     * Constructor.
+     * Constructor. The look-ahead depth is given by the service.
      * 
      * @param service
      *            The underlying service.
@@ -62,36 +158,77 @@ public class EntryIterator<E> implements Iterator<E> {
      *            The reference to the next page.
      * @param entityClass
      *            The class of the listed objects.
+     * @see Service#getPrefetchDepth()
      */
     public EntryIterator(Service service, Iterator<E> iterator,
             Reference nextPage, Class<?> entityClass) {
+        this(service, iterator, nextPage, entityClass, service
+                .getPrefetchDepth());
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param service
+     *            The underlying service.
+     * @param iterator
+     *            The inner iterator.
+     * @param nextPage
+     *            The reference to the next page.
+     * @param entityClass
+     *            The class of the listed objects.
+     * @param prefetchDepth
+     *            The number of pages retrieved in advance. Zero disables the
+     *            prefetching.
+     */
+    public EntryIterator(Service service, Iterator<E> iterator,
+            Reference nextPage, Class<?> entityClass, int prefetchDepth) {
         super();
         this.iterator = iterator;
         this.nextPage = nextPage;
         this.service = service;
         this.entityClass = entityClass;
+        this.prefetchDepth = prefetchDepth;
     }
 
+    /**
+     * Retrieves a single page of entries.
+     * 
+     * @param reference
+     *            The reference of the page.
+     * @param updatingService
+     *            True if the latest request and response of the service are
+     *            updated.
+     * @return The page of entries.
+     */
     @SuppressWarnings("unchecked")
-    public boolean hasNext() {
-        boolean result = false;
+    private Page<E> fetchPage(Reference reference, boolean updatingService) {
+        Query<E> query = service.createQuery(reference.toString(),
+                (Class<E>) entityClass);
+        query.setUpdatingService(updatingService);
+        Iterator<E> entries = query.iterator();
 
-        if (iterator != null) {
-            result = iterator.hasNext();
+        if (entries instanceof EntryIterator) {
+            // Keep the paging under the control of this iterator.
+            entries = ((EntryIterator<E>) entries).iterator;
         }
 
-        if (!result && nextPage != null) {
-            // Get the next page.
-            Query<E> query = service.createQuery(nextPage.toString(),
-                    (Class<E>) entityClass);
-            iterator = query.iterator();
+        return new Page<E>(entries, (entries == null) ? null
+                : query.getNextPage());
+    }
 
-            if (iterator != null) {
-                result = iterator.hasNext();
-            }
+    public boolean hasNext() {
+        boolean result = (iterator != null) && iterator.hasNext();
 
-            // Set the reference to the next page
-            nextPage = null;
+        while (!result && (nextPage != null || pages != null)) {
+            Page<E> page = (pages == null) ? nextPage() : takePage();
+
+            if (page == null) {
+                iterator = null;
+            } else {
+                iterator = page.entries;
+                result = (iterator != null) && iterator.hasNext();
+            }
         }
 
         return result;
@@ -99,17 +236,118 @@ public class EntryIterator<E> implements Iterator<E> {
 
     public E next() {
         E result = null;
-        if (iterator != null) {
-            if (iterator.hasNext()) {
-                result = iterator.next();
+        if (hasNext()) {
+            result = iterator.next();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the next page, either synchronously or by starting the
+     * prefetching.
+     * 
+     * @return The next page, or null if there is no more page.
+     */
+    private Page<E> nextPage() {
+        Page<E> result = null;
+        Reference reference = nextPage;
+        nextPage = null;
+
+        if (prefetchDepth > 0) {
+            pages = new LinkedList<Future<Page<E>>>();
+
+            synchronized (pages) {
+                prefetch(reference);
             }
+
+            result = takePage();
+        } else {
+            result = fetchPage(reference, true);
+            nextPage = result.nextPage;
         }
+
         return result;
     }
 
+    /**
+     * Schedules the retrieval of a page. Once retrieved, the following page is
+     * scheduled in turn if the look-ahead window isn't full, otherwise it
+     * waits for the consumer. Must be called while holding the lock on
+     * {@link #pages}.
+     * 
+     * @param reference
+     *            The reference of the page to retrieve.
+     */
+    private void prefetch(final Reference reference) {
+        final LinkedList<Future<Page<E>>> queue = this.pages;
+
+        queue.add(getPrefetchExecutor().submit(new Callable<Page<E>>() {
+            public Page<E> call() {
+                Page<E> result = null;
+
+                try {
+                    result = fetchPage(reference, false);
+                } catch (RuntimeException e) {
+                    Context.getCurrentLogger().log(Level.WARNING,
+                            "Unable to retrieve the page " + reference, e);
+                }
+
+                if ((result != null) && (result.nextPage != null)) {
+                    synchronized (queue) {
+                        if (queue.size() < prefetchDepth) {
+                            prefetch(result.nextPage);
+                        } else {
+                            pendingPage = result.nextPage;
+                        }
+                    }
+                }
+
+                return result;
+            }
+        }));
+    }
+
     public void remove() {
         if (iterator != null) {
             iterator.remove();
         }
     }
+
+    /**
+     * Takes the next prefetched page, waiting for it if necessary.
+     * 
+     * @return The next page, or null if there is no more page.
+     */
+    private Page<E> takePage() {
+        Future<Page<E>> future;
+
+        synchronized (pages) {
+            future = pages.poll();
+
+            if ((pendingPage != null) && (pages.size() < prefetchDepth)) {
+                Reference reference = pendingPage;
+                pendingPage = null;
+                prefetch(reference);
+            }
+        }
+
+        Page<E> result = null;
+
+        if (future != null) {
+            try {
+                result = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                Context.getCurrentLogger().log(Level.WARNING,
+                        "Unable to retrieve a page", e.getCause());
+            }
+        }
+
+        if (result == null) {
+            pages = null;
+        }
+
+        return result;
+    }
 }
@@ -49,6 +49,7 @@ import org.restlet.data.Protocol;
 import org.restlet.data.Status;
 import org.restlet.engine.adapter.ServerCall;
 import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.header.IndexedHeaderSeries;
 import org.restlet.engine.header.LanguageReader;
 import org.restlet.engine.io.UnclosableInputStream;
 import org.restlet.engine.io.UnclosableOutputStream;
@@ -238,7 +239,7 @@ public class ServletCall extends ServerCall {
     @Override
     public Series<Header> getRequestHeaders() {
         if (this.requestHeaders == null) {
-            this.requestHeaders = new Series<Header>(Header.class);
+            this.requestHeaders = new IndexedHeaderSeries();
 
             // Copy the headers from the request object
             String headerName;
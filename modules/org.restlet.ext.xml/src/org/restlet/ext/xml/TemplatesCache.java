@@ -0,0 +1,441 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.xml;
+
+import java.io.IOException;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.TransformerFactoryConfigurationError;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+
+import org.restlet.Context;
+import org.restlet.engine.util.Base64;
+import org.restlet.engine.util.BoundedCache;
+import org.restlet.representation.Representation;
+
+/**
+ * Bounded cache of compiled XSLT templates, shared by the
+ * {@link TransformRepresentation} instances and the {@link Transformer}
+ * filters of an application. The JAXP transformer factory is resolved once per
+ * cache and the transform sheets are only compiled on cache misses.<br>
+ * <br>
+ * Transform sheets are identified by their location reference and
+ * modification date and tag when available, so that updated sheets are
+ * recompiled, or else by their digest. Sheets without location nor digest are
+ * identified by the representation instance itself, which is what the
+ * {@link Transformer} filter reuses for each call. Note that sheets identified
+ * by a location without modification date nor tag are never recompiled
+ * automatically. Compiled templates can be reloaded by calling
+ * {@link #remove(Representation, URIResolver)} or {@link #clear()}.<br>
+ * <br>
+ * As included sheets are resolved at compilation time, the templates are also
+ * identified by the URI resolver they were compiled with.<br>
+ * <br>
+ * The SAX transformer handlers and XML filters are created from the compiled
+ * templates by a transformer factory local to the current thread, so that they
+ * don't contend for a shared factory.
+ * 
+ * @author Jerome Louvel
+ */
+public class TemplatesCache {
+
+    /**
+     * Key identifying a transform sheet without location nor digest by its
+     * instance and modification date.
+     */
+    private static final class InstanceKey {
+
+        /** The modification date. */
+        private final long modificationTime;
+
+        /** The transform sheet. */
+        private final Representation transformSheet;
+
+        /**
+         * Constructor.
+         * 
+         * @param transformSheet
+         *            The transform sheet.
+         */
+        private InstanceKey(Representation transformSheet) {
+            this.modificationTime = (transformSheet.getModificationDate() == null) ? 0L
+                    : transformSheet.getModificationDate().getTime();
+            this.transformSheet = transformSheet;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof InstanceKey)) {
+                return false;
+            }
+
+            InstanceKey key = (InstanceKey) other;
+            return (key.transformSheet == this.transformSheet)
+                    && (key.modificationTime == this.modificationTime);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this.transformSheet) * 31
+                    + (int) (this.modificationTime ^ (this.modificationTime >>> 32));
+        }
+    }
+
+    /**
+     * Key identifying a transform sheet compiled with a URI resolver.
+     */
+    private static final class ResolverKey {
+
+        /** The key identifying the transform sheet. */
+        private final Object sheetKey;
+
+        /** The URI resolver. */
+        private final URIResolver uriResolver;
+
+        /**
+         * Constructor.
+         * 
+         * @param sheetKey
+         *            The key identifying the transform sheet.
+         * @param uriResolver
+         *            The URI resolver.
+         */
+        private ResolverKey(Object sheetKey, URIResolver uriResolver) {
+            this.sheetKey = sheetKey;
+            this.uriResolver = uriResolver;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof ResolverKey)) {
+                return false;
+            }
+
+            ResolverKey key = (ResolverKey) other;
+            return key.sheetKey.equals(this.sheetKey)
+                    && key.uriResolver.equals(this.uriResolver);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.sheetKey.hashCode() * 31 + this.uriResolver.hashCode();
+        }
+    }
+
+    /** The name of the context attribute holding the application's cache. */
+    public static final String ATTRIBUTE_NAME = "org.restlet.ext.xml.TemplatesCache";
+
+    /** The default maximum number of compiled templates. */
+    public static final int DEFAULT_MAX_SIZE = 64;
+
+    /**
+     * Returns the cache stored in the attributes of the given context, creating
+     * and storing one with the default maximum size if needed. A custom cache
+     * can be set beforehand in the context's attributes under the
+     * {@link #ATTRIBUTE_NAME} name.
+     * 
+     * @param context
+     *            The context, typically the application's one.
+     * @return The cache scoped by the context.
+     */
+    public static TemplatesCache getInstance(Context context) {
+        Object result = context.getAttributes().get(ATTRIBUTE_NAME);
+
+        if (result == null) {
+            TemplatesCache cache = new TemplatesCache();
+            result = context.getAttributes().putIfAbsent(ATTRIBUTE_NAME,
+                    cache);
+
+            if (result == null) {
+                result = cache;
+            }
+        }
+
+        return (TemplatesCache) result;
+    }
+
+    /**
+     * Returns the key identifying a transform sheet.
+     * 
+     * @param transformSheet
+     *            The transform sheet.
+     * @return The key identifying the transform sheet.
+     */
+    protected static Object getKey(Representation transformSheet) {
+        Object result;
+
+        if (transformSheet.getLocationRef() != null) {
+            StringBuilder sb = new StringBuilder(transformSheet
+                    .getLocationRef().getTargetRef().toString());
+
+            if (transformSheet.getModificationDate() != null) {
+                sb.append('|').append(
+                        transformSheet.getModificationDate().getTime());
+            }
+
+            if (transformSheet.getTag() != null) {
+                sb.append('|').append(transformSheet.getTag().format());
+            }
+
+            result = sb.toString();
+        } else if ((transformSheet.getDigest() != null)
+                && (transformSheet.getDigest().getValue() != null)) {
+            result = transformSheet.getDigest().getAlgorithm()
+                    + ':'
+                    + Base64.encode(transformSheet.getDigest().getValue(),
+                            false);
+        } else {
+            result = new InstanceKey(transformSheet);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the key identifying a transform sheet compiled with a URI
+     * resolver.
+     * 
+     * @param transformSheet
+     *            The transform sheet.
+     * @param uriResolver
+     *            The optional URI resolver of included sheets.
+     * @return The key identifying the compiled transform sheet.
+     */
+    protected static Object getKey(Representation transformSheet,
+            URIResolver uriResolver) {
+        Object result = getKey(transformSheet);
+        return (uriResolver == null) ? result : new ResolverKey(result,
+                uriResolver);
+    }
+
+    /** The SAX transformer factories local to each thread. */
+    private final ThreadLocal<SAXTransformerFactory> saxTransformerFactories;
+
+    /** The compiled templates. */
+    private final BoundedCache<Object, Templates> templates;
+
+    /** The transformer factory, lazily resolved. */
+    private volatile TransformerFactory transformerFactory;
+
+    /**
+     * Default constructor, holding up to {@link #DEFAULT_MAX_SIZE} templates.
+     */
+    public TemplatesCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param maxSize
+     *            The maximum number of compiled templates.
+     */
+    public TemplatesCache(int maxSize) {
+        this.saxTransformerFactories = new ThreadLocal<SAXTransformerFactory>();
+        this.templates = new BoundedCache<Object, Templates>(maxSize);
+    }
+
+    /**
+     * Removes all the compiled templates, forcing the transform sheets to be
+     * compiled again on their next use.
+     */
+    public void clear() {
+        this.templates.clear();
+    }
+
+    /**
+     * Compiles a transform sheet.
+     * 
+     * @param transformSheet
+     *            The transform sheet.
+     * @param uriResolver
+     *            The optional URI resolver of included sheets.
+     * @return The compiled templates.
+     * @throws IOException
+     */
+    protected Templates compile(Representation transformSheet,
+            URIResolver uriResolver) throws IOException {
+        StreamSource transformSource = new StreamSource(
+                transformSheet.getStream());
+
+        if (transformSheet.getLocationRef() != null) {
+            transformSource.setSystemId(transformSheet.getLocationRef()
+                    .getTargetRef().toString());
+        }
+
+        TransformerFactory factory = getTransformerFactory();
+
+        // Factories aren't thread-safe but compilations are rare
+        synchronized (factory) {
+            try {
+                factory.setURIResolver(uriResolver);
+                return factory.newTemplates(transformSource);
+            } catch (TransformerConfigurationException tce) {
+                throw new IOException("Transformer configuration exception. "
+                        + tce.getMessage());
+            } finally {
+                factory.setURIResolver(null);
+            }
+        }
+    }
+
+    /**
+     * Returns the maximum number of compiled templates.
+     * 
+     * @return The maximum number of compiled templates.
+     */
+    public int getMaxSize() {
+        return this.templates.getMaxSize();
+    }
+
+    /**
+     * Returns the SAX transformer factory local to the current thread, of the
+     * same class as {@link #getTransformerFactory()}. As it is never shared,
+     * callers don't need to synchronize on it.
+     * 
+     * @return The SAX transformer factory or null if the transformer factory
+     *         doesn't support SAX.
+     * @throws IOException
+     */
+    public SAXTransformerFactory getSaxTransformerFactory() throws IOException {
+        TransformerFactory tf = getTransformerFactory();
+
+        if (!(tf instanceof SAXTransformerFactory)) {
+            return null;
+        }
+
+        SAXTransformerFactory result = this.saxTransformerFactories.get();
+
+        if (result == null) {
+            try {
+                result = (SAXTransformerFactory) TransformerFactory
+                        .newInstance(tf.getClass().getName(), tf.getClass()
+                                .getClassLoader());
+            } catch (TransformerFactoryConfigurationError tfce) {
+                throw new IOException(
+                        "Transformer factory configuration exception. "
+                                + tfce.getMessage());
+            }
+
+            this.saxTransformerFactories.set(result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the compiled templates of a transform sheet, compiling it on
+     * cache misses.
+     * 
+     * @param transformSheet
+     *            The transform sheet.
+     * @param uriResolver
+     *            The optional URI resolver of included sheets.
+     * @return The compiled templates.
+     * @throws IOException
+     */
+    public Templates getTemplates(Representation transformSheet,
+            URIResolver uriResolver) throws IOException {
+        Object key = getKey(transformSheet, uriResolver);
+        Templates result = this.templates.get(key);
+
+        if (result == null) {
+            result = this.templates.putIfAbsent(key,
+                    compile(transformSheet, uriResolver));
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the transformer factory, resolving it on first call. Callers
+     * must synchronize on the returned factory as factories aren't
+     * thread-safe.
+     * 
+     * @return The transformer factory.
+     * @throws IOException
+     */
+    public TransformerFactory getTransformerFactory() throws IOException {
+        // Lazy initialization with double-check.
+        TransformerFactory tf = this.transformerFactory;
+        if (tf == null) {
+            synchronized (this) {
+                tf = this.transformerFactory;
+                if (tf == null) {
+                    try {
+                        this.transformerFactory = tf = TransformerFactory
+                                .newInstance();
+                    } catch (TransformerFactoryConfigurationError tfce) {
+                        throw new IOException(
+                                "Transformer factory configuration exception. "
+                                        + tfce.getMessage());
+                    }
+                }
+            }
+        }
+        return tf;
+    }
+
+    /**
+     * Removes the templates of a transform sheet compiled without URI
+     * resolver, forcing it to be compiled again on its next use.
+     * 
+     * @param transformSheet
+     *            The transform sheet.
+     * @return The removed templates or null.
+     */
+    public Templates remove(Representation transformSheet) {
+        return remove(transformSheet, null);
+    }
+
+    /**
+     * Removes the templates of a transform sheet compiled with a URI resolver,
+     * forcing it to be compiled again on its next use.
+     * 
+     * @param transformSheet
+     *            The transform sheet.
+     * @param uriResolver
+     *            The optional URI resolver of included sheets.
+     * @return The removed templates or null.
+     */
+    public Templates remove(Representation transformSheet,
+            URIResolver uriResolver) {
+        return this.templates.remove(getKey(transformSheet, uriResolver));
+    }
+
+    /**
+     * Returns the number of compiled templates.
+     * 
+     * @return The number of compiled templates.
+     */
+    public int size() {
+        return this.templates.size();
+    }
+
+}
@@ -149,6 +149,9 @@ public class TransformRepresentation extends WriterRepresentation {
     /** The template to be used and reused. */
     private volatile Templates templates;
 
+    /** The optional cache of compiled templates. */
+    private volatile TemplatesCache templatesCache;
+
     /** The XSLT transform sheet to apply to message entities. */
     private volatile Representation transformSheet;
 
@@ -157,7 +160,8 @@ public class TransformRepresentation extends WriterRepresentation {
 
     /**
      * Constructor. Note that a default URI resolver will be created based on
-     * the given context.
+     * the given context and that the compiled templates will be cached in the
+     * {@link TemplatesCache} scoped by this context.
      * 
      * @param context
      *            The parent context.
@@ -170,6 +174,10 @@ public class TransformRepresentation extends WriterRepresentation {
             Representation transformSheet) {
         this((context == null) ? null : new ContextResolver(context), source,
                 transformSheet);
+
+        if (context != null) {
+            this.templatesCache = TemplatesCache.getInstance(context);
+        }
     }
 
     /**
@@ -278,13 +286,21 @@ public class TransformRepresentation extends WriterRepresentation {
     }
 
     /**
-     * Returns the default SAX transformer factory.
+     * Returns the thread-local SAX transformer factory of the templates cache
+     * if available, or else a new default one.
      * 
-     * @return The default SAX transformer factory.
+     * @return The SAX transformer factory.
+     * @throws IOException
      */
-    private SAXTransformerFactory getSaxTransformerFactory() {
-        SAXTransformerFactory result = (SAXTransformerFactory) TransformerFactory
-                .newInstance();
+    private SAXTransformerFactory getSaxTransformerFactory()
+            throws IOException {
+        SAXTransformerFactory result = (getTemplatesCache() == null) ? null
+                : getTemplatesCache().getSaxTransformerFactory();
+
+        if (result == null) {
+            result = (SAXTransformerFactory) TransformerFactory.newInstance();
+        }
+
         return result;
     }
 
@@ -300,13 +316,16 @@ public class TransformRepresentation extends WriterRepresentation {
     /**
      * Returns the templates to be used and reused. If no one exists, it creates
      * a new one based on the transformSheet representation and on the URI
-     * resolver.
+     * resolver, or retrieves it from the templates cache if available.
      * 
      * @return The templates to be used and reused.
      */
     public Templates getTemplates() throws IOException {
         if (this.templates == null) {
-            if (getTransformSheet() != null) {
+            if ((getTransformSheet() != null) && (getTemplatesCache() != null)) {
+                this.templates = getTemplatesCache().getTemplates(
+                        getTransformSheet(), getUriResolver());
+            } else if (getTransformSheet() != null) {
                 try {
                     // Prepare the XSLT transformer documents
                     final StreamSource transformSource = new StreamSource(
@@ -340,6 +359,15 @@ public class TransformRepresentation extends WriterRepresentation {
         return this.templates;
     }
 
+    /**
+     * Returns the optional cache of compiled templates.
+     * 
+     * @return The optional cache of compiled templates.
+     */
+    public TemplatesCache getTemplatesCache() {
+        return this.templatesCache;
+    }
+
     /**
      * Returns a new transformer to be used. Creation is based on the
      * {@link #getTemplates()}.newTransformer() method.
@@ -395,9 +423,10 @@ public class TransformRepresentation extends WriterRepresentation {
         Templates templates = getTemplates();
 
         if (templates != null) {
+            SAXTransformerFactory factory = getSaxTransformerFactory();
+
             try {
-                result = getSaxTransformerFactory().newTransformerHandler(
-                        templates);
+                result = factory.newTransformerHandler(templates);
             } catch (TransformerConfigurationException tce) {
                 throw new IOException("Transformer configuration exception. "
                         + tce.getMessage());
@@ -436,8 +465,10 @@ public class TransformRepresentation extends WriterRepresentation {
         final Templates templates = getTemplates();
 
         if (templates != null) {
+            SAXTransformerFactory factory = getSaxTransformerFactory();
+
             try {
-                result = getSaxTransformerFactory().newXMLFilter(templates);
+                result = factory.newXMLFilter(templates);
             } catch (TransformerConfigurationException tce) {
                 throw new IOException("Transformer configuration exception. "
                         + tce.getMessage());
@@ -524,6 +555,16 @@ public class TransformRepresentation extends WriterRepresentation {
         this.templates = templates;
     }
 
+    /**
+     * Sets the optional cache of compiled templates.
+     * 
+     * @param templatesCache
+     *            The optional cache of compiled templates.
+     */
+    public void setTemplatesCache(TemplatesCache templatesCache) {
+        this.templatesCache = templatesCache;
+    }
+
     /**
      * Sets the XSLT transform sheet to apply to message entities.
      * 
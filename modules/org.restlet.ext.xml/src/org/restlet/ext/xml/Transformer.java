@@ -39,7 +39,8 @@ import org.restlet.routing.Filter;
 /**
  * Filter that can transform XML representations by applying an XSLT transform
  * sheet. It uses the {@link org.restlet.representation.TransformRepresentation}
- * to actually transform the XML entities.<br>
+ * to actually transform the XML entities. The compiled transform sheets are
+ * cached in the {@link TemplatesCache} of the parent context.<br>
  * <br>
  * Concurrency note: instances of this class or its subclasses can be invoked by
  * several threads at the same time and therefore must be thread-safe. You
@@ -83,6 +84,9 @@ public class Transformer extends Filter {
      */
     private volatile MediaType resultMediaType;
 
+    /** The cache of compiled templates. */
+    private volatile TemplatesCache templatesCache;
+
     /** The XSLT transform sheet to apply to message entities. */
     private volatile Representation transformSheet;
 
@@ -196,6 +200,28 @@ public class Transformer extends Filter {
         return this.resultMediaType;
     }
 
+    /**
+     * Returns the cache of compiled templates. By default, it is the
+     * {@link TemplatesCache} scoped by the parent context, or a private cache
+     * if there is no context.
+     * 
+     * @return The cache of compiled templates.
+     */
+    public TemplatesCache getTemplatesCache() {
+        // Lazy initialization with double-check.
+        TemplatesCache tc = this.templatesCache;
+        if (tc == null) {
+            synchronized (this) {
+                tc = this.templatesCache;
+                if (tc == null) {
+                    this.templatesCache = tc = (getContext() == null) ? new TemplatesCache()
+                            : TemplatesCache.getInstance(getContext());
+                }
+            }
+        }
+        return tc;
+    }
+
     /**
      * Returns the XSLT transform sheet to apply to message entities.
      * 
@@ -255,6 +281,16 @@ public class Transformer extends Filter {
         this.resultMediaType = resultMediaType;
     }
 
+    /**
+     * Sets the cache of compiled templates.
+     * 
+     * @param templatesCache
+     *            The cache of compiled templates.
+     */
+    public void setTemplatesCache(TemplatesCache templatesCache) {
+        this.templatesCache = templatesCache;
+    }
+
     /**
      * Sets the XSLT transform sheet to apply to message entities.
      * 
@@ -274,8 +310,9 @@ public class Transformer extends Filter {
      * @return The generated result representation.
      */
     public Representation transform(Representation source) {
-        final Representation result = new TransformRepresentation(getContext(),
-                source, getTransformSheet());
+        final TransformRepresentation result = new TransformRepresentation(
+                getContext(), source, getTransformSheet());
+        result.setTemplatesCache(getTemplatesCache());
 
         if (this.resultLanguages != null) {
             result.getLanguages().addAll(getResultLanguages());
@@ -57,6 +57,25 @@ public class ContextResolver implements URIResolver {
         this.context = context;
     }
 
+    /**
+     * Indicates if the other resolver is based on the same context, so that
+     * templates compiled with either can be shared.
+     * 
+     * @param other
+     *            The other object.
+     * @return True if the other resolver is based on the same context.
+     */
+    @Override
+    public boolean equals(Object other) {
+        return (other instanceof ContextResolver)
+                && (((ContextResolver) other).context == this.context);
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this.context);
+    }
+
     /**
      * Resolves a target reference into a Source document.
      * 
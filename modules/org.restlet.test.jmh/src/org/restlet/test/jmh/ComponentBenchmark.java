@@ -0,0 +1,124 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.restlet.Application;
+import org.restlet.Component;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Preference;
+import org.restlet.resource.Get;
+import org.restlet.resource.Put;
+import org.restlet.resource.ServerResource;
+import org.restlet.routing.Router;
+
+/**
+ * Measures a full in-VM round trip through {@link Component#handle(Request)},
+ * crossing the virtual host, the application services, the router and an
+ * annotated server resource, without any network connector.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComponentBenchmark {
+
+    public static class ItemServerResource extends ServerResource {
+
+        @Get("txt")
+        public String represent() {
+            return "Item " + getAttribute("id");
+        }
+
+        @Put("txt")
+        public String store(String value) {
+            return value;
+        }
+    }
+
+    private static final String URI = "http://localhost:8182/app/items/12345";
+
+    private Component component;
+
+    @Benchmark
+    public Response get() {
+        Request request = new Request(Method.GET, URI);
+        request.getClientInfo().getAcceptedMediaTypes()
+                .add(new Preference<MediaType>(MediaType.TEXT_PLAIN));
+        return this.component.handle(request);
+    }
+
+    @Benchmark
+    public Response put() {
+        Request request = new Request(Method.PUT, URI);
+        request.setEntity("New item", MediaType.TEXT_PLAIN);
+        return this.component.handle(request);
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        this.component = new Component();
+        this.component.getLogService().setEnabled(false);
+        this.component.getDefaultHost().attach("/app", new Application() {
+            @Override
+            public Restlet createInboundRoot() {
+                Router router = new Router(getContext());
+
+                for (int i = 0; i < 20; i++) {
+                    router.attach("/resources" + i + "/{id}",
+                            ItemServerResource.class);
+                }
+
+                router.attach("/items/{id}", ItemServerResource.class);
+                return router;
+            }
+        });
+        this.component.start();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        this.component.stop();
+    }
+
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.ClientInfo;
+import org.restlet.data.Header;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Tag;
+import org.restlet.engine.header.ContentType;
+import org.restlet.engine.header.ContentTypeReader;
+import org.restlet.engine.header.HeadCodec;
+import org.restlet.engine.header.HeaderReader;
+import org.restlet.engine.header.HeaderUtils;
+import org.restlet.engine.header.PreferenceReader;
+import org.restlet.engine.header.PreferenceWriter;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.util.Series;
+
+/**
+ * Measures the parsing of a raw HTTP header block and of the common header
+ * values, and the writing of the headers of a typical response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeaderBenchmark {
+
+    private static final String ACCEPT = "text/html,application/xhtml+xml,"
+            + "application/xml;q=0.9,image/webp,*/*;q=0.8";
+
+    private static final String CONTENT_TYPE = "application/json; "
+            + "charset=UTF-8";
+
+    private static final String HEAD = "Host: www.example.com:8182\r\n"
+            + "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:38.0) "
+            + "Gecko/20100101 Firefox/38.0\r\n" + "Accept: " + ACCEPT
+            + "\r\n" + "Accept-Language: en-US,en;q=0.5\r\n"
+            + "Accept-Encoding: gzip, deflate\r\n"
+            + "Cookie: session=8f2a6c1e; theme=dark\r\n"
+            + "Connection: keep-alive\r\n"
+            + "Cache-Control: max-age=0\r\n\r\n";
+
+    private byte[] head;
+
+    private Response response;
+
+    @Benchmark
+    public ClientInfo readAccept() {
+        ClientInfo result = new ClientInfo();
+        PreferenceReader.addMediaTypes(ACCEPT, result);
+        return result;
+    }
+
+    @Benchmark
+    public int readCodecHead() throws IOException {
+        ByteBuffer head = HeadCodec.readHead(ByteBuffer.wrap(this.head));
+        int result = 0;
+
+        while (HeadCodec.readHeader(head) != null) {
+            result++;
+        }
+
+        return result;
+    }
+
+    @Benchmark
+    public ContentType readContentType() throws IOException {
+        return new ContentTypeReader(CONTENT_TYPE).readValue();
+    }
+
+    @Benchmark
+    public int readHead() throws IOException {
+        InputStream is = new ByteArrayInputStream(this.head);
+        StringBuilder sb = new StringBuilder();
+        int result = 0;
+
+        while (HeaderReader.readHeader(is, sb) != null) {
+            sb.delete(0, sb.length());
+            result++;
+        }
+
+        return result;
+    }
+
+    @Setup
+    public void setUp() {
+        this.head = HEAD.getBytes();
+
+        StringRepresentation entity = new StringRepresentation(
+                "{\"id\":12345}", MediaType.APPLICATION_JSON);
+        entity.setModificationDate(new Date());
+        entity.setTag(new Tag("xyzzy"));
+        this.response = new Response(new Request(Method.GET,
+                "http://www.example.com:8182/app/accounts/12345"));
+        this.response.setEntity(entity);
+        this.response.getServerInfo().setAgent("Restlet-Framework/3.0");
+        this.response.getServerInfo().setAcceptingRanges(true);
+    }
+
+    @Benchmark
+    public String writeAccept() {
+        ClientInfo clientInfo = new ClientInfo();
+        PreferenceReader.addMediaTypes(ACCEPT, clientInfo);
+        return PreferenceWriter.write(clientInfo.getAcceptedMediaTypes());
+    }
+
+    @Benchmark
+    public int writeCodecResponseHead() throws IOException {
+        Series<Header> headers = new Series<Header>(Header.class);
+        HeaderUtils.addResponseHeaders(this.response, headers);
+        HeaderUtils.addEntityHeaders(this.response.getEntity(), headers);
+        ByteArrayOutputStream os = new ByteArrayOutputStream(512);
+        HeadCodec.writeResponseHead("HTTP/1.1", 200, "OK", headers, os);
+        return os.size();
+    }
+
+    @Benchmark
+    public int writeResponseHead() throws IOException {
+        Series<Header> headers = new Series<Header>(Header.class);
+        HeaderUtils.addResponseHeaders(this.response, headers);
+        HeaderUtils.addEntityHeaders(this.response.getEntity(), headers);
+        ByteArrayOutputStream os = new ByteArrayOutputStream(512);
+
+        for (Header header : headers) {
+            HeaderUtils.writeHeaderLine(header, os);
+        }
+
+        HeaderUtils.writeCRLF(os);
+        return os.size();
+    }
+
+}
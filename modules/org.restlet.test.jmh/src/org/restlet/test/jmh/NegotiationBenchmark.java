@@ -0,0 +1,150 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.jmh;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.restlet.Request;
+import org.restlet.data.Language;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Preference;
+import org.restlet.engine.converter.ConverterHelper;
+import org.restlet.engine.converter.ConverterUtils;
+import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.representation.Variant;
+import org.restlet.service.ConnegService;
+import org.restlet.service.ConverterService;
+import org.restlet.service.MetadataService;
+
+/**
+ * Measures the selection of a converter by the {@link ConverterService} and
+ * the content negotiation of the {@link ConnegService}, with and without its
+ * cache of negotiation results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NegotiationBenchmark {
+
+    private ConnegService cachedConneg;
+
+    private ConverterService converterService;
+
+    private MetadataService metadataService;
+
+    private Request request;
+
+    private Variant target;
+
+    private ConnegService uncachedConneg;
+
+    private List<Variant> variants;
+
+    @Benchmark
+    public ConverterHelper converterSelection() {
+        return ConverterUtils.getBestHelper("hello", this.target, null);
+    }
+
+    @Benchmark
+    public Variant negotiateCached() {
+        return this.cachedConneg.getPreferredVariant(this.variants,
+                this.request, this.metadataService);
+    }
+
+    @Benchmark
+    public Variant negotiateUncached() {
+        return this.uncachedConneg.getPreferredVariant(this.variants,
+                this.request, this.metadataService);
+    }
+
+    @Setup
+    public void setUp() {
+        this.cachedConneg = new ConnegService();
+        this.uncachedConneg = new ConnegService();
+        this.uncachedConneg.setCacheSize(0);
+        this.converterService = new ConverterService();
+        this.metadataService = new MetadataService();
+        this.target = new Variant(MediaType.TEXT_PLAIN);
+
+        this.variants = new ArrayList<Variant>();
+        this.variants.add(new Variant(MediaType.APPLICATION_JSON));
+        this.variants.add(new Variant(MediaType.APPLICATION_XML));
+        this.variants.add(new Variant(MediaType.TEXT_HTML, Language.ENGLISH));
+        this.variants.add(new Variant(MediaType.TEXT_HTML, Language.FRENCH));
+        this.variants.add(new Variant(MediaType.TEXT_PLAIN));
+
+        this.request = new Request(Method.GET,
+                "http://www.example.com:8182/app/accounts/12345");
+        this.request.getClientInfo().getAcceptedMediaTypes()
+                .add(new Preference<MediaType>(MediaType.TEXT_HTML));
+        this.request
+                .getClientInfo()
+                .getAcceptedMediaTypes()
+                .add(new Preference<MediaType>(MediaType.APPLICATION_XML,
+                        0.9F));
+        this.request.getClientInfo().getAcceptedMediaTypes()
+                .add(new Preference<MediaType>(MediaType.ALL, 0.8F));
+        this.request.getClientInfo().getAcceptedLanguages()
+                .add(new Preference<Language>(Language.FRENCH));
+        this.request.getClientInfo().getAcceptedLanguages()
+                .add(new Preference<Language>(Language.ENGLISH, 0.5F));
+    }
+
+    @Benchmark
+    public String toObject() throws IOException {
+        return this.converterService.toObject(new StringRepresentation(
+                "hello"), String.class, null);
+    }
+
+    @Benchmark
+    public Representation toRepresentation() throws IOException {
+        return this.converterService.toRepresentation("hello", this.target,
+                null);
+    }
+
+    @Benchmark
+    public List<? extends Variant> variants() throws IOException {
+        return this.converterService.getVariants(String.class, null);
+    }
+
+}
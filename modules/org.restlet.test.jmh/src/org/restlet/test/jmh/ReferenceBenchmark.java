@@ -0,0 +1,103 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.restlet.data.Form;
+import org.restlet.data.Reference;
+
+/**
+ * Measures the parsing of a {@link Reference} and the accessors used while
+ * routing a request, on fresh and on reused references.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReferenceBenchmark {
+
+    private static final String BASE = "http://www.example.com:8182/app/";
+
+    private static final String URI = BASE
+            + "accounts/12345/orders/678;v=2?expand=items&page=3&size=50";
+
+    private Reference base;
+
+    private Reference reference;
+
+    @Benchmark
+    public void accessors(Blackhole blackhole) {
+        blackhole.consume(this.reference.getPath());
+        blackhole.consume(this.reference.getHostDomain());
+        blackhole.consume(this.reference.getHostPort());
+        blackhole.consume(this.reference.getLastSegment());
+        blackhole.consume(this.reference.getMatrix());
+        blackhole.consume(this.reference.getRemainingPart(false, false));
+    }
+
+    @Benchmark
+    public Reference parse() {
+        Reference result = new Reference(this.base, URI);
+        result.getPath();
+        return result;
+    }
+
+    @Benchmark
+    public Form queryForm() {
+        return new Reference(URI).getQueryAsForm();
+    }
+
+    @Benchmark
+    public Reference relativeRef() {
+        return new Reference(this.base, URI).getRelativeRef();
+    }
+
+    @Setup
+    public void setUp() {
+        this.base = new Reference(BASE);
+        this.reference = new Reference(this.base, URI);
+    }
+
+    @Benchmark
+    public Reference targetRef() {
+        return new Reference(this.base, "../app/accounts/./12345")
+                .getTargetRef();
+    }
+
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.jmh;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Method;
+import org.restlet.data.Reference;
+import org.restlet.routing.Router;
+import org.restlet.routing.Template;
+
+/**
+ * Measures the selection of a route by a {@link Router} holding many URI
+ * templates, and the matching and parsing of a single {@link Template}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingBenchmark {
+
+    private static final String BASE = "http://localhost:8182/app";
+
+    private Request firstRequest;
+
+    private Request lastRequest;
+
+    private Request missRequest;
+
+    private Response response;
+
+    @Param({ "10", "100" })
+    public int routes;
+
+    private Router router;
+
+    private Template template;
+
+    private static Request createRequest(String path) {
+        Request result = new Request(Method.GET, BASE + path);
+        result.getResourceRef().setBaseRef(new Reference(BASE));
+        return result;
+    }
+
+    @Benchmark
+    public Restlet routeFirst() {
+        return this.router.getNext(this.firstRequest, this.response);
+    }
+
+    @Benchmark
+    public Restlet routeLast() {
+        return this.router.getNext(this.lastRequest, this.response);
+    }
+
+    @Benchmark
+    public Restlet routeMiss() {
+        return this.router.getNext(this.missRequest, this.response);
+    }
+
+    @Setup
+    public void setUp() {
+        Restlet target = new Restlet() {
+        };
+        this.router = new Router();
+
+        for (int i = 0; i < this.routes; i++) {
+            this.router.attach("/resources" + i + "/{id}/items/{item}",
+                    target);
+        }
+
+        this.firstRequest = createRequest("/resources0/12345/items/678");
+        this.lastRequest = createRequest("/resources" + (this.routes - 1)
+                + "/12345/items/678");
+        this.missRequest = createRequest("/unknown/12345/items/678");
+        this.response = new Response(this.firstRequest);
+        this.template = new Template(
+                "/accounts/{account}/orders/{order}/items/{item}");
+    }
+
+    @Benchmark
+    public int templateMatch() {
+        return this.template.match("/accounts/12345/orders/678/items/9");
+    }
+
+    @Benchmark
+    public Map<String, Object> templateParse() {
+        Map<String, Object> result = new HashMap<String, Object>();
+        this.template.parse("/accounts/12345/orders/678/items/9", result);
+        return result;
+    }
+
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.restlet.data.Header;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.header.IndexedHeaderSeries;
+import org.restlet.util.Series;
+
+/**
+ * Measures the case-insensitive lookups of a {@link Series} of headers, as
+ * done by the connectors while converting a call, on a plain series and on
+ * an {@link IndexedHeaderSeries}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeriesBenchmark {
+
+    private static final String[] NAMES = { HeaderConstants.HEADER_HOST,
+            HeaderConstants.HEADER_USER_AGENT, HeaderConstants.HEADER_ACCEPT,
+            HeaderConstants.HEADER_ACCEPT_LANGUAGE,
+            HeaderConstants.HEADER_ACCEPT_ENCODING,
+            HeaderConstants.HEADER_COOKIE, HeaderConstants.HEADER_CONNECTION,
+            HeaderConstants.HEADER_CACHE_CONTROL,
+            HeaderConstants.HEADER_CONTENT_TYPE,
+            HeaderConstants.HEADER_CONTENT_LENGTH,
+            HeaderConstants.HEADER_IF_NONE_MATCH,
+            HeaderConstants.HEADER_REFERRER };
+
+    @Param({ "plain", "indexed" })
+    public String kind;
+
+    private Series<Header> series;
+
+    private Series<Header> createSeries() {
+        return "indexed".equals(this.kind) ? new IndexedHeaderSeries()
+                : new Series<Header>(Header.class);
+    }
+
+    @Benchmark
+    public void lookupAbsent(Blackhole blackhole) {
+        blackhole.consume(this.series.getFirstValue(
+                HeaderConstants.HEADER_AUTHORIZATION, true));
+        blackhole.consume(this.series.getFirstValue(
+                HeaderConstants.HEADER_TRANSFER_ENCODING, true));
+    }
+
+    @Benchmark
+    public void lookupPresent(Blackhole blackhole) {
+        blackhole.consume(this.series.getFirstValue(
+                HeaderConstants.HEADER_HOST, true));
+        blackhole.consume(this.series.getFirstValue(
+                HeaderConstants.HEADER_CONTENT_LENGTH, true));
+        blackhole.consume(this.series.getFirstValue(
+                "referer", true));
+    }
+
+    @Benchmark
+    public Series<Header> populate() {
+        Series<Header> result = createSeries();
+
+        for (String name : NAMES) {
+            result.add(name, "value");
+        }
+
+        return result;
+    }
+
+    @Setup
+    public void setUp() {
+        this.series = populate();
+    }
+
+}
@@ -29,6 +29,7 @@ import junit.framework.TestSuite;
 
 import org.restlet.test.connector.FileClientTestCase;
 import org.restlet.test.connector.RestartTestCase;
+import org.restlet.test.connector.RiapPassThroughTestCase;
 import org.restlet.test.connector.RiapTestCase;
 import org.restlet.test.data.AuthenticationInfoTestCase;
 import org.restlet.test.data.ClientInfoTestCase;
@@ -64,8 +65,10 @@ import org.restlet.test.ext.wadl.WadlTestSuite;
 import org.restlet.test.ext.xml.XmlTestSuite;
 import org.restlet.test.regression.RegressionTestSuite;
 import org.restlet.test.representation.AppendableRepresentationTestCase;
+import org.restlet.test.representation.BufferingRepresentationTestCase;
 import org.restlet.test.representation.DigesterRepresentationTestCase;
 import org.restlet.test.representation.RangeRepresentationTestCase;
+import org.restlet.test.routing.BalancingRedirectorTestCase;
 import org.restlet.test.routing.FilterTestCase;
 import org.restlet.test.routing.RedirectTestCase;
 import org.restlet.test.routing.RouteListTestCase;
@@ -96,8 +99,10 @@ public class RestletTestSuite extends TestSuite {
     public RestletTestSuite() {
         addTest(ServiceTestSuite.suite());
         addTestSuite(AppendableRepresentationTestCase.class);
+        addTestSuite(BufferingRepresentationTestCase.class);
         addTestSuite(AtomTestCase.class);
         addTestSuite(AuthenticationInfoTestCase.class);
+        addTestSuite(BalancingRedirectorTestCase.class);
         addTestSuite(CallTestCase.class);
         addTestSuite(CookieTestCase.class);
         addTestSuite(ClientInfoTestCase.class);
@@ -116,6 +121,7 @@ public class RestletTestSuite extends TestSuite {
         addTestSuite(ProductTokenTestCase.class);
         addTestSuite(ReferenceTestCase.class);
         addTestSuite(RestartTestCase.class);
+        addTestSuite(RiapPassThroughTestCase.class);
         addTestSuite(RiapTestCase.class);
         addTestSuite(RouteListTestCase.class);
         addTestSuite(DigestVerifierTestCase.class);
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.bench;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Method;
+import org.restlet.engine.resource.AnnotationInfo;
+import org.restlet.engine.resource.AnnotationUtils;
+import org.restlet.resource.Finder;
+import org.restlet.resource.Get;
+import org.restlet.resource.ServerResource;
+
+/**
+ * Measures the dispatch overhead of a trivial annotated method, comparing the
+ * reflective invocation with the method handle based invocation, then the
+ * complete handling of a call by a server resource.
+ */
+public class AnnotatedDispatchBench {
+
+    public static class TrivialServerResource extends ServerResource {
+
+        @Get("txt")
+        public String represent() {
+            return "hello";
+        }
+    }
+
+    private static final int ITERATIONS = 2000000;
+
+    private static final int WARMUP = 200000;
+
+    private static volatile Object sink;
+
+    private static long benchDispatch(Finder finder, int iterations) {
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) {
+            Request request = new Request(Method.GET, "http://localhost/test");
+            Response response = new Response(request);
+            finder.handle(request, response);
+            sink = response.getEntity();
+        }
+
+        return (System.nanoTime() - start) / iterations;
+    }
+
+    private static long benchHandle(AnnotationInfo info,
+            ServerResource resource, int iterations) throws Exception {
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) {
+            sink = info.invoke(resource);
+        }
+
+        return (System.nanoTime() - start) / iterations;
+    }
+
+    private static long benchReflection(java.lang.reflect.Method method,
+            ServerResource resource, int iterations) throws Exception {
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) {
+            sink = method.invoke(resource);
+        }
+
+        return (System.nanoTime() - start) / iterations;
+    }
+
+    public static void main(String[] args) throws Exception {
+        AnnotationInfo info = AnnotationUtils.getInstance()
+                .getAnnotations(TrivialServerResource.class).get(0);
+        java.lang.reflect.Method method = info.getJavaMethod();
+        ServerResource resource = new TrivialServerResource();
+        Finder finder = new Finder(new Context(), TrivialServerResource.class);
+
+        benchReflection(method, resource, WARMUP);
+        benchHandle(info, resource, WARMUP);
+        benchDispatch(finder, WARMUP / 10);
+
+        System.out.println("Method.invoke():         "
+                + benchReflection(method, resource, ITERATIONS) + " ns/call");
+        System.out.println("AnnotationInfo.invoke(): "
+                + benchHandle(info, resource, ITERATIONS) + " ns/call");
+        System.out.println("ServerResource.handle(): "
+                + benchDispatch(finder, ITERATIONS / 10) + " ns/call");
+    }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.bench;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.restlet.Client;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Method;
+import org.restlet.data.Protocol;
+import org.restlet.data.Reference;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.engine.local.Entity;
+import org.restlet.representation.Variant;
+import org.restlet.service.MetadataService;
+
+/**
+ * Measures the listing of a directory containing 10k files through the FILE
+ * client connector, then the resolution of the metadata of each listed file
+ * based on its extensions, as done when describing the variants of each entry.
+ */
+public class DirectoryListingBench {
+
+    private static final String[] EXTENSIONS = { "txt", "html", "json", "xml",
+            "png", "css", "js", "en.html", "fr.txt", "html.gz", "pdf", "zip" };
+
+    private static final int FILES = 10000;
+
+    private static final int ITERATIONS = 20;
+
+    private static volatile Object sink;
+
+    private static File createDirectory() throws IOException {
+        File dir = new File(System.getProperty("java.io.tmpdir"),
+                "restlet-bench-" + System.nanoTime());
+        dir.mkdirs();
+
+        for (int i = 0; i < FILES; i++) {
+            new File(dir, "file" + i + "."
+                    + EXTENSIONS[i % EXTENSIONS.length]).createNewFile();
+        }
+
+        return dir;
+    }
+
+    private static long benchListing(Client client, String uri, int iterations)
+            throws Exception {
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) {
+            Response response = client.handle(new Request(Method.GET, uri));
+            sink = response.getEntity().getText();
+        }
+
+        return (System.nanoTime() - start) / iterations / 1000;
+    }
+
+    private static long benchMetadata(MetadataService metadataService,
+            String[] names, int iterations) {
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) {
+            for (String name : names) {
+                Variant variant = new Variant();
+                Entity.updateMetadata(name, variant, true, metadataService);
+                sink = metadataService.getExtension(variant.getMediaType());
+            }
+        }
+
+        return (System.nanoTime() - start) / iterations / 1000;
+    }
+
+    public static void main(String[] args) throws Exception {
+        File dir = createDirectory();
+
+        try {
+            Client client = new Client(Protocol.FILE);
+            client.start();
+            String uri = new Reference(dir.toURI()).toString();
+            MetadataService metadataService = new MetadataService();
+            String[] names = dir.list();
+
+            benchListing(client, uri, ITERATIONS);
+            benchMetadata(metadataService, names, ITERATIONS);
+
+            System.out.println("Directory listing:   "
+                    + benchListing(client, uri, ITERATIONS) + " us/listing");
+            System.out.println("Metadata resolution: "
+                    + benchMetadata(metadataService, names, ITERATIONS)
+                    + " us/listing");
+            client.stop();
+        } finally {
+            IoUtils.delete(dir, true);
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.restlet.Client;
+import org.restlet.data.Protocol;
+import org.restlet.engine.Engine;
+import org.restlet.engine.HelperRegistry;
+import org.restlet.engine.io.IoUtils;
+
+/**
+ * Measures the cold start of the engine, from its creation with helpers
+ * discovery to the creation of an HTTP client connector, with the classpath
+ * scanning of helper descriptors and then with a {@link HelperRegistry}
+ * generated for the current classpath. Each measure runs in a fresh JVM.
+ */
+public class EngineStartupBench {
+
+    private static final int RUNS = 10;
+
+    private static long bench(File registryDir) throws Exception {
+        long total = 0;
+
+        for (int i = 0; i < RUNS; i++) {
+            List<String> command = new ArrayList<String>();
+            command.add(new File(System.getProperty("java.home"), "bin/java")
+                    .getPath());
+            command.add("-cp");
+
+            if (registryDir == null) {
+                command.add(System.getProperty("java.class.path"));
+            } else {
+                command.add(registryDir.getPath() + File.pathSeparator
+                        + System.getProperty("java.class.path"));
+                command.add("-Dorg.restlet.engine.helperRegistry=true");
+            }
+
+            command.add(EngineStartupBench.class.getName());
+            command.add("run");
+            Process process = new ProcessBuilder(command).start();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    process.getInputStream()));
+            total += Long.parseLong(reader.readLine().trim());
+            process.waitFor();
+        }
+
+        return total / RUNS;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if ((args.length > 0) && "run".equals(args[0])) {
+            long start = System.nanoTime();
+            Engine.register();
+            new Client(Protocol.HTTP);
+            System.out.println((System.nanoTime() - start) / 1000);
+        } else {
+            File dir = new File(System.getProperty("java.io.tmpdir"),
+                    "restlet-startup-" + System.nanoTime());
+
+            try {
+                HelperRegistry.main(new String[] { new File(dir,
+                        HelperRegistry.DEFAULT_PATH).getPath() });
+
+                System.out.println("Classpath scanning: " + bench(null)
+                        + " us/startup");
+                System.out.println("Helper registry:    " + bench(dir)
+                        + " us/startup");
+            } finally {
+                IoUtils.delete(dir, true);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.bench;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.engine.metrics.CallSample;
+import org.restlet.service.MetricsService;
+
+/**
+ * Measures the cost of recording a call with the metrics service, from the
+ * creation of its sample to its recording per route and per resource, with
+ * several threads recording concurrently.
+ */
+public class MetricsBench {
+
+    private static final int ITERATIONS = 2000000;
+
+    private static final int THREADS = 4;
+
+    private static long bench(final MetricsService service) throws Exception {
+        Thread[] threads = new Thread[THREADS];
+        long start = System.nanoTime();
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    Request request = new Request(Method.GET,
+                            "http://localhost/accounts/1");
+                    Response response = new Response(request);
+                    response.setStatus(Status.SUCCESS_OK);
+
+                    for (int j = 0; j < ITERATIONS; j++) {
+                        CallSample sample = new CallSample(System.nanoTime());
+                        request.getAttributes().put(CallSample.ATTRIBUTE,
+                                sample);
+                        CallSample.addRoute(request, "/accounts");
+                        CallSample.addRoute(request, "/{id}");
+                        CallSample.setResource(request, MetricsBench.class,
+                                "represent");
+                        service.record(sample, request, response,
+                                System.nanoTime() - sample.getStartTime());
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        return (System.nanoTime() - start) / (ITERATIONS * THREADS);
+    }
+
+    public static void main(String[] args) throws Exception {
+        MetricsService service = new MetricsService();
+        bench(service);
+        System.out.println("Recording: " + bench(service) + " ns/call with "
+                + THREADS + " threads");
+    }
+
+}
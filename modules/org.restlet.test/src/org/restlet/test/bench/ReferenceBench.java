@@ -0,0 +1,84 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.bench;
+
+import org.restlet.data.Reference;
+
+/**
+ * Measures the Reference operations repeated while routing a request: the
+ * base and remaining parts, the path and its segments, the query form, the
+ * target reference and the relative reference, first on a fresh reference for
+ * each request then on a reference reused across calls.
+ */
+public class ReferenceBench {
+
+    private static final String BASE = "http://www.example.com:8182/app/";
+
+    private static final int ITERATIONS = 200000;
+
+    private static final String URI = BASE
+            + "accounts/12345/orders/678;v=2?expand=items&page=3&size=50";
+
+    private static volatile Object sink;
+
+    private static long bench(boolean reuse, int iterations) {
+        Reference base = new Reference(BASE);
+        Reference ref = new Reference(base, URI);
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) {
+            if (!reuse) {
+                ref = new Reference(base, URI);
+            }
+
+            for (int j = 0; j < 4; j++) {
+                sink = ref.getPath();
+                sink = ref.getAuthority();
+                sink = ref.getHostDomain();
+                sink = ref.getLastSegment();
+                sink = ref.getMatrix();
+                sink = ref.getRemainingPart(false, false);
+            }
+
+            sink = ref.getSegments(true);
+            sink = ref.getQueryAsForm();
+            sink = ref.getTargetRef();
+            sink = ref.getRelativeRef();
+        }
+
+        return (System.nanoTime() - start) / iterations;
+    }
+
+    public static void main(String[] args) throws Exception {
+        bench(false, ITERATIONS);
+        bench(true, ITERATIONS);
+
+        System.out.println("Fresh reference:  " + bench(false, ITERATIONS)
+                + " ns/request");
+        System.out.println("Reused reference: " + bench(true, ITERATIONS)
+                + " ns/request");
+    }
+
+}
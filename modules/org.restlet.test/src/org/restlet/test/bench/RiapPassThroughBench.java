@@ -0,0 +1,133 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.restlet.Application;
+import org.restlet.Component;
+import org.restlet.Restlet;
+import org.restlet.engine.Engine;
+import org.restlet.ext.jackson.JacksonConverter;
+import org.restlet.resource.ClientResource;
+import org.restlet.resource.Post;
+import org.restlet.resource.ServerResource;
+import org.restlet.routing.Router;
+
+/**
+ * Measures the latency of internal RIAP calls between two applications of the
+ * same component, with and without the pass-through of objects by the
+ * converter service.
+ */
+public class RiapPassThroughBench {
+
+    public static class Item {
+
+        private String name;
+
+        private List<String> tags;
+
+        public String getName() {
+            return name;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+    }
+
+    public static class ItemServerResource extends ServerResource {
+
+        @Post("json")
+        public Item echo(Item item) {
+            return item;
+        }
+    }
+
+    private static final int ITERATIONS = 20000;
+
+    private static final int WARMUP = 5000;
+
+    private static long bench(boolean passThrough, Item item) throws Exception {
+        Component component = new Component();
+        Application serverApp = new Application() {
+            @Override
+            public Restlet createInboundRoot() {
+                Router router = new Router(getContext());
+                router.attach("/item", ItemServerResource.class);
+                return router;
+            }
+        };
+        serverApp.getConverterService().setPassThrough(passThrough);
+        component.getInternalRouter().attach("/app", serverApp);
+        component.start();
+
+        Application clientApp = new Application();
+        clientApp.getConverterService().setPassThrough(passThrough);
+        ClientResource resource = new ClientResource(component.getContext()
+                .createChildContext(), "riap://component/app/item");
+        resource.setApplication(clientApp);
+
+        for (int i = 0; i < WARMUP; i++) {
+            resource.post(item, Item.class);
+        }
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            resource.post(item, Item.class);
+        }
+
+        long duration = System.nanoTime() - start;
+        component.stop();
+        return duration / ITERATIONS;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Engine.getInstance().getRegisteredConverters()
+                .add(0, new JacksonConverter());
+
+        Item item = new Item();
+        item.setName("restlet");
+        item.setTags(new ArrayList<String>());
+
+        for (int i = 0; i < 50; i++) {
+            item.getTags().add("tag" + i);
+        }
+
+        System.out.println("Serialized:   " + bench(false, item) + " ns/call");
+        System.out.println("Pass-through: " + bench(true, item) + " ns/call");
+    }
+
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.connector;
+
+import java.io.Serializable;
+
+import org.restlet.Application;
+import org.restlet.Component;
+import org.restlet.Restlet;
+import org.restlet.data.MediaType;
+import org.restlet.engine.converter.DefaultConverter;
+import org.restlet.engine.converter.PassThroughRepresentation;
+import org.restlet.representation.Variant;
+import org.restlet.resource.ClientResource;
+import org.restlet.resource.Post;
+import org.restlet.resource.ServerResource;
+import org.restlet.routing.Router;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit test case for the pass-through of objects during RIAP calls.
+ * 
+ * @author Jerome Louvel
+ */
+public class RiapPassThroughTestCase extends RestletTestCase {
+
+    public static class Item implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private String name;
+
+        public Item(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    public static class ItemServerResource extends ServerResource {
+
+        @Post
+        public Item echo(Item item) {
+            received = item;
+            passedThrough = getRequestEntity() instanceof PassThroughRepresentation<?>;
+            return item;
+        }
+    }
+
+    private static volatile boolean passedThrough;
+
+    private static volatile Item received;
+
+    private Component component;
+
+    private Item post(boolean passThrough, Item item) throws Exception {
+        Application serverApp = new Application() {
+            @Override
+            public Restlet createInboundRoot() {
+                Router router = new Router(getContext());
+                router.attach("/item", ItemServerResource.class);
+                return router;
+            }
+        };
+        serverApp.getConverterService().setPassThrough(passThrough);
+        component.getInternalRouter().attach("/app", serverApp);
+        component.start();
+
+        try {
+            Application clientApp = new Application();
+            clientApp.getConverterService().setPassThrough(passThrough);
+            ClientResource resource = new ClientResource(component
+                    .getContext().createChildContext(),
+                    "riap://component/app/item");
+            resource.setApplication(clientApp);
+            return resource.post(item, Item.class);
+        } finally {
+            component.stop();
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        passedThrough = false;
+        received = null;
+        component = new Component();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        component = null;
+        super.tearDown();
+    }
+
+    public void testDisabled() throws Exception {
+        Item item = new Item("restlet");
+        Item result = post(false, item);
+        assertFalse(passedThrough);
+        assertEquals("restlet", result.getName());
+    }
+
+    public void testLazyConversion() throws Exception {
+        PassThroughRepresentation<String> rep = new PassThroughRepresentation<String>(
+                "hello", new Variant(MediaType.TEXT_PLAIN),
+                new DefaultConverter(), null);
+        assertFalse(rep.isConverted());
+        assertEquals(MediaType.TEXT_PLAIN, rep.getMediaType());
+        assertEquals("hello", rep.getText());
+        assertTrue(rep.isConverted());
+    }
+
+    public void testPassThrough() throws Exception {
+        Item item = new Item("restlet");
+        Item result = post(true, item);
+        assertTrue(passedThrough);
+        assertSame(item, received);
+        assertSame(item, result);
+    }
+
+}
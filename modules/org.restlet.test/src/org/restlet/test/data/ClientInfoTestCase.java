@@ -134,4 +134,19 @@ public class ClientInfoTestCase extends RestletTestCase {
 
         assertEquals(MediaType.TEXT_XML, pmt);
     }
+
+    public void testCopyAgentData() throws Exception {
+        ClientInfo source = new ClientInfo();
+        source.setAgent("Mozilla/5.0 (X11; Linux x86_64) Firefox/40.0");
+        int products = source.getAgentProducts().size();
+        source.getAgentAttributes();
+
+        // The parsed agent data aren't shared with the copy
+        ClientInfo copy = new ClientInfo(source);
+        copy.getAgentProducts().clear();
+        copy.getAgentAttributes().put("test", "value");
+        assertEquals(products, source.getAgentProducts().size());
+        assertFalse(source.getAgentAttributes().containsKey("test"));
+    }
+
 }
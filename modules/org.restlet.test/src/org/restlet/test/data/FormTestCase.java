@@ -24,11 +24,19 @@
 
 package org.restlet.test.data;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.util.Arrays;
 
 import org.restlet.data.CharacterSet;
 import org.restlet.data.Form;
+import org.restlet.data.MediaType;
+import org.restlet.data.Parameter;
 import org.restlet.engine.util.FormReader;
+import org.restlet.engine.util.FormUtils;
+import org.restlet.representation.StringRepresentation;
 import org.restlet.test.RestletTestCase;
 
 /**
@@ -51,6 +59,27 @@ public class FormTestCase extends RestletTestCase {
         assertEquals(query, newQuery);
     }
 
+    public void testDecoding() throws IOException {
+        Form form = new Form("a=caf%C3%A9+cr%C3%A8me&b%20c=1%2B1%3D2");
+        assertEquals("caf\u00e9 cr\u00e8me", form.getFirstValue("a"));
+        assertEquals("1+1=2", form.getFirstValue("b c"));
+
+        form = new Form("a=caf%E9", CharacterSet.ISO_8859_1);
+        assertEquals("caf\u00e9", form.getFirstValue("a"));
+
+        // Raw bytes are decoded with the character set of the entity
+        StringRepresentation entity = new StringRepresentation(
+                "a=caf\u00e9&b=%C3%A9", MediaType.APPLICATION_WWW_FORM,
+                null, CharacterSet.UTF_8);
+        form = new Form(entity);
+        assertEquals("caf\u00e9", form.getFirstValue("a"));
+        assertEquals("\u00e9", form.getFirstValue("b"));
+
+        // Encoded data is left untouched
+        form = new Form("a=caf%C3%A9+x", false);
+        assertEquals("caf%C3%A9+x", form.getFirstValue("a"));
+    }
+
     public void testEmptyParameter() throws IOException {
         // Manual construction of form
         Form form = new Form();
@@ -73,4 +102,45 @@ public class FormTestCase extends RestletTestCase {
         assertNull(form.getFirstValue("unknownParam"));
     }
 
+    public void testReadFirstValue() throws IOException {
+        StringBuilder large = new StringBuilder("file=");
+
+        for (int i = 0; i < 100000; i++) {
+            large.append("%41%42");
+        }
+
+        large.append("&name=John&name=Jack");
+        String query = large.toString();
+
+        assertEquals("John",
+                new FormReader(query, CharacterSet.UTF_8, '&')
+                        .readFirstValue("name"));
+        assertNull(new FormReader(query, CharacterSet.UTF_8, '&')
+                .readFirstValue("unknown"));
+        assertEquals(Arrays.asList("John", "Jack"), new FormReader(query,
+                CharacterSet.UTF_8, '&').readParameter("name"));
+
+        Form form = new Form();
+        FormUtils.parse(form, new StringRepresentation(query,
+                MediaType.APPLICATION_WWW_FORM), true, Arrays.asList("name"));
+        assertEquals(2, form.size());
+        assertEquals("Jack", form.get(1).getValue());
+    }
+
+    public void testStreaming() throws IOException {
+        String query = "a=1&b=caf%C3%A9&c";
+
+        FormReader reader = new FormReader(new StringReader(query),
+                CharacterSet.UTF_8, true);
+        assertEquals(new Parameter("a", "1"), reader.readNextParameter());
+        assertEquals(new Parameter("b", "caf\u00e9"),
+                reader.readNextParameter());
+        assertEquals(new Parameter("c", null), reader.readNextParameter());
+        assertNull(reader.readNextParameter());
+
+        reader = new FormReader(Channels.newChannel(new ByteArrayInputStream(
+                query.getBytes("US-ASCII"))), CharacterSet.UTF_8, true);
+        assertEquals("caf\u00e9", reader.readFirstValue("b"));
+    }
+
 }
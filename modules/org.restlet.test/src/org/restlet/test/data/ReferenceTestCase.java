@@ -82,6 +82,61 @@ public class ReferenceTestCase extends RestletTestCase {
         assertEquals("http://restlet.org/root/dir?abc=123&def", ref.toString());
     }
 
+    public void testComponentsCache() {
+        Reference ref = new Reference(
+                "http://user@www.example.com:8080/a/b%20c/d;x=1?q=v%201&r#frag");
+        assertEquals("user@www.example.com:8080", ref.getAuthority());
+        assertEquals("www.example.com", ref.getHostDomain());
+        assertEquals("/a/b%20c/d;x=1", ref.getPath());
+        assertEquals("d;x=1", ref.getLastSegment());
+        assertEquals("x=1", ref.getMatrix());
+        assertEquals("[a, b c, d;x=1]", ref.getSegments(true).toString());
+
+        // Returned values are copies that can be safely modified
+        ref.getSegments().clear();
+        ref.getSegments(true).set(0, "z");
+        ref.getQueryAsForm().clear();
+        ref.getQueryAsForm().get(0).setValue("w");
+        ref.getTargetRef().setPath("/z");
+        assertEquals("[a, b%20c, d;x=1]", ref.getSegments().toString());
+        assertEquals("[a, b c, d;x=1]", ref.getSegments(true).toString());
+        assertEquals("v 1", ref.getQueryAsForm().getFirstValue("q"));
+        assertEquals(2, ref.getQueryAsForm().size());
+        assertEquals(ref.toString(), ref.getTargetRef().toString());
+
+        // Mutations invalidate the parsed components
+        ref.setPath("/e/f");
+        assertEquals("/e/f", ref.getPath());
+        assertEquals("f", ref.getLastSegment());
+        assertNull(ref.getMatrix());
+        assertEquals("[e, f]", ref.getSegments().toString());
+        ref.setQuery("s=t");
+        assertNull(ref.getQueryAsForm().getFirstValue("q"));
+        assertEquals("t", ref.getQueryAsForm().getFirstValue("s"));
+        ref.setHostDomain("example.org");
+        assertEquals("example.org", ref.getHostDomain());
+        assertEquals("http://user@example.org:8080/e/f?s=t#frag", ref
+                .getTargetRef().toString());
+
+        // Clones share the components but not their mutations
+        Reference clone = ref.clone();
+        clone.setPath("/g");
+        assertEquals("/e/f", ref.getPath());
+        assertEquals("/g", clone.getPath());
+
+        // The target of a relative reference follows its base reference
+        Reference base = new Reference("http://localhost/a/b/");
+        Reference relative = new Reference(base, "../c?d");
+        assertEquals("http://localhost/a/c?d", relative.getTargetRef()
+                .toString());
+        base.setPath("/x/y/z");
+        assertEquals("http://localhost/x/c?d", relative.getTargetRef()
+                .toString());
+        relative.setBaseRef("http://example.com/m/n/");
+        assertEquals("http://example.com/m/c?d", relative.getTargetRef()
+                .toString());
+    }
+
     public void testEmptyRef() {
         Reference reference = new Reference();
         reference.setAuthority("testAuthority"); // must not produce NPE
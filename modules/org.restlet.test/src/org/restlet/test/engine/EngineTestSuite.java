@@ -29,7 +29,10 @@ import junit.framework.TestSuite;
 
 import org.restlet.test.engine.connector.ConnectorsTestSuite;
 import org.restlet.test.engine.io.BioUtilsTestCase;
+import org.restlet.test.engine.io.BufferPoolTestCase;
+import org.restlet.test.engine.io.MultipartReaderTestCase;
 import org.restlet.test.engine.io.ReaderInputStreamTestCase;
+import org.restlet.test.engine.util.AttributeMapTestCase;
 import org.restlet.test.engine.util.Base64TestCase;
 
 /**
@@ -53,13 +56,23 @@ public class EngineTestSuite extends TestSuite {
         super("Engine package");
         addTestSuite(AlphaNumericComparatorTestCase.class);
         addTestSuite(AnnotationUtilsTestCase.class);
+        addTestSuite(AttributeMapTestCase.class);
         addTestSuite(Base64TestCase.class);
         addTestSuite(BioUtilsTestCase.class);
+        addTestSuite(BufferPoolTestCase.class);
         addTestSuite(CookiesTestCase.class);
         addTestSuite(ContentTypeTestCase.class);
+        addTestSuite(HeadCodecTestCase.class);
         addTestSuite(HeaderTestCase.class);
+        addTestSuite(HelperRegistryTestCase.class);
         addTestSuite(HttpCallTestCase.class);
         addTestSuite(ImmutableDateTestCase.class);
+        addTestSuite(IndexedHeaderSeriesTestCase.class);
+        addTestSuite(LatencyHistogramTestCase.class);
+        addTestSuite(LocalTagTestCase.class);
+        addTestSuite(MemberInvokerTestCase.class);
+        addTestSuite(MessageAllocationTestCase.class);
+        addTestSuite(MultipartReaderTestCase.class);
         addTestSuite(UnclosableInputStreamTestCase.class);
         addTestSuite(UnclosableOutputStreamTestCase.class);
         addTestSuite(PreferencesTestCase.class);
@@ -0,0 +1,188 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.restlet.data.Header;
+import org.restlet.engine.header.HeadCodec;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.test.RestletTestCase;
+import org.restlet.util.Series;
+
+/**
+ * Unit tests for the {@link HeadCodec} class.
+ * 
+ * @author Jerome Louvel
+ */
+public class HeadCodecTestCase extends RestletTestCase {
+
+    private static final String REQUEST = "POST /accounts/12345?x=1 HTTP/1.1\r\n"
+            + "Host: www.example.com:8182\r\n"
+            + "content-length: 5\r\n"
+            + "X-Custom:   custom value \r\n" + "\r\n" + "hello";
+
+    private static byte[] getBytes(String string) throws IOException {
+        return string.getBytes("ISO-8859-1");
+    }
+
+    private int countHeaders(ByteBuffer head) throws IOException {
+        int result = 0;
+
+        while (HeadCodec.readHeader(head) != null) {
+            result++;
+        }
+
+        return result;
+    }
+
+    public void testReadBuffer() throws IOException {
+        byte[] request = getBytes(REQUEST);
+        ByteBuffer partial = ByteBuffer.wrap(request, 0, 40);
+        assertEquals(-1, HeadCodec.getHeadLength(partial));
+        assertNull(HeadCodec.readHead(partial));
+        assertEquals(0, partial.position());
+
+        ByteBuffer buffer = ByteBuffer.wrap(request);
+        ByteBuffer head = HeadCodec.readHead(buffer);
+        assertEquals(request.length - 5, head.remaining());
+        assertEquals(request.length - 5, buffer.position());
+
+        // The buffer can be reused once the head is read
+        buffer.clear();
+        buffer.put(new byte[buffer.capacity()]);
+
+        String[] requestLine = HeadCodec.readStartLine(head);
+        assertEquals("POST", requestLine[0]);
+        assertEquals("/accounts/12345?x=1", requestLine[1]);
+        assertEquals("HTTP/1.1", requestLine[2]);
+
+        Header host = HeadCodec.readHeader(head);
+        assertSame(HeaderConstants.HEADER_HOST, host.getName());
+        assertEquals("www.example.com:8182", host.getValue());
+
+        Header length = HeadCodec.readHeader(head);
+        assertEquals("content-length", length.getName());
+        assertEquals("5", length.getValue());
+
+        Header custom = HeadCodec.readHeader(head);
+        assertEquals("X-Custom", custom.getName());
+        assertEquals("custom value ", custom.getValue());
+        custom.setValue("changed");
+        assertEquals("changed", custom.getValue());
+
+        assertNull(HeadCodec.readHeader(head));
+        assertFalse(head.hasRemaining());
+    }
+
+    public void testReadErrors() throws IOException {
+        try {
+            HeadCodec.readHead(new ByteArrayInputStream(
+                    getBytes("GET / HTTP/1.1\r\nHost: x\r\n")));
+            fail("The head should be incomplete");
+        } catch (IOException ioe) {
+            // Expected
+        }
+
+        ByteBuffer head = ByteBuffer
+                .wrap(getBytes("HTTP/1.1 200\r\nBroken\r\n\r\n"));
+        String[] statusLine = HeadCodec.readStartLine(head);
+        assertEquals("200", statusLine[1]);
+        assertEquals("", statusLine[2]);
+
+        try {
+            HeadCodec.readHeader(head);
+            fail("The header should be invalid");
+        } catch (IOException ioe) {
+            // Expected
+        }
+    }
+
+    public void testReadStream() throws IOException {
+        InputStream is = new ByteArrayInputStream(getBytes(REQUEST));
+        ByteBuffer head = HeadCodec.readHead(is);
+        assertEquals("HTTP/1.1", HeadCodec.readStartLine(head)[2]);
+        assertEquals(3, countHeaders(head));
+
+        // The entity is left in the stream
+        assertEquals('h', is.read());
+    }
+
+    public void testWrite() throws IOException {
+        Series<Header> headers = new Series<Header>(Header.class);
+        headers.add(HeaderConstants.HEADER_CONTENT_LENGTH, "12");
+        headers.add("X-Caf\u00e9", "cr\u00e8me \u20ac");
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        HeadCodec.writeResponseHead("HTTP/1.1", 200, "OK", headers, os);
+        assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 12\r\n"
+                + "X-Caf?: cr\u00e8me ?\r\n\r\n", os.toString("ISO-8859-1"));
+
+        os.reset();
+        HeadCodec.writeResponseHead("HTTP/1.0", 499, null, headers, os);
+        assertTrue(os.toString("ISO-8859-1").startsWith(
+                "HTTP/1.0 499 Status 499\r\n"));
+
+        os.reset();
+        HeadCodec.writeRequestHead("GET", "/", "HTTP/1.1", headers, os);
+        assertTrue(os.toString("ISO-8859-1").startsWith("GET / HTTP/1.1\r\n"));
+    }
+
+    public void testWriteLarge() throws IOException {
+        Series<Header> headers = new Series<Header>(Header.class);
+        StringBuilder value = new StringBuilder();
+
+        for (int i = 0; i < 10000; i++) {
+            value.append((char) ('a' + (i % 26)));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            headers.add("X-Header-" + i, "value " + i);
+        }
+
+        headers.add("X-Large", value.toString());
+        headers.add(HeaderConstants.HEADER_HOST, "localhost");
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        HeadCodec.writeResponseHead("HTTP/1.1", 404, "Not Found", headers, os);
+
+        ByteBuffer head = HeadCodec.readHead(new ByteArrayInputStream(os
+                .toByteArray()));
+        assertEquals("Not Found", HeadCodec.readStartLine(head)[2]);
+        Series<Header> read = new Series<Header>(Header.class);
+
+        for (Header header = HeadCodec.readHeader(head); header != null; header = HeadCodec
+                .readHeader(head)) {
+            read.add(header);
+        }
+
+        assertEquals(headers, read);
+    }
+
+}
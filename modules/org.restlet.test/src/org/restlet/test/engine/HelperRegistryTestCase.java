@@ -0,0 +1,159 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.restlet.Client;
+import org.restlet.data.ChallengeScheme;
+import org.restlet.data.Protocol;
+import org.restlet.engine.Engine;
+import org.restlet.engine.HelperRegistry;
+import org.restlet.engine.connector.ClientHelper;
+import org.restlet.engine.connector.ConnectorHelper;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the {@link HelperRegistry} class.
+ * 
+ * @author Jerome Louvel
+ */
+public class HelperRegistryTestCase extends RestletTestCase {
+
+    public static class TestClientHelper extends ClientHelper {
+
+        public static final AtomicInteger INSTANCES = new AtomicInteger();
+
+        public TestClientHelper(Client client) {
+            super(client);
+            INSTANCES.incrementAndGet();
+            getProtocols().add(TEST_PROTOCOL);
+        }
+    }
+
+    private static final Protocol TEST_PROTOCOL = new Protocol("registry",
+            "REGISTRY", "Registry test protocol", Protocol.UNKNOWN_PORT);
+
+    private static final String TEST_REGISTRY = "client "
+            + TestClientHelper.class.getName() + " protocols=REGISTRY\n"
+            + "# Comment\n\n"
+            + "authenticator org.restlet.engine.security.HttpBasicHelper"
+            + " scheme=HTTP_BASIC clientSide=true serverSide=true # Basic\n";
+
+    @Override
+    protected void tearDown() throws Exception {
+        Engine.register();
+        super.tearDown();
+    }
+
+    public void testGenerate() throws Exception {
+        File dir = new File(System.getProperty("java.io.tmpdir"),
+                "restlet-registry-" + System.nanoTime());
+        File descriptor = new File(dir, Engine.DESCRIPTOR_CLIENT_PATH);
+        descriptor.getParentFile().mkdirs();
+        FileWriter writer = new FileWriter(descriptor);
+        writer.write(TestClientHelper.class.getName() + " # Test\n");
+        writer.close();
+        File file = new File(dir, HelperRegistry.DEFAULT_PATH);
+
+        try {
+            HelperRegistry.main(new String[] { file.getPath(), dir.getPath() });
+            HelperRegistry registry = new HelperRegistry();
+            FileReader reader = new FileReader(file);
+            registry.read(reader);
+            reader.close();
+
+            assertEquals(1, registry.getEntries().size());
+            HelperRegistry.Entry entry = registry.getEntries().get(0);
+            assertEquals(HelperRegistry.CLIENT, entry.getCategory());
+            assertEquals(TestClientHelper.class.getName(), entry.getClassName());
+            assertEquals(1, entry.getProtocols().size());
+            assertEquals(TEST_PROTOCOL, entry.getProtocols().get(0));
+        } finally {
+            IoUtils.delete(dir, true);
+        }
+    }
+
+    public void testLazyInstantiation() throws Exception {
+        HelperRegistry registry = new HelperRegistry();
+        registry.read(new StringReader(TEST_REGISTRY));
+        Engine engine = new Engine(false);
+        engine.registerHelpers(registry);
+        assertSame(registry, engine.getHelperRegistry());
+        TestClientHelper.INSTANCES.set(0);
+
+        // Only the matching helper class is instantiated
+        Client client = new Client(TEST_PROTOCOL);
+        assertEquals(1, TestClientHelper.INSTANCES.get());
+        assertTrue(engine.createHelper(client, null) instanceof TestClientHelper);
+        assertEquals(2, TestClientHelper.INSTANCES.get());
+
+        // The registered helpers are instantiated when first listed
+        List<ConnectorHelper<Client>> clients = engine.getRegisteredClients();
+        assertEquals(3, TestClientHelper.INSTANCES.get());
+        assertEquals(1, clients.size());
+        assertTrue(clients.get(0) instanceof TestClientHelper);
+        engine.getRegisteredClients();
+        assertEquals(3, TestClientHelper.INSTANCES.get());
+
+        assertEquals(1, engine.getRegisteredAuthenticators().size());
+        assertNotNull(engine.findHelper(ChallengeScheme.HTTP_BASIC, true, true));
+    }
+
+    public void testReadWrite() throws Exception {
+        HelperRegistry registry = new HelperRegistry();
+        registry.read(new StringReader(TEST_REGISTRY));
+        assertEquals(2, registry.getEntries().size());
+        assertEquals(1, registry.getEntries(HelperRegistry.CLIENT).size());
+
+        HelperRegistry.Entry entry = registry.getEntries(
+                HelperRegistry.AUTHENTICATOR).get(0);
+        assertEquals("org.restlet.engine.security.HttpBasicHelper",
+                entry.getClassName());
+        assertEquals("HTTP_BASIC", entry.getChallengeScheme());
+        assertTrue(entry.isClientSide());
+        assertTrue(entry.isServerSide());
+        assertTrue(entry.getProtocols().isEmpty());
+
+        StringWriter writer = new StringWriter();
+        registry.write(writer);
+        HelperRegistry copy = new HelperRegistry();
+        copy.read(new StringReader(writer.toString()));
+        assertEquals(registry.getEntries().size(), copy.getEntries().size());
+
+        for (int i = 0; i < registry.getEntries().size(); i++) {
+            assertEquals(registry.getEntries().get(i).toString(), copy
+                    .getEntries().get(i).toString());
+        }
+    }
+
+}
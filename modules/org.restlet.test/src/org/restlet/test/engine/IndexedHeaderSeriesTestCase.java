@@ -0,0 +1,102 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.test.engine;
+
+import java.util.Iterator;
+
+import org.restlet.data.Header;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.header.IndexedHeaderSeries;
+import org.restlet.test.RestletTestCase;
+import org.restlet.util.Series;
+
+/**
+ * Unit tests for the {@link IndexedHeaderSeries} class.
+ * 
+ * @author Jerome Louvel
+ */
+public class IndexedHeaderSeriesTestCase extends RestletTestCase {
+
+    private Series<Header> createSeries() {
+        Series<Header> result = new IndexedHeaderSeries();
+        result.add("Host", "localhost");
+        result.add("accept", "text/html");
+        result.add("X-Custom", "one");
+        result.add("ACCEPT", "application/xml");
+        result.add("x-custom", "two");
+        return result;
+    }
+
+    public void testKnownIds() {
+        assertEquals(IndexedHeaderSeries.getId("content-length"),
+                IndexedHeaderSeries.getId(HeaderConstants.HEADER_CONTENT_LENGTH));
+        assertTrue(IndexedHeaderSeries.getId("Content-Type") >= 0);
+        assertEquals(-1, IndexedHeaderSeries.getId("X-Custom"));
+    }
+
+    public void testLookups() {
+        Series<Header> headers = createSeries();
+
+        assertEquals("localhost", headers.getFirstValue("HOST", true));
+        assertNull(headers.getFirstValue("HOST", false));
+        assertEquals("text/html", headers.getFirstValue("Accept", true));
+        assertEquals("application/xml", headers.getFirstValue("ACCEPT"));
+        assertEquals("one", headers.getFirstValue("x-CUSTOM", true));
+        assertEquals("two", headers.getFirstValue("x-custom"));
+        assertNull(headers.getFirstValue("X-Other", true));
+        assertEquals("text/html,application/xml", headers.getValues("Accept"));
+        assertEquals("one|two", headers.getValues("X-Custom", "|", true));
+        assertEquals(2, headers.subList("accept", true).size());
+        assertEquals(1, headers.subList("accept", false).size());
+    }
+
+    public void testModifications() {
+        Series<Header> headers = createSeries();
+        assertEquals("text/html", headers.getFirstValue("Accept", true));
+
+        headers.removeFirst("accept");
+        assertEquals("application/xml", headers.getFirstValue("Accept", true));
+
+        headers.add(0, new Header("Accept", "text/plain"));
+        assertEquals("text/plain", headers.getFirstValue("Accept", true));
+
+        for (Iterator<Header> iter = headers.iterator(); iter.hasNext();) {
+            if ("Host".equals(iter.next().getName())) {
+                iter.remove();
+            }
+        }
+
+        assertNull(headers.getFirstValue("Host", true));
+
+        headers.set("X-Custom", "three", true);
+        assertEquals("three", headers.getValues("x-custom"));
+
+        headers.subList(0, 1).clear();
+        assertEquals("application/xml", headers.getFirstValue("Accept", true));
+
+        headers.clear();
+        assertNull(headers.getFirstValue("Accept", true));
+    }
+
+}
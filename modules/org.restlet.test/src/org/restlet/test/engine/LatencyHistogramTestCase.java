@@ -0,0 +1,106 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.restlet.engine.metrics.LatencyHistogram;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the {@link LatencyHistogram} class.
+ * 
+ * @author Jerome Louvel
+ */
+public class LatencyHistogramTestCase extends RestletTestCase {
+
+    public void testConcurrentRecording() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        histogram.record(1000000);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40000, histogram.getCount());
+        assertEquals(40000000L, histogram.getTotal());
+        assertEquals(1000, histogram.getMax());
+    }
+
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+
+        // Small values are exact
+        for (int i = 1; i <= 50; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        assertEquals(50, histogram.getCount());
+        assertEquals(25, histogram.getValueAtPercentile(50));
+        assertEquals(50, histogram.getValueAtPercentile(100));
+        assertEquals(1, histogram.getValueAtPercentile(0));
+        assertEquals(25.5, histogram.getMean(), 0.001);
+
+        // Larger values are bounded by the relative precision
+        Random random = new Random(42);
+        long[] values = new long[100000];
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1 + (long) (Math.exp(random.nextDouble() * 20));
+            histogram.record(values[i] * 1000);
+        }
+
+        Arrays.sort(values);
+
+        for (double percentile : new double[] { 10, 50, 90, 99, 99.9 }) {
+            long expected = values[(int) Math.ceil(percentile / 100
+                    * values.length) - 1];
+            long actual = histogram.getValueAtPercentile(percentile);
+            assertTrue(actual >= expected);
+            assertTrue(actual <= expected + expected / 16 + 1);
+        }
+
+        assertEquals(values[values.length - 1], histogram.getMax());
+        assertEquals(values[values.length - 1],
+                histogram.getValueAtPercentile(100));
+    }
+
+}
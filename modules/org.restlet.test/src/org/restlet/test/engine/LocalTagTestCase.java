@@ -0,0 +1,195 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.restlet.Client;
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.LocalReference;
+import org.restlet.data.Method;
+import org.restlet.data.Protocol;
+import org.restlet.data.Tag;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the entity tags of the local connectors.
+ * 
+ * @author Jerome Louvel
+ */
+public class LocalTagTestCase extends RestletTestCase {
+
+    private File testDir;
+
+    private File testFile;
+
+    private Client createClient(String tagMode) throws Exception {
+        Client result = new Client(new Context(), Protocol.FILE);
+        result.getContext().getParameters().add("tagMode", tagMode);
+        result.start();
+        return result;
+    }
+
+    private Tag getTag(Client client) throws Exception {
+        Response response = client.handle(new Request(Method.GET,
+                LocalReference.createFileReference(testFile)));
+        assertTrue(response.getStatus().isSuccess());
+        Tag result = response.getEntity().getTag();
+        response.getEntity().release();
+        return result;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        testDir = new File(System.getProperty("java.io.tmpdir"),
+                "LocalTagTestCase-" + System.currentTimeMillis());
+        testDir.mkdirs();
+        testFile = new File(testDir, "test.txt");
+        write("first content");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        IoUtils.delete(testDir, true);
+        super.tearDown();
+    }
+
+    public void testClapStrongTag() throws Exception {
+        Client client = new Client(new Context(), Protocol.CLAP);
+        client.getContext().getParameters().add("tagMode", "strong");
+        client.start();
+        String uri = "clap://class/org/restlet/test/engine/LocalTagTestCase.class";
+        Response response = client.handle(new Request(Method.GET, uri));
+        assertTrue(response.getStatus().isSuccess());
+        Tag first = response.getEntity().getTag();
+        response.getEntity().release();
+        assertNotNull(first);
+        assertFalse(first.isWeak());
+
+        response = client.handle(new Request(Method.GET, uri));
+        assertEquals(first, response.getEntity().getTag());
+        response.getEntity().release();
+        client.stop();
+    }
+
+    public void testClapJarTags() throws Exception {
+        File jarFile = new File(testDir, "test.jar");
+        JarOutputStream jos = new JarOutputStream(new FileOutputStream(
+                jarFile));
+        jos.putNextEntry(new JarEntry("tagged.txt"));
+        jos.write("jar content".getBytes());
+        jos.closeEntry();
+        jos.close();
+        URLClassLoader classLoader = new URLClassLoader(new URL[] { jarFile
+                .toURI().toURL() }, null);
+        File fds = new File("/proc/self/fd");
+
+        for (String tagMode : new String[] { "weak", "strong" }) {
+            Client client = new Client(new Context(), Protocol.CLAP);
+            client.getContext().getParameters().add("tagMode", tagMode);
+            client.start();
+            Tag first = null;
+            int opened = fds.isDirectory() ? fds.list().length : 0;
+
+            // Reading the tags doesn't leak connections
+            for (int i = 0; i < 50; i++) {
+                Request request = new Request(Method.GET,
+                        "clap://class/tagged.txt");
+                request.getAttributes().put("org.restlet.clap.classLoader",
+                        classLoader);
+                Response response = client.handle(request);
+                assertTrue(response.getStatus().isSuccess());
+                Tag tag = response.getEntity().getTag();
+                response.getEntity().release();
+                assertNotNull(tag);
+                assertEquals("weak".equals(tagMode), tag.isWeak());
+
+                if (first == null) {
+                    first = tag;
+                } else {
+                    assertEquals(first, tag);
+                }
+            }
+
+            if (fds.isDirectory()) {
+                assertTrue(fds.list().length < opened + 10);
+            }
+
+            client.stop();
+        }
+
+        classLoader.close();
+    }
+
+    public void testNoTag() throws Exception {
+        Client client = createClient("none");
+        assertNull(getTag(client));
+        client.stop();
+    }
+
+    public void testStrongTag() throws Exception {
+        Client client = createClient("strong");
+        Tag first = getTag(client);
+        assertNotNull(first);
+        assertFalse(first.isWeak());
+        assertEquals(first, getTag(client));
+
+        write("second content");
+        testFile.setLastModified(testFile.lastModified() + 2000);
+        Tag second = getTag(client);
+        assertNotNull(second);
+        assertFalse(first.equals(second));
+        client.stop();
+    }
+
+    public void testWeakTag() throws Exception {
+        Client client = createClient("weak");
+        Tag first = getTag(client);
+        assertNotNull(first);
+        assertTrue(first.isWeak());
+
+        write("other content, longer");
+        Tag second = getTag(client);
+        assertFalse(first.equals(second));
+        client.stop();
+    }
+
+    private void write(String content) throws Exception {
+        FileWriter writer = new FileWriter(testFile);
+        writer.write(content);
+        writer.close();
+    }
+
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+
+import org.restlet.engine.util.MemberInvoker;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the {@link MemberInvoker} class.
+ * 
+ * @author Jerome Louvel
+ */
+public class MemberInvokerTestCase extends RestletTestCase {
+
+    public static class Target {
+
+        public static String join(String a, String b) {
+            return a + b;
+        }
+
+        private String value;
+
+        public Target() {
+            this("default");
+        }
+
+        public Target(String value) {
+            this.value = value;
+        }
+
+        public void fail() {
+            throw new IllegalStateException("failure");
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public int length(int offset) {
+            return value.length() + offset;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+    }
+
+    public void testConstructor() throws Exception {
+        MemberInvoker invoker = new MemberInvoker(
+                Target.class.getConstructor(String.class));
+        Target target = (Target) invoker.newInstance("created");
+        assertEquals("created", target.getValue());
+
+        invoker = new MemberInvoker(Target.class.getConstructor());
+        assertEquals("default", ((Target) invoker.newInstance()).getValue());
+    }
+
+    public void testException() throws Exception {
+        MemberInvoker invoker = new MemberInvoker(
+                Target.class.getMethod("fail"));
+
+        try {
+            invoker.invokeMethod(new Target());
+            fail("An InvocationTargetException was expected");
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        try {
+            invoker.invokeMethod(new Target(), "unexpected");
+            fail("An IllegalArgumentException was expected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    public void testField() throws Exception {
+        Field field = Target.class.getDeclaredField("value");
+        field.setAccessible(true);
+        MemberInvoker invoker = new MemberInvoker(field);
+        Target target = new Target();
+        invoker.setValue(target, "injected");
+        assertEquals("injected", target.getValue());
+    }
+
+    public void testMethods() throws Exception {
+        Target target = new Target("abc");
+        MemberInvoker getter = new MemberInvoker(
+                Target.class.getMethod("getValue"));
+        MemberInvoker setter = new MemberInvoker(Target.class.getMethod(
+                "setValue", String.class));
+        MemberInvoker length = new MemberInvoker(Target.class.getMethod(
+                "length", int.class));
+        MemberInvoker join = new MemberInvoker(Target.class.getMethod("join",
+                String.class, String.class));
+
+        assertEquals("abc", getter.invokeMethod(target));
+        assertNull(setter.invokeMethod(target, "abcd"));
+        assertEquals("abcd", getter.invokeMethod(target, (Object[]) null));
+        assertEquals(Integer.valueOf(6), length.invokeMethod(target, 2));
+        assertEquals("ab", join.invokeMethod(null, "a", "b"));
+    }
+
+}
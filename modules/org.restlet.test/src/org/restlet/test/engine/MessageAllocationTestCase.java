@@ -0,0 +1,189 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.restlet.Application;
+import org.restlet.Component;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.engine.Engine;
+import org.restlet.resource.Get;
+import org.restlet.resource.ServerResource;
+import org.restlet.routing.Router;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Pins the number of bytes allocated per request for a baseline routing
+ * scenario: an in-VM GET crossing a component, an application with a few
+ * routes and an annotated resource. The test is skipped when the JVM can't
+ * measure the allocations of a thread.
+ * 
+ * @author Jerome Louvel
+ */
+public class MessageAllocationTestCase extends RestletTestCase {
+
+    public static class ItemServerResource extends ServerResource {
+        @Get("txt")
+        public String represent() {
+            return "Item " + getAttribute("id");
+        }
+    }
+
+    /** The maximum number of bytes allocated by a copied request. */
+    private static final long COPY_LIMIT = 768;
+
+    /** The maximum number of bytes allocated by a routed GET request. */
+    private static final long GET_LIMIT = 8 * 1024;
+
+    private static final int ITERATIONS = 2000;
+
+    private static final String URI = "http://localhost/app/items/12345";
+
+    private static final int WARMUP = 20000;
+
+    private Component component;
+
+    private boolean leanMessages;
+
+    /**
+     * Returns the number of bytes allocated so far by the current thread.
+     * 
+     * @return The number of bytes allocated or -1 if unsupported.
+     */
+    private long getAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+
+            if (sunThreads.isThreadAllocatedMemorySupported()
+                    && sunThreads.isThreadAllocatedMemoryEnabled()) {
+                return sunThreads.getThreadAllocatedBytes(Thread
+                        .currentThread().getId());
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the number of bytes allocated per GET request.
+     * 
+     * @return The number of bytes allocated per GET request.
+     */
+    private long measureGet() {
+        for (int i = 0; i < WARMUP; i++) {
+            this.component.handle(new Request(Method.GET, URI));
+        }
+
+        long start = getAllocatedBytes();
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            this.component.handle(new Request(Method.GET, URI));
+        }
+
+        return (getAllocatedBytes() - start) / ITERATIONS;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.leanMessages = Engine.isLeanMessages();
+        this.component = new Component();
+        this.component.getLogService().setEnabled(false);
+        this.component.getDefaultHost().attach("/app", new Application() {
+            @Override
+            public Restlet createInboundRoot() {
+                Router router = new Router(getContext());
+
+                for (int i = 0; i < 10; i++) {
+                    router.attach("/resources" + i + "/{id}",
+                            ItemServerResource.class);
+                }
+
+                router.attach("/items/{id}", ItemServerResource.class);
+                return router;
+            }
+        });
+        this.component.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.component.stop();
+        this.component = null;
+        Engine.setLeanMessages(this.leanMessages);
+        super.tearDown();
+    }
+
+    public void testCopy() {
+        if (getAllocatedBytes() < 0) {
+            return;
+        }
+
+        Request source = new Request(Method.GET, URI);
+
+        for (int i = 0; i < WARMUP; i++) {
+            new Request(source);
+        }
+
+        long start = getAllocatedBytes();
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            new Request(source);
+        }
+
+        long bytes = (getAllocatedBytes() - start) / ITERATIONS;
+        assertTrue("Copied request allocated " + bytes + " bytes",
+                bytes <= COPY_LIMIT);
+    }
+
+    public void testGet() {
+        if (getAllocatedBytes() < 0) {
+            return;
+        }
+
+        Response response = this.component.handle(new Request(Method.GET,
+                URI));
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+
+        Engine.setLeanMessages(false);
+        long bytes = measureGet();
+        assertTrue("GET request allocated " + bytes + " bytes",
+                bytes <= GET_LIMIT);
+
+        Engine.setLeanMessages(true);
+        long leanBytes = measureGet();
+        assertTrue("Lean GET request allocated " + leanBytes + " bytes",
+                leanBytes <= GET_LIMIT);
+    }
+
+}
@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.restlet.data.ClientInfo;
 import org.restlet.data.MediaType;
 import org.restlet.data.Preference;
 import org.restlet.engine.header.PreferenceReader;
@@ -69,6 +70,52 @@ public class PreferencesTestCase extends RestletTestCase {
         }
     }
 
+    /**
+     * Tests that the parameters of the cached preferences can't be altered
+     * through the copies given to a request.
+     */
+    public void testCachedParameters() {
+        String header = "text/plain, application/xml;q=0.9;ext=first";
+        ClientInfo first = new ClientInfo();
+        PreferenceReader.addMediaTypes(header, first);
+        first.getAcceptedMediaTypes().get(0).getParameters()
+                .add("ext", "added");
+        first.getAcceptedMediaTypes().get(1).getParameters().get(0)
+                .setValue("changed");
+
+        ClientInfo second = new ClientInfo();
+        PreferenceReader.addMediaTypes(header, second);
+        assertTrue(second.getAcceptedMediaTypes().get(0).getParameters()
+                .isEmpty());
+        assertEquals("first", second.getAcceptedMediaTypes().get(1)
+                .getParameters().getFirstValue("ext"));
+        assertNotSame(first.getAcceptedMediaTypes().get(0).getParameters(),
+                second.getAcceptedMediaTypes().get(0).getParameters());
+    }
+
+    /**
+     * Tests that the cached parsing of preference headers gives distinct
+     * copies of the preferences.
+     */
+    public void testCachedParsing() {
+        String header = "text/html;level=1, application/xml;q=0.9, */*;q=0.5";
+        ClientInfo first = new ClientInfo();
+        ClientInfo second = new ClientInfo();
+        PreferenceReader.addMediaTypes(header, first);
+        PreferenceReader.addMediaTypes(header, second);
+
+        assertEquals(3, first.getAcceptedMediaTypes().size());
+        assertEquals(PreferenceWriter.write(first.getAcceptedMediaTypes()),
+                PreferenceWriter.write(second.getAcceptedMediaTypes()));
+
+        first.getAcceptedMediaTypes().get(1).setQuality(0.1F);
+        assertNotSame(first.getAcceptedMediaTypes().get(1), second
+                .getAcceptedMediaTypes().get(1));
+        assertEquals(0.9F, second.getAcceptedMediaTypes().get(1).getQuality());
+        assertEquals(MediaType.APPLICATION_XML, second.getAcceptedMediaTypes()
+                .get(1).getMetadata());
+    }
+
     /**
      * Tests the preferences parsing.
      */
@@ -56,6 +56,7 @@ public class ConnectorsTestSuite extends TestSuite {
         addTestSuite(GetQueryParamTestCase.class);
         addTestSuite(PostPutTestCase.class);
         addTestSuite(RemoteClientAddressTestCase.class);
+        addTestSuite(SpdyTestCase.class);
         addTestSuite(SslClientContextGetTestCase.class);
         addTestSuite(SslGetTestCase.class);
         // [enddef]
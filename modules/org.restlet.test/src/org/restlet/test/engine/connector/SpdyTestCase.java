@@ -0,0 +1,251 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.connector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.restlet.Application;
+import org.restlet.Client;
+import org.restlet.Component;
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.Server;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Protocol;
+import org.restlet.data.Status;
+import org.restlet.engine.Engine;
+import org.restlet.resource.Get;
+import org.restlet.resource.Post;
+import org.restlet.resource.ServerResource;
+import org.restlet.routing.Router;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the SPDY support of the Jetty connectors, spoken with prior
+ * knowledge. Also compares the throughput of calls multiplexed over a single
+ * SPDY connection with the one of HTTP/1.1 keep-alive connection pools.
+ * 
+ * @author Jerome Louvel
+ */
+public class SpdyTestCase extends RestletTestCase {
+
+    public static class ItemResource extends ServerResource {
+        @Post("txt")
+        public String echo(String value) {
+            return value;
+        }
+
+        @Get("txt")
+        public String represent() {
+            return ITEM;
+        }
+    }
+
+    private static final int CALLS = 2000;
+
+    private static final String ITEM;
+
+    private static final int THREADS = 16;
+
+    static {
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < 64; i++) {
+            sb.append("0123456789abcdef");
+        }
+
+        ITEM = sb.toString();
+    }
+
+    private Component component;
+
+    private String http1Uri;
+
+    private String spdyUri;
+
+    private Client createClient(boolean spdy) throws Exception {
+        Client result = new Client(new Context(), Protocol.HTTP);
+
+        if (spdy) {
+            result.getContext().getParameters().add("spdy.version", "3");
+        } else {
+            result.getContext().getParameters()
+                    .add("maxConnectionsPerDestination", "8");
+        }
+
+        result.start();
+        return result;
+    }
+
+    private long run(final Client client, final String uri, int calls)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+        long start = System.nanoTime();
+
+        try {
+            for (int i = 0; i < calls; i++) {
+                results.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        Response response = client.handle(new Request(
+                                Method.GET, uri));
+                        assertEquals(Status.SUCCESS_OK, response.getStatus());
+                        assertEquals(ITEM, response.getEntity().getText());
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.component = new Component();
+        this.component.getLogService().setEnabled(false);
+        Server http1 = this.component.getServers().add(Protocol.HTTP, 0);
+        Server spdy = this.component.getServers().add(Protocol.HTTP, 0);
+        spdy.getContext().getParameters().add("spdy.version", "3");
+        spdy.getContext().getParameters().add("spdy.priorKnowledge", "true");
+        this.component.getDefaultHost().attach(new Application() {
+            @Override
+            public Restlet createInboundRoot() {
+                Router router = new Router(getContext());
+                router.attach("/item", ItemResource.class);
+                return router;
+            }
+        });
+        this.component.start();
+        this.http1Uri = "http://localhost:" + http1.getEphemeralPort()
+                + "/item";
+        this.spdyUri = "http://localhost:" + spdy.getEphemeralPort() + "/item";
+    }
+
+    @Override
+    protected void setUpEngine() {
+        super.setUpEngine();
+        Engine.getInstance().getRegisteredServers()
+                .add(0, new org.restlet.ext.jetty.HttpServerHelper(null));
+        Engine.getInstance().getRegisteredClients()
+                .add(0, new org.restlet.ext.jetty.HttpClientHelper(null));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.component.stop();
+        this.component = null;
+        super.tearDown();
+    }
+
+    public void testGet() throws Exception {
+        Client client = createClient(true);
+
+        try {
+            Response response = client.handle(new Request(Method.GET,
+                    this.spdyUri));
+            assertEquals(Status.SUCCESS_OK, response.getStatus());
+            assertEquals(MediaType.TEXT_PLAIN, response.getEntity()
+                    .getMediaType());
+            assertEquals(ITEM, response.getEntity().getText());
+        } finally {
+            client.stop();
+        }
+    }
+
+    public void testMaxConcurrentStreams() throws Exception {
+        Client client = new Client(new Context(), Protocol.HTTP);
+        client.getContext().getParameters().add("spdy.version", "3");
+        client.getContext().getParameters()
+                .add("spdy.maxConcurrentStreams", "2");
+        client.start();
+
+        try {
+            run(client, this.spdyUri, 100);
+        } finally {
+            client.stop();
+        }
+    }
+
+    public void testPost() throws Exception {
+        Client client = createClient(true);
+
+        try {
+            // Larger than the initial flow-control window
+            StringBuilder sb = new StringBuilder();
+
+            for (int i = 0; i < 128; i++) {
+                sb.append(ITEM);
+            }
+
+            Request request = new Request(Method.POST, this.spdyUri);
+            request.setEntity(sb.toString(), MediaType.TEXT_PLAIN);
+            Response response = client.handle(request);
+            assertEquals(Status.SUCCESS_OK, response.getStatus());
+            assertEquals(sb.toString(), response.getEntity().getText());
+        } finally {
+            client.stop();
+        }
+    }
+
+    public void testThroughput() throws Exception {
+        Client http1 = createClient(false);
+        Client spdy = createClient(true);
+
+        try {
+            // Warm up
+            run(http1, this.http1Uri, CALLS / 4);
+            run(spdy, this.spdyUri, CALLS / 4);
+
+            long http1Time = run(http1, this.http1Uri, CALLS);
+            long spdyTime = run(spdy, this.spdyUri, CALLS);
+
+            Context.getCurrentLogger().info(
+                    "Throughput with " + THREADS + " threads, HTTP/1.1 pool: "
+                            + (CALLS * 1000000000L / http1Time)
+                            + " calls/s, multiplexed SPDY: "
+                            + (CALLS * 1000000000L / spdyTime) + " calls/s");
+        } finally {
+            http1.stop();
+            spdy.stop();
+        }
+    }
+
+}
@@ -25,10 +25,17 @@
 package org.restlet.test.engine.io;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
 
 import org.restlet.data.CharacterSet;
 import org.restlet.data.MediaType;
@@ -43,6 +50,44 @@ import org.restlet.test.RestletTestCase;
  */
 public class BioUtilsTestCase extends RestletTestCase {
 
+    public void testCopyChannels() throws IOException {
+        byte[] content = new byte[100000];
+
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+
+        // Stream based channels
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        IoUtils.copy(Channels.newChannel(new ByteArrayInputStream(content)),
+                Channels.newChannel(baos));
+        assertTrue(Arrays.equals(content, baos.toByteArray()));
+
+        // To and from file channels
+        File file = File.createTempFile("restlet-copy", ".tmp");
+
+        try {
+            FileOutputStream fos = new FileOutputStream(file);
+            IoUtils.copy(
+                    Channels.newChannel(new ByteArrayInputStream(content)),
+                    fos.getChannel());
+            fos.close();
+            assertEquals(content.length, file.length());
+
+            FileInputStream fis = new FileInputStream(file);
+            fis.skip(10);
+            baos = new ByteArrayOutputStream();
+            ReadableByteChannel channel = fis.getChannel();
+            IoUtils.copy(channel, Channels.newChannel(baos));
+            assertFalse(channel.isOpen());
+            assertTrue(Arrays.equals(
+                    Arrays.copyOfRange(content, 10, content.length),
+                    baos.toByteArray()));
+        } finally {
+            file.delete();
+        }
+    }
+
     public void testGetStream() throws IOException {
         StringWriter writer = new StringWriter();
         OutputStream out = IoUtils.getStream(writer, CharacterSet.UTF_8);
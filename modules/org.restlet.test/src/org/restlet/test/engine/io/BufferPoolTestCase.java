@@ -0,0 +1,110 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.io;
+
+import java.nio.ByteBuffer;
+
+import org.restlet.engine.io.BufferPool;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the {@link BufferPool} class.
+ * 
+ * @author Jerome Louvel
+ */
+public class BufferPoolTestCase extends RestletTestCase {
+
+    public void testArrays() {
+        BufferPool pool = new BufferPool(512, 4096, 2, 1);
+        assertEquals(512, pool.getMinCapacity());
+        assertEquals(4096, pool.getMaxCapacity());
+        assertEquals(512, pool.acquireArray(1).length);
+        assertEquals(1024, pool.acquireArray(513).length);
+        assertEquals(4096, pool.acquireArray(4096).length);
+        assertEquals(4097, pool.acquireArray(4097).length);
+
+        // Released arrays are reused, first from the thread cache then from
+        // the shared pool
+        byte[] a = pool.acquireArray(2048);
+        byte[] b = pool.acquireArray(2048);
+        pool.release(a);
+        pool.release(b);
+        assertSame(a, pool.acquireArray(1500));
+        assertSame(b, pool.acquireArray(2048));
+        assertNotSame(a, pool.acquireArray(2048));
+
+        // Arrays outside of the size classes are ignored
+        pool.release(new byte[1000]);
+        pool.release(new byte[8192]);
+        pool.release((byte[]) null);
+        assertEquals(1024, pool.acquireArray(1000).length);
+    }
+
+    public void testBuffers() {
+        BufferPool pool = new BufferPool(512, 4096, 2, 1);
+        ByteBuffer direct = pool.acquireBuffer(600, true);
+        assertTrue(direct.isDirect());
+        assertEquals(1024, direct.capacity());
+        direct.put((byte) 1).flip();
+        pool.release(direct);
+
+        ByteBuffer reused = pool.acquireBuffer(1024, true);
+        assertSame(direct, reused);
+        assertEquals(0, reused.position());
+        assertEquals(1024, reused.limit());
+
+        ByteBuffer heap = pool.acquireBuffer(1024, false);
+        assertFalse(heap.isDirect());
+        byte[] array = heap.array();
+        pool.release(heap);
+        assertSame(array, pool.acquireArray(1024));
+
+        // Slices don't give back their backing array
+        byte[] sliced = pool.acquireArray(1024);
+        pool.release(ByteBuffer.wrap(sliced, 1, 512).slice());
+        assertNotSame(sliced, pool.acquireArray(1024));
+    }
+
+    public void testSharedPool() throws Exception {
+        final BufferPool pool = new BufferPool(512, 4096, 2, 0);
+        final byte[][] released = new byte[1][];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                released[0] = pool.acquireArray(512);
+                pool.release(released[0]);
+            }
+        };
+        thread.start();
+        thread.join();
+
+        // Without thread cache, arrays are exchanged through the shared pool
+        assertSame(released[0], pool.acquireArray(512));
+        pool.release(released[0]);
+        pool.clear();
+        assertNotSame(released[0], pool.acquireArray(512));
+    }
+
+}
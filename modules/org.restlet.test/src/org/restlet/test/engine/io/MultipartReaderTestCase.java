@@ -0,0 +1,209 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.test.engine.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.restlet.data.MediaType;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.engine.io.MultipartReader;
+import org.restlet.engine.io.PartRepresentation;
+import org.restlet.representation.InputRepresentation;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the {@link MultipartReader} class.
+ * 
+ * @author Jerome Louvel
+ */
+public class MultipartReaderTestCase extends RestletTestCase {
+
+    /** Input stream returning a single byte per read. */
+    private static class TrickleInputStream extends ByteArrayInputStream {
+        public TrickleInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+
+    private static final String FORM = "preamble\r\n"
+            + "--AaB03x\r\n"
+            + "Content-Disposition: form-data; name=\"field\"\r\n"
+            + "\r\n"
+            + "value\r\n--AaB03\r\n"
+            + "--AaB03x  \r\n"
+            + "Content-Disposition: form-data; name=\"file\"; filename=\"file.txt\"\r\n"
+            + "Content-Type: text/plain\r\n"
+            + "\r\n"
+            + "line 1\r\nline 2\r\n"
+            + "--AaB03x--\r\n" + "epilogue";
+
+    private MultipartReader createReader(String multipart) throws IOException {
+        InputRepresentation rep = new InputRepresentation(
+                new ByteArrayInputStream(multipart.getBytes("ISO-8859-1")),
+                new MediaType("multipart/form-data; boundary=AaB03x"));
+        return new MultipartReader(rep);
+    }
+
+    private byte[] createMultipart(byte[] content) throws IOException {
+        byte[] head = ("--AaB03x\r\nContent-Type: application/octet-stream\r\n\r\n")
+                .getBytes("ISO-8859-1");
+        byte[] tail = "\r\n--AaB03x--\r\n".getBytes("ISO-8859-1");
+        byte[] result = new byte[head.length + content.length + tail.length];
+        System.arraycopy(head, 0, result, 0, head.length);
+        System.arraycopy(content, 0, result, head.length, content.length);
+        System.arraycopy(tail, 0, result, head.length + content.length,
+                tail.length);
+        return result;
+    }
+
+    public void testLargePart() throws IOException {
+        byte[] content = new byte[1024 * 1024];
+
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) ((i % 7 == 0) ? '\r' : i);
+        }
+
+        MultipartReader reader = new MultipartReader(new ByteArrayInputStream(
+                createMultipart(content)), "AaB03x");
+        PartRepresentation part = reader.readPart();
+        assertEquals(MediaType.APPLICATION_OCTET_STREAM, part.getMediaType());
+
+        InputStream in = part.getStream();
+        byte[] read = new byte[content.length];
+        int offset = 0;
+        int count = in.read(read, offset, read.length - offset);
+
+        while (count != -1 && offset < read.length) {
+            offset += count;
+            count = in.read(read, offset, read.length - offset);
+        }
+
+        assertEquals(content.length, offset);
+        assertEquals(-1, in.read());
+        assertTrue(Arrays.equals(content, read));
+        assertNull(reader.readPart());
+    }
+
+    public void testMaxPartSize() throws IOException {
+        MultipartReader reader = new MultipartReader(new ByteArrayInputStream(
+                createMultipart(new byte[100])), "AaB03x");
+        reader.setMaxPartSize(99);
+
+        try {
+            IoUtils.exhaust(reader.readPart().getStream());
+            fail("The maximum part size should have been exceeded");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    public void testMaxTotalSize() throws IOException {
+        MultipartReader reader = createReader(FORM);
+        reader.setMaxTotalSize(100);
+
+        try {
+            while (reader.readPart() != null) {
+            }
+            fail("The maximum total size should have been exceeded");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    public void testParts() throws IOException {
+        MultipartReader reader = new MultipartReader(new TrickleInputStream(
+                FORM.getBytes("ISO-8859-1")), "AaB03x");
+
+        PartRepresentation part = reader.readPart();
+        assertEquals("field", part.getName());
+        assertNull(part.getFilename());
+        assertEquals("value\r\n--AaB03", part.getText());
+
+        part = reader.readPart();
+        assertEquals("file", part.getName());
+        assertEquals("file.txt", part.getFilename());
+        assertEquals(MediaType.TEXT_PLAIN, part.getMediaType());
+        assertEquals("text/plain", part.getHeaders().getFirstValue(
+                "Content-Type", true));
+        assertEquals("line 1\r\nline 2", part.getText());
+
+        assertNull(reader.readPart());
+        assertNull(reader.readPart());
+    }
+
+    public void testSkippedParts() throws IOException {
+        MultipartReader reader = createReader(FORM);
+        PartRepresentation field = reader.readPart();
+        PartRepresentation file = reader.readPart();
+
+        assertEquals("file", file.getName());
+        assertEquals(-1, field.getStream().read());
+        assertEquals("line 1\r\nline 2", file.getText());
+        assertNull(reader.readPart());
+    }
+
+    public void testSpill() throws IOException {
+        MultipartReader reader = createReader(FORM.replace("value\r\n--AaB03",
+                "value"));
+        reader.setSpillThreshold(10);
+
+        PartRepresentation field = reader.readPart();
+        PartRepresentation file = reader.readPart();
+        assertNull(reader.readPart());
+
+        assertNull(field.getFile());
+        assertEquals(5, field.getSize());
+        assertEquals("value", field.getText());
+
+        File spilled = file.getFile();
+        assertNotNull(spilled);
+        assertEquals(14, spilled.length());
+        assertEquals("line 1\r\nline 2", file.getText());
+        file.release();
+        assertFalse(spilled.exists());
+    }
+
+    public void testTruncated() throws IOException {
+        MultipartReader reader = createReader(FORM.substring(0,
+                FORM.indexOf("--AaB03x--")));
+        reader.readPart();
+
+        try {
+            IoUtils.exhaust(reader.readPart().getStream());
+            fail("The closing delimiter should be missing");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+}
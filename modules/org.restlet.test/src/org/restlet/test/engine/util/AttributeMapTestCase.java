@@ -0,0 +1,131 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.restlet.engine.util.AttributeMap;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the {@link AttributeMap} class.
+ * 
+ * @author Jerome Louvel
+ */
+public class AttributeMapTestCase extends RestletTestCase {
+
+    public void testBasics() {
+        AttributeMap map = new AttributeMap();
+        assertTrue(map.isEmpty());
+        assertNull(map.put("a", "1"));
+        assertEquals("1", map.put("a", "2"));
+        assertEquals("2", map.putIfAbsent("a", "3"));
+        assertNull(map.putIfAbsent("b", "3"));
+        assertEquals(2, map.size());
+        assertTrue(map.containsKey("b"));
+        assertNull(map.replace("c", "4"));
+        assertFalse(map.containsKey("c"));
+        assertTrue(map.replace("b", "3", "4"));
+        assertFalse(map.replace("b", "3", "5"));
+        assertFalse(map.remove("b", "3"));
+        assertTrue(map.remove("b", "4"));
+        assertEquals("2", map.remove("a"));
+        assertNull(map.remove("a"));
+        assertTrue(map.isEmpty());
+
+        try {
+            map.put("a", null);
+            fail("Null values aren't supported");
+        } catch (NullPointerException e) {
+            // Expected
+        }
+    }
+
+    public void testGrowth() {
+        AttributeMap map = new AttributeMap();
+        Map<String, Object> expected = new HashMap<String, Object>();
+
+        for (int i = 0; i < 200; i++) {
+            map.put("key" + i, i);
+            expected.put("key" + i, i);
+
+            if (i % 3 == 0) {
+                map.remove("key" + (i / 2));
+                expected.remove("key" + (i / 2));
+            }
+        }
+
+        assertEquals(expected, map);
+        assertEquals(expected.hashCode(), map.hashCode());
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get("key1"));
+    }
+
+    public void testIteration() {
+        AttributeMap map = new AttributeMap();
+
+        for (int i = 0; i < 6; i++) {
+            map.put("key" + i, i);
+        }
+
+        Set<String> visited = new HashSet<String>();
+
+        for (Iterator<String> iter = map.keySet().iterator(); iter.hasNext();) {
+            String key = iter.next();
+            assertTrue("Visited twice: " + key, visited.add(key));
+
+            if (key.equals("key1") || key.equals("key4")) {
+                iter.remove();
+            } else if (key.startsWith("key")) {
+                // Updates during the iteration don't disturb it
+                map.remove(key.equals("key0") ? "key5" : "key0");
+                map.put("new" + key, 0);
+            }
+        }
+
+        // Keys present during the whole iteration are visited
+        assertTrue(visited.containsAll(Arrays.asList("key1", "key2", "key3",
+                "key4")));
+        assertFalse(map.containsKey("key1"));
+        assertFalse(map.containsKey("key4"));
+        assertTrue(map.containsKey("newkey2"));
+
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            entry.setValue(-1);
+        }
+
+        for (Object value : map.values()) {
+            assertEquals(-1, value);
+        }
+    }
+
+}
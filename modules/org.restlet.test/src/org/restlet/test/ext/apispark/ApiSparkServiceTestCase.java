@@ -697,6 +697,30 @@ public class ApiSparkServiceTestCase extends RestletTestCase {
                 MockAnalyticsServerResource.GET_CALLLOG_COUNT >= 1);
     }
 
+    /**
+     * Tests that the buffered call logs are posted when the agent stops.
+     * 
+     * @throws Exception
+     */
+    public void testAgent_Analytics_Stop() throws Exception {
+        // configure
+        MockModulesSettingsServerResource.MODULES_SETTINGS
+                .setAnalyticsModuleEnabled(true);
+        MockAnalyticsServerResource.BROKEN = false;
+
+        ApiSparkService apiSparkService = getAgentService();
+        apiSparkService.setAgentAnalyticsPostPeriodInSecond(60);
+        startApiSparkService(apiSparkService, true);
+
+        // Call user's Web API
+        callAgent("/test", VALID_USERNAME, VALID_PASSWORD);
+        assertEquals(0, MockAnalyticsServerResource.GET_CALLLOG_COUNT);
+
+        // Stopping waits for the remaining call logs to be posted
+        this.agentComponent.stop();
+        assertEquals(1, MockAnalyticsServerResource.GET_CALLLOG_COUNT);
+    }
+
     public void testAgent_Configuration_Null() throws Exception {
         try {
             ApiSparkService apiSparkService = new ApiSparkService();
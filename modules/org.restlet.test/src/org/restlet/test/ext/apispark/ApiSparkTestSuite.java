@@ -41,6 +41,8 @@ public class ApiSparkTestSuite extends TestCase {
         TestSuite result = new TestSuite();
         result.setName("APISpark extension");
         result.addTestSuite(ApiSparkServiceTestCase.class);
+        result.addTestSuite(CallLogBufferTestCase.class);
+        result.addTestSuite(SlidingWindowCounterTestCase.class);
         result.addTestSuite(SwaggerTranslatorTestCase.class);
         result.addTestSuite(Swagger2TranslatorTestCase.class);
         return result;
@@ -0,0 +1,145 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.ext.apispark;
+
+import org.restlet.ext.apispark.internal.agent.bean.CallLog;
+import org.restlet.ext.apispark.internal.agent.bean.CallLogs;
+import org.restlet.ext.apispark.internal.agent.module.CallLogBuffer;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the analytics call log buffer.
+ * 
+ * @author Jerome Louvel
+ */
+public class CallLogBufferTestCase extends RestletTestCase {
+
+    private static boolean isAlive(Thread[] threads) {
+        for (Thread thread : threads) {
+            if (thread.isAlive()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean offer(CallLogBuffer buffer, int value) {
+        return buffer.offer(1000L + value, value, "GET", "/test/" + value,
+                "127.0.0.1", value, "agent", "user");
+    }
+
+    public void testConcurrentProducers() throws Exception {
+        final CallLogBuffer buffer = new CallLogBuffer(1024, 1);
+        Thread[] producers = new Thread[4];
+
+        for (int i = 0; i < producers.length; i++) {
+            producers[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 50000; j++) {
+                        offer(buffer, j);
+                    }
+                }
+            };
+            producers[i].start();
+        }
+
+        int consumed = 0;
+        boolean producing;
+
+        do {
+            producing = isAlive(producers);
+            CallLogs callLogs = new CallLogs();
+            consumed += buffer.drain(callLogs, 100);
+
+            for (CallLog callLog : callLogs) {
+                // Each record must be consistent
+                assertEquals(callLog.getStatusCode(), callLog.getDuration());
+                assertEquals("/test/" + callLog.getDuration(),
+                        callLog.getPath());
+            }
+        } while (producing || (buffer.size() > 0));
+
+        assertEquals(200000, consumed + buffer.getDropped());
+    }
+
+    public void testOfferAndDrain() {
+        CallLogBuffer buffer = new CallLogBuffer(3, 1);
+        assertEquals(4, buffer.getCapacity());
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(offer(buffer, i));
+        }
+
+        assertFalse(offer(buffer, 4));
+        assertEquals(4, buffer.size());
+        assertEquals(1, buffer.getDropped());
+        assertEquals(0, buffer.getDropped());
+
+        CallLogs callLogs = new CallLogs();
+        assertEquals(3, buffer.drain(callLogs, 3));
+        assertEquals(1, buffer.size());
+        assertEquals(1, buffer.drain(callLogs, 10));
+        assertEquals(0, buffer.size());
+        assertEquals(4, callLogs.size());
+
+        CallLog callLog = callLogs.get(2);
+        assertEquals(1002L, callLog.getDate().getTime());
+        assertEquals(2, callLog.getDuration());
+        assertEquals("GET", callLog.getMethod());
+        assertEquals("/test/2", callLog.getPath());
+        assertEquals("127.0.0.1", callLog.getRemoteIp());
+        assertEquals(2, callLog.getStatusCode());
+        assertEquals("agent", callLog.getUserAgent());
+        assertEquals("user", callLog.getUserToken());
+
+        // Slots are reused once drained
+        assertTrue(offer(buffer, 5));
+        assertEquals(1, buffer.drain(callLogs, 10));
+        assertEquals(5, callLogs.get(4).getDuration());
+    }
+
+    public void testSampling() {
+        CallLogBuffer buffer = new CallLogBuffer(8, 2);
+        int accepted = 0;
+
+        for (int i = 0; i < 20; i++) {
+            if (offer(buffer, i)) {
+                accepted++;
+            }
+        }
+
+        // Half filled, then one out of two kept until full
+        assertEquals(8, accepted);
+        assertEquals(12, buffer.getDropped());
+
+        CallLogs callLogs = new CallLogs();
+        buffer.drain(callLogs, 10);
+        assertEquals(4, callLogs.get(4).getDuration());
+        assertEquals(6, callLogs.get(5).getDuration());
+    }
+
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.ext.apispark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Method;
+import org.restlet.ext.apispark.FirewallConfig;
+import org.restlet.ext.apispark.internal.firewall.handler.BlockingHandler;
+import org.restlet.ext.apispark.internal.firewall.handler.policy.UniqueLimitPolicy;
+import org.restlet.ext.apispark.internal.firewall.rule.FirewallRule;
+import org.restlet.ext.apispark.internal.firewall.rule.SlidingWindowFirewallCounterRule;
+import org.restlet.ext.apispark.internal.firewall.rule.counter.CounterStore;
+import org.restlet.ext.apispark.internal.firewall.rule.counter.MemoryCounterStore;
+import org.restlet.ext.apispark.internal.firewall.rule.policy.IpAddressCountingPolicy;
+import org.restlet.routing.Filter;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the sliding window firewall counters.
+ * 
+ * @author Jerome Louvel
+ */
+public class SlidingWindowCounterTestCase extends RestletTestCase {
+
+    /**
+     * Stand-in for an external store, keeping all the windows in a map.
+     */
+    private static class MapCounterStore implements CounterStore {
+
+        private final Map<String, Integer> counts = new HashMap<String, Integer>();
+
+        @Override
+        public synchronized int get(String key, long window) {
+            Integer count = counts.get(key + "@" + window);
+            return (count == null) ? 0 : count;
+        }
+
+        @Override
+        public synchronized int increment(String key, long window,
+                long expiration) {
+            int count = get(key, window) + 1;
+            counts.put(key + "@" + window, count);
+            return count;
+        }
+    }
+
+    /**
+     * Rule whose clock is set by the test.
+     */
+    private static class TestRule extends SlidingWindowFirewallCounterRule {
+
+        private long time;
+
+        public TestRule(int period, TimeUnit periodUnit) {
+            super(period, periodUnit, new IpAddressCountingPolicy());
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return time;
+        }
+    }
+
+    private static int countAccepted(FirewallRule rule, int requests) {
+        int result = 0;
+
+        for (int i = 0; i < requests; i++) {
+            Request request = new Request(Method.GET, "http://localhost/test");
+            request.getClientInfo().setAddress("192.168.0.1");
+
+            if (rule.beforeHandle(request, new Response(request)) == Filter.CONTINUE) {
+                result++;
+            }
+        }
+
+        return result;
+    }
+
+    private static FirewallRule createRule(CounterStore store) {
+        List<FirewallRule> rules = new ArrayList<FirewallRule>();
+        FirewallConfig config = new FirewallConfig(rules);
+        config.setSlidingWindow(true);
+        config.setCounterStore(store);
+        config.addIpAddressesPeriodicCounter(1, TimeUnit.HOURS, 10);
+        assertTrue(rules.get(0) instanceof SlidingWindowFirewallCounterRule);
+        return rules.get(0);
+    }
+
+    public void testConcurrentIncrements() throws Exception {
+        final MemoryCounterStore store = new MemoryCounterStore();
+        final long expiration = System.currentTimeMillis() + 60000;
+        Thread[] threads = new Thread[8];
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        store.increment("key", 1, expiration);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(80000, store.get("key", 1));
+
+        // Rolling to the next window keeps the previous count
+        assertEquals(1, store.increment("key", 2, expiration));
+        assertEquals(80000, store.get("key", 1));
+        assertEquals(0, store.get("key", 0));
+    }
+
+    public void testSharedStore() {
+        // Two nodes sharing the same store
+        CounterStore store = new MapCounterStore();
+        FirewallRule rule1 = createRule(store);
+        FirewallRule rule2 = createRule(store);
+
+        assertEquals(6, countAccepted(rule1, 6));
+        assertEquals(4, countAccepted(rule2, 6));
+        assertEquals(0, countAccepted(rule1, 1));
+    }
+
+    public void testSlidingWindow() {
+        TestRule rule = new TestRule(1, TimeUnit.SECONDS);
+        rule.addHandler(new BlockingHandler(new UniqueLimitPolicy(10)));
+        long start = (System.currentTimeMillis() / 1000L) * 1000L;
+
+        rule.time = start;
+        assertEquals(10, countAccepted(rule, 11));
+
+        // Half of the 11 requests of the previous window still count
+        rule.time = start + 1500;
+        assertEquals(5, countAccepted(rule, 10));
+
+        rule.time = start + 3000;
+        assertEquals(10, countAccepted(rule, 20));
+    }
+
+}
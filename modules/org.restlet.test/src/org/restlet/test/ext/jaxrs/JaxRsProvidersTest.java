@@ -0,0 +1,147 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.test.ext.jaxrs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+
+import junit.framework.TestCase;
+
+import org.restlet.engine.Engine;
+import org.restlet.ext.jaxrs.internal.wrappers.provider.JaxRsProviders;
+
+/**
+ * Tests the cache of the message body writers selected by
+ * {@link JaxRsProviders}.
+ * 
+ * @author Jerome Louvel
+ */
+public class JaxRsProvidersTest extends TestCase {
+
+    /**
+     * Writer of strings only supporting entities annotated with
+     * {@link Deprecated}.
+     */
+    @Produces("text/plain")
+    public static class DeprecatedWriter extends StringWriter {
+        @Override
+        public boolean isWriteable(Class<?> type, Type genericType,
+                Annotation[] annotations, MediaType mediaType) {
+            for (Annotation annotation : annotations) {
+                if (annotation instanceof Deprecated) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Writer of strings supporting any entity.
+     */
+    @Produces("text/plain")
+    public static class StringWriter implements MessageBodyWriter<String> {
+        public long getSize(String t, Class<?> type, Type genericType,
+                Annotation[] annotations, MediaType mediaType) {
+            return -1;
+        }
+
+        public boolean isWriteable(Class<?> type, Type genericType,
+                Annotation[] annotations, MediaType mediaType) {
+            return String.class.isAssignableFrom(type);
+        }
+
+        public void writeTo(String t, Class<?> type, Type genericType,
+                Annotation[] annotations, MediaType mediaType,
+                MultivaluedMap<String, Object> httpHeaders,
+                OutputStream entityStream) throws IOException {
+            entityStream.write(t.getBytes());
+        }
+    }
+
+    private static final Annotation[] NONE = new Annotation[0];
+
+    private Annotation[] deprecated;
+
+    private JaxRsProviders providers;
+
+    @Deprecated
+    public String deprecatedEntity() {
+        return null;
+    }
+
+    private MessageBodyWriter<String> getWriter(Annotation[] annotations) {
+        return this.providers.getMessageBodyWriter(String.class,
+                String.class, annotations, MediaType.TEXT_PLAIN_TYPE);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.deprecated = getClass().getMethod("deprecatedEntity")
+                .getAnnotations();
+        this.providers = new JaxRsProviders(null, null, null,
+                Engine.getAnonymousLogger());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.providers = null;
+        super.tearDown();
+    }
+
+    public void testAddInvalidatesCache() {
+        StringWriter defaultWriter = new StringWriter();
+        this.providers.addSingleton(defaultWriter, true);
+        assertSame(defaultWriter, getWriter(NONE));
+        assertSame(defaultWriter, getWriter(NONE));
+
+        StringWriter customWriter = new StringWriter();
+        this.providers.addSingleton(customWriter, false);
+        assertSame(customWriter, getWriter(NONE));
+    }
+
+    public void testAnnotationDependentWriters() {
+        StringWriter defaultWriter = new StringWriter();
+        DeprecatedWriter deprecatedWriter = new DeprecatedWriter();
+        this.providers.addSingleton(defaultWriter, true);
+        this.providers.addSingleton(deprecatedWriter, false);
+
+        // Alternate lookups so that each one may hit the cached choice of the
+        // previous one if the annotations weren't part of the key
+        for (int i = 0; i < 3; i++) {
+            assertSame(deprecatedWriter, getWriter(this.deprecated));
+            assertSame(defaultWriter, getWriter(NONE));
+        }
+    }
+
+}
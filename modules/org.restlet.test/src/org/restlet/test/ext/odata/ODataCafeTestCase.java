@@ -25,9 +25,14 @@
 package org.restlet.test.ext.odata;
 
 import java.util.Iterator;
+import java.util.List;
 
 import org.restlet.Component;
+import org.restlet.Response;
+import org.restlet.data.Method;
 import org.restlet.data.Protocol;
+import org.restlet.data.Status;
+import org.restlet.ext.odata.Batch;
 import org.restlet.ext.odata.Query;
 import org.restlet.test.RestletTestCase;
 import org.restlet.test.ext.odata.cafe.Cafe;
@@ -69,6 +74,48 @@ public class ODataCafeTestCase extends RestletTestCase {
         super.tearDown();
     }
 
+    /**
+     * Tests the grouping of operations in change sets of a $batch request.
+     */
+    public void testBatch() throws Exception {
+        Batch batch = service.createBatch();
+        Cafe cafe1 = new Cafe("1");
+        cafe1.setName("Le Cafe Louis");
+        cafe1.setCompanyName("Cafe corp.");
+        Cafe cafe3 = new Cafe("3");
+        cafe3.setName("Le Cafe Bleu");
+        cafe3.setCompanyName("Cafe corp.");
+
+        batch.addEntity("/Cafes", cafe3);
+        batch.updateEntity(cafe1);
+        batch.newChangeSet();
+        batch.deleteEntity(cafe1);
+        batch.deleteEntity(cafe3);
+        assertEquals(4, batch.size());
+
+        List<Response> responses = batch.execute();
+        assertEquals(0, batch.size());
+        assertEquals(Status.SUCCESS_ACCEPTED, service.getLatestResponse()
+                .getStatus());
+        assertEquals(4, responses.size());
+
+        assertEquals(Method.POST, responses.get(0).getRequest().getMethod());
+        assertEquals(Status.SUCCESS_CREATED, responses.get(0).getStatus());
+        assertEquals("http://localhost:8111/Cafe.svc/Cafes('3')", responses
+                .get(0).getLocationRef().toString());
+        assertEquals(Method.PUT, responses.get(1).getRequest().getMethod());
+        assertEquals(Status.SUCCESS_NO_CONTENT, responses.get(1).getStatus());
+
+        // The second change set fails as a whole
+        assertEquals(Status.CLIENT_ERROR_NOT_FOUND, responses.get(2)
+                .getStatus());
+        assertEquals(Status.CLIENT_ERROR_NOT_FOUND, responses.get(3)
+                .getStatus());
+        assertEquals(Method.DELETE, responses.get(3).getRequest().getMethod());
+        assertEquals("Resource not found", responses.get(3).getEntityAsText()
+                .trim());
+    }
+
     /**
      * Tests the parsing of Feed element.
      */
@@ -197,6 +244,25 @@ public class ODataCafeTestCase extends RestletTestCase {
      * Tests the server paging feature.
      */
     public void testServerPaging() {
+        checkServerPaging();
+    }
+
+    /**
+     * Tests the server paging feature while retrieving the pages in advance.
+     * The retrieval of the following pages must not update the latest
+     * request of the service.
+     */
+    public void testServerPagingWithPrefetch() {
+        service.setPrefetchDepth(2);
+        checkServerPaging();
+        assertTrue(service.getLatestRequest().getResourceRef().toString()
+                .contains("Skip1"));
+    }
+
+    /**
+     * Checks the iteration over the two pages of cafes.
+     */
+    private void checkServerPaging() {
         Query<Cafe> query1 = service.createCafeQuery("/Cafes");
         Query<Cafe> query2 = query1.skipToken("Skip1");
 
@@ -233,5 +299,8 @@ public class ODataCafeTestCase extends RestletTestCase {
         assertEquals("Cafe inc.", cafe.getCompanyName());
         assertEquals("Marly Le Roi", cafe.getCity());
         assertEquals(78310, cafe.getZipCode());
+
+        assertFalse(iterator.hasNext());
+        assertNull(iterator.next());
     }
 }
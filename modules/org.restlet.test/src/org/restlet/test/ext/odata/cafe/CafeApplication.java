@@ -24,6 +24,9 @@
 
 package org.restlet.test.ext.odata.cafe;
 
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import org.restlet.Application;
 import org.restlet.Context;
 import org.restlet.Request;
@@ -32,9 +35,11 @@ import org.restlet.Restlet;
 import org.restlet.data.CharacterSet;
 import org.restlet.data.Form;
 import org.restlet.data.LocalReference;
+import org.restlet.data.MediaType;
 import org.restlet.data.Method;
 import org.restlet.data.Protocol;
 import org.restlet.data.Status;
+import org.restlet.representation.StringRepresentation;
 import org.restlet.routing.Router;
 
 /**
@@ -45,6 +50,81 @@ import org.restlet.routing.Router;
  */
 public class CafeApplication extends Application {
 
+    /**
+     * Simulates the $batch resource. Creations succeed, updates and deletions
+     * succeed unless they target the third cafe, in which case the whole
+     * change set fails.
+     */
+    private static class BatchRestlet extends Restlet {
+
+        /** Matches the request line of a batched operation. */
+        private static final Pattern REQUEST_LINE = Pattern.compile(
+                "^(POST|PUT|DELETE) (\\S+) HTTP/1\\.1", Pattern.MULTILINE);
+
+        public BatchRestlet(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void handle(Request request, Response response) {
+            String boundary = (request.getEntity() == null) ? null : request
+                    .getEntity().getMediaType().getParameters()
+                    .getFirstValue("boundary");
+            String text = request.getEntityAsText();
+
+            if (!Method.POST.equals(request.getMethod()) || boundary == null
+                    || !text.endsWith("--" + boundary + "--\r\n")) {
+                response.setStatus(Status.CLIENT_ERROR_BAD_REQUEST);
+                return;
+            }
+
+            StringBuilder sb = new StringBuilder();
+
+            for (String changeSet : text.split("--changeset_[0-9a-f-]+--")) {
+                Matcher matcher = REQUEST_LINE.matcher(changeSet);
+                StringBuilder parts = new StringBuilder();
+                boolean failed = false;
+
+                while (matcher.find()) {
+                    String method = matcher.group(1);
+                    failed |= !"POST".equals(method)
+                            && matcher.group(2).endsWith("Cafes('3')");
+                    parts.append("--changesetresponse\r\n");
+                    parts.append("Content-Type: application/http\r\n");
+                    parts.append("Content-Transfer-Encoding: binary\r\n\r\n");
+
+                    if ("POST".equals(method)) {
+                        parts.append("HTTP/1.1 201 Created\r\n");
+                        parts.append("Location: http://localhost:8111/Cafe.svc/Cafes('3')\r\n\r\n");
+                    } else {
+                        parts.append("HTTP/1.1 204 No Content\r\n\r\n");
+                    }
+                }
+
+                if (parts.length() > 0) {
+                    sb.append("--batchresponse\r\n");
+
+                    if (failed) {
+                        sb.append("Content-Type: application/http\r\n");
+                        sb.append("Content-Transfer-Encoding: binary\r\n\r\n");
+                        sb.append("HTTP/1.1 404 Not Found\r\n");
+                        sb.append("Content-Type: text/plain\r\n\r\n");
+                        sb.append("Resource not found\r\n");
+                    } else {
+                        sb.append("Content-Type: multipart/mixed; boundary=changesetresponse\r\n\r\n");
+                        sb.append(parts);
+                        sb.append("--changesetresponse--\r\n");
+                    }
+                }
+            }
+
+            sb.append("--batchresponse--\r\n");
+            response.setStatus(Status.SUCCESS_ACCEPTED);
+            response.setEntity(new StringRepresentation(sb, new MediaType(
+                    "multipart/mixed; boundary=batchresponse")));
+        }
+    }
+
     private static class MyClapRestlet extends Restlet {
         String file;
 
@@ -87,6 +167,7 @@ public class CafeApplication extends Application {
         getConnectorService().getClientProtocols().add(Protocol.CLAP);
         Router router = new Router(getContext());
 
+        router.attach("/$batch", new BatchRestlet(getContext()));
         router.attach("/$metadata", new MyClapRestlet(getContext(), "metadata",
                 false));
         router.attach("/Cafes", new MyClapRestlet(getContext(), "cafes", false));
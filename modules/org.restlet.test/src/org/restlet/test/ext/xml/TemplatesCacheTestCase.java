@@ -0,0 +1,198 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.ext.xml;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.sax.SAXTransformerFactory;
+
+import org.restlet.Context;
+import org.restlet.data.MediaType;
+import org.restlet.ext.xml.TemplatesCache;
+import org.restlet.ext.xml.TransformRepresentation;
+import org.restlet.ext.xml.Transformer;
+import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the {@link TemplatesCache} class.
+ * 
+ * @author Jerome Louvel
+ */
+public class TemplatesCacheTestCase extends RestletTestCase {
+
+    private static final String OUTPUT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><buyer>cust123</buyer>23.45";
+
+    private static final String SOURCE = "<?xml version=\"1.0\"?>"
+            + "<purchase id=\"p001\">" + "<customer db=\"cust123\"/>"
+            + "<product db=\"prod345\">" + "<amount>23.45</amount>"
+            + "</product>" + "</purchase>";
+
+    private static final String XSLT = "<?xml version=\"1.0\"?>"
+            + "<xsl:transform xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" version=\"1.0\">"
+            + "<xsl:template match =\"customer\">"
+            + "<buyer><xsl:value-of select=\"@db\"/></buyer>"
+            + "</xsl:template>" + "</xsl:transform>";
+
+    private static Representation createSheet() {
+        return new StringRepresentation(XSLT, MediaType.TEXT_XML);
+    }
+
+    private static Representation createSource() {
+        return new StringRepresentation(SOURCE, MediaType.TEXT_XML);
+    }
+
+    public void testBounds() throws Exception {
+        TemplatesCache cache = new TemplatesCache(2);
+
+        for (int i = 0; i < 5; i++) {
+            cache.getTemplates(createSheet(), null);
+        }
+
+        assertTrue(cache.size() <= 2);
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    public void testContextScope() throws Exception {
+        Context context = new Context();
+        TemplatesCache cache = TemplatesCache.getInstance(context);
+        assertSame(cache, TemplatesCache.getInstance(context));
+        assertNotSame(cache, TemplatesCache.getInstance(new Context()));
+
+        Representation sheet = createSheet();
+        TransformRepresentation tr = new TransformRepresentation(context,
+                createSource(), sheet);
+        assertSame(cache, tr.getTemplatesCache());
+        assertEquals(OUTPUT, tr.getText());
+        assertEquals(1, cache.size());
+        assertSame(cache.getTemplates(sheet, tr.getUriResolver()),
+                tr.getTemplates());
+
+        // Representations of the same context share the templates
+        TransformRepresentation other = new TransformRepresentation(context,
+                createSource(), sheet);
+        assertEquals(OUTPUT, other.getText());
+        assertSame(tr.getTemplates(), other.getTemplates());
+        assertEquals(1, cache.size());
+    }
+
+    public void testLocationKey() throws Exception {
+        TemplatesCache cache = new TemplatesCache();
+        Date date = new Date(1000000L);
+        Representation sheet = createSheet();
+        sheet.setLocationRef("http://localhost/sheet.xsl");
+        sheet.setModificationDate(date);
+        Templates templates = cache.getTemplates(sheet, null);
+
+        // Same location and date, different instance
+        Representation same = createSheet();
+        same.setLocationRef("http://localhost/sheet.xsl");
+        same.setModificationDate(date);
+        assertSame(templates, cache.getTemplates(same, null));
+
+        // Updated sheet
+        Representation updated = createSheet();
+        updated.setLocationRef("http://localhost/sheet.xsl");
+        updated.setModificationDate(new Date(2000000L));
+        assertNotSame(templates, cache.getTemplates(updated, null));
+        assertEquals(2, cache.size());
+
+        // Reload
+        assertSame(templates, cache.remove(sheet));
+        assertNotSame(templates, cache.getTemplates(same, null));
+    }
+
+    public void testSaxTransformerFactory() throws Exception {
+        final TemplatesCache cache = new TemplatesCache();
+        SAXTransformerFactory factory = cache.getSaxTransformerFactory();
+        assertNotNull(factory);
+        assertSame(factory, cache.getSaxTransformerFactory());
+        assertNotSame(cache.getTransformerFactory(), factory);
+
+        // Each thread has its own factory
+        final AtomicReference<SAXTransformerFactory> other = new AtomicReference<SAXTransformerFactory>();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    other.set(cache.getSaxTransformerFactory());
+                } catch (IOException e) {
+                    // The reference stays null
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        assertNotNull(other.get());
+        assertNotSame(factory, other.get());
+    }
+
+    public void testTransformer() throws Exception {
+        Transformer transformer = new Transformer(Transformer.MODE_REQUEST,
+                createSheet());
+        TemplatesCache cache = transformer.getTemplatesCache();
+        assertNotNull(cache);
+
+        TransformRepresentation first = (TransformRepresentation) transformer
+                .transform(createSource());
+        assertEquals(OUTPUT, first.getText());
+        TransformRepresentation second = (TransformRepresentation) transformer
+                .transform(createSource());
+        assertEquals(OUTPUT, second.getText());
+
+        assertSame(first.getTemplates(), second.getTemplates());
+        assertEquals(1, cache.size());
+    }
+
+    public void testUriResolverKey() throws Exception {
+        URIResolver resolver = new URIResolver() {
+            public Source resolve(String href, String base) {
+                return null;
+            }
+        };
+        TemplatesCache cache = new TemplatesCache();
+        Representation sheet = createSheet();
+        sheet.setLocationRef("http://localhost/sheet.xsl");
+        Templates templates = cache.getTemplates(sheet, null);
+        Templates resolved = cache.getTemplates(sheet, resolver);
+
+        // Sheets compiled with another resolver aren't shared
+        assertNotSame(templates, resolved);
+        assertSame(resolved, cache.getTemplates(sheet, resolver));
+        assertEquals(2, cache.size());
+
+        assertSame(resolved, cache.remove(sheet, resolver));
+        assertSame(templates, cache.getTemplates(sheet, null));
+        assertEquals(1, cache.size());
+    }
+
+}
@@ -39,6 +39,7 @@ public class XmlTestSuite extends TestCase {
         TestSuite result = new TestSuite();
         result.setName("XML extension");
         result.addTestSuite(ResolvingTransformerTestCase.class);
+        result.addTestSuite(TemplatesCacheTestCase.class);
         result.addTestSuite(TransformerTestCase.class);
         result.addTestSuite(TransformRepresentationTestCase.class);
         return result;
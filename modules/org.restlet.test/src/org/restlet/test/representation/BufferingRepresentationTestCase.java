@@ -0,0 +1,239 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.representation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.restlet.Request;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.engine.Engine;
+import org.restlet.engine.io.BufferPool;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.representation.BufferingRepresentation;
+import org.restlet.representation.OutputRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit test case for the {@link BufferingRepresentation} class.
+ * 
+ * @author Jerome Louvel
+ */
+public class BufferingRepresentationTestCase extends RestletTestCase {
+
+    private static Representation createTransient(final byte[] content) {
+        OutputRepresentation result = new OutputRepresentation(
+                MediaType.APPLICATION_OCTET_STREAM) {
+            private boolean written;
+
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                if (written) {
+                    throw new IOException("Already written");
+                }
+
+                written = true;
+
+                // Mix single bytes and chunks
+                outputStream.write(content[0]);
+                outputStream.write(content, 1, content.length - 1);
+            }
+        };
+        result.setTransient(true);
+        return result;
+    }
+
+    private static byte[] createContent(int size) {
+        byte[] result = new byte[size];
+
+        for (int i = 0; i < size; i++) {
+            result[i] = (byte) (i * 31);
+        }
+
+        return result;
+    }
+
+    private static byte[] read(ReadableByteChannel channel) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(1000);
+
+        while (channel.read(buffer) != -1) {
+            buffer.flip();
+            baos.write(buffer.array(), 0, buffer.limit());
+            buffer.clear();
+        }
+
+        channel.close();
+        return baos.toByteArray();
+    }
+
+    private static byte[] read(InputStream stream) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        IoUtils.copy(stream, baos);
+        return baos.toByteArray();
+    }
+
+    private void checkReplay(BufferingRepresentation br, byte[] content)
+            throws IOException {
+        assertEquals(content.length, br.getSize());
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(Arrays.equals(content, read(br.getStream())));
+            assertTrue(Arrays.equals(content, read(br.getChannel())));
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            br.write(baos);
+            assertTrue(Arrays.equals(content, baos.toByteArray()));
+
+            baos = new ByteArrayOutputStream();
+            br.write(Channels.newChannel(baos));
+            assertTrue(Arrays.equals(content, baos.toByteArray()));
+        }
+    }
+
+    public void testMemory() throws Exception {
+        byte[] content = createContent(100000);
+        BufferingRepresentation br = new BufferingRepresentation(
+                createTransient(content), -1);
+        checkReplay(br, content);
+        assertFalse(br.isSpilled());
+
+        // Released replayable entities can be sent again
+        br.setReplayable(true);
+        br.release();
+        checkReplay(br, content);
+
+        InputStream stream = br.getStream();
+        assertEquals(5, stream.skip(5));
+        assertEquals(content[5] & 0xFF, stream.read());
+        assertEquals(content.length - 6, stream.available());
+
+        br.releaseBuffer();
+        assertFalse(br.isAvailable());
+        assertNull(br.getStream());
+
+        // Open streams keep reading the released content
+        byte[] rest = read(stream);
+        assertTrue(Arrays.equals(Arrays.copyOfRange(content, 6,
+                content.length), rest));
+    }
+
+    public void testMessageBuffer() throws Exception {
+        Representation entity = new StringRepresentation("hello world");
+        entity.setTransient(true);
+        Request request = new Request(Method.PUT, "http://localhost/",
+                entity);
+        request.bufferEntity();
+
+        // Buffered entities survive the release after each send
+        Representation buffered = request.getEntity();
+        assertTrue(buffered instanceof BufferingRepresentation);
+        buffered.release();
+        assertEquals(11, buffered.getSize());
+        assertTrue(buffered.isAvailable());
+        assertEquals("hello world", buffered.getText());
+        buffered.release();
+        assertEquals("hello world", buffered.getText());
+    }
+
+    public void testOpenStreamAfterRelease() throws Exception {
+        byte[] content = createContent(100000);
+        BufferingRepresentation br = new BufferingRepresentation(
+                createTransient(content), -1);
+        assertEquals(content.length, br.getSize());
+        InputStream stream = br.getStream();
+        ReadableByteChannel channel = br.getChannel();
+
+        // Non replayable entities are discarded at the end of the exchange
+        br.release();
+        assertNull(br.getStream());
+
+        // Reused pool arrays must not overwrite the content being read
+        BufferPool pool = Engine.getBufferPool();
+        List<byte[]> arrays = new ArrayList<byte[]>();
+
+        for (int i = 0; i < 10; i++) {
+            byte[] array = pool.acquireArray(16 * 1024);
+            Arrays.fill(array, (byte) 0);
+            arrays.add(array);
+        }
+
+        assertTrue(Arrays.equals(content, read(stream)));
+        assertTrue(Arrays.equals(content, read(channel)));
+
+        try {
+            stream.read();
+            fail("Closed streams can't be read");
+        } catch (IOException e) {
+            // Expected
+        }
+
+        for (byte[] array : arrays) {
+            pool.release(array);
+        }
+    }
+
+    public void testSpill() throws Exception {
+        File directory = new File(System.getProperty("java.io.tmpdir"),
+                "restlet-buffering-" + System.nanoTime());
+        assertTrue(directory.mkdir());
+
+        byte[] content = createContent(300000);
+        BufferingRepresentation br = new BufferingRepresentation(
+                createTransient(content), 50000);
+        br.setSpillDirectory(directory);
+        checkReplay(br, content);
+        assertTrue(br.isSpilled());
+
+        // The temporary file is deleted once mapped
+        String[] files = directory.list();
+        IoUtils.delete(directory, true);
+        assertEquals(0, files.length);
+
+        br.releaseBuffer();
+        assertFalse(br.isSpilled());
+    }
+
+    public void testText() throws Exception {
+        BufferingRepresentation br = new BufferingRepresentation(
+                new StringRepresentation("café"));
+        assertEquals("café", br.getText());
+        assertEquals("café", br.getText());
+        assertEquals(5, br.getSize());
+    }
+
+}
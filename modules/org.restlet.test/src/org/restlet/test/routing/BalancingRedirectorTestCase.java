@@ -0,0 +1,151 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.routing.BalancingRedirector;
+import org.restlet.routing.BalancingRedirector.Upstream;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the {@link BalancingRedirector} class.
+ * 
+ * @author Jerome Louvel
+ */
+public class BalancingRedirectorTestCase extends RestletTestCase {
+
+    /** The hosts of the upstream calls received. */
+    private List<String> hosts;
+
+    private BalancingRedirector createRedirector(int balancing) {
+        return new BalancingRedirector(new Context(),
+                BalancingRedirector.MODE_SERVER_OUTBOUND, balancing,
+                "http://a/{rr}", "http://b/{rr}") {
+            @Override
+            protected Restlet getNext() {
+                return new Restlet() {
+                    @Override
+                    public void handle(Request request, Response response) {
+                        String host = request.getResourceRef().getHostDomain();
+                        hosts.add(host);
+
+                        if ("b".equals(host)) {
+                            response.setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
+                        } else {
+                            response.setStatus(Status.SUCCESS_OK);
+                        }
+                    }
+                };
+            }
+        };
+    }
+
+    private Response handle(Restlet redirector) {
+        Request request = new Request(Method.GET, "http://proxy/path");
+        Response response = new Response(request);
+        redirector.handle(request, response);
+        assertEquals("http://proxy/path", request.getResourceRef().toString());
+        return response;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        hosts = new ArrayList<String>();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        hosts = null;
+        super.tearDown();
+    }
+
+    public void testEjection() throws Exception {
+        BalancingRedirector redirector = createRedirector(BalancingRedirector.BALANCING_ROUND_ROBIN);
+        redirector.setMaxFailures(2);
+
+        for (int i = 0; i < 4; i++) {
+            handle(redirector);
+        }
+
+        Upstream b = redirector.getUpstreams().get(1);
+        assertTrue(b.isEjected());
+        assertEquals(2, b.getFailures());
+        assertEquals(2, redirector.getUpstreams().get(0).getRequests());
+
+        hosts.clear();
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(Status.SUCCESS_OK, handle(redirector).getStatus());
+        }
+
+        assertFalse(hosts.contains("b"));
+
+        // Only the ejected upstream remains
+        redirector.getUpstreams().remove(0);
+        assertEquals(Status.SERVER_ERROR_SERVICE_UNAVAILABLE,
+                handle(redirector).getStatus());
+    }
+
+    public void testLeastInFlight() throws Exception {
+        BalancingRedirector redirector = createRedirector(BalancingRedirector.BALANCING_LEAST_IN_FLIGHT);
+        redirector.setMaxFailures(Integer.MAX_VALUE);
+
+        for (int i = 0; i < 4; i++) {
+            handle(redirector);
+        }
+
+        assertEquals(4, hosts.size());
+
+        for (Upstream upstream : redirector.getUpstreams()) {
+            assertEquals(0, upstream.getInFlight());
+            assertTrue(upstream.getRequests() > 0);
+        }
+    }
+
+    public void testRoundRobin() throws Exception {
+        BalancingRedirector redirector = createRedirector(BalancingRedirector.BALANCING_ROUND_ROBIN);
+        redirector.setMaxFailures(Integer.MAX_VALUE);
+
+        for (int i = 0; i < 4; i++) {
+            handle(redirector);
+        }
+
+        assertEquals(4, hosts.size());
+        assertFalse(hosts.get(0).equals(hosts.get(1)));
+        assertEquals(hosts.get(0), hosts.get(2));
+        assertEquals(hosts.get(1), hosts.get(3));
+        assertEquals(2, redirector.getUpstreams().get(1).getFailures());
+    }
+
+}
@@ -42,6 +42,59 @@ import org.restlet.test.RestletTestCase;
  */
 public class ConnegServiceTestCase extends RestletTestCase {
 
+    private Request createRequest(MediaType... mediaTypes) {
+        Request result = new Request();
+
+        for (MediaType mediaType : mediaTypes) {
+            result.getClientInfo().getAcceptedMediaTypes()
+                    .add(new Preference<MediaType>(mediaType));
+        }
+
+        return result;
+    }
+
+    private List<Variant> createVariants() {
+        List<Variant> result = new ArrayList<Variant>();
+        result.add(new Variant(MediaType.APPLICATION_XML));
+        result.add(new Variant(MediaType.APPLICATION_JSON));
+        result.add(new Variant(MediaType.TEXT_HTML));
+        return result;
+    }
+
+    public void testCache() {
+        MetadataService metadataService = new MetadataService();
+        ConnegService connegService = new ConnegService();
+
+        List<Variant> variants = createVariants();
+        Variant preferredVariant = connegService.getPreferredVariant(variants,
+                createRequest(MediaType.APPLICATION_JSON), metadataService);
+        assertSame(variants.get(1), preferredVariant);
+
+        // Equal variants and preferences, the variant of the given list is
+        // returned
+        variants = createVariants();
+        preferredVariant = connegService.getPreferredVariant(variants,
+                createRequest(MediaType.APPLICATION_JSON), metadataService);
+        assertSame(variants.get(1), preferredVariant);
+
+        // Different preferences
+        preferredVariant = connegService.getPreferredVariant(variants,
+                createRequest(MediaType.TEXT_HTML), metadataService);
+        assertSame(variants.get(2), preferredVariant);
+
+        // Different variants
+        variants.remove(2);
+        preferredVariant = connegService.getPreferredVariant(variants,
+                createRequest(MediaType.TEXT_HTML), metadataService);
+        assertEquals(createVariants().get(0), preferredVariant);
+
+        // Disabled cache
+        connegService.setCacheSize(0);
+        preferredVariant = connegService.getPreferredVariant(variants,
+                createRequest(MediaType.APPLICATION_JSON), metadataService);
+        assertSame(variants.get(1), preferredVariant);
+    }
+
     public void testStrict() {
         List<Variant> variants = new ArrayList<Variant>();
         Variant variant = new Variant(MediaType.APPLICATION_XML);
@@ -0,0 +1,245 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.service;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.restlet.Application;
+import org.restlet.Component;
+import org.restlet.service.ForkJoinTaskService;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the {@link ForkJoinTaskService} class.
+ * 
+ * @author Jerome Louvel
+ */
+public class ForkJoinTaskServiceTestCase extends RestletTestCase {
+
+    private Application busy;
+
+    private Application other;
+
+    private ForkJoinTaskService service;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.busy = new Application();
+        this.other = new Application();
+        this.service = new ForkJoinTaskService(true, 4);
+        this.service.setApplicationConcurrency(1);
+        this.service.setApplicationQueueSize(2);
+        this.service.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Application.setCurrent(null);
+        this.service.setShutdownAllowed(true);
+        this.service.stop();
+        this.service = null;
+        super.tearDown();
+    }
+
+    public void testBulkhead() throws Exception {
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final AtomicInteger completed = new AtomicInteger();
+        Runnable blocked = new Runnable() {
+            public void run() {
+                try {
+                    blocker.await();
+                    completed.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        // The busy application fills its slot and its queue
+        Application.setCurrent(this.busy);
+        Future<?> first = this.service.submit(blocked);
+        this.service.execute(blocked);
+        this.service.execute(blocked);
+
+        try {
+            this.service.execute(blocked);
+            fail("The task should have been rejected");
+        } catch (RejectedExecutionException ree) {
+            // Expected
+        }
+
+        // The other application isn't starved
+        Application.setCurrent(this.other);
+        final AtomicReference<Application> current = new AtomicReference<Application>();
+        final CountDownLatch done = new CountDownLatch(1);
+        this.service.execute(new Runnable() {
+            public void run() {
+                current.set(Application.getCurrent());
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertSame(this.other, current.get());
+        assertFalse(first.isDone());
+
+        blocker.countDown();
+        first.get(5, TimeUnit.SECONDS);
+
+        // The run times are recorded once the tasks return
+        for (int i = 0; (i < 50)
+                && ((this.service.getRunTimes(this.busy).getCount() < 3) || (this.service
+                        .getRunTimes(this.other).getCount() < 1)); i++) {
+            Thread.sleep(100);
+        }
+
+        assertEquals(3, completed.get());
+        assertEquals(3, this.service.getRunTimes(this.busy).getCount());
+        assertEquals(1, this.service.getRunTimes(this.other).getCount());
+        assertEquals(4, this.service.getQueueTimes().getCount());
+    }
+
+    public void testComponent() throws Exception {
+        Component component = new Component();
+        component.setTaskService(this.service);
+        assertSame(this.service, component.getContext().getExecutorService());
+    }
+
+    public void testNullApplication() throws Exception {
+        assertNull(this.service.getQueueTimes(null));
+        assertNull(this.service.getRunTimes(null));
+    }
+
+    public void testScheduling() throws Exception {
+        ScheduledFuture<String> delayed = this.service.schedule(
+                new Callable<String>() {
+                    public String call() {
+                        return "done";
+                    }
+                }, 50, TimeUnit.MILLISECONDS);
+        assertEquals("done", delayed.get(5, TimeUnit.SECONDS));
+
+        final CountDownLatch ticks = new CountDownLatch(3);
+        ScheduledFuture<?> periodic = this.service.scheduleAtFixedRate(
+                new Runnable() {
+                    public void run() {
+                        ticks.countDown();
+                    }
+                }, 0, 10, TimeUnit.MILLISECONDS);
+        assertTrue(ticks.await(5, TimeUnit.SECONDS));
+        periodic.cancel(false);
+
+        try {
+            periodic.get();
+            fail("The periodic task should have been cancelled");
+        } catch (CancellationException ce) {
+            // Expected
+        } catch (ExecutionException ee) {
+            fail("The periodic task shouldn't have failed");
+        }
+    }
+
+    public void testShutdown() throws Exception {
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final AtomicInteger completed = new AtomicInteger();
+        Runnable counter = new Runnable() {
+            public void run() {
+                completed.incrementAndGet();
+            }
+        };
+
+        // Queue enough tasks to overflow the stack if drained recursively
+        this.service.setApplicationQueueSize(Integer.MAX_VALUE);
+        Application.setCurrent(this.busy);
+        this.service.execute(new Runnable() {
+            public void run() {
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        for (int i = 0; i < 20000; i++) {
+            this.service.execute(counter);
+        }
+
+        // The queued tasks still run after the shutdown
+        this.service.setShutdownAllowed(true);
+        this.service.shutdown();
+        blocker.countDown();
+        assertTrue(this.service.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(20000, completed.get());
+    }
+
+    public void testShutdownNow() throws Exception {
+        final CountDownLatch blocker = new CountDownLatch(1);
+        Runnable blocked = new Runnable() {
+            public void run() {
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        Runnable queued = new Runnable() {
+            public void run() {
+                fail("The queued task shouldn't run");
+            }
+        };
+
+        Application.setCurrent(this.busy);
+        this.service.execute(blocked);
+        this.service.execute(queued);
+        this.service.execute(queued);
+
+        // The queued tasks are returned instead of being dropped
+        this.service.setShutdownAllowed(true);
+        List<Runnable> remaining = this.service.shutdownNow();
+        assertEquals(2, remaining.size());
+        blocker.countDown();
+        assertTrue(this.service.awaitTermination(10, TimeUnit.SECONDS));
+
+        try {
+            this.service.execute(queued);
+            fail("The task should have been rejected");
+        } catch (RejectedExecutionException ree) {
+            // Expected
+        }
+    }
+
+}
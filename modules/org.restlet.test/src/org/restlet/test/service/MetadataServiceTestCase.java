@@ -24,7 +24,11 @@
 
 package org.restlet.test.service;
 
+import java.util.List;
+
+import org.restlet.data.Language;
 import org.restlet.data.MediaType;
+import org.restlet.data.Metadata;
 import org.restlet.service.MetadataService;
 import org.restlet.test.RestletTestCase;
 
@@ -35,6 +39,38 @@ import org.restlet.test.RestletTestCase;
  */
 public class MetadataServiceTestCase extends RestletTestCase {
 
+    public void testExtensionMappings() {
+        MetadataService ms = new MetadataService();
+        assertEquals(MediaType.TEXT_XML, ms.getMetadata("xml"));
+        assertEquals("xml", ms.getExtension(MediaType.APPLICATION_XML));
+        assertEquals("txt", ms.getExtension(MediaType.TEXT_PLAIN));
+
+        List<MediaType> xml = ms.getAllMediaTypes("xml");
+        assertEquals(2, xml.size());
+        assertEquals(MediaType.TEXT_XML, xml.get(0));
+        assertEquals(MediaType.APPLICATION_XML, xml.get(1));
+        assertNull(ms.getAllLanguages("xml"));
+
+        // Preferred mappings take precedence in both directions
+        ms.addExtension("text", MediaType.TEXT_PLAIN, true);
+        assertEquals("text", ms.getExtension(MediaType.TEXT_PLAIN));
+        ms.addExtension("xml", Language.ENGLISH);
+        List<Metadata> all = ms.getAllMetadata("xml");
+        assertEquals(3, all.size());
+        assertEquals(Language.ENGLISH, all.get(2));
+        assertEquals("en", ms.getExtension(Language.ENGLISH));
+        assertEquals(Language.ENGLISH, ms.getLanguage("en"));
+
+        ms.clearExtensions();
+        assertNull(ms.getMetadata("xml"));
+        assertNull(ms.getExtension(MediaType.TEXT_PLAIN));
+        assertNull(ms.getAllMetadata("xml"));
+
+        ms.addExtension("foo", MediaType.TEXT_PLAIN);
+        assertEquals(MediaType.TEXT_PLAIN, ms.getMediaType("foo"));
+        assertEquals("foo", ms.getExtension(MediaType.TEXT_PLAIN));
+    }
+
     public void testStrict() {
         MetadataService ms = new MetadataService();
         MediaType ma = ms.getMediaType("ma");
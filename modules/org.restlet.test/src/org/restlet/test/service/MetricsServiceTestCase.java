@@ -0,0 +1,193 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.service;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.restlet.Application;
+import org.restlet.Component;
+import org.restlet.Restlet;
+import org.restlet.Server;
+import org.restlet.data.Protocol;
+import org.restlet.engine.metrics.CallMetrics;
+import org.restlet.engine.metrics.Gauge;
+import org.restlet.resource.ClientResource;
+import org.restlet.resource.Get;
+import org.restlet.resource.ResourceException;
+import org.restlet.resource.ServerResource;
+import org.restlet.routing.Router;
+import org.restlet.service.MetricsService;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the {@link MetricsService} class.
+ * 
+ * @author Jerome Louvel
+ */
+public class MetricsServiceTestCase extends RestletTestCase {
+
+    public static class AccountResource extends ServerResource {
+        @Get("txt")
+        public String represent() {
+            return "account " + getAttribute("id");
+        }
+    }
+
+    private Application application;
+
+    private Component component;
+
+    private String uri;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.component = new Component();
+        Server server = this.component.getServers().add(Protocol.HTTP, 0);
+        this.application = new Application() {
+            @Override
+            public Restlet createInboundRoot() {
+                Router router = new Router(getContext());
+                router.attach("/accounts/{id}", AccountResource.class);
+                router.attach("/metrics",
+                        getMetricsService().createEndpoint(getContext()));
+                return router;
+            }
+        };
+        this.application.getMetricsService().setEnabled(true);
+        this.application.getMetricsService().setName("test");
+        this.component.getDefaultHost().attach(this.application);
+        this.component.start();
+        this.uri = "http://localhost:" + server.getEphemeralPort();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.component.stop();
+        super.tearDown();
+    }
+
+    public void testEndpoint() throws Exception {
+        new ClientResource(this.uri + "/accounts/1").get().exhaust();
+        String exposition = new ClientResource(this.uri + "/metrics").get()
+                .getText();
+        assertTrue(exposition
+                .contains("restlet_route_requests_total{route=\"/accounts/{id}\",method=\"GET\",status=\"2xx\"} 1\n"));
+        assertTrue(exposition.contains("restlet_resource_duration_seconds_count{resource=\""
+                + AccountResource.class.getName()
+                + "\",method=\"represent\"} 1\n"));
+        assertTrue(exposition.contains("restlet_connector_calls_total"));
+    }
+
+    public void testGauges() throws Exception {
+        MetricsService service = this.application.getMetricsService();
+        service.getGauges().put("test_gauge", new Gauge() {
+            public long getValue() {
+                return 42;
+            }
+        });
+        new ClientResource(this.uri + "/accounts/1").get().exhaust();
+
+        // The server call completes after the response is received
+        String connector = "{connector=\"HTTP:" + this.uri.substring(17)
+                + "\"}";
+        Map<String, Number> snapshot = service.getSnapshot();
+
+        for (int i = 0; (i < 50)
+                && (snapshot.get("restlet_connector_active_calls" + connector)
+                        .longValue() > 0); i++) {
+            Thread.sleep(100);
+            snapshot = service.getSnapshot();
+        }
+
+        assertEquals(42L, snapshot.get("test_gauge"));
+        assertTrue(snapshot.get("restlet_connector_calls_total" + connector)
+                .longValue() >= 1);
+        assertEquals(0L,
+                snapshot.get("restlet_connector_active_calls" + connector));
+        assertNotNull(snapshot.get("restlet_connector_active_threads"
+                + connector));
+    }
+
+    public void testJmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(
+                "org.restlet:type=Metrics,name=\"test\"");
+        assertTrue(server.isRegistered(name));
+
+        new ClientResource(this.uri + "/accounts/1").get().exhaust();
+        assertEquals(1L,
+                server.getAttribute(name, "restlet_requests_total{status=\"2xx\"}"));
+        server.invoke(name, "reset", null, null);
+        assertEquals(0, this.application.getMetricsService()
+                .getTotalMetrics().getCount());
+
+        this.component.stop();
+        assertFalse(server.isRegistered(name));
+    }
+
+    public void testRecording() throws Exception {
+        MetricsService service = this.application.getMetricsService();
+
+        for (int i = 0; i < 10; i++) {
+            new ClientResource(this.uri + "/accounts/" + i).get().exhaust();
+        }
+
+        try {
+            new ClientResource(this.uri + "/unknown").get();
+            fail("Resource should be missing");
+        } catch (ResourceException e) {
+            assertEquals(404, e.getStatus().getCode());
+        }
+
+        CallMetrics total = service.getTotalMetrics();
+        assertEquals(11, total.getCount());
+        assertEquals(10, total.getStatusCount(2));
+        assertEquals(1, total.getStatusCount(4));
+
+        assertEquals(1, service.getRouteMetrics().size());
+        CallMetrics route = service.getRouteMetrics().get(0);
+        assertEquals("/accounts/{id}", route.getName());
+        assertEquals("GET", route.getMethod());
+        assertEquals(10, route.getCount());
+        assertTrue(route.getLatency().getValueAtPercentile(50) <= route
+                .getLatency().getMax());
+
+        assertEquals(1, service.getResourceMetrics().size());
+        CallMetrics resource = service.getResourceMetrics().get(0);
+        assertEquals(AccountResource.class.getName(), resource.getName());
+        assertEquals("represent", resource.getMethod());
+        assertEquals(10, resource.getStatusCount(2));
+
+        service.reset();
+        assertEquals(0, service.getTotalMetrics().getCount());
+        assertTrue(service.getRouteMetrics().isEmpty());
+    }
+
+}
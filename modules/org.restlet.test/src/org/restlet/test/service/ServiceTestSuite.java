@@ -34,7 +34,9 @@ public class ServiceTestSuite {
 
         // $JUnit-BEGIN$
         suite.addTestSuite(ConnegServiceTestCase.class);
+        suite.addTestSuite(ForkJoinTaskServiceTestCase.class);
         suite.addTestSuite(MetadataServiceTestCase.class);
+        suite.addTestSuite(MetricsServiceTestCase.class);
         // [ifndef jee]
         suite.addTestSuite(StatusServiceTestCase.class);
         // [enddef]
@@ -40,6 +40,98 @@ import org.restlet.test.RestletTestCase;
  */
 public class TemplateTestCase extends RestletTestCase {
 
+    public void testBacktracking() {
+        Template template = new Template("{a}{b}.{c}");
+        Map<String, Object> variables = new HashMap<String, Object>();
+
+        assertEquals(7, template.parse("ab.cd.e", variables));
+        assertEquals("ab.c", variables.get("a"));
+        assertEquals("d", variables.get("b"));
+        assertEquals("e", variables.get("c"));
+
+        assertEquals(-1, template.match("ab."));
+        assertEquals(-1, template.match("a\nb.c"));
+    }
+
+    public void testBackReference() {
+        Template template = new Template("/{id}/{name}/{id}");
+        template.getDefaultVariable().setType(Variable.TYPE_URI_SEGMENT);
+        Map<String, Object> variables = new HashMap<String, Object>();
+
+        assertEquals(-1, template.parse("/12/john/13", variables));
+        assertTrue(variables.isEmpty());
+        assertEquals(11, template.parse("/12/john/12", variables));
+        assertEquals("12", variables.get("id"));
+        assertEquals("john", variables.get("name"));
+    }
+
+    public void testFixedAndOptionalVariables() {
+        Template template = new Template("/items/{type}{format}",
+                Template.MODE_STARTS_WITH);
+        template.getVariables().put("type",
+                new Variable(Variable.TYPE_ALPHA, "book", true, true));
+        template.getVariables().put("format",
+                new Variable(Variable.TYPE_WORD, null, false, false));
+        Map<String, Object> variables = new HashMap<String, Object>();
+
+        assertEquals(-1, template.match("/items/cd"));
+        assertEquals(11, template.parse("/items/book/123", variables));
+        assertEquals("book", variables.get("type"));
+        assertEquals("", variables.get("format"));
+        assertEquals(15, template.parse("/items/bookjson?x", variables));
+        assertEquals("json", variables.get("format"));
+    }
+
+    public void testFormatThenMatch() {
+        Template template = new Template("/items/{id}");
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("id", "12");
+        assertEquals("/items/12", template.format(values));
+
+        // Variables declared after formatting still apply when matching
+        template.getVariables().put("id", new Variable(Variable.TYPE_DIGIT));
+        assertEquals(-1, template.match("/items/abc"));
+        assertEquals(9, template.match("/items/12"));
+        assertEquals("/items/12", template.format(values));
+    }
+
+    public void testMatchThenParse() {
+        Template template = new Template("/users/{user}",
+                Template.MODE_STARTS_WITH);
+        template.getDefaultVariable().setType(Variable.TYPE_URI_SEGMENT);
+        Template other = new Template("/users/{user}/{item}");
+
+        assertEquals(12, template.match("/users/a%20b/c"));
+        assertEquals(14, other.match("/users/a%20b/c"));
+
+        Map<String, Object> variables = new HashMap<String, Object>();
+        assertEquals(12, template.parse(new String("/users/a%20b/c"),
+                variables));
+        assertEquals("a%20b", variables.get("user"));
+
+        template.getVariables().put("user",
+                new Variable(Variable.TYPE_URI_SEGMENT));
+        template.getVariables().get("user").setDecodingOnParse(true);
+        assertEquals(12, template.parse("/users/a%20b/c", variables));
+        assertEquals("a b", variables.get("user"));
+    }
+
+    public void testUriSegments() {
+        Template template = new Template("/{a}/{b}");
+        template.getDefaultVariable().setType(Variable.TYPE_URI_SEGMENT);
+        Map<String, Object> variables = new HashMap<String, Object>();
+
+        assertEquals(-1, template.match("/x/y/z"));
+        assertEquals(-1, template.match("/x%2/y"));
+        assertEquals(9, template.parse("/x%2F/y;z", variables));
+        assertEquals("x%2F", variables.get("a"));
+        assertEquals("y;z", variables.get("b"));
+
+        template.setMatchingMode(Template.MODE_STARTS_WITH);
+        assertEquals(4, template.match("/x/y/z"));
+        assertEquals(-1, template.match("/x/"));
+    }
+
     public void testEncodedCharacters() {
         Template template = new Template(
                 "http://localhost/{token}/bookstore/{bookid}");
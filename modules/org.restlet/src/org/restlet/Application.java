@@ -42,6 +42,7 @@ import org.restlet.service.ConverterService;
 import org.restlet.service.DecoderService;
 import org.restlet.service.EncoderService;
 import org.restlet.service.MetadataService;
+import org.restlet.service.MetricsService;
 import org.restlet.service.RangeService;
 import org.restlet.service.StatusService;
 import org.restlet.service.TunnelService;
@@ -66,6 +67,8 @@ import org.restlet.util.ServiceList;
  * (disabled by default).</li>
  * <li>"metadataService" to provide access to metadata and their associated
  * extension names.</li>
+ * <li>"metricsService" to record latency and status metrics per route and
+ * resource (disabled by default).</li>
  * <li>"rangeService" to automatically exposes ranges of response entities.</li>
  * <li>"statusService" to provide common representations for exception status.</li>
  * <li>"taskService" to run tasks asynchronously (disabled by default).</li>
@@ -171,6 +174,7 @@ public class Application extends Restlet {
         this.services.add(connegService);
         this.services.add(converterService);
         this.services.add(metadataService);
+        this.services.add(new MetricsService(false));
 
         // [ifndef gae]
         this.services.add(new org.restlet.service.TaskService(false));
@@ -288,6 +292,15 @@ public class Application extends Restlet {
         return getServices().get(MetadataService.class);
     }
 
+    /**
+     * Returns the metrics service. The service is disabled by default.
+     * 
+     * @return The metrics service.
+     */
+    public MetricsService getMetricsService() {
+        return getServices().get(MetricsService.class);
+    }
+
     /**
      * Returns the outbound root Restlet.
      * 
@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.restlet.engine.Engine;
+import org.restlet.engine.component.ComponentContext;
 import org.restlet.engine.component.ComponentHelper;
 import org.restlet.engine.component.InternalRouter;
 import org.restlet.routing.Router;
@@ -418,7 +419,9 @@ public class Component extends Restlet {
     }
 
     /**
-     * Sets the task service.
+     * Sets the task service. It also becomes the executor service of the
+     * component's context, inherited by the contexts of the applications
+     * attached afterwards.
      * 
      * @param taskService
      *            The task service.
@@ -426,6 +429,10 @@ public class Component extends Restlet {
     // [ifndef gae] method
     public void setTaskService(org.restlet.service.TaskService taskService) {
         getServices().set(taskService);
+
+        if (getContext() instanceof ComponentContext) {
+            getContext().setExecutorService(taskService);
+        }
     }
 
     /**
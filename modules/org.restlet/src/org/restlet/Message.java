@@ -109,7 +109,11 @@ public abstract class Message {
      * {@link org.restlet.representation.BufferingRepresentation}.<br>
      * <br>
      * Be careful as this method could create potentially very large byte
-     * buffers in memory that could impact your application performance.
+     * buffers in memory that could impact your application performance. The
+     * buffer is replayable, so it is kept when the entity is released and the
+     * entity can be sent again, for example when retrying a request. Call
+     * {@link org.restlet.representation.BufferingRepresentation#releaseBuffer()}
+     * to return its memory to the pool once it isn't needed anymore.
      * 
      * @see org.restlet.representation.BufferingRepresentation
      * @see ClientResource#setRequestEntityBuffering(boolean)
@@ -119,8 +123,10 @@ public abstract class Message {
         if ((getEntity() != null)
                 && (getEntity().isTransient() || (getEntity().getSize() == Representation.UNKNOWN_SIZE))
                 && getEntity().isAvailable()) {
-            setEntity(new org.restlet.representation.BufferingRepresentation(
-                    getEntity()));
+            org.restlet.representation.BufferingRepresentation buffer = new org.restlet.representation.BufferingRepresentation(
+                    getEntity());
+            buffer.setReplayable(true);
+            setEntity(buffer);
         }
     }
 
@@ -173,8 +179,12 @@ public abstract class Message {
      * prevent future optimizations. The other standard HTTP headers (that are
      * not supported) can be added as attributes via the
      * "org.restlet.http.headers" key.<br>
+     * <br>
+     * When the engine uses the lean allocation profile, the map is a compact
+     * one that must only be accessed by one thread at a time.
      * 
      * @return The modifiable attributes map.
+     * @see org.restlet.engine.Engine#isLeanMessages()
      */
     public ConcurrentMap<String, Object> getAttributes() {
         // Lazy initialization with double-check.
@@ -183,7 +193,13 @@ public abstract class Message {
             synchronized (this) {
                 r = this.attributes;
                 if (r == null) {
-                    this.attributes = r = new ConcurrentHashMap<String, Object>();
+                    // [ifndef gwt] instruction
+                    this.attributes = r = org.restlet.engine.Engine
+                            .isLeanMessages() ? new org.restlet.engine.util.AttributeMap()
+                            : new ConcurrentHashMap<String, Object>();
+                    // [ifdef gwt] instruction uncomment
+                    // this.attributes = r = new ConcurrentHashMap<String,
+                    // Object>();
                 }
             }
         }
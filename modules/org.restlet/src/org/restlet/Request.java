@@ -25,26 +25,18 @@
 package org.restlet;
 
 import java.util.List;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
 
-import org.restlet.data.CacheDirective;
 import org.restlet.data.ChallengeResponse;
-import org.restlet.data.CharacterSet;
 import org.restlet.data.ClientInfo;
 import org.restlet.data.Conditions;
 import org.restlet.data.Cookie;
-import org.restlet.data.Encoding;
-import org.restlet.data.Language;
-import org.restlet.data.MediaType;
 import org.restlet.data.Method;
-import org.restlet.data.Preference;
 import org.restlet.data.Protocol;
 import org.restlet.data.Range;
 import org.restlet.data.Reference;
-import org.restlet.data.Tag;
 import org.restlet.data.Warning;
 import org.restlet.representation.Representation;
 import org.restlet.util.Series;
@@ -229,76 +221,13 @@ public class Request extends Message {
                 request.getEntity());
         challengeResponse = request.getChallengeResponse();
 
-        // Copy client info
-        ClientInfo rci = request.getClientInfo();
-        clientInfo = new ClientInfo();
+        // Copy the client info and the conditions, leaving untouched data
+        // unallocated
+        this.clientInfo = new ClientInfo(request.getClientInfo());
+        this.conditions = new Conditions(request.getConditions());
 
-        for (Preference<CharacterSet> o : rci.getAcceptedCharacterSets()) {
-            clientInfo.getAcceptedCharacterSets().add(o);
-        }
-
-        for (Preference<Encoding> o : rci.getAcceptedEncodings()) {
-            clientInfo.getAcceptedEncodings().add(o);
-        }
-
-        for (Preference<Language> o : rci.getAcceptedLanguages()) {
-            clientInfo.getAcceptedLanguages().add(o);
-        }
-
-        for (Preference<MediaType> o : rci.getAcceptedMediaTypes()) {
-            clientInfo.getAcceptedMediaTypes().add(o);
-        }
-
-        clientInfo.setAddress(rci.getAddress());
-        clientInfo.setAgent(rci.getAgent());
-
-        for (String o : rci.getForwardedAddresses()) {
-            clientInfo.getForwardedAddresses().add(o);
-        }
-
-        clientInfo.setFrom(rci.getFrom());
-        clientInfo.setPort(rci.getPort());
-
-        // [ifndef gwt]
-        clientInfo.setAgentAttributes(rci.getAgentAttributes());
-        clientInfo.setAgentProducts(rci.getAgentProducts());
-        clientInfo.setAuthenticated(rci.isAuthenticated());
-
-        for (org.restlet.data.Expectation o : rci.getExpectations()) {
-            clientInfo.getExpectations().add(o);
-        }
-
-        for (java.security.Principal o : rci.getPrincipals()) {
-            clientInfo.getPrincipals().add(o);
-        }
-
-        for (org.restlet.security.Role o : rci.getRoles()) {
-            clientInfo.getRoles().add(o);
-        }
-
-        clientInfo.setUser(rci.getUser());
-        // [enddef]
-
-        // Copy conditions
-        conditions = new Conditions();
-
-        for (Tag o : request.getConditions().getMatch()) {
-            conditions.getMatch().add(o);
-        }
-
-        conditions.setModifiedSince(request.getConditions().getModifiedSince());
-
-        for (Tag o : request.getConditions().getNoneMatch()) {
-            conditions.getNoneMatch().add(o);
-        }
-
-        conditions.setRangeDate(request.getConditions().getRangeDate());
-        conditions.setRangeTag(request.getConditions().getRangeTag());
-        conditions.setUnmodifiedSince(request.getConditions()
-                .getUnmodifiedSince());
-
-        for (Cookie o : request.getCookies()) {
-            getCookies().add(o);
+        if (!request.getCookies().isEmpty()) {
+            getCookies().addAll(request.getCookies());
         }
 
         this.hostRef = request.getHostRef();
@@ -310,8 +239,8 @@ public class Request extends Message {
         this.proxyChallengeResponse = request.getProxyChallengeResponse();
         this.protocol = request.getProtocol();
 
-        for (Range o : request.getRanges()) {
-            getRanges().add(o);
+        if (!request.getRanges().isEmpty()) {
+            getRanges().addAll(request.getRanges());
         }
 
         this.referrerRef = (request.getReferrerRef() == null) ? null
@@ -319,18 +248,18 @@ public class Request extends Message {
         this.rootRef = (request.getRootRef() == null) ? null : request
                 .getRootRef();
 
-        for (Entry<String, Object> e : request.getAttributes().entrySet()) {
-            getAttributes().put(e.getKey(), e.getValue());
+        if (!request.getAttributes().isEmpty()) {
+            getAttributes().putAll(request.getAttributes());
         }
 
-        for (CacheDirective o : request.getCacheDirectives()) {
-            getCacheDirectives().add(o);
+        if (!request.getCacheDirectives().isEmpty()) {
+            getCacheDirectives().addAll(request.getCacheDirectives());
         }
 
         this.setOnSent(request.getOnSent());
 
-        for (Warning o : request.getWarnings()) {
-            getWarnings().add(o);
+        if (!request.getWarnings().isEmpty()) {
+            getWarnings().addAll(request.getWarnings());
         }
 
         this.setDate(request.getDate());
@@ -129,7 +129,59 @@ public final class ClientInfo {
      * 
      * @see The {@link ClientInfo#getAgentAttributes()} method.
      */
-    private static volatile List<String> userAgentTemplates = null;
+    private static volatile List<org.restlet.routing.Template> userAgentTemplates = null;
+
+    /**
+     * Copies a list of client data if it was set.
+     * 
+     * @param source
+     *            The list to copy or null.
+     * @return The copied list or null.
+     */
+    private static <T> List<T> copy(List<T> source) {
+        return ((source == null) || source.isEmpty()) ? null
+                : new CopyOnWriteArrayList<T>(source);
+    }
+
+    // [ifndef gwt] method
+    /**
+     * Creates a user-agent template. Some defined variables are used in order
+     * to catch the name, version and optional comment. Respectively, these
+     * variables are called "agentName", "agentVersion" and "agentComment".
+     * 
+     * @param pattern
+     *            The pattern of the template.
+     * @return The user-agent template.
+     */
+    private static org.restlet.routing.Template createUserAgentTemplate(
+            String pattern) {
+        org.restlet.routing.Template result = new org.restlet.routing.Template(
+                pattern, org.restlet.routing.Template.MODE_EQUALS);
+
+        // Predefined variables.
+        org.restlet.routing.Variable agentCommentAttribute = new org.restlet.routing.Variable(
+                org.restlet.routing.Variable.TYPE_COMMENT_ATTRIBUTE);
+        result.getVariables().put(
+                "agentName",
+                new org.restlet.routing.Variable(
+                        org.restlet.routing.Variable.TYPE_TOKEN));
+        result.getVariables().put(
+                "agentVersion",
+                new org.restlet.routing.Variable(
+                        org.restlet.routing.Variable.TYPE_TOKEN));
+        result.getVariables().put(
+                "agentComment",
+                new org.restlet.routing.Variable(
+                        org.restlet.routing.Variable.TYPE_COMMENT));
+        result.getVariables().put("agentOs", agentCommentAttribute);
+        result.getVariables().put("commentAttribute", agentCommentAttribute);
+        result.getVariables().put(
+                "facultativeData",
+                new org.restlet.routing.Variable(
+                        org.restlet.routing.Variable.TYPE_ALL, null, false,
+                        false));
+        return result;
+    }
 
     // [ifndef gwt] method
     /**
@@ -165,15 +217,15 @@ public final class ClientInfo {
     // [ifndef gwt] method
     /**
      * Returns the list of user-agent templates defined in "agent.properties"
-     * file.
+     * file. The templates are compiled once and shared by all instances.
      * 
      * @return The list of user-agent templates defined in "agent.properties"
      *         file.
      * @see The {@link ClientInfo#getAgentAttributes()} method.
      */
-    private static List<String> getUserAgentTemplates() {
+    private static List<org.restlet.routing.Template> getUserAgentTemplates() {
         // Lazy initialization with double-check.
-        List<String> u = ClientInfo.userAgentTemplates;
+        List<org.restlet.routing.Template> u = ClientInfo.userAgentTemplates;
         if (u == null) {
             synchronized (ClientInfo.class) {
                 u = ClientInfo.userAgentTemplates;
@@ -193,9 +245,9 @@ public final class ClientInfo {
                                 if ((line.trim().length() > 0)
                                         && !line.trim().startsWith("#")) {
                                     if (u == null) {
-                                        u = new CopyOnWriteArrayList<String>();
+                                        u = new CopyOnWriteArrayList<org.restlet.routing.Template>();
                                     }
-                                    u.add(line);
+                                    u.add(createUserAgentTemplate(line));
                                 }
                             }
                             reader.close();
@@ -316,6 +368,44 @@ public final class ClientInfo {
         // [enddef]
     }
 
+    /**
+     * Copy constructor. The lists of the source client info are only copied if
+     * they aren't empty and the data lazily parsed from the agent name are
+     * only copied if already parsed, so that copying a client info that was
+     * barely used is cheap.
+     * 
+     * @param clientInfo
+     *            The client info to copy.
+     */
+    public ClientInfo(ClientInfo clientInfo) {
+        this.acceptedCharacterSets = copy(clientInfo.acceptedCharacterSets);
+        this.acceptedEncodings = copy(clientInfo.acceptedEncodings);
+        this.acceptedLanguages = copy(clientInfo.acceptedLanguages);
+        this.acceptedMediaTypes = copy(clientInfo.acceptedMediaTypes);
+        this.acceptedPatches = copy(clientInfo.acceptedPatches);
+        this.address = clientInfo.address;
+        this.agent = clientInfo.agent;
+        this.forwardedAddresses = copy(clientInfo.forwardedAddresses);
+        this.from = clientInfo.from;
+        this.port = clientInfo.port;
+        // [ifndef gwt]
+        Map<String, String> attributes = clientInfo.agentAttributes;
+        this.agentAttributes = (attributes == null) ? null
+                : new ConcurrentHashMap<String, String>(attributes);
+        this.agentMainProduct = clientInfo.agentMainProduct;
+        List<Product> products = clientInfo.agentProducts;
+        this.agentProducts = (products == null) ? null
+                : new CopyOnWriteArrayList<Product>(products);
+        this.authenticated = clientInfo.authenticated;
+        this.certificates = copy(clientInfo.certificates);
+        this.cipherSuite = clientInfo.cipherSuite;
+        this.expectations = copy(clientInfo.expectations);
+        this.principals = copy(clientInfo.principals);
+        this.roles = copy(clientInfo.roles);
+        this.user = clientInfo.user;
+        // [enddef]
+    }
+
     // [ifndef gwt] method
     /**
      * Constructor from a list of variants. Note that only media types are taken
@@ -543,35 +633,9 @@ public final class ClientInfo {
             // version and optional comment. Respectively, these
             // variables are called "agentName", "agentVersion" and
             // "agentComment".
-            org.restlet.routing.Template template = null;
-            // Predefined variables.
-            org.restlet.routing.Variable agentName = new org.restlet.routing.Variable(
-                    org.restlet.routing.Variable.TYPE_TOKEN);
-            org.restlet.routing.Variable agentVersion = new org.restlet.routing.Variable(
-                    org.restlet.routing.Variable.TYPE_TOKEN);
-            org.restlet.routing.Variable agentComment = new org.restlet.routing.Variable(
-                    org.restlet.routing.Variable.TYPE_COMMENT);
-            org.restlet.routing.Variable agentCommentAttribute = new org.restlet.routing.Variable(
-                    org.restlet.routing.Variable.TYPE_COMMENT_ATTRIBUTE);
-            org.restlet.routing.Variable facultativeData = new org.restlet.routing.Variable(
-                    org.restlet.routing.Variable.TYPE_ALL, null, false, false);
-
             if (ClientInfo.getUserAgentTemplates() != null) {
-                for (String string : ClientInfo.getUserAgentTemplates()) {
-                    template = new org.restlet.routing.Template(string,
-                            org.restlet.routing.Template.MODE_EQUALS);
-
-                    // Update the predefined variables.
-                    template.getVariables().put("agentName", agentName);
-                    template.getVariables().put("agentVersion", agentVersion);
-                    template.getVariables().put("agentComment", agentComment);
-                    template.getVariables().put("agentOs",
-                            agentCommentAttribute);
-                    template.getVariables().put("commentAttribute",
-                            agentCommentAttribute);
-                    template.getVariables().put("facultativeData",
-                            facultativeData);
-
+                for (org.restlet.routing.Template template : ClientInfo
+                        .getUserAgentTemplates()) {
                     // Parse the template
                     if (template.parse(getAgent(), map) > -1) {
                         for (String key : map.keySet()) {
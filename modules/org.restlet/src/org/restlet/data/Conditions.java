@@ -79,6 +79,24 @@ public final class Conditions {
     public Conditions() {
     }
 
+    /**
+     * Copy constructor. The lists of tags are only copied if they aren't
+     * empty.
+     * 
+     * @param conditions
+     *            The conditions to copy.
+     */
+    public Conditions(Conditions conditions) {
+        this.match = ((conditions.match == null) || conditions.match.isEmpty()) ? null
+                : new ArrayList<Tag>(conditions.match);
+        this.modifiedSince = conditions.modifiedSince;
+        this.noneMatch = ((conditions.noneMatch == null) || conditions.noneMatch
+                .isEmpty()) ? null : new ArrayList<Tag>(conditions.noneMatch);
+        this.rangeDate = conditions.rangeDate;
+        this.rangeTag = conditions.rangeTag;
+        this.unmodifiedSince = conditions.unmodifiedSince;
+    }
+
     /**
      * Returns the modifiable list of tags that must be matched. Creates a new
      * instance if no one has been set.<br>
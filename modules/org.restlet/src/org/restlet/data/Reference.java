@@ -114,6 +114,151 @@ import org.restlet.engine.Edition;
  */
 public class Reference {
 
+    /**
+     * Immutable view of the components of a reference, parsed once from the
+     * internal reference string and shared until the next mutation. Derived
+     * values such as the segments, the query form or the target reference are
+     * lazily added and never exposed directly as they are mutable.
+     */
+    private static final class Components {
+
+        /** The authority component or null. */
+        private final String authority;
+
+        /** The decoded path segments. */
+        private volatile List<String> decodedSegments;
+
+        /** The host domain name. */
+        private volatile String hostDomain;
+
+        /** The last segment of the path. */
+        private final String lastSegment;
+
+        /** The path component or null. */
+        private final String path;
+
+        /** The parsed query. */
+        private volatile Form queryForm;
+
+        /** The path segments. */
+        private volatile List<String> segments;
+
+        /** The normalized target reference. */
+        private volatile Reference target;
+
+        /** The base reference used to compute the target, or null. */
+        private volatile String targetBase;
+
+        /**
+         * Constructor.
+         * 
+         * @param ref
+         *            The internal reference.
+         * @param schemeIndex
+         *            The scheme separator index.
+         * @param queryIndex
+         *            The query separator index.
+         * @param fragmentIndex
+         *            The fragment separator index.
+         */
+        private Components(String ref, int schemeIndex, int queryIndex,
+                int fragmentIndex) {
+            int authorityStart = -1;
+            int authorityEnd = -1;
+            int pathStart = -1;
+            int pathEnd = -1;
+
+            if (ref != null) {
+                // Bounds of the relative part or of the scheme specific part
+                int partStart;
+                int partEnd;
+
+                if (schemeIndex == -1) {
+                    partStart = 0;
+
+                    if (queryIndex != -1) {
+                        partEnd = queryIndex;
+                    } else if (fragmentIndex != -1) {
+                        partEnd = fragmentIndex;
+                    } else {
+                        partEnd = ref.length();
+                    }
+                } else {
+                    partStart = schemeIndex + 1;
+                    partEnd = (fragmentIndex != -1) ? fragmentIndex : ref
+                            .length();
+                }
+
+                int queryStart = indexOf(ref, '?', partStart, partEnd);
+
+                if ((partEnd - partStart >= 2)
+                        && ref.startsWith("//", partStart)) {
+                    // Authority found
+                    int slash = indexOf(ref, '/', partStart + 2, partEnd);
+                    authorityStart = partStart + 2;
+
+                    if (slash != -1) {
+                        // Path found
+                        authorityEnd = slash;
+
+                        if (queryStart != -1) {
+                            pathStart = Math.min(slash, queryStart);
+                            pathEnd = queryStart;
+                        } else {
+                            pathStart = slash;
+                            pathEnd = partEnd;
+                        }
+                    } else {
+                        // Path must be empty in this case
+                        authorityEnd = (queryStart != -1) ? queryStart
+                                : partEnd;
+                    }
+                } else {
+                    // No authority found
+                    pathStart = partStart;
+                    pathEnd = (queryStart != -1) ? queryStart : partEnd;
+                }
+            }
+
+            this.authority = (authorityStart == -1) ? null : ref.substring(
+                    authorityStart, authorityEnd);
+            this.path = (pathStart == -1) ? null : ref.substring(pathStart,
+                    pathEnd);
+
+            String last = null;
+
+            if (this.path != null) {
+                int end = this.path.endsWith("/") ? this.path.length() - 1
+                        : this.path.length();
+                int lastSlash = this.path.lastIndexOf('/', end - 1);
+
+                if (lastSlash != -1) {
+                    last = this.path.substring(lastSlash + 1, end);
+                }
+            }
+
+            this.lastSegment = last;
+        }
+
+        /**
+         * Returns the index of a character inside a region of a string.
+         * 
+         * @param s
+         *            The string to search.
+         * @param c
+         *            The character to find.
+         * @param from
+         *            The start index, inclusive.
+         * @param to
+         *            The end index, exclusive.
+         * @return The index of the character or -1.
+         */
+        private static int indexOf(String s, char c, int from, int to) {
+            int result = s.indexOf(c, from);
+            return (result < to) ? result : -1;
+        }
+    }
+
     /** Helps to map characters and their validity as URI characters. */
     private static final boolean[] charValidityMap = new boolean[127];
 
@@ -515,6 +660,9 @@ public class Reference {
     /** The base reference for relative references. */
     private volatile Reference baseRef;
 
+    /** The lazily parsed components, reset on each mutation. */
+    private volatile Components components;
+
     /** The fragment separator index. */
     private volatile int fragmentIndex;
 
@@ -790,6 +938,7 @@ public class Reference {
             newRef.baseRef = this.baseRef.clone();
         }
 
+        newRef.components = this.components;
         newRef.fragmentIndex = this.fragmentIndex;
         newRef.internalRef = this.internalRef;
         newRef.queryIndex = this.queryIndex;
@@ -797,6 +946,21 @@ public class Reference {
         return newRef;
     }
 
+    /**
+     * Returns a copy without base reference, sharing the parsed components.
+     * 
+     * @return A copy without base reference.
+     */
+    private Reference copy() {
+        final Reference result = new Reference();
+        result.components = this.components;
+        result.fragmentIndex = this.fragmentIndex;
+        result.internalRef = this.internalRef;
+        result.queryIndex = this.queryIndex;
+        result.schemeIndex = this.schemeIndex;
+        return result;
+    }
+
     /**
      * Checks if all characters are valid and encodes invalid characters if
      * necessary.
@@ -885,26 +1049,7 @@ public class Reference {
      * @return The authority component for hierarchical identifiers.
      */
     public String getAuthority() {
-        final String part = isRelative() ? getRelativePart()
-                : getSchemeSpecificPart();
-
-        if ((part != null) && part.startsWith("//")) {
-            int index = part.indexOf('/', 2);
-
-            if (index != -1) {
-                return part.substring(2, index);
-            }
-
-            index = part.indexOf('?');
-            if (index != -1) {
-                return part.substring(2, index);
-            }
-
-            return part.substring(2);
-
-        }
-
-        return null;
+        return getComponents().authority;
     }
 
     /**
@@ -929,6 +1074,23 @@ public class Reference {
         return this.baseRef;
     }
 
+    /**
+     * Returns the parsed components, parsing the internal reference if needed.
+     * 
+     * @return The parsed components.
+     */
+    private Components getComponents() {
+        Components result = this.components;
+
+        if (result == null) {
+            result = new Components(this.internalRef, this.schemeIndex,
+                    this.queryIndex, this.fragmentIndex);
+            this.components = result;
+        }
+
+        return result;
+    }
+
     /**
      * Returns the optional extensions for hierarchical identifiers. An
      * extensions part starts after the first '.' character of the last path
@@ -1072,10 +1234,11 @@ public class Reference {
      *         identifiers.
      */
     public String getHostDomain() {
-        String result = null;
-        final String authority = getAuthority();
+        final Components components = getComponents();
+        String result = components.hostDomain;
+        final String authority = components.authority;
 
-        if (authority != null) {
+        if ((result == null) && (authority != null)) {
             // We must prevent the case where the userinfo part contains ':'
             // and the case of IPV6 addresses
             int indexUI = authority.indexOf('@'); // user info
@@ -1102,6 +1265,8 @@ public class Reference {
                     result = authority;
                 }
             }
+
+            components.hostDomain = result;
         }
 
         return result;
@@ -1219,22 +1384,7 @@ public class Reference {
      * @return The last segment of a hierarchical path.
      */
     public String getLastSegment() {
-        String result = null;
-        String path = getPath();
-
-        if (path != null) {
-            if (path.endsWith("/")) {
-                path = path.substring(0, path.length() - 1);
-            }
-
-            final int lastSlash = path.lastIndexOf('/');
-
-            if (lastSlash != -1) {
-                result = path.substring(lastSlash + 1);
-            }
-        }
-
-        return result;
+        return getComponents().lastSegment;
     }
 
     /**
@@ -1373,45 +1523,7 @@ public class Reference {
      * @return The path component for hierarchical identifiers.
      */
     public String getPath() {
-        String result = null;
-        String part = isRelative() ? getRelativePart()
-                : getSchemeSpecificPart();
-
-        if (part != null) {
-            if (part.startsWith("//")) {
-                // Authority found
-                int index1 = part.indexOf('/', 2);
-
-                if (index1 != -1) {
-                    // Path found
-                    int index2 = part.indexOf('?');
-
-                    if (index2 != -1) {
-                        // Query found
-                        result = part.substring(Math.min(index1, index2),
-                                index2);
-                    } else {
-                        // No query found
-                        result = part.substring(index1);
-                    }
-                } else {
-                    // Path must be empty in this case
-                }
-            } else {
-                // No authority found
-                int index = part.indexOf('?');
-
-                if (index != -1) {
-                    // Query found
-                    result = part.substring(0, index);
-                } else {
-                    // No query found
-                    result = part;
-                }
-            }
-        }
-
-        return result;
+        return getComponents().path;
     }
 
     /**
@@ -1474,7 +1586,21 @@ public class Reference {
      * @return The optional query component as a form.
      */
     public Form getQueryAsForm() {
-        return new Form(getQuery());
+        final Components components = getComponents();
+        Form parsed = components.queryForm;
+
+        if (parsed == null) {
+            parsed = new Form(getQuery());
+            components.queryForm = parsed;
+        }
+
+        final Form result = new Form(parsed.size());
+
+        for (Parameter parameter : parsed) {
+            result.add(new Parameter(parameter.getName(), parameter.getValue()));
+        }
+
+        return result;
     }
 
     /**
@@ -1860,42 +1986,15 @@ public class Reference {
      * @return The segments of a hierarchical path.
      */
     public List<String> getSegments() {
-        final List<String> result = new ArrayList<String>();
-        final String path = getPath();
-        int start = -2; // The index of the slash starting the segment
-        char current;
-
-        if (path != null) {
-            for (int i = 0; i < path.length(); i++) {
-                current = path.charAt(i);
+        final Components components = getComponents();
+        List<String> segments = components.segments;
 
-                if (current == '/') {
-                    if (start == -2) {
-                        // Beginning of an absolute path or sequence of two
-                        // separators
-                        start = i;
-                    } else {
-                        // End of a segment
-                        result.add(path.substring(start + 1, i));
-                        start = i;
-                    }
-                } else {
-                    if (start == -2) {
-                        // Starting a new segment for a relative path
-                        start = -1;
-                    } else {
-                        // Looking for the next character
-                    }
-                }
-            }
-
-            if (start != -2) {
-                // Add the last segment
-                result.add(path.substring(start + 1));
-            }
+        if (segments == null) {
+            segments = parseSegments(components.path);
+            components.segments = segments;
         }
 
-        return result;
+        return new ArrayList<String>(segments);
     }
 
     /**
@@ -1908,15 +2007,24 @@ public class Reference {
      * @see #getSegments()
      */
     public List<String> getSegments(boolean decode) {
-        final List<String> result = getSegments();
+        if (!decode) {
+            return getSegments();
+        }
 
-        if (decode) {
-            for (int i = 0; i < result.size(); i++) {
-                result.set(i, decode(result.get(i)));
+        final Components components = getComponents();
+        List<String> decoded = components.decodedSegments;
+
+        if (decoded == null) {
+            decoded = getSegments();
+
+            for (int i = 0; i < decoded.size(); i++) {
+                decoded.set(i, decode(decoded.get(i)));
             }
+
+            components.decodedSegments = decoded;
         }
 
-        return result;
+        return new ArrayList<String>(decoded);
     }
 
     /**
@@ -1932,91 +2040,27 @@ public class Reference {
      * @return The target reference.
      */
     public Reference getTargetRef() {
-        Reference result = null;
+        final Components components = getComponents();
+        final Reference base = this.baseRef;
+        final String baseKey = (isRelative() && (base != null) && base
+                .isAbsolute()) ? base.internalRef : null;
+        Reference result = components.target;
 
-        // Step 1 - Resolve relative reference against their base reference
-        if (isRelative() && (this.baseRef != null)) {
-            Reference baseReference = null;
+        // The target of an absolute reference only depends on itself, the
+        // target of a relative reference is reused only if its base reference
+        // is also absolute and unchanged
+        if ((result == null)
+                || ((baseKey == null) ? (components.targetBase != null)
+                        : !baseKey.equals(components.targetBase))) {
+            result = resolveTargetRef();
 
-            if (this.baseRef.isAbsolute()) {
-                baseReference = this.baseRef;
-            } else {
-                baseReference = this.baseRef.getTargetRef();
+            if (!isRelative() || (baseKey != null)) {
+                components.target = result;
+                components.targetBase = baseKey;
             }
-
-            if (baseReference.isRelative()) {
-                throw new IllegalArgumentException(
-                        "The base reference must have an absolute hierarchical path component");
-            }
-
-            // Relative URI detected
-            String authority = getAuthority();
-            String path = getPath();
-            String query = getQuery();
-            String fragment = getFragment();
-
-            // Create an empty reference
-            result = new Reference();
-            result.setScheme(baseReference.getScheme());
-
-            if (authority != null) {
-                result.setAuthority(authority);
-                result.setPath(path);
-                result.setQuery(query);
-            } else {
-                result.setAuthority(baseReference.getAuthority());
-
-                if ((path == null) || (path.equals(""))) {
-                    result.setPath(baseReference.getPath());
-
-                    if (query != null) {
-                        result.setQuery(query);
-                    } else {
-                        result.setQuery(baseReference.getQuery());
-                    }
-                } else {
-                    if (path.startsWith("/")) {
-                        result.setPath(path);
-                    } else {
-                        final String basePath = baseReference.getPath();
-                        String mergedPath = null;
-
-                        if ((baseReference.getAuthority() != null)
-                                && ((basePath == null) || (basePath.equals("")))) {
-                            mergedPath = "/" + path;
-                        } else {
-                            // Remove the last segment which may be empty if
-                            // the path is ending with a slash
-                            final int lastSlash = basePath.lastIndexOf('/');
-                            if (lastSlash == -1) {
-                                mergedPath = path;
-                            } else {
-                                mergedPath = basePath.substring(0,
-                                        lastSlash + 1) + path;
-                            }
-                        }
-
-                        result.setPath(mergedPath);
-                    }
-
-                    result.setQuery(query);
-                }
-            }
-
-            result.setFragment(fragment);
-        } else if (isRelative()) {
-            // Relative reference with no baseRef detected
-            throw new IllegalArgumentException(
-                    "Relative references are only usable when a base reference is set.");
-        } else {
-            // Absolute URI detected
-            result = new Reference(this.internalRef);
         }
 
-        // Step 2 - Normalize the target reference
-        result.normalize();
-
-        return result;
+        return result.copy();
     }
 
     /**
@@ -2193,7 +2237,7 @@ public class Reference {
      * @return True if the reference is relative.
      */
     public boolean isRelative() {
-        return (getScheme() == null);
+        return !hasScheme();
     }
 
     /**
@@ -2306,6 +2350,51 @@ public class Reference {
         return this;
     }
 
+    /**
+     * Parses the list of segments of a hierarchical path.
+     * 
+     * @param path
+     *            The path to parse.
+     * @return The list of segments.
+     */
+    private static List<String> parseSegments(String path) {
+        final List<String> result = new ArrayList<String>();
+        int start = -2; // The index of the slash starting the segment
+        char current;
+
+        if (path != null) {
+            for (int i = 0; i < path.length(); i++) {
+                current = path.charAt(i);
+
+                if (current == '/') {
+                    if (start == -2) {
+                        // Beginning of an absolute path or sequence of two
+                        // separators
+                        start = i;
+                    } else {
+                        // End of a segment
+                        result.add(path.substring(start + 1, i));
+                        start = i;
+                    }
+                } else {
+                    if (start == -2) {
+                        // Starting a new segment for a relative path
+                        start = -1;
+                    } else {
+                        // Looking for the next character
+                    }
+                }
+            }
+
+            if (start != -2) {
+                // Add the last segment
+                result.add(path.substring(start + 1));
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Removes the last segement from the output builder.
      * 
@@ -2330,6 +2419,106 @@ public class Reference {
 
     }
 
+    /**
+     * Resolves the target reference, without using the parsed components
+     * cache.
+     * 
+     * @throws IllegalArgumentException
+     *             If the base reference (after resolution) is not absolute.
+     * @throws IllegalArgumentException
+     *             If the reference is relative and not base reference has been
+     *             provided.
+     * 
+     * @return The target reference.
+     */
+    private Reference resolveTargetRef() {
+        Reference result = null;
+
+        // Step 1 - Resolve relative reference against their base reference
+        if (isRelative() && (this.baseRef != null)) {
+            Reference baseReference = null;
+
+            if (this.baseRef.isAbsolute()) {
+                baseReference = this.baseRef;
+            } else {
+                baseReference = this.baseRef.getTargetRef();
+            }
+
+            if (baseReference.isRelative()) {
+                throw new IllegalArgumentException(
+                        "The base reference must have an absolute hierarchical path component");
+            }
+
+            // Relative URI detected
+            String authority = getAuthority();
+            String path = getPath();
+            String query = getQuery();
+            String fragment = getFragment();
+
+            // Create an empty reference
+            result = new Reference();
+            result.setScheme(baseReference.getScheme());
+
+            if (authority != null) {
+                result.setAuthority(authority);
+                result.setPath(path);
+                result.setQuery(query);
+            } else {
+                result.setAuthority(baseReference.getAuthority());
+
+                if ((path == null) || (path.equals(""))) {
+                    result.setPath(baseReference.getPath());
+
+                    if (query != null) {
+                        result.setQuery(query);
+                    } else {
+                        result.setQuery(baseReference.getQuery());
+                    }
+                } else {
+                    if (path.startsWith("/")) {
+                        result.setPath(path);
+                    } else {
+                        final String basePath = baseReference.getPath();
+                        String mergedPath = null;
+
+                        if ((baseReference.getAuthority() != null)
+                                && ((basePath == null) || (basePath.equals("")))) {
+                            mergedPath = "/" + path;
+                        } else {
+                            // Remove the last segment which may be empty if
+                            // the path is ending with a slash
+                            final int lastSlash = basePath.lastIndexOf('/');
+                            if (lastSlash == -1) {
+                                mergedPath = path;
+                            } else {
+                                mergedPath = basePath.substring(0,
+                                        lastSlash + 1) + path;
+                            }
+                        }
+
+                        result.setPath(mergedPath);
+                    }
+
+                    result.setQuery(query);
+                }
+            }
+
+            result.setFragment(fragment);
+        } else if (isRelative()) {
+            // Relative reference with no baseRef detected
+            throw new IllegalArgumentException(
+                    "Relative references are only usable when a base reference is set.");
+        } else {
+            // Absolute URI detected
+            result = new Reference(this.internalRef);
+        }
+
+        // Step 2 - Normalize the target reference
+        result.normalize();
+
+        return result;
+    }
+
     /**
      * Sets the authority component for hierarchical identifiers.
      * 
@@ -3090,5 +3279,7 @@ public class Reference {
             this.queryIndex = -1;
             this.fragmentIndex = -1;
         }
+
+        this.components = null;
     }
 }
@@ -29,9 +29,12 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Formatter;
 import java.util.logging.Level;
@@ -59,7 +62,13 @@ import org.restlet.engine.log.LoggerFacade;
  * replace it by providing an alternate {@link LoggerFacade} implementation. For
  * this, just pass a system property named
  * "org.restlet.engine.loggerFacadeClass" with the qualified class name as a
- * value.
+ * value.<br>
+ * <br>
+ * In order to reduce the startup time, the classpath scanning of helper
+ * descriptors can be replaced by a {@link HelperRegistry} generated at build
+ * time. For this, pass a system property named
+ * "org.restlet.engine.helperRegistry" with "true" or the path of the registry
+ * resources as a value.
  * 
  * @author Jerome Louvel
  */
@@ -92,9 +101,21 @@ public class Engine {
     public static final String DESCRIPTOR_SERVER_PATH = DESCRIPTOR + "/"
             + DESCRIPTOR_SERVER;
 
+    // [ifndef gwt] member
+    /** The buffer pool shared by the copy routines and the connectors. */
+    private static volatile org.restlet.engine.io.BufferPool bufferPool = new org.restlet.engine.io.BufferPool();
+
     /** The registered engine. */
     private static volatile Engine instance = null;
 
+    // [ifndef gwt] member
+    /**
+     * Indicates if the messages use the lean allocation profile. It looks for
+     * the System property "org.restlet.engine.leanMessages".
+     */
+    private static volatile boolean leanMessages = Boolean
+            .getBoolean("org.restlet.engine.leanMessages");
+
     // [ifdef jse,android,osgi] member
     /** The org.restlet log level . */
     private static volatile boolean logConfigured = false;
@@ -248,6 +269,18 @@ public class Engine {
         return getInstance().getLoggerFacade().getAnonymousLogger();
     }
 
+    // [ifndef gwt] method
+    /**
+     * Returns the buffer pool shared by the copy routines of
+     * {@link org.restlet.engine.io.IoUtils}, the representations and the
+     * connectors. It doesn't require a registered engine.
+     * 
+     * @return The shared buffer pool.
+     */
+    public static org.restlet.engine.io.BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
     /**
      * Returns the registered Restlet engine.
      * 
@@ -358,6 +391,22 @@ public class Engine {
         return Engine.restletLogLevel;
     }
 
+    // [ifndef gwt] method
+    /**
+     * Indicates if the messages use the lean allocation profile. In this
+     * profile, the attributes of the messages are stored in a compact
+     * {@link org.restlet.engine.util.AttributeMap} instead of a
+     * {@link java.util.concurrent.ConcurrentHashMap}, which requires each
+     * message to be handled by one thread at a time. Default value is false
+     * unless the "org.restlet.engine.leanMessages" system property is set to
+     * "true".
+     * 
+     * @return True if the messages use the lean allocation profile.
+     */
+    public static boolean isLeanMessages() {
+        return leanMessages;
+    }
+
     // [ifndef gwt] method
     /**
      * Returns the class object for the given name using the engine classloader.
@@ -399,6 +448,30 @@ public class Engine {
         return result;
     }
 
+    // [ifndef gwt] method
+    /**
+     * Sets the buffer pool shared by the copy routines, the representations
+     * and the connectors.
+     * 
+     * @param bufferPool
+     *            The shared buffer pool.
+     */
+    public static void setBufferPool(org.restlet.engine.io.BufferPool bufferPool) {
+        Engine.bufferPool = bufferPool;
+    }
+
+    // [ifndef gwt] method
+    /**
+     * Indicates if the messages use the lean allocation profile.
+     * 
+     * @param leanMessages
+     *            True if the messages use the lean allocation profile.
+     * @see #isLeanMessages()
+     */
+    public static void setLeanMessages(boolean leanMessages) {
+        Engine.leanMessages = leanMessages;
+    }
+
     // [ifdef jse,android,osgi] method
     /**
      * Sets the general log formatter.
@@ -440,9 +513,17 @@ public class Engine {
     /** Class loader to use for dynamic class loading. */
     private volatile ClassLoader classLoader;
 
+    // [ifndef gwt] member
+    /** The helper registry used instead of the classpath scanning. */
+    private volatile HelperRegistry helperRegistry;
+
     /** The logger facade to use. */
     private LoggerFacade loggerFacade;
 
+    // [ifndef gwt] member
+    /** The registered helpers not instantiated yet, per category. */
+    private final Map<String, List<HelperRegistry.Entry>> pendingHelpers;
+
     // [ifndef gwt] member
     /** List of available authenticator helpers. */
     private final List<org.restlet.engine.security.AuthenticatorHelper> registeredAuthenticators;
@@ -511,10 +592,24 @@ public class Engine {
         this.registeredServers = new CopyOnWriteArrayList<org.restlet.engine.connector.ConnectorHelper<org.restlet.Server>>();
         this.registeredAuthenticators = new CopyOnWriteArrayList<org.restlet.engine.security.AuthenticatorHelper>();
         this.registeredConverters = new CopyOnWriteArrayList<org.restlet.engine.converter.ConverterHelper>();
+        this.pendingHelpers = new ConcurrentHashMap<String, List<HelperRegistry.Entry>>();
         // [enddef]
 
         if (discoverHelpers) {
             try {
+                // [ifndef gwt]
+                String registryPath = System
+                        .getProperty("org.restlet.engine.helperRegistry");
+
+                if ((registryPath != null) && !"false".equals(registryPath)) {
+                    HelperRegistry registry = new HelperRegistry();
+                    registry.read(getClassLoader(),
+                            "true".equals(registryPath) ? HelperRegistry.DEFAULT_PATH
+                                    : registryPath);
+                    registerHelpers(registry);
+                }
+                // [enddef]
+
                 discoverConnectors();
                 discoverProtocols();
 
@@ -557,8 +652,11 @@ public class Engine {
         org.restlet.engine.connector.ConnectorHelper<Client> result = null;
 
         if (!client.getProtocols().isEmpty()) {
+            // [ifndef gwt] instruction
+            result = createPendingHelper(HelperRegistry.CLIENT, client,
+                    Client.class, helperClass);
             org.restlet.engine.connector.ConnectorHelper<Client> connector = null;
-            for (final Iterator<org.restlet.engine.connector.ConnectorHelper<Client>> iter = getRegisteredClients()
+            for (final Iterator<org.restlet.engine.connector.ConnectorHelper<Client>> iter = this.registeredClients
                     .iterator(); (result == null) && iter.hasNext();) {
                 connector = iter.next();
 
@@ -623,8 +721,10 @@ public class Engine {
         org.restlet.engine.connector.ConnectorHelper<org.restlet.Server> result = null;
 
         if (!server.getProtocols().isEmpty()) {
+            result = createPendingHelper(HelperRegistry.SERVER, server,
+                    org.restlet.Server.class, helperClass);
             org.restlet.engine.connector.ConnectorHelper<org.restlet.Server> connector = null;
-            for (final Iterator<org.restlet.engine.connector.ConnectorHelper<org.restlet.Server>> iter = getRegisteredServers()
+            for (final Iterator<org.restlet.engine.connector.ConnectorHelper<org.restlet.Server>> iter = this.registeredServers
                     .iterator(); (result == null) && iter.hasNext();) {
                 connector = iter.next();
 
@@ -669,6 +769,58 @@ public class Engine {
         return result;
     }
 
+    // [ifndef gwt] method
+    /**
+     * Creates a new helper for a given connector from the registered helpers
+     * that haven't been instantiated yet. Only the class of the first matching
+     * helper is loaded.
+     * 
+     * @param category
+     *            The helper category.
+     * @param connector
+     *            The connector to help.
+     * @param connectorClass
+     *            The connector class expected by the helper constructor.
+     * @param helperClass
+     *            Optional helper class name.
+     * @return The new helper or null.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends org.restlet.Connector> org.restlet.engine.connector.ConnectorHelper<T> createPendingHelper(
+            String category, T connector, Class<T> connectorClass,
+            String helperClass) {
+        org.restlet.engine.connector.ConnectorHelper<T> result = null;
+        List<HelperRegistry.Entry> entries = this.pendingHelpers.get(category);
+
+        if (entries != null) {
+            HelperRegistry.Entry entry;
+
+            for (Iterator<HelperRegistry.Entry> iter = entries.iterator(); (result == null)
+                    && iter.hasNext();) {
+                entry = iter.next();
+
+                if (((helperClass == null) || entry.getClassName().equals(
+                        helperClass))
+                        && entry.getProtocols().containsAll(
+                                connector.getProtocols())) {
+                    try {
+                        result = (org.restlet.engine.connector.ConnectorHelper<T>) getClassLoader()
+                                .loadClass(entry.getClassName())
+                                .getConstructor(connectorClass)
+                                .newInstance(connector);
+                    } catch (Throwable t) {
+                        Context.getCurrentLogger().log(
+                                Level.SEVERE,
+                                "Exception during the instantiation of the connector helper "
+                                        + entry.getClassName(), t);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
     // [ifndef gwt] method
     /**
      * Discovers the authenticator helpers and register the default helpers.
@@ -676,8 +828,11 @@ public class Engine {
      * @throws IOException
      */
     private void discoverAuthenticators() throws IOException {
-        registerHelpers(DESCRIPTOR_AUTHENTICATOR_PATH,
-                getRegisteredAuthenticators(), null);
+        if (getHelperRegistry() == null) {
+            registerHelpers(DESCRIPTOR_AUTHENTICATOR_PATH,
+                    this.registeredAuthenticators, null);
+        }
+
         registerDefaultAuthentications();
     }
 
@@ -689,10 +844,12 @@ public class Engine {
      */
     private void discoverConnectors() throws IOException {
         // [ifndef gwt]
-        registerHelpers(DESCRIPTOR_CLIENT_PATH, getRegisteredClients(),
-                Client.class);
-        registerHelpers(DESCRIPTOR_SERVER_PATH, getRegisteredServers(),
-                org.restlet.Server.class);
+        if (getHelperRegistry() == null) {
+            registerHelpers(DESCRIPTOR_CLIENT_PATH, this.registeredClients,
+                    Client.class);
+            registerHelpers(DESCRIPTOR_SERVER_PATH, this.registeredServers,
+                    org.restlet.Server.class);
+        }
         // [enddef]
         registerDefaultConnectors();
     }
@@ -704,8 +861,11 @@ public class Engine {
      * @throws IOException
      */
     private void discoverConverters() throws IOException {
-        registerHelpers(DESCRIPTOR_CONVERTER_PATH, getRegisteredConverters(),
-                null);
+        if (getHelperRegistry() == null) {
+            registerHelpers(DESCRIPTOR_CONVERTER_PATH,
+                    this.registeredConverters, null);
+        }
+
         registerDefaultConverters();
     }
 
@@ -715,9 +875,16 @@ public class Engine {
      * @throws IOException
      */
     private void discoverProtocols() throws IOException {
-        // [ifndef gwt] instruction
-        registerHelpers(DESCRIPTOR_PROTOCOL_PATH, getRegisteredProtocols(),
-                null);
+        // [ifndef gwt]
+        if (getHelperRegistry() != null) {
+            // Protocol helpers register methods when instantiated
+            resolveHelpers(HelperRegistry.PROTOCOL, this.registeredProtocols,
+                    null);
+        } else {
+            registerHelpers(DESCRIPTOR_PROTOCOL_PATH, this.registeredProtocols,
+                    null);
+        }
+        // [enddef]
         registerDefaultProtocols();
     }
 
@@ -779,6 +946,17 @@ public class Engine {
         return classLoader;
     }
 
+    // [ifndef gwt] method
+    /**
+     * Returns the helper registry used instead of the classpath scanning of
+     * helper descriptors.
+     * 
+     * @return The helper registry or null.
+     */
+    public HelperRegistry getHelperRegistry() {
+        return helperRegistry;
+    }
+
     /**
      * Returns the logger facade to use.
      * 
@@ -811,6 +989,8 @@ public class Engine {
      * @return The list of available authentication helpers.
      */
     public List<org.restlet.engine.security.AuthenticatorHelper> getRegisteredAuthenticators() {
+        resolveHelpers(HelperRegistry.AUTHENTICATOR,
+                this.registeredAuthenticators, null);
         return this.registeredAuthenticators;
     }
 
@@ -820,6 +1000,9 @@ public class Engine {
      * @return The list of available client connectors.
      */
     public List<org.restlet.engine.connector.ConnectorHelper<Client>> getRegisteredClients() {
+        // [ifndef gwt] instruction
+        resolveHelpers(HelperRegistry.CLIENT, this.registeredClients,
+                Client.class);
         return this.registeredClients;
     }
 
@@ -830,7 +1013,9 @@ public class Engine {
      * @return The list of available converters.
      */
     public List<org.restlet.engine.converter.ConverterHelper> getRegisteredConverters() {
-        return registeredConverters;
+        resolveHelpers(HelperRegistry.CONVERTER, this.registeredConverters,
+                null);
+        return this.registeredConverters;
     }
 
     /**
@@ -849,6 +1034,8 @@ public class Engine {
      * @return The list of available server connectors.
      */
     public List<org.restlet.engine.connector.ConnectorHelper<org.restlet.Server>> getRegisteredServers() {
+        resolveHelpers(HelperRegistry.SERVER, this.registeredServers,
+                org.restlet.Server.class);
         return this.registeredServers;
     }
 
@@ -868,9 +1055,9 @@ public class Engine {
      * Registers the default authentication helpers.
      */
     public void registerDefaultAuthentications() {
-        getRegisteredAuthenticators().add(
+        this.registeredAuthenticators.add(
                 new org.restlet.engine.security.HttpBasicHelper());
-        getRegisteredAuthenticators().add(
+        this.registeredAuthenticators.add(
                 new org.restlet.engine.security.SmtpPlainHelper());
     }
 
@@ -879,36 +1066,36 @@ public class Engine {
      */
     public void registerDefaultConnectors() {
         // [ifndef gae, gwt]
-        getRegisteredClients().add(
+        this.registeredClients.add(
                 new org.restlet.engine.connector.FtpClientHelper(null));
         // [enddef]
         // [ifndef gwt]
-        getRegisteredClients().add(
+        this.registeredClients.add(
                 new org.restlet.engine.connector.HttpClientHelper(null));
-        getRegisteredClients().add(
+        this.registeredClients.add(
                 new org.restlet.engine.local.ClapClientHelper(null));
-        getRegisteredClients().add(
+        this.registeredClients.add(
                 new org.restlet.engine.local.RiapClientHelper(null));
-        getRegisteredServers().add(
+        this.registeredServers.add(
                 new org.restlet.engine.local.RiapServerHelper(null));
         // [enddef]
 
         // [ifndef android, gae, gwt]
-        getRegisteredServers().add(
+        this.registeredServers.add(
                 new org.restlet.engine.connector.HttpServerHelper(null));
-        getRegisteredServers().add(
+        this.registeredServers.add(
                 new org.restlet.engine.connector.HttpsServerHelper(null));
         // [enddef]
 
         // [ifndef gae, gwt]
-        getRegisteredClients().add(
+        this.registeredClients.add(
                 new org.restlet.engine.local.FileClientHelper(null));
-        getRegisteredClients().add(
+        this.registeredClients.add(
                 new org.restlet.engine.local.ZipClientHelper(null));
         // [enddef]
 
         // [ifdef gwt] uncomment
-        // getRegisteredClients().add(
+        // this.registeredClients.add(
         // new org.restlet.engine.adapter.GwtHttpClientHelper(null));
         // [enddef]
     }
@@ -918,7 +1105,7 @@ public class Engine {
      * Registers the default converters.
      */
     public void registerDefaultConverters() {
-        getRegisteredConverters().add(
+        this.registeredConverters.add(
                 new org.restlet.engine.converter.DefaultConverter());
     }
 
@@ -926,7 +1113,7 @@ public class Engine {
      * Registers the default protocols.
      */
     public void registerDefaultProtocols() {
-        getRegisteredProtocols().add(
+        this.registeredProtocols.add(
                 new org.restlet.engine.connector.HttpProtocolHelper());
     }
 
@@ -1007,6 +1194,42 @@ public class Engine {
         }
     }
 
+    // [ifndef gwt] method
+    /**
+     * Registers the helpers listed by a helper registry. They are only
+     * instantiated when first needed, except the protocol helpers. The
+     * classpath isn't scanned anymore for helper descriptors when discovering
+     * helpers.
+     * 
+     * @param helperRegistry
+     *            The helper registry.
+     */
+    public void registerHelpers(HelperRegistry helperRegistry) {
+        String[] categories = { HelperRegistry.AUTHENTICATOR,
+                HelperRegistry.CLIENT, HelperRegistry.CONVERTER,
+                HelperRegistry.PROTOCOL, HelperRegistry.SERVER };
+        List<HelperRegistry.Entry> entries;
+
+        synchronized (this.pendingHelpers) {
+            for (String category : categories) {
+                entries = helperRegistry.getEntries(category);
+
+                if (!entries.isEmpty()) {
+                    List<HelperRegistry.Entry> pending = this.pendingHelpers
+                            .get(category);
+
+                    if (pending != null) {
+                        entries.addAll(0, pending);
+                    }
+
+                    this.pendingHelpers.put(category, entries);
+                }
+            }
+        }
+
+        this.helperRegistry = helperRegistry;
+    }
+
     // [ifndef gwt] method
     /**
      * Registers a list of helpers.
@@ -1098,6 +1321,50 @@ public class Engine {
                 });
     }
 
+    // [ifndef gwt] method
+    /**
+     * Instantiates the helpers of a category listed by the helper registry and
+     * not instantiated yet. They are inserted before the other helpers of the
+     * list, as if they had been discovered.
+     * 
+     * @param category
+     *            The helper category.
+     * @param helpers
+     *            The list of helpers to update.
+     * @param constructorClass
+     *            The constructor parameter class to look for.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void resolveHelpers(String category, List helpers,
+            Class constructorClass) {
+        if (this.pendingHelpers.containsKey(category)) {
+            synchronized (this.pendingHelpers) {
+                List<HelperRegistry.Entry> entries = this.pendingHelpers
+                        .get(category);
+
+                if ((entries != null) && !entries.isEmpty()) {
+                    // Prevent helper constructors from resolving again
+                    this.pendingHelpers.put(category,
+                            new ArrayList<HelperRegistry.Entry>());
+
+                    try {
+                        List resolved = new ArrayList();
+
+                        for (HelperRegistry.Entry entry : entries) {
+                            registerHelper(getClassLoader(),
+                                    entry.getClassName(), resolved,
+                                    constructorClass);
+                        }
+
+                        helpers.addAll(0, resolved);
+                    } finally {
+                        this.pendingHelpers.remove(category);
+                    }
+                }
+            }
+        }
+    }
+
     // [ifndef gwt] method
     /**
      * Sets the engine class loader.
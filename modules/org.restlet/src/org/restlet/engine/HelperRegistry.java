@@ -0,0 +1,534 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.restlet.Client;
+import org.restlet.data.Protocol;
+import org.restlet.engine.connector.ConnectorHelper;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.engine.security.AuthenticatorHelper;
+
+// [excludes gwt]
+/**
+ * Precomputed list of the helpers provided by a set of JAR files, with their
+ * supported protocols and capabilities. It is generated at build time by the
+ * {@link #main(String[])} method from the "META-INF/services" descriptors, and
+ * stored in the {@link #DEFAULT_PATH} resource of each JAR.<br>
+ * <br>
+ * When the "org.restlet.engine.helperRegistry" system property is set, the
+ * {@link Engine} reads the registries instead of scanning the classpath for
+ * helper descriptors, and only instantiates the registered helpers when they
+ * are first needed. A value of "true" reads all the resources found at
+ * {@link #DEFAULT_PATH}, any other value is taken as the path of the registry
+ * resources to read, for example a single registry generated for the whole
+ * application classpath.<br>
+ * <br>
+ * Each line of a registry describes one helper with its category, its class
+ * name and optional attributes, for example:
+ * 
+ * <pre>
+ * client org.restlet.ext.jetty.HttpClientHelper protocols=HTTP,HTTPS
+ * authenticator org.restlet.ext.crypto.HttpDigestHelper scheme=HTTP_DIGEST clientSide=true serverSide=true
+ * converter org.restlet.ext.jackson.JacksonConverter
+ * </pre>
+ * 
+ * Text following a '#' character is ignored.
+ * 
+ * @author Jerome Louvel
+ */
+public class HelperRegistry {
+
+    /**
+     * Registered helper.
+     */
+    public static class Entry {
+
+        /** The helper category. */
+        private final String category;
+
+        /** The challenge scheme name of an authenticator helper. */
+        private final String challengeScheme;
+
+        /** The helper class name. */
+        private final String className;
+
+        /** Indicates if an authenticator helper supports the client side. */
+        private final boolean clientSide;
+
+        /** The protocols supported by a connector helper. */
+        private final List<Protocol> protocols;
+
+        /** Indicates if an authenticator helper supports the server side. */
+        private final boolean serverSide;
+
+        /**
+         * Constructor.
+         * 
+         * @param category
+         *            The helper category.
+         * @param className
+         *            The helper class name.
+         * @param protocols
+         *            The protocols supported by a connector helper.
+         * @param challengeScheme
+         *            The challenge scheme name of an authenticator helper.
+         * @param clientSide
+         *            Indicates if an authenticator helper supports the client
+         *            side.
+         * @param serverSide
+         *            Indicates if an authenticator helper supports the server
+         *            side.
+         */
+        public Entry(String category, String className,
+                List<Protocol> protocols, String challengeScheme,
+                boolean clientSide, boolean serverSide) {
+            this.category = category;
+            this.className = className;
+            this.protocols = (protocols == null) ? Collections
+                    .<Protocol> emptyList() : Collections
+                    .unmodifiableList(new ArrayList<Protocol>(protocols));
+            this.challengeScheme = challengeScheme;
+            this.clientSide = clientSide;
+            this.serverSide = serverSide;
+        }
+
+        /**
+         * Returns the helper category. See the category constants of
+         * {@link HelperRegistry}.
+         * 
+         * @return The helper category.
+         */
+        public String getCategory() {
+            return category;
+        }
+
+        /**
+         * Returns the challenge scheme name of an authenticator helper.
+         * 
+         * @return The challenge scheme name or null.
+         */
+        public String getChallengeScheme() {
+            return challengeScheme;
+        }
+
+        /**
+         * Returns the helper class name.
+         * 
+         * @return The helper class name.
+         */
+        public String getClassName() {
+            return className;
+        }
+
+        /**
+         * Returns the unmodifiable list of protocols supported by a connector
+         * helper.
+         * 
+         * @return The protocols supported by a connector helper.
+         */
+        public List<Protocol> getProtocols() {
+            return protocols;
+        }
+
+        /**
+         * Indicates if an authenticator helper supports the client side.
+         * 
+         * @return True if an authenticator helper supports the client side.
+         */
+        public boolean isClientSide() {
+            return clientSide;
+        }
+
+        /**
+         * Indicates if an authenticator helper supports the server side.
+         * 
+         * @return True if an authenticator helper supports the server side.
+         */
+        public boolean isServerSide() {
+            return serverSide;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(getCategory()).append(' ').append(getClassName());
+
+            if (!getProtocols().isEmpty()) {
+                sb.append(" protocols=");
+
+                for (int i = 0; i < getProtocols().size(); i++) {
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+
+                    sb.append(getProtocols().get(i).getName());
+                }
+            }
+
+            if (getChallengeScheme() != null) {
+                sb.append(" scheme=").append(getChallengeScheme());
+                sb.append(" clientSide=").append(isClientSide());
+                sb.append(" serverSide=").append(isServerSide());
+            }
+
+            return sb.toString();
+        }
+    }
+
+    /** The category of the authenticator helpers. */
+    public static final String AUTHENTICATOR = "authenticator";
+
+    /** The category of the client connector helpers. */
+    public static final String CLIENT = "client";
+
+    /** The category of the converter helpers. */
+    public static final String CONVERTER = "converter";
+
+    /** The default path of the registry resources. */
+    public static final String DEFAULT_PATH = "META-INF/restlet/helpers.registry";
+
+    /** The category of the protocol helpers. */
+    public static final String PROTOCOL = "protocol";
+
+    /** The category of the server connector helpers. */
+    public static final String SERVER = "server";
+
+    /**
+     * Returns the descriptor path of a helper category.
+     * 
+     * @param category
+     *            The helper category.
+     * @return The "META-INF/services" descriptor path.
+     */
+    private static String getDescriptorPath(String category) {
+        String result = null;
+
+        if (AUTHENTICATOR.equals(category)) {
+            result = Engine.DESCRIPTOR_AUTHENTICATOR_PATH;
+        } else if (CLIENT.equals(category)) {
+            result = Engine.DESCRIPTOR_CLIENT_PATH;
+        } else if (CONVERTER.equals(category)) {
+            result = Engine.DESCRIPTOR_CONVERTER_PATH;
+        } else if (PROTOCOL.equals(category)) {
+            result = Engine.DESCRIPTOR_PROTOCOL_PATH;
+        } else if (SERVER.equals(category)) {
+            result = Engine.DESCRIPTOR_SERVER_PATH;
+        }
+
+        return result;
+    }
+
+    /**
+     * Generates a registry file. The first argument is the path of the file to
+     * write. The following optional arguments are directories containing
+     * "META-INF/services" descriptors to describe. When none is given, the
+     * descriptors found on the classpath are described.
+     * 
+     * @param args
+     *            The registry file and the descriptor directories.
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err
+                    .println("Usage: HelperRegistry <registry file> [<descriptor directory>...]");
+        } else {
+            Engine engine = new Engine(false);
+            HelperRegistry registry = new HelperRegistry();
+            String[] categories = { CLIENT, SERVER, PROTOCOL, AUTHENTICATOR,
+                    CONVERTER };
+
+            for (String category : categories) {
+                List<java.net.URL> descriptors = new ArrayList<java.net.URL>();
+
+                if (args.length > 1) {
+                    for (int i = 1; i < args.length; i++) {
+                        File file = new File(args[i],
+                                getDescriptorPath(category));
+
+                        if (file.isFile()) {
+                            descriptors.add(file.toURI().toURL());
+                        }
+                    }
+                } else {
+                    descriptors.addAll(Collections.list(engine
+                            .getClassLoader().getResources(
+                                    getDescriptorPath(category))));
+                }
+
+                for (java.net.URL descriptor : descriptors) {
+                    registry.register(engine, category, descriptor);
+                }
+            }
+
+            File file = new File(args[0]);
+
+            if (file.getParentFile() != null) {
+                file.getParentFile().mkdirs();
+            }
+
+            Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+                    "utf-8");
+            try {
+                registry.write(writer);
+            } finally {
+                writer.close();
+            }
+        }
+    }
+
+    /** The registered helpers. */
+    private final List<Entry> entries;
+
+    /**
+     * Constructor.
+     */
+    public HelperRegistry() {
+        this.entries = new CopyOnWriteArrayList<Entry>();
+    }
+
+    /**
+     * Describes a helper instance and adds it to the registry.
+     * 
+     * @param category
+     *            The helper category.
+     * @param helper
+     *            The helper to describe.
+     * @return The new entry.
+     */
+    public Entry add(String category, Object helper) {
+        List<Protocol> protocols = null;
+        String scheme = null;
+        boolean clientSide = false;
+        boolean serverSide = false;
+
+        if (helper instanceof ConnectorHelper) {
+            protocols = ((ConnectorHelper<?>) helper).getProtocols();
+        } else if (helper instanceof AuthenticatorHelper) {
+            AuthenticatorHelper authenticator = (AuthenticatorHelper) helper;
+            scheme = authenticator.getChallengeScheme().getName();
+            clientSide = authenticator.isClientSide();
+            serverSide = authenticator.isServerSide();
+        }
+
+        Entry result = new Entry(category, helper.getClass().getName(),
+                protocols, scheme, clientSide, serverSide);
+        getEntries().add(result);
+        return result;
+    }
+
+    /**
+     * Returns the modifiable list of registered helpers.
+     * 
+     * @return The modifiable list of registered helpers.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns the registered helpers of a given category, in registration
+     * order.
+     * 
+     * @param category
+     *            The helper category.
+     * @return The registered helpers of the given category.
+     */
+    public List<Entry> getEntries(String category) {
+        List<Entry> result = new ArrayList<Entry>();
+
+        for (Entry entry : getEntries()) {
+            if (entry.getCategory().equals(category)) {
+                result.add(entry);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Parses a registry line.
+     * 
+     * @param line
+     *            The line to parse.
+     * @return The parsed entry or null if the line is empty.
+     */
+    private Entry parse(String line) {
+        Entry result = null;
+        int index = line.indexOf('#');
+
+        if (index != -1) {
+            line = line.substring(0, index);
+        }
+
+        String[] tokens = line.trim().split("\\s+");
+
+        if (tokens.length >= 2) {
+            List<Protocol> protocols = null;
+            String scheme = null;
+            boolean clientSide = false;
+            boolean serverSide = false;
+
+            for (int i = 2; i < tokens.length; i++) {
+                index = tokens[i].indexOf('=');
+                String name = (index == -1) ? tokens[i] : tokens[i].substring(
+                        0, index);
+                String value = (index == -1) ? "" : tokens[i]
+                        .substring(index + 1);
+
+                if ("protocols".equals(name)) {
+                    protocols = new ArrayList<Protocol>();
+
+                    for (String protocol : value.split(",")) {
+                        if (protocol.length() > 0) {
+                            protocols.add(Protocol.valueOf(protocol));
+                        }
+                    }
+                } else if ("scheme".equals(name)) {
+                    scheme = value;
+                } else if ("clientSide".equals(name)) {
+                    clientSide = Boolean.parseBoolean(value);
+                } else if ("serverSide".equals(name)) {
+                    serverSide = Boolean.parseBoolean(value);
+                }
+            }
+
+            result = new Entry(tokens[0], tokens[1], protocols, scheme,
+                    clientSide, serverSide);
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads the entries of a registry and adds them to this registry.
+     * 
+     * @param reader
+     *            The registry reader.
+     * @throws IOException
+     */
+    public void read(Reader reader) throws IOException {
+        BufferedReader br = (reader instanceof BufferedReader) ? (BufferedReader) reader
+                : new BufferedReader(reader, IoUtils.BUFFER_SIZE);
+        Entry entry;
+
+        for (String line = br.readLine(); line != null; line = br.readLine()) {
+            entry = parse(line);
+
+            if (entry != null) {
+                getEntries().add(entry);
+            }
+        }
+    }
+
+    /**
+     * Reads all the registry resources found at a given path and adds their
+     * entries to this registry.
+     * 
+     * @param classLoader
+     *            The class loader to use.
+     * @param path
+     *            The resource path.
+     * @throws IOException
+     */
+    public void read(ClassLoader classLoader, String path) throws IOException {
+        Enumeration<java.net.URL> urls = classLoader.getResources(path);
+
+        while ((urls != null) && urls.hasMoreElements()) {
+            Reader reader = new InputStreamReader(urls.nextElement()
+                    .openStream(), "utf-8");
+
+            try {
+                read(reader);
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Instantiates the helpers listed by a "META-INF/services" descriptor and
+     * adds their description to the registry.
+     * 
+     * @param engine
+     *            The engine used to instantiate the helpers.
+     * @param category
+     *            The helper category.
+     * @param descriptor
+     *            The descriptor URL.
+     */
+    private void register(Engine engine, String category,
+            java.net.URL descriptor) {
+        List<Object> helpers = new ArrayList<Object>();
+        Class<?> constructorClass = null;
+
+        if (CLIENT.equals(category)) {
+            constructorClass = Client.class;
+        } else if (SERVER.equals(category)) {
+            constructorClass = org.restlet.Server.class;
+        }
+
+        engine.registerHelpers(engine.getClassLoader(), descriptor, helpers,
+                constructorClass);
+
+        for (Object helper : helpers) {
+            add(category, helper);
+        }
+    }
+
+    /**
+     * Writes the entries of this registry.
+     * 
+     * @param writer
+     *            The registry writer.
+     * @throws IOException
+     */
+    public void write(Writer writer) throws IOException {
+        writer.write("# Restlet helper registry, generated by "
+                + getClass().getName() + "\n");
+
+        for (Entry entry : getEntries()) {
+            writer.write(entry.toString());
+            writer.write('\n');
+        }
+
+        writer.flush();
+    }
+
+}
@@ -138,12 +138,12 @@ public abstract class Call {
         this.protocol = null;
         this.reasonPhrase = "";
         // [ifndef gwt] instruction
-        this.requestHeaders = new Series<Header>(Header.class);
+        this.requestHeaders = new org.restlet.engine.header.IndexedHeaderSeries();
         // [ifdef gwt] instruction uncomment
         // this.requestHeaders = new org.restlet.engine.util.HeaderSeries();
         this.requestUri = null;
         // [ifndef gwt] instruction
-        this.responseHeaders = new Series<Header>(Header.class);
+        this.responseHeaders = new org.restlet.engine.header.IndexedHeaderSeries();
         // [ifdef gwt] instruction uncomment
         // this.responseHeaders = new org.restlet.engine.util.HeaderSeries();
         this.serverAddress = null;
@@ -265,6 +265,40 @@ public abstract class ClientCall extends Call {
         return !HeaderUtils.isConnectionClose(getResponseHeaders());
     }
 
+    // [ifndef gwt] method
+    /**
+     * Reads the HTTP response head (status line and headers). The head is read
+     * up to the empty line ending it, then parsed in bulk.
+     * 
+     * @param headStream
+     *            The input stream to read from.
+     * @throws IOException
+     */
+    protected void readResponseHead(InputStream headStream) throws IOException {
+        java.nio.ByteBuffer head = org.restlet.engine.header.HeadCodec
+                .readHead(headStream);
+        String[] statusLine = org.restlet.engine.header.HeadCodec
+                .readStartLine(head);
+        setVersion(statusLine[0]);
+
+        try {
+            setStatusCode(Integer.parseInt(statusLine[1]));
+        } catch (NumberFormatException nfe) {
+            throw new IOException("Unable to parse the status code: "
+                    + statusLine[1]);
+        }
+
+        setReasonPhrase(statusLine[2]);
+
+        // Parse the headers
+        Header header = org.restlet.engine.header.HeadCodec.readHeader(head);
+
+        while (header != null) {
+            getResponseHeaders().add(header);
+            header = org.restlet.engine.header.HeadCodec.readHeader(head);
+        }
+    }
+
     // [ifndef gwt] method
     /**
      * Sends the request to the client. Commits the request line, headers and
@@ -358,4 +392,19 @@ public abstract class ClientCall extends Call {
         return request.isEntityAvailable() && (request.getEntity() != null)
                 && !request.getEntity().hasKnownSize();
     }
+
+    // [ifndef gwt] method
+    /**
+     * Writes the request line and headers to the given output stream, at once.
+     * 
+     * @param headStream
+     *            The output stream to write to.
+     * @throws IOException
+     */
+    protected void writeRequestHead(OutputStream headStream) throws IOException {
+        org.restlet.engine.header.HeadCodec.writeRequestHead(getMethod(),
+                getRequestUri(), (getVersion() == null) ? "HTTP/1.1"
+                        : getVersion(), getRequestHeaders(), headStream);
+        headStream.flush();
+    }
 }
@@ -31,6 +31,7 @@ import org.restlet.Context;
 import org.restlet.Server;
 import org.restlet.engine.Engine;
 import org.restlet.engine.connector.ServerHelper;
+import org.restlet.engine.metrics.ConnectorMetrics;
 
 /**
  * Base HTTP server connector. Here is the list of parameters that are
@@ -68,6 +69,9 @@ public class HttpServerHelper extends ServerHelper {
     /** The adapter from HTTP calls to uniform calls. */
     private volatile ServerAdapter adapter;
 
+    /** The connector metrics. */
+    private final ConnectorMetrics metrics;
+
     /**
      * Default constructor. Note that many methods assume that a non-null server
      * is set to work properly. You can use the setHelped(Server) method for
@@ -86,6 +90,7 @@ public class HttpServerHelper extends ServerHelper {
     public HttpServerHelper(Server server) {
         super(server);
         this.adapter = null;
+        this.metrics = new ConnectorMetrics(this);
     }
 
     /**
@@ -129,6 +134,16 @@ public class HttpServerHelper extends ServerHelper {
         return this.adapter;
     }
 
+    /**
+     * Returns the connector metrics, registered while the connector is
+     * started.
+     * 
+     * @return The connector metrics.
+     */
+    public ConnectorMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Handles the connector call. The default behavior is to create an REST
      * call and delegate it to the attached Restlet.
@@ -137,15 +152,24 @@ public class HttpServerHelper extends ServerHelper {
      *            The HTTP server call.
      */
     public void handle(ServerCall httpCall) {
+        long bytesOut = -1;
+        getMetrics().callStarted(httpCall.getContentLength());
+
         try {
             HttpRequest request = getAdapter().toRequest(httpCall);
             HttpResponse response = new HttpResponse(httpCall, request);
             handle(request, response);
+
+            if (response.isEntityAvailable()) {
+                bytesOut = response.getEntity().getSize();
+            }
+
             getAdapter().commit(response);
         } catch (Exception e) {
             getLogger().log(Level.WARNING,
                     "Error while handling an HTTP server call", e);
         } finally {
+            getMetrics().callEnded(bytesOut);
             Engine.clearThreadLocalVariables();
         }
     }
@@ -159,4 +183,17 @@ public class HttpServerHelper extends ServerHelper {
     public void setAdapter(ServerAdapter adapter) {
         this.adapter = adapter;
     }
+
+    @Override
+    public void start() throws Exception {
+        super.start();
+        getMetrics().register();
+    }
+
+    @Override
+    public synchronized void stop() throws Exception {
+        getMetrics().unregister();
+        super.stop();
+    }
+
 }
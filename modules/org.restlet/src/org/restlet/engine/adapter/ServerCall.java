@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
 import java.security.cert.Certificate;
 import java.util.Arrays;
 import java.util.List;
@@ -46,15 +47,14 @@ import org.restlet.engine.connector.ConnectorHelper;
 import org.restlet.engine.header.ContentType;
 import org.restlet.engine.header.DispositionReader;
 import org.restlet.engine.header.EncodingReader;
+import org.restlet.engine.header.HeadCodec;
 import org.restlet.engine.header.HeaderConstants;
-import org.restlet.engine.header.HeaderReader;
 import org.restlet.engine.header.HeaderUtils;
 import org.restlet.engine.header.LanguageReader;
 import org.restlet.engine.header.RangeReader;
 import org.restlet.engine.io.IoUtils;
 import org.restlet.engine.ssl.SslUtils;
 import org.restlet.engine.util.Base64;
-import org.restlet.engine.util.StringUtils;
 import org.restlet.representation.EmptyRepresentation;
 import org.restlet.representation.InputRepresentation;
 import org.restlet.representation.Representation;
@@ -415,70 +415,57 @@ public abstract class ServerCall extends Call {
     }
 
     /**
-     * Reads the HTTP request head (request line and headers).
+     * Parses the HTTP request head (request line and headers) sliced from the
+     * head bytes.
      * 
+     * @param head
+     *            The head bytes.
      * @throws IOException
      */
-    protected void readRequestHead(InputStream headStream) throws IOException {
-        StringBuilder sb = new StringBuilder();
-
-        // Parse the request method
-        int next = headStream.read();
-        while ((next != -1) && !HeaderUtils.isSpace(next)) {
-            sb.append((char) next);
-            next = headStream.read();
-        }
-
-        if (next == -1) {
-            throw new IOException(
-                    "Unable to parse the request method. End of stream reached too early.");
-        }
-
-        setMethod(sb.toString());
-        sb.delete(0, sb.length());
-
-        // Parse the request URI
-        next = headStream.read();
-        while ((next != -1) && !HeaderUtils.isSpace(next)) {
-            sb.append((char) next);
-            next = headStream.read();
+    private void parseRequestHead(ByteBuffer head) throws IOException {
+        String[] requestLine = HeadCodec.readStartLine(head);
+        setMethod(requestLine[0]);
+        setRequestUri(requestLine[1]);
+        setVersion(requestLine[2]);
+
+        // Parse the headers
+        Header header = HeadCodec.readHeader(head);
+
+        while (header != null) {
+            getRequestHeaders().add(header);
+            header = HeadCodec.readHeader(head);
         }
+    }
 
-        if (next == -1) {
-            throw new IOException(
-                    "Unable to parse the request URI. End of stream reached too early.");
-        }
-        setRequestUri(sb.toString());
-        sb.delete(0, sb.length());
-
-        // Parse the HTTP version
-        next = headStream.read();
-        while ((next != -1) && !HeaderUtils.isCarriageReturn(next)) {
-            sb.append((char) next);
-            next = headStream.read();
-        }
+    /**
+     * Reads the HTTP request head (request line and headers) at the beginning
+     * of the remaining bytes of a buffer, for example filled from a socket
+     * channel. The buffer is positioned after the head, on the entity bytes.
+     * 
+     * @param buffer
+     *            The buffer to read from.
+     * @return True if the head was read, false if it isn't complete yet, in
+     *         which case the buffer isn't changed.
+     * @throws IOException
+     */
+    protected boolean readRequestHead(ByteBuffer buffer) throws IOException {
+        ByteBuffer head = HeadCodec.readHead(buffer);
 
-        if (next == -1) {
-            throw new IOException(
-                    "Unable to parse the HTTP version. End of stream reached too early.");
+        if (head != null) {
+            parseRequestHead(head);
         }
-        next = headStream.read();
-
-        if (HeaderUtils.isLineFeed(next)) {
-            setVersion(sb.toString());
-            sb.delete(0, sb.length());
 
-            // Parse the headers
-            Header header = HeaderReader.readHeader(headStream, sb);
+        return head != null;
+    }
 
-            while (header != null) {
-                getRequestHeaders().add(header);
-                header = HeaderReader.readHeader(headStream, sb);
-            }
-        } else {
-            throw new IOException(
-                    "Unable to parse the HTTP version. The carriage return must be followed by a line feed.");
-        }
+    /**
+     * Reads the HTTP request head (request line and headers). The head is read
+     * up to the empty line ending it, then parsed in bulk.
+     * 
+     * @throws IOException
+     */
+    protected void readRequestHead(InputStream headStream) throws IOException {
+        parseRequestHead(HeadCodec.readHead(headStream));
     }
 
     /**
@@ -610,23 +597,7 @@ public abstract class ServerCall extends Call {
      */
     protected void writeResponseHead(Response response, OutputStream headStream)
             throws IOException {
-        // Write the status line
         String version = (getVersion() == null) ? "1.1" : getVersion();
-        headStream.write(StringUtils.getAsciiBytes(version));
-        headStream.write(' ');
-        headStream.write(StringUtils.getAsciiBytes(Integer
-                .toString(getStatusCode())));
-        headStream.write(' ');
-
-        if (getReasonPhrase() != null) {
-            headStream.write(StringUtils.getLatin1Bytes(getReasonPhrase()));
-        } else {
-            headStream.write(StringUtils
-                    .getAsciiBytes(("Status " + getStatusCode())));
-        }
-
-        headStream.write(13); // CR
-        headStream.write(10); // LF
 
         // We don't support persistent connections yet
         getResponseHeaders().set(HeaderConstants.HEADER_CONNECTION, "close",
@@ -638,14 +609,10 @@ public abstract class ServerCall extends Call {
                     "chunked");
         }
 
-        // Write the response headers
-        for (Header header : getResponseHeaders()) {
-            HeaderUtils.writeHeaderLine(header, headStream);
-        }
-
-        // Write the end of the headers section
-        headStream.write(13); // CR
-        headStream.write(10); // LF
+        // Write the status line, the headers and the end of the headers
+        // section at once
+        HeadCodec.writeResponseHead(version, getStatusCode(),
+                getReasonPhrase(), getResponseHeaders(), headStream);
         headStream.flush();
     }
 
@@ -29,6 +29,7 @@ import java.util.regex.Pattern;
 
 import org.restlet.Request;
 import org.restlet.Response;
+import org.restlet.engine.util.BoundedCache;
 import org.restlet.routing.Route;
 import org.restlet.routing.Router;
 import org.restlet.routing.VirtualHost;
@@ -43,6 +44,14 @@ import org.restlet.routing.VirtualHost;
  * @author Jerome Louvel
  */
 public class HostRoute extends Route {
+
+    /** The pattern matching any string, used by default by virtual hosts. */
+    private static final String ANY = ".*";
+
+    /** The compiled patterns, shared by the routes of all the components. */
+    private static final BoundedCache<String, Pattern> PATTERNS = new BoundedCache<String, Pattern>(
+            256);
+
     /**
      * Constructor.
      * 
@@ -96,7 +105,8 @@ public class HostRoute extends Route {
 
     /**
      * Matches a formatted string against a regex pattern, in a case insensitive
-     * manner.
+     * manner. The compiled patterns are cached and the default pattern
+     * matching any string is short-circuited.
      * 
      * @param regex
      *            The pattern to use.
@@ -105,8 +115,28 @@ public class HostRoute extends Route {
      * @return True if the formatted string matched the pattern.
      */
     private boolean matches(String regex, String formattedString) {
-        return Pattern.compile(regex, Pattern.CASE_INSENSITIVE)
-                .matcher(formattedString).matches();
+        if (ANY.equals(regex)) {
+            // The dot matches anything but line terminators
+            for (int i = 0; i < formattedString.length(); i++) {
+                char c = formattedString.charAt(i);
+
+                if ((c == '\n') || (c == '\r') || (c == '\u0085')
+                        || (c == '\u2028') || (c == '\u2029')) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        Pattern pattern = PATTERNS.get(regex);
+
+        if (pattern == null) {
+            pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+            PATTERNS.put(regex, pattern);
+        }
+
+        return pattern.matcher(formattedString).matches();
     }
 
     /**
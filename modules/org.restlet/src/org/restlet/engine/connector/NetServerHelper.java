@@ -139,6 +139,7 @@ public abstract class NetServerHelper extends HttpServerHelper {
 
         // Ensure that core threads act like a minimum number of threads
         result.prestartAllCoreThreads();
+        getMetrics().setExecutor(result);
         return result;
     }
 
@@ -0,0 +1,179 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.converter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.restlet.representation.Representation;
+import org.restlet.representation.Variant;
+import org.restlet.resource.Resource;
+
+/**
+ * Representation passing a Java object by reference during internal calls, for
+ * example via the RIAP protocol. The receiving side can directly retrieve the
+ * object via the {@link org.restlet.service.ConverterService} without any
+ * serialization. When the content is actually needed, for example when the
+ * representation leaves the JVM through a server connector, the object is
+ * lazily converted using the converter helper originally selected.
+ * 
+ * @author Jerome Louvel
+ * @param <T>
+ *            The class of the wrapped object.
+ */
+public class PassThroughRepresentation<T> extends Representation {
+
+    /** The converted representation, lazily created. */
+    private volatile Representation converted;
+
+    /** The converter helper used for the lazy conversion. */
+    private final ConverterHelper helper;
+
+    /** The wrapped object. */
+    private final T object;
+
+    /** The parent resource used for the lazy conversion. */
+    private final Resource resource;
+
+    /** The target variant used for the lazy conversion. */
+    private final Variant target;
+
+    /**
+     * Constructor.
+     * 
+     * @param object
+     *            The wrapped object.
+     * @param target
+     *            The target representation variant.
+     * @param helper
+     *            The converter helper used for the lazy conversion.
+     * @param resource
+     *            The parent resource.
+     */
+    public PassThroughRepresentation(T object, Variant target,
+            ConverterHelper helper, Resource resource) {
+        super(target.getMediaType());
+        this.object = object;
+        this.target = target;
+        this.helper = helper;
+        this.resource = resource;
+        setCharacterSet(target.getCharacterSet());
+        getEncodings().addAll(target.getEncodings());
+        getLanguages().addAll(target.getLanguages());
+    }
+
+    /**
+     * Returns the representation obtained by converting the wrapped object,
+     * converting it on the first call.
+     * 
+     * @return The converted representation.
+     * @throws IOException
+     */
+    public Representation getConverted() throws IOException {
+        Representation result = this.converted;
+
+        if (result == null) {
+            result = this.helper.toRepresentation(this.object, this.target,
+                    this.resource);
+
+            if (result == null) {
+                throw new IOException("Unable to convert the passed through "
+                        + this.object.getClass().getName() + " object");
+            }
+
+            this.converted = result;
+        }
+
+        return result;
+    }
+
+    @Override
+    public ReadableByteChannel getChannel() throws IOException {
+        return getConverted().getChannel();
+    }
+
+    /**
+     * Returns the wrapped object.
+     * 
+     * @return The wrapped object.
+     */
+    public T getObject() {
+        return this.object;
+    }
+
+    @Override
+    public Reader getReader() throws IOException {
+        return getConverted().getReader();
+    }
+
+    @Override
+    public InputStream getStream() throws IOException {
+        return getConverted().getStream();
+    }
+
+    @Override
+    public String getText() throws IOException {
+        return getConverted().getText();
+    }
+
+    /**
+     * Indicates if the wrapped object has already been converted.
+     * 
+     * @return True if the wrapped object has already been converted.
+     */
+    public boolean isConverted() {
+        return this.converted != null;
+    }
+
+    @Override
+    public void release() {
+        if (this.converted != null) {
+            this.converted.release();
+        }
+
+        super.release();
+    }
+
+    @Override
+    public void write(OutputStream outputStream) throws IOException {
+        getConverted().write(outputStream);
+    }
+
+    @Override
+    public void write(WritableByteChannel writableChannel) throws IOException {
+        getConverted().write(writableChannel);
+    }
+
+    @Override
+    public void write(Writer writer) throws IOException {
+        getConverted().write(writer);
+    }
+
+}
@@ -0,0 +1,686 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.header;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.restlet.data.Header;
+import org.restlet.data.Status;
+import org.restlet.engine.Engine;
+import org.restlet.engine.io.BufferPool;
+import org.restlet.util.Series;
+
+/**
+ * Buffer oriented codec of HTTP/1.1 message heads.<br>
+ * <br>
+ * When reading, the end of the head is searched in bulk, then the start line
+ * and the header lines are sliced from the head bytes. Header names matching
+ * one of the {@link HeaderConstants} reuse the constant instead of allocating
+ * a string, and header values are only decoded when first accessed.<br>
+ * <br>
+ * When writing, the names of the {@link HeaderConstants} and the status lines
+ * of the standard HTTP/1.1 statuses are encoded once, and the whole head is
+ * assembled in a pooled buffer written at once.
+ * 
+ * @author Jerome Louvel
+ */
+public class HeadCodec {
+
+    /** Header whose value is decoded from the head bytes on first access. */
+    private static class LazyHeader extends Header {
+
+        /** The head bytes or null once decoded. */
+        private volatile byte[] bytes;
+
+        /** The length of the value. */
+        private volatile int length;
+
+        /** The offset of the value in the head bytes. */
+        private volatile int offset;
+
+        /**
+         * Constructor.
+         * 
+         * @param name
+         *            The header name.
+         * @param bytes
+         *            The head bytes.
+         * @param offset
+         *            The offset of the value in the head bytes.
+         * @param length
+         *            The length of the value.
+         */
+        public LazyHeader(String name, byte[] bytes, int offset, int length) {
+            super(name, null);
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public String getValue() {
+            byte[] head = this.bytes;
+
+            if (head != null) {
+                super.setValue(new String(head, this.offset, this.length,
+                        StandardCharsets.ISO_8859_1));
+                this.bytes = null;
+            }
+
+            return super.getValue();
+        }
+
+        @Override
+        public void setValue(String value) {
+            this.bytes = null;
+            super.setValue(value);
+        }
+    }
+
+    /** The precomputed names of the {@link HeaderConstants} headers. */
+    private static final Map<String, byte[]> NAME_BYTES;
+
+    /** The names of the {@link HeaderConstants} headers, per length. */
+    private static final String[][] NAMES;
+
+    /** The precomputed HTTP/1.1 status lines, per status code. */
+    private static final byte[][] STATUS_LINES;
+
+    /** The reason phrases of the precomputed status lines, per status code. */
+    private static final String[] STATUS_REASONS;
+
+    /** The HTTP/1.1 version. */
+    private static final String VERSION_1_1 = "HTTP/1.1";
+
+    static {
+        List<String> names = new ArrayList<String>();
+
+        for (Field field : HeaderConstants.class.getFields()) {
+            if (field.getName().startsWith("HEADER_")
+                    && Modifier.isStatic(field.getModifiers())) {
+                try {
+                    names.add((String) field.get(null));
+                } catch (IllegalAccessException e) {
+                    // Public constant, should not happen
+                }
+            }
+        }
+
+        int maxLength = 0;
+
+        for (String name : names) {
+            maxLength = Math.max(maxLength, name.length());
+        }
+
+        NAME_BYTES = new HashMap<String, byte[]>();
+        NAMES = new String[maxLength + 1][];
+
+        for (String name : names) {
+            NAME_BYTES.put(name, name.getBytes(StandardCharsets.US_ASCII));
+            String[] sameLength = NAMES[name.length()];
+
+            if (sameLength == null) {
+                NAMES[name.length()] = new String[] { name };
+            } else {
+                String[] larger = new String[sameLength.length + 1];
+                System.arraycopy(sameLength, 0, larger, 0, sameLength.length);
+                larger[sameLength.length] = name;
+                NAMES[name.length()] = larger;
+            }
+        }
+
+        STATUS_LINES = new byte[600][];
+        STATUS_REASONS = new String[600];
+
+        for (int code = 100; code < 600; code++) {
+            String reason = Status.valueOf(code).getReasonPhrase();
+
+            if (reason != null) {
+                STATUS_REASONS[code] = reason;
+                STATUS_LINES[code] = (VERSION_1_1 + " " + code + " " + reason + "\r\n")
+                        .getBytes(StandardCharsets.ISO_8859_1);
+            }
+        }
+    }
+
+    /**
+     * Returns the length of the head at the beginning of the remaining bytes
+     * of a buffer, including the empty line ending it. The buffer position
+     * isn't changed.
+     * 
+     * @param buffer
+     *            The buffer to scan.
+     * @return The length of the head or -1 if the head isn't complete.
+     */
+    public static int getHeadLength(ByteBuffer buffer) {
+        int result = -1;
+        int start = buffer.position();
+        int end = buffer.limit();
+
+        if (buffer.hasArray()) {
+            byte[] bytes = buffer.array();
+            int base = buffer.arrayOffset();
+
+            for (int i = start + 3; (result == -1) && (i < end); i++) {
+                if ((bytes[base + i] == 10) && (bytes[base + i - 1] == 13)
+                        && (bytes[base + i - 2] == 10)
+                        && (bytes[base + i - 3] == 13)) {
+                    result = i + 1 - start;
+                }
+            }
+        } else {
+            for (int i = start + 3; (result == -1) && (i < end); i++) {
+                if ((buffer.get(i) == 10) && (buffer.get(i - 1) == 13)
+                        && (buffer.get(i - 2) == 10)
+                        && (buffer.get(i - 3) == 13)) {
+                    result = i + 1 - start;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the encoded length of a header line.
+     * 
+     * @param header
+     *            The header.
+     * @return The encoded length of the header line.
+     */
+    private static int getLength(Header header) {
+        return header.getName().length() + 4
+                + ((header.getValue() == null) ? 0 : header.getValue()
+                        .length());
+    }
+
+    /**
+     * Returns the name of a header, reusing the matching constant of
+     * {@link HeaderConstants} if any.
+     * 
+     * @param bytes
+     *            The head bytes.
+     * @param offset
+     *            The offset of the name.
+     * @param length
+     *            The length of the name.
+     * @return The header name.
+     */
+    private static String getName(byte[] bytes, int offset, int length) {
+        String result = null;
+        String[] candidates = (length < NAMES.length) ? NAMES[length] : null;
+
+        if (candidates != null) {
+            for (int i = 0; (result == null) && (i < candidates.length); i++) {
+                String candidate = candidates[i];
+                boolean match = true;
+
+                for (int j = 0; match && (j < length); j++) {
+                    match = (candidate.charAt(j) == bytes[offset + j]);
+                }
+
+                if (match) {
+                    result = candidate;
+                }
+            }
+        }
+
+        if (result == null) {
+            result = new String(bytes, offset, length,
+                    StandardCharsets.ISO_8859_1);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the index of a byte in a range of the head.
+     * 
+     * @param head
+     *            The head buffer.
+     * @param b
+     *            The byte to find.
+     * @param end
+     *            The index at which the search stops.
+     * @return The index of the byte or -1.
+     */
+    private static int indexOf(ByteBuffer head, int b, int end) {
+        int result = -1;
+
+        for (int i = head.position(); (result == -1) && (i < end); i++) {
+            if (head.get(i) == b) {
+                result = i;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the index of the next CRLF of the head.
+     * 
+     * @param head
+     *            The head buffer.
+     * @return The index of the carriage return.
+     * @throws IOException
+     *             If no CRLF is found.
+     */
+    private static int indexOfLineEnd(ByteBuffer head) throws IOException {
+        int result = indexOf(head, 13, head.limit());
+
+        if ((result == -1) || (result + 1 >= head.limit())) {
+            throw new IOException(
+                    "Unable to parse the head line. End of head reached too early.");
+        } else if (head.get(result + 1) != 10) {
+            throw new IOException(
+                    "Unable to parse the head line. The carriage return must be followed by a line feed.");
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads a complete head from a stream, up to the empty line ending it. The
+     * stream is read byte by byte to leave the entity untouched, so it should
+     * be buffered.
+     * 
+     * @param is
+     *            The input stream.
+     * @return A buffer wrapping the head bytes.
+     * @throws IOException
+     */
+    public static ByteBuffer readHead(InputStream is) throws IOException {
+        BufferPool pool = Engine.getBufferPool();
+        byte[] bytes = pool.acquireArray(1024);
+
+        try {
+            int length = 0;
+            int next = 0;
+
+            while ((length < 4) || (bytes[length - 1] != 10)
+                    || (bytes[length - 2] != 13) || (bytes[length - 3] != 10)
+                    || (bytes[length - 4] != 13)) {
+                next = is.read();
+
+                if (next == -1) {
+                    throw new IOException(
+                            "Unable to read the head. End of stream reached too early.");
+                }
+
+                if (length == bytes.length) {
+                    byte[] larger = pool.acquireArray(bytes.length * 2);
+                    System.arraycopy(bytes, 0, larger, 0, length);
+                    pool.release(bytes);
+                    bytes = larger;
+                }
+
+                bytes[length++] = (byte) next;
+            }
+
+            byte[] result = new byte[length];
+            System.arraycopy(bytes, 0, result, 0, length);
+            return ByteBuffer.wrap(result);
+        } finally {
+            pool.release(bytes);
+        }
+    }
+
+    /**
+     * Reads the complete head at the beginning of the remaining bytes of a
+     * buffer, for example filled from a socket channel. The head bytes are
+     * copied so that the buffer can be reused while the headers are in use.
+     * 
+     * @param buffer
+     *            The buffer to read from.
+     * @return A buffer wrapping the head bytes or null if the head isn't
+     *         complete yet, in which case the buffer position isn't changed.
+     */
+    public static ByteBuffer readHead(ByteBuffer buffer) {
+        ByteBuffer result = null;
+        int length = getHeadLength(buffer);
+
+        if (length != -1) {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            result = ByteBuffer.wrap(bytes);
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads the next header line of a head. When the head is backed by an
+     * array, the value is only decoded when first accessed, so the array must
+     * not be modified while the header is in use.
+     * 
+     * @param head
+     *            The head buffer, positioned at the beginning of a line.
+     * @return The header read or null if the empty line ending the head was
+     *         read.
+     * @throws IOException
+     */
+    public static Header readHeader(ByteBuffer head) throws IOException {
+        Header result = null;
+        int lineEnd = indexOfLineEnd(head);
+        int start = head.position();
+
+        if (lineEnd != start) {
+            int colon = indexOf(head, ':', lineEnd);
+
+            if (colon == -1) {
+                throw new IOException(
+                        "Unable to parse the header name. Colon missing.");
+            }
+
+            int valueStart = colon + 1;
+
+            while ((valueStart < lineEnd)
+                    && HeaderUtils.isSpace(head.get(valueStart))) {
+                // Skip any separator space between colon and header value
+                valueStart++;
+            }
+
+            if (head.hasArray()) {
+                byte[] bytes = head.array();
+                int base = head.arrayOffset();
+                result = new LazyHeader(getName(bytes, base + start, colon
+                        - start), bytes, base + valueStart, lineEnd
+                        - valueStart);
+            } else {
+                byte[] bytes = new byte[lineEnd - start];
+                head.get(bytes);
+                head.position(start);
+                result = new Header(getName(bytes, 0, colon - start),
+                        new String(bytes, valueStart - start, lineEnd
+                                - valueStart, StandardCharsets.ISO_8859_1));
+            }
+        }
+
+        head.position(lineEnd + 2);
+        return result;
+    }
+
+    /**
+     * Reads the start line of a head, a request line or a status line, and
+     * returns its three parts. The third part may contain spaces, like a
+     * reason phrase.
+     * 
+     * @param head
+     *            The head buffer, positioned at the beginning of the head.
+     * @return The three parts of the start line.
+     * @throws IOException
+     */
+    public static String[] readStartLine(ByteBuffer head) throws IOException {
+        String[] result = new String[3];
+        int lineEnd = indexOfLineEnd(head);
+        int space = indexOf(head, ' ', lineEnd);
+
+        if (space == -1) {
+            throw new IOException(
+                    "Unable to parse the start line. Space separator missing.");
+        }
+
+        result[0] = toString(head, head.position(), space);
+        head.position(space + 1);
+        space = indexOf(head, ' ', lineEnd);
+
+        if (space == -1) {
+            // Tolerate a status line without reason phrase
+            result[1] = toString(head, head.position(), lineEnd);
+            result[2] = "";
+        } else {
+            result[1] = toString(head, head.position(), space);
+            result[2] = toString(head, space + 1, lineEnd);
+        }
+
+        head.position(lineEnd + 2);
+        return result;
+    }
+
+    /**
+     * Decodes a range of the head as ISO-8859-1 characters.
+     * 
+     * @param head
+     *            The head buffer.
+     * @param start
+     *            The start index.
+     * @param end
+     *            The end index.
+     * @return The decoded string.
+     */
+    private static String toString(ByteBuffer head, int start, int end) {
+        String result;
+
+        if (head.hasArray()) {
+            result = new String(head.array(), head.arrayOffset() + start, end
+                    - start, StandardCharsets.ISO_8859_1);
+        } else {
+            char[] chars = new char[end - start];
+
+            for (int i = start; i < end; i++) {
+                chars[i - start] = (char) (head.get(i) & 0xFF);
+            }
+
+            result = new String(chars);
+        }
+
+        return result;
+    }
+
+    /**
+     * Writes a string into a buffer, replacing the characters that can't be
+     * encoded by '?'.
+     * 
+     * @param string
+     *            The string to write.
+     * @param max
+     *            The highest character that can be encoded, 0x7F for ASCII
+     *            and 0xFF for ISO-8859-1.
+     * @param buffer
+     *            The buffer to write to.
+     */
+    private static void write(String string, char max, ByteBuffer buffer) {
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            buffer.put((c > max) ? (byte) '?' : (byte) c);
+        }
+    }
+
+    /**
+     * Writes a complete head to a stream. The head is assembled in a pooled
+     * buffer and written at once, unless it exceeds the buffer capacity.
+     * 
+     * @param startLine
+     *            The encoded start line, including its CRLF.
+     * @param headers
+     *            The headers to write.
+     * @param os
+     *            The output stream.
+     * @throws IOException
+     */
+    private static void writeHead(byte[] startLine, Series<Header> headers,
+            OutputStream os) throws IOException {
+        BufferPool pool = Engine.getBufferPool();
+        ByteBuffer buffer = pool.acquireBuffer(
+                Math.max(startLine.length + 2, 2048), false);
+
+        try {
+            buffer.put(startLine);
+
+            for (Header header : headers) {
+                int length = getLength(header);
+
+                if (length > buffer.remaining()) {
+                    os.write(buffer.array(), buffer.arrayOffset(),
+                            buffer.position());
+                    buffer.clear();
+                }
+
+                if (length > buffer.remaining()) {
+                    writeHeader(header, os);
+                } else {
+                    writeHeader(header, buffer);
+                }
+            }
+
+            if (buffer.remaining() < 2) {
+                os.write(buffer.array(), buffer.arrayOffset(),
+                        buffer.position());
+                buffer.clear();
+            }
+
+            buffer.put((byte) 13).put((byte) 10);
+            os.write(buffer.array(), buffer.arrayOffset(), buffer.position());
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    /**
+     * Writes a header line into a buffer.
+     * 
+     * @param header
+     *            The header to write.
+     * @param buffer
+     *            The buffer to write to.
+     * @throws java.nio.BufferOverflowException
+     *             If the buffer is too small.
+     */
+    public static void writeHeader(Header header, ByteBuffer buffer) {
+        byte[] name = NAME_BYTES.get(header.getName());
+
+        if (name != null) {
+            buffer.put(name);
+        } else {
+            write(header.getName(), (char) 0x7F, buffer);
+        }
+
+        buffer.put((byte) ':').put((byte) ' ');
+
+        if (header.getValue() != null) {
+            write(header.getValue(), (char) 0xFF, buffer);
+        }
+
+        buffer.put((byte) 13).put((byte) 10);
+    }
+
+    /**
+     * Writes a header line to a stream, at once.
+     * 
+     * @param header
+     *            The header to write.
+     * @param os
+     *            The output stream.
+     * @throws IOException
+     */
+    public static void writeHeader(Header header, OutputStream os)
+            throws IOException {
+        BufferPool pool = Engine.getBufferPool();
+        ByteBuffer buffer = pool.acquireBuffer(getLength(header), false);
+
+        try {
+            writeHeader(header, buffer);
+            os.write(buffer.array(), buffer.arrayOffset(), buffer.position());
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    /**
+     * Writes a complete request head to a stream, at once.
+     * 
+     * @param method
+     *            The request method.
+     * @param requestUri
+     *            The request URI.
+     * @param version
+     *            The protocol version such as "HTTP/1.1".
+     * @param headers
+     *            The request headers.
+     * @param os
+     *            The output stream.
+     * @throws IOException
+     */
+    public static void writeRequestHead(String method, String requestUri,
+            String version, Series<Header> headers, OutputStream os)
+            throws IOException {
+        writeHead((method + " " + requestUri + " " + version + "\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1), headers, os);
+    }
+
+    /**
+     * Writes a complete response head to a stream, at once. The status lines
+     * of the standard HTTP/1.1 statuses are precomputed.
+     * 
+     * @param version
+     *            The protocol version such as "HTTP/1.1".
+     * @param statusCode
+     *            The status code.
+     * @param reasonPhrase
+     *            The reason phrase or null.
+     * @param headers
+     *            The response headers.
+     * @param os
+     *            The output stream.
+     * @throws IOException
+     */
+    public static void writeResponseHead(String version, int statusCode,
+            String reasonPhrase, Series<Header> headers, OutputStream os)
+            throws IOException {
+        byte[] startLine = null;
+
+        if (VERSION_1_1.equals(version) && (statusCode >= 0)
+                && (statusCode < STATUS_LINES.length)
+                && (STATUS_REASONS[statusCode] != null)
+                && STATUS_REASONS[statusCode].equals(reasonPhrase)) {
+            startLine = STATUS_LINES[statusCode];
+        } else {
+            startLine = (version + " " + statusCode + " "
+                    + ((reasonPhrase == null) ? "Status " + statusCode
+                            : reasonPhrase) + "\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1);
+        }
+
+        writeHead(startLine, headers, os);
+    }
+
+    /**
+     * Private constructor to ensure that the class acts as a true utility class
+     * i.e. it isn't instantiable and extensible.
+     */
+    private HeadCodec() {
+    }
+
+}
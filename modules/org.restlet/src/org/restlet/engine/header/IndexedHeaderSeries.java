@@ -0,0 +1,583 @@
+/**
+ * Copyright 2005-2014 Restlet
+ *
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ *
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ *
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ *
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ *
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ *
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.header;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.ListIterator;
+
+import org.restlet.data.Header;
+import org.restlet.util.Series;
+
+/**
+ * Series of headers indexed by name. The well-known names declared in
+ * {@link HeaderConstants} are interned to small integer identifiers, and other
+ * names are located through an open-addressing table keyed by their case
+ * insensitive hash. The index is lazily built on the first lookup and dropped
+ * on each structural modification, so insertion order and multi-value
+ * semantics are the ones of the parent {@link Series}.<br>
+ * <br>
+ * Note that the names of the contained headers are not expected to be changed
+ * once added to the series, as this can't be detected.
+ *
+ * @author Jerome Louvel
+ */
+public class IndexedHeaderSeries extends Series<Header> {
+
+    /**
+     * Immutable snapshot of the positions of the headers in the series.
+     */
+    private static final class Index {
+
+        /** The indexed entries, in insertion order. */
+        private final Header[] entries;
+
+        /**
+         * The position + 1 of the first entry for each well-known header
+         * identifier, or zero.
+         */
+        private final int[] heads;
+
+        /** The position of the next entry with the same name, or -1. */
+        private final int[] next;
+
+        /**
+         * The open-addressing table of the position + 1 of the first entry of
+         * other names, or zero.
+         */
+        private final int[] slots;
+
+        /**
+         * Constructor.
+         *
+         * @param entries
+         *            The entries to index.
+         */
+        private Index(Header[] entries) {
+            this.entries = entries;
+            this.heads = new int[KNOWN_NAMES.length];
+            this.next = new int[entries.length];
+            this.slots = new int[tableSize(entries.length)];
+
+            // The last position seen for each known identifier or slot
+            int[] knownTails = new int[KNOWN_NAMES.length];
+            int[] slotTails = new int[this.slots.length];
+            int mask = this.slots.length - 1;
+            Header entry;
+            String name;
+            int id;
+            int slot;
+
+            for (int i = 0; i < entries.length; i++) {
+                this.next[i] = -1;
+                entry = entries[i];
+                name = (entry == null) ? null : entry.getName();
+
+                if (name != null) {
+                    id = getId(name);
+
+                    if (id >= 0) {
+                        if (this.heads[id] == 0) {
+                            this.heads[id] = i + 1;
+                        } else {
+                            this.next[knownTails[id]] = i;
+                        }
+
+                        knownTails[id] = i;
+                    } else {
+                        slot = hash(name) & mask;
+
+                        while ((this.slots[slot] != 0)
+                                && !name.equalsIgnoreCase(entries[this.slots[slot] - 1]
+                                        .getName())) {
+                            slot = (slot + 1) & mask;
+                        }
+
+                        if (this.slots[slot] == 0) {
+                            this.slots[slot] = i + 1;
+                        } else {
+                            this.next[slotTails[slot]] = i;
+                        }
+
+                        slotTails[slot] = i;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the position of the first entry with the given name ignoring
+         * the case, or -1.
+         *
+         * @param name
+         *            The name to look for.
+         * @return The position of the first entry found or -1.
+         */
+        private int first(String name) {
+            int id = getId(name);
+
+            if (id >= 0) {
+                return this.heads[id] - 1;
+            }
+
+            int mask = this.slots.length - 1;
+            int slot = hash(name) & mask;
+
+            while (this.slots[slot] != 0) {
+                if (name.equalsIgnoreCase(this.entries[this.slots[slot] - 1]
+                        .getName())) {
+                    return this.slots[slot] - 1;
+                }
+
+                slot = (slot + 1) & mask;
+            }
+
+            return -1;
+        }
+    }
+
+    /** The well-known header names, indexed by identifier. */
+    private static final String[] KNOWN_NAMES = {
+            HeaderConstants.HEADER_ACCEPT,
+            HeaderConstants.HEADER_ACCEPT_CHARSET,
+            HeaderConstants.HEADER_ACCEPT_ENCODING,
+            HeaderConstants.HEADER_ACCEPT_LANGUAGE,
+            HeaderConstants.HEADER_ACCEPT_PATCH,
+            HeaderConstants.HEADER_ACCEPT_RANGES,
+            HeaderConstants.HEADER_ACCESS_CONTROL_ALLOW_CREDENTIALS,
+            HeaderConstants.HEADER_ACCESS_CONTROL_ALLOW_HEADERS,
+            HeaderConstants.HEADER_ACCESS_CONTROL_ALLOW_METHODS,
+            HeaderConstants.HEADER_ACCESS_CONTROL_ALLOW_ORIGIN,
+            HeaderConstants.HEADER_ACCESS_CONTROL_EXPOSE_HEADERS,
+            HeaderConstants.HEADER_ACCESS_CONTROL_REQUEST_HEADERS,
+            HeaderConstants.HEADER_ACCESS_CONTROL_REQUEST_METHOD,
+            HeaderConstants.HEADER_AGE, HeaderConstants.HEADER_ALLOW,
+            HeaderConstants.HEADER_AUTHENTICATION_INFO,
+            HeaderConstants.HEADER_AUTHORIZATION,
+            HeaderConstants.HEADER_CACHE_CONTROL,
+            HeaderConstants.HEADER_CONNECTION,
+            HeaderConstants.HEADER_CONTENT_DISPOSITION,
+            HeaderConstants.HEADER_CONTENT_ENCODING,
+            HeaderConstants.HEADER_CONTENT_LANGUAGE,
+            HeaderConstants.HEADER_CONTENT_LENGTH,
+            HeaderConstants.HEADER_CONTENT_LOCATION,
+            HeaderConstants.HEADER_CONTENT_MD5,
+            HeaderConstants.HEADER_CONTENT_RANGE,
+            HeaderConstants.HEADER_CONTENT_TYPE,
+            HeaderConstants.HEADER_COOKIE, HeaderConstants.HEADER_DATE,
+            HeaderConstants.HEADER_ETAG, HeaderConstants.HEADER_EXPECT,
+            HeaderConstants.HEADER_EXPIRES, HeaderConstants.HEADER_FROM,
+            HeaderConstants.HEADER_HOST, HeaderConstants.HEADER_IF_MATCH,
+            HeaderConstants.HEADER_IF_MODIFIED_SINCE,
+            HeaderConstants.HEADER_IF_NONE_MATCH,
+            HeaderConstants.HEADER_IF_RANGE,
+            HeaderConstants.HEADER_IF_UNMODIFIED_SINCE,
+            HeaderConstants.HEADER_LAST_MODIFIED,
+            HeaderConstants.HEADER_LOCATION,
+            HeaderConstants.HEADER_MAX_FORWARDS,
+            HeaderConstants.HEADER_PRAGMA,
+            HeaderConstants.HEADER_PROXY_AUTHENTICATE,
+            HeaderConstants.HEADER_PROXY_AUTHORIZATION,
+            HeaderConstants.HEADER_RANGE, HeaderConstants.HEADER_REFERRER,
+            HeaderConstants.HEADER_RETRY_AFTER,
+            HeaderConstants.HEADER_SERVER, HeaderConstants.HEADER_SET_COOKIE,
+            HeaderConstants.HEADER_SET_COOKIE2, HeaderConstants.HEADER_SLUG,
+            HeaderConstants.HEADER_TRAILER,
+            HeaderConstants.HEADER_TRANSFER_ENCODING,
+            HeaderConstants.HEADER_TRANSFER_EXTENSION,
+            HeaderConstants.HEADER_UPGRADE,
+            HeaderConstants.HEADER_USER_AGENT, HeaderConstants.HEADER_VARY,
+            HeaderConstants.HEADER_VIA, HeaderConstants.HEADER_WARNING,
+            HeaderConstants.HEADER_WWW_AUTHENTICATE,
+            HeaderConstants.HEADER_X_FORWARDED_FOR,
+            HeaderConstants.HEADER_X_HTTP_METHOD_OVERRIDE };
+
+    /**
+     * The open-addressing table of the identifier + 1 of the well-known names,
+     * or zero.
+     */
+    private static final int[] KNOWN_TABLE;
+
+    static {
+        KNOWN_TABLE = new int[tableSize(KNOWN_NAMES.length)];
+        int mask = KNOWN_TABLE.length - 1;
+        int slot;
+
+        for (int id = 0; id < KNOWN_NAMES.length; id++) {
+            slot = hash(KNOWN_NAMES[id]) & mask;
+
+            while (KNOWN_TABLE[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+
+            KNOWN_TABLE[slot] = id + 1;
+        }
+    }
+
+    /**
+     * Returns the identifier of a well-known header name, ignoring the case.
+     *
+     * @param name
+     *            The header name.
+     * @return The identifier or -1 if the name isn't a well-known one.
+     */
+    public static int getId(String name) {
+        int mask = KNOWN_TABLE.length - 1;
+        int slot = hash(name) & mask;
+        int id;
+
+        while (KNOWN_TABLE[slot] != 0) {
+            id = KNOWN_TABLE[slot] - 1;
+
+            if ((KNOWN_NAMES[id] == name)
+                    || KNOWN_NAMES[id].equalsIgnoreCase(name)) {
+                return id;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Computes a case insensitive hash of a header name. As header names are
+     * ASCII tokens, only the ASCII upper case letters are folded.
+     *
+     * @param name
+     *            The header name.
+     * @return The case insensitive hash.
+     */
+    private static int hash(String name) {
+        int result = 0;
+        char c;
+
+        for (int i = 0; i < name.length(); i++) {
+            c = name.charAt(i);
+
+            if ((c >= 'A') && (c <= 'Z')) {
+                c += 'a' - 'A';
+            }
+
+            result = 31 * result + c;
+        }
+
+        // Spread the high bits as the table masks are small
+        return result ^ (result >>> 16);
+    }
+
+    /**
+     * Returns the size of an open-addressing table able to hold the given
+     * number of keys with a load factor below one half.
+     *
+     * @param count
+     *            The number of keys.
+     * @return The power of two table size.
+     */
+    private static int tableSize(int count) {
+        int result = 8;
+
+        while (result < (count * 2)) {
+            result <<= 1;
+        }
+
+        return result;
+    }
+
+    /** The current index or null if it must be rebuilt. */
+    private volatile Index index;
+
+    /**
+     * Indicates if the index can be used. Disabled once a modifiable view of
+     * the delegate list has been handed out.
+     */
+    private volatile boolean indexable;
+
+    /**
+     * Constructor.
+     */
+    public IndexedHeaderSeries() {
+        super(Header.class);
+        this.indexable = true;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param initialCapacity
+     *            The initial list capacity.
+     */
+    public IndexedHeaderSeries(int initialCapacity) {
+        super(Header.class, initialCapacity);
+        this.indexable = true;
+    }
+
+    @Override
+    public boolean add(Header element) {
+        invalidate();
+        return super.add(element);
+    }
+
+    @Override
+    public void add(int index, Header element) {
+        invalidate();
+        super.add(index, element);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Header> elements) {
+        invalidate();
+        return super.addAll(elements);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Header> elements) {
+        invalidate();
+        return super.addAll(index, elements);
+    }
+
+    @Override
+    public void clear() {
+        invalidate();
+        super.clear();
+    }
+
+    @Override
+    public Header createEntry(String name, String value) {
+        return new Header(name, value);
+    }
+
+    /**
+     * Returns the current index, building it if necessary.
+     *
+     * @return The current index or null if indexing is disabled.
+     */
+    private Index getIndex() {
+        Index result = this.index;
+
+        if ((result == null) && this.indexable) {
+            result = new Index(getDelegate().toArray(new Header[size()]));
+            this.index = result;
+        }
+
+        return result;
+    }
+
+    @Override
+    public Header getFirst(String name, boolean ignoreCase) {
+        Index idx = (name == null) ? null : getIndex();
+
+        if (idx == null) {
+            return super.getFirst(name, ignoreCase);
+        }
+
+        int pos = idx.first(name);
+
+        if ((pos >= 0) && !name.equalsIgnoreCase(idx.entries[pos].getName())) {
+            // A header was renamed in place, rebuild the index
+            invalidate();
+            return super.getFirst(name, ignoreCase);
+        }
+
+        while ((pos >= 0) && !ignoreCase
+                && !name.equals(idx.entries[pos].getName())) {
+            pos = idx.next[pos];
+        }
+
+        return (pos >= 0) ? idx.entries[pos] : null;
+    }
+
+    @Override
+    public String getValues(String name, String separator, boolean ignoreCase) {
+        Index idx = (name == null) ? null : getIndex();
+
+        if (idx == null) {
+            return super.getValues(name, separator, ignoreCase);
+        }
+
+        String result = null;
+        StringBuilder sb = null;
+        Header entry;
+
+        for (int pos = idx.first(name); pos >= 0; pos = idx.next[pos]) {
+            entry = idx.entries[pos];
+
+            if (ignoreCase || name.equals(entry.getName())) {
+                if (sb == null) {
+                    if (result == null) {
+                        result = entry.getValue();
+                    } else {
+                        sb = new StringBuilder();
+                        sb.append(result).append(separator)
+                                .append(entry.getValue());
+                    }
+                } else {
+                    sb.append(separator).append(entry.getValue());
+                }
+            }
+        }
+
+        if (sb != null) {
+            result = sb.toString();
+        }
+
+        return result;
+    }
+
+    /**
+     * Drops the current index.
+     */
+    private void invalidate() {
+        this.index = null;
+    }
+
+    @Override
+    public Iterator<Header> iterator() {
+        return listIterator();
+    }
+
+    @Override
+    public ListIterator<Header> listIterator() {
+        return listIterator(0);
+    }
+
+    @Override
+    public ListIterator<Header> listIterator(int index) {
+        final ListIterator<Header> delegate = super.listIterator(index);
+
+        return new ListIterator<Header>() {
+
+            public void add(Header e) {
+                invalidate();
+                delegate.add(e);
+            }
+
+            public boolean hasNext() {
+                return delegate.hasNext();
+            }
+
+            public boolean hasPrevious() {
+                return delegate.hasPrevious();
+            }
+
+            public Header next() {
+                return delegate.next();
+            }
+
+            public int nextIndex() {
+                return delegate.nextIndex();
+            }
+
+            public Header previous() {
+                return delegate.previous();
+            }
+
+            public int previousIndex() {
+                return delegate.previousIndex();
+            }
+
+            public void remove() {
+                invalidate();
+                delegate.remove();
+            }
+
+            public void set(Header e) {
+                invalidate();
+                delegate.set(e);
+            }
+        };
+    }
+
+    @Override
+    public Header remove(int index) {
+        invalidate();
+        return super.remove(index);
+    }
+
+    @Override
+    public boolean remove(Object element) {
+        invalidate();
+        return super.remove(element);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> elements) {
+        invalidate();
+        return super.removeAll(elements);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> elements) {
+        invalidate();
+        return super.retainAll(elements);
+    }
+
+    @Override
+    public Header set(int index, Header element) {
+        invalidate();
+        return super.set(index, element);
+    }
+
+    /**
+     * Returns a view of the portion of this list between the specified
+     * fromIndex, inclusive, and toIndex, exclusive. As modifications made
+     * through the view can't be tracked, the index of this series is disabled.
+     *
+     * @param fromIndex
+     *            The start position.
+     * @param toIndex
+     *            The end position (exclusive).
+     * @return The sub-list.
+     */
+    @Override
+    public Series<Header> subList(int fromIndex, int toIndex) {
+        this.indexable = false;
+        invalidate();
+        return super.subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public Series<Header> subList(String name, boolean ignoreCase) {
+        Index idx = (name == null) ? null : getIndex();
+
+        if (idx == null) {
+            return super.subList(name, ignoreCase);
+        }
+
+        Series<Header> result = new IndexedHeaderSeries();
+        Header entry;
+
+        for (int pos = idx.first(name); pos >= 0; pos = idx.next[pos]) {
+            entry = idx.entries[pos];
+
+            if (ignoreCase || name.equals(entry.getName())) {
+                result.add(entry);
+            }
+        }
+
+        return result;
+    }
+
+}
@@ -31,7 +31,9 @@ import static org.restlet.engine.header.HeaderUtils.isText;
 import static org.restlet.engine.header.HeaderUtils.isTokenChar;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.restlet.data.CharacterSet;
 import org.restlet.data.ClientInfo;
@@ -62,6 +64,28 @@ public class PreferenceReader<T extends Metadata> extends
 
     public static final int TYPE_PATCH = 5;
 
+    // [ifndef gwt] member
+    /**
+     * The caches of parsed preferences, indexed by type then by header value.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static final org.restlet.engine.util.BoundedCache<String, Preference<?>[]>[] CACHES = new org.restlet.engine.util.BoundedCache[] {
+            null,
+            new org.restlet.engine.util.BoundedCache<String, Preference<?>[]>(
+                    200),
+            new org.restlet.engine.util.BoundedCache<String, Preference<?>[]>(
+                    200),
+            new org.restlet.engine.util.BoundedCache<String, Preference<?>[]>(
+                    200),
+            new org.restlet.engine.util.BoundedCache<String, Preference<?>[]>(
+                    200),
+            new org.restlet.engine.util.BoundedCache<String, Preference<?>[]>(
+                    200) };
+
+    // [ifndef gwt] member
+    /** The maximum length of the header values whose parsing is cached. */
+    private static final int MAX_CACHED_LENGTH = 1024;
+
     /**
      * Parses character set preferences from a header.
      * 
@@ -80,10 +104,9 @@ public class PreferenceReader<T extends Metadata> extends
                 clientInfo.getAcceptedCharacterSets().add(
                         new Preference<CharacterSet>(CharacterSet.ISO_8859_1));
             } else {
-                PreferenceReader pr = new PreferenceReader(
-                        PreferenceReader.TYPE_CHARACTER_SET,
-                        acceptCharsetHeader);
-                pr.addValues(clientInfo.getAcceptedCharacterSets());
+                addValues(PreferenceReader.TYPE_CHARACTER_SET,
+                        acceptCharsetHeader,
+                        clientInfo.getAcceptedCharacterSets());
             }
         } else {
             clientInfo.getAcceptedCharacterSets().add(
@@ -103,9 +126,8 @@ public class PreferenceReader<T extends Metadata> extends
     public static void addEncodings(String acceptEncodingHeader,
             ClientInfo clientInfo) {
         if (acceptEncodingHeader != null) {
-            PreferenceReader pr = new PreferenceReader(
-                    PreferenceReader.TYPE_ENCODING, acceptEncodingHeader);
-            pr.addValues(clientInfo.getAcceptedEncodings());
+            addValues(PreferenceReader.TYPE_ENCODING, acceptEncodingHeader,
+                    clientInfo.getAcceptedEncodings());
         } else {
             clientInfo.getAcceptedEncodings().add(
                     new Preference(Encoding.IDENTITY));
@@ -124,9 +146,8 @@ public class PreferenceReader<T extends Metadata> extends
     public static void addLanguages(String acceptLanguageHeader,
             ClientInfo clientInfo) {
         if (acceptLanguageHeader != null) {
-            PreferenceReader pr = new PreferenceReader(
-                    PreferenceReader.TYPE_LANGUAGE, acceptLanguageHeader);
-            pr.addValues(clientInfo.getAcceptedLanguages());
+            addValues(PreferenceReader.TYPE_LANGUAGE, acceptLanguageHeader,
+                    clientInfo.getAcceptedLanguages());
         } else {
             clientInfo.getAcceptedLanguages().add(new Preference(Language.ALL));
         }
@@ -144,9 +165,8 @@ public class PreferenceReader<T extends Metadata> extends
     public static void addMediaTypes(String acceptMediaTypeHeader,
             ClientInfo clientInfo) {
         if (acceptMediaTypeHeader != null) {
-            PreferenceReader pr = new PreferenceReader(
-                    PreferenceReader.TYPE_MEDIA_TYPE, acceptMediaTypeHeader);
-            pr.addValues(clientInfo.getAcceptedMediaTypes());
+            addValues(PreferenceReader.TYPE_MEDIA_TYPE, acceptMediaTypeHeader,
+                    clientInfo.getAcceptedMediaTypes());
         } else {
             clientInfo.getAcceptedMediaTypes().add(
                     new Preference(MediaType.ALL));
@@ -165,12 +185,80 @@ public class PreferenceReader<T extends Metadata> extends
     public static void addPatches(String acceptPatchHeader,
             ClientInfo clientInfo) {
         if (acceptPatchHeader != null) {
-            PreferenceReader pr = new PreferenceReader(
-                    PreferenceReader.TYPE_PATCH, acceptPatchHeader);
-            pr.addValues(clientInfo.getAcceptedPatches());
+            addValues(PreferenceReader.TYPE_PATCH, acceptPatchHeader,
+                    clientInfo.getAcceptedPatches());
         }
     }
 
+    /**
+     * Parses preferences from a header and adds them to a list. The parsed
+     * preferences are cached by header value, so that frequent values are
+     * parsed only once. The list receives copies of the cached preferences.
+     * 
+     * @param type
+     *            The type of metadata read.
+     * @param header
+     *            The header to parse.
+     * @param values
+     *            The list of preferences to update.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void addValues(int type, String header, List values) {
+        // [ifndef gwt]
+        if (header.length() <= MAX_CACHED_LENGTH) {
+            Preference<?>[] cached = CACHES[type].get(header);
+
+            if (cached == null) {
+                List<Preference<?>> parsed = new ArrayList<Preference<?>>();
+                new PreferenceReader(type, header).addValues(parsed);
+                cached = parsed.toArray(new Preference<?>[parsed.size()]);
+
+                for (Preference<?> preference : cached) {
+                    // Create the lazy series before sharing the entry
+                    preference.getParameters();
+                }
+
+                CACHES[type].put(header, cached);
+            }
+
+            for (Preference<?> preference : cached) {
+                values.add(new Preference(preference.getMetadata(), preference
+                        .getQuality(), copyParameters(preference
+                        .getParameters())));
+            }
+
+            return;
+        }
+        // [enddef]
+
+        new PreferenceReader(type, header).addValues(values);
+    }
+
+    // [ifndef gwt] method
+    /**
+     * Returns a deep copy of the parameters of a cached preference, so that
+     * the returned preferences can be modified without altering the cache.
+     * 
+     * @param parameters
+     *            The parameters to copy.
+     * @return The copy of the parameters or null if there are none.
+     */
+    private static Series<Parameter> copyParameters(
+            Series<Parameter> parameters) {
+        if (parameters.isEmpty()) {
+            return null;
+        }
+
+        Series<Parameter> result = new Series<Parameter>(Parameter.class,
+                parameters.size());
+
+        for (Parameter parameter : parameters) {
+            result.add(parameter.getName(), parameter.getValue());
+        }
+
+        return result;
+    }
+
     /**
      * Parses a quality value.<br>
      * If the quality is invalid, an IllegalArgumentException is thrown.
@@ -0,0 +1,414 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.restlet.engine.util.Pool;
+
+// [excludes gwt]
+/**
+ * Pool of byte arrays and direct byte buffers shared by the engine. Capacities
+ * are rounded up to size classes that are powers of two, between a minimum and
+ * a maximum capacity. Larger requests are allocated on demand and never
+ * pooled.<br>
+ * <br>
+ * Each thread keeps a few released buffers per size class in a local cache so
+ * that a copy loop borrowing and releasing the same buffer doesn't contend
+ * with other threads. When the local cache is full, buffers are checked in a
+ * bounded shared pool.<br>
+ * <br>
+ * A buffer must not be used after being released. Heap byte buffers obtained
+ * from {@link #acquireBuffer(int, boolean)} wrap pooled arrays.
+ * 
+ * @author Jerome Louvel
+ * @see org.restlet.engine.Engine#getBufferPool()
+ */
+public class BufferPool {
+
+    /**
+     * Per thread cache of released arrays and direct buffers.
+     */
+    private static final class LocalCache {
+
+        /** The number of cached arrays per size class. */
+        private final int[] arrayCounts;
+
+        /** The cached arrays per size class. */
+        private final byte[][][] arrays;
+
+        /** The number of cached direct buffers per size class. */
+        private final int[] directCounts;
+
+        /** The cached direct buffers per size class. */
+        private final ByteBuffer[][] directs;
+
+        /**
+         * Constructor.
+         * 
+         * @param classes
+         *            The number of size classes.
+         * @param capacity
+         *            The maximum number of buffers per size class.
+         */
+        private LocalCache(int classes, int capacity) {
+            this.arrayCounts = new int[classes];
+            this.arrays = new byte[classes][capacity][];
+            this.directCounts = new int[classes];
+            this.directs = new ByteBuffer[classes][capacity];
+        }
+    }
+
+    /**
+     * Bounded pool of buffers belonging to the same size class.
+     * 
+     * @param <T>
+     *            The buffer type.
+     */
+    private abstract static class SizeClassPool<T> extends Pool<T> {
+
+        /** The maximum number of pooled buffers. */
+        private final int capacity;
+
+        /** The current number of pooled buffers. */
+        private final AtomicInteger count;
+
+        /** The buffer capacity of the size class. */
+        protected final int size;
+
+        /**
+         * Constructor.
+         * 
+         * @param size
+         *            The buffer capacity of the size class.
+         * @param capacity
+         *            The maximum number of pooled buffers.
+         */
+        private SizeClassPool(int size, int capacity) {
+            this.capacity = capacity;
+            this.count = new AtomicInteger();
+            this.size = size;
+        }
+
+        @Override
+        public void checkin(T object) {
+            if (this.count.incrementAndGet() <= this.capacity) {
+                super.checkin(object);
+            } else {
+                this.count.decrementAndGet();
+            }
+        }
+
+        @Override
+        public T checkout() {
+            T result = getStore().poll();
+
+            if (result == null) {
+                result = createObject();
+            } else {
+                this.count.decrementAndGet();
+            }
+
+            return result;
+        }
+    }
+
+    /** The shared pools of arrays, one per size class. */
+    private final SizeClassPool<byte[]>[] arrayPools;
+
+    /** The shared pools of direct buffers, one per size class. */
+    private final SizeClassPool<ByteBuffer>[] directPools;
+
+    /** The per thread caches. */
+    private final ThreadLocal<LocalCache> localCaches;
+
+    /** The maximum number of buffers per size class in each thread cache. */
+    private final int localCapacity;
+
+    /** The capacity of the largest size class. */
+    private final int maxCapacity;
+
+    /** The binary logarithm of the capacity of the smallest size class. */
+    private final int minShift;
+
+    /**
+     * Default constructor. Pools capacities from 512 bytes to 64 KB, with up
+     * to 64 shared buffers and 4 thread cached buffers per size class.
+     */
+    public BufferPool() {
+        this(512, 64 * 1024, 64, 4);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param minCapacity
+     *            The capacity of the smallest size class, rounded up to a
+     *            power of two.
+     * @param maxCapacity
+     *            The capacity of the largest size class, rounded up to a power
+     *            of two.
+     * @param sharedCapacity
+     *            The maximum number of buffers per size class in the shared
+     *            pool.
+     * @param localCapacity
+     *            The maximum number of buffers per size class in each thread
+     *            cache.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public BufferPool(int minCapacity, int maxCapacity, int sharedCapacity,
+            int localCapacity) {
+        this.minShift = shift(Math.max(1, minCapacity));
+        this.maxCapacity = 1 << Math.max(this.minShift,
+                shift(Math.max(1, maxCapacity)));
+        this.localCapacity = localCapacity;
+
+        final int classes = shift(this.maxCapacity) - this.minShift + 1;
+        this.arrayPools = new SizeClassPool[classes];
+        this.directPools = new SizeClassPool[classes];
+
+        for (int i = 0; i < classes; i++) {
+            this.arrayPools[i] = new SizeClassPool<byte[]>(
+                    1 << (this.minShift + i), sharedCapacity) {
+                @Override
+                protected byte[] createObject() {
+                    return new byte[this.size];
+                }
+            };
+            this.directPools[i] = new SizeClassPool<ByteBuffer>(
+                    1 << (this.minShift + i), sharedCapacity) {
+                @Override
+                protected void clear(ByteBuffer object) {
+                    object.clear();
+                }
+
+                @Override
+                protected ByteBuffer createObject() {
+                    return ByteBuffer.allocateDirect(this.size);
+                }
+            };
+        }
+
+        this.localCaches = new ThreadLocal<LocalCache>() {
+            @Override
+            protected LocalCache initialValue() {
+                return new LocalCache(classes,
+                        BufferPool.this.localCapacity);
+            }
+        };
+    }
+
+    /**
+     * Acquires a byte array whose length is at least the given capacity.
+     * 
+     * @param capacity
+     *            The minimum length.
+     * @return A byte array to release with {@link #release(byte[])}.
+     */
+    public byte[] acquireArray(int capacity) {
+        final int index = indexOf(capacity);
+
+        if (index == -1) {
+            return new byte[capacity];
+        }
+
+        final LocalCache cache = this.localCaches.get();
+        final int count = cache.arrayCounts[index];
+
+        if (count > 0) {
+            final byte[] result = cache.arrays[index][count - 1];
+            cache.arrays[index][count - 1] = null;
+            cache.arrayCounts[index] = count - 1;
+            return result;
+        }
+
+        return this.arrayPools[index].checkout();
+    }
+
+    /**
+     * Acquires a byte buffer whose capacity is at least the given one. The
+     * buffer is cleared and its limit set to its capacity.
+     * 
+     * @param capacity
+     *            The minimum capacity.
+     * @param direct
+     *            True if a direct buffer is needed, false for a heap buffer.
+     * @return A byte buffer to release with {@link #release(ByteBuffer)}.
+     */
+    public ByteBuffer acquireBuffer(int capacity, boolean direct) {
+        if (!direct) {
+            return ByteBuffer.wrap(acquireArray(capacity));
+        }
+
+        final int index = indexOf(capacity);
+
+        if (index == -1) {
+            return ByteBuffer.allocateDirect(capacity);
+        }
+
+        final LocalCache cache = this.localCaches.get();
+        final int count = cache.directCounts[index];
+
+        if (count > 0) {
+            final ByteBuffer result = cache.directs[index][count - 1];
+            cache.directs[index][count - 1] = null;
+            cache.directCounts[index] = count - 1;
+            return result;
+        }
+
+        return this.directPools[index].checkout();
+    }
+
+    /**
+     * Clears the shared pools. Thread caches are left untouched.
+     */
+    public void clear() {
+        for (int i = 0; i < this.arrayPools.length; i++) {
+            this.arrayPools[i].clear();
+            this.directPools[i].clear();
+        }
+    }
+
+    /**
+     * Returns the capacity of the largest size class.
+     * 
+     * @return The capacity of the largest size class.
+     */
+    public int getMaxCapacity() {
+        return maxCapacity;
+    }
+
+    /**
+     * Returns the capacity of the smallest size class.
+     * 
+     * @return The capacity of the smallest size class.
+     */
+    public int getMinCapacity() {
+        return 1 << minShift;
+    }
+
+    /**
+     * Returns the index of the size class matching a requested capacity.
+     * 
+     * @param capacity
+     *            The requested capacity.
+     * @return The index of the size class or -1 if the capacity is too large.
+     */
+    private int indexOf(int capacity) {
+        if (capacity > this.maxCapacity) {
+            return -1;
+        }
+
+        return (capacity <= (1 << this.minShift)) ? 0 : shift(capacity)
+                - this.minShift;
+    }
+
+    /**
+     * Returns the index of the size class of a released buffer.
+     * 
+     * @param capacity
+     *            The capacity of the released buffer.
+     * @return The index of the size class or -1 if the buffer can't be pooled.
+     */
+    private int indexOfReleased(int capacity) {
+        if ((capacity < (1 << this.minShift)) || (capacity > this.maxCapacity)
+                || (Integer.bitCount(capacity) != 1)) {
+            return -1;
+        }
+
+        return shift(capacity) - this.minShift;
+    }
+
+    /**
+     * Releases a byte array previously acquired. Arrays not matching a size
+     * class are ignored.
+     * 
+     * @param array
+     *            The array to release.
+     */
+    public void release(byte[] array) {
+        final int index = (array == null) ? -1 : indexOfReleased(array.length);
+
+        if (index != -1) {
+            final LocalCache cache = this.localCaches.get();
+            final int count = cache.arrayCounts[index];
+
+            if (count < this.localCapacity) {
+                cache.arrays[index][count] = array;
+                cache.arrayCounts[index] = count + 1;
+            } else {
+                this.arrayPools[index].checkin(array);
+            }
+        }
+    }
+
+    /**
+     * Releases a byte buffer previously acquired. The backing array of heap
+     * buffers is released. Buffers not matching a size class are ignored.
+     * 
+     * @param buffer
+     *            The buffer to release.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+
+        if (!buffer.isDirect()) {
+            if (buffer.hasArray() && (buffer.arrayOffset() == 0)
+                    && (buffer.capacity() == buffer.array().length)) {
+                release(buffer.array());
+            }
+        } else {
+            final int index = indexOfReleased(buffer.capacity());
+
+            if (index != -1) {
+                final LocalCache cache = this.localCaches.get();
+                final int count = cache.directCounts[index];
+                buffer.clear();
+
+                if (count < this.localCapacity) {
+                    cache.directs[index][count] = buffer;
+                    cache.directCounts[index] = count + 1;
+                } else {
+                    this.directPools[index].checkin(buffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the binary logarithm of a capacity rounded up to a power of two.
+     * 
+     * @param capacity
+     *            The capacity.
+     * @return The binary logarithm of the rounded capacity.
+     */
+    private static int shift(int capacity) {
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1);
+    }
+
+}
@@ -29,6 +29,8 @@ import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
 
+import org.restlet.engine.Engine;
+
 /**
  * Readable byte channel wrapping an input stream.
  * 
@@ -42,8 +44,8 @@ public class InputStreamChannel implements ReadableByteChannel {
     /** Indicates if the channel is blocking. */
     private final boolean blocking;
 
-    /** Optional byte array buffer. */
-    private volatile byte buffer[] = new byte[0];
+    /** Optional byte array buffer, borrowed from the engine's buffer pool. */
+    private volatile byte buffer[];
 
     /** Indicates if the underlying stream is still open. */
     private volatile boolean open;
@@ -61,11 +63,16 @@ public class InputStreamChannel implements ReadableByteChannel {
     }
 
     /**
-     * Closes the underlying input stream.
+     * Closes the underlying input stream and releases the buffer.
      */
     public void close() throws IOException {
         getInputStream().close();
         this.open = false;
+
+        if (this.buffer != null) {
+            Engine.getBufferPool().release(this.buffer);
+            this.buffer = null;
+        }
     }
 
     /**
@@ -150,8 +157,9 @@ public class InputStreamChannel implements ReadableByteChannel {
                 target.position(target.position() + result);
             }
         } else {
-            if (this.buffer.length < IoUtils.BUFFER_SIZE) {
-                this.buffer = new byte[IoUtils.BUFFER_SIZE];
+            if (this.buffer == null) {
+                this.buffer = Engine.getBufferPool().acquireArray(
+                        IoUtils.BUFFER_SIZE);
             }
 
             result = getInputStream().read(
@@ -34,8 +34,10 @@ import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channel;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.WritableByteChannel;
@@ -92,10 +94,15 @@ public class IoUtils {
         if (inputStream != null) {
             if (outputStream != null) {
                 int bytesRead;
-                byte[] buffer = new byte[2048];
+                BufferPool pool = Engine.getBufferPool();
+                byte[] buffer = pool.acquireArray(BUFFER_SIZE);
 
-                while ((bytesRead = inputStream.read(buffer)) > 0) {
-                    outputStream.write(buffer, 0, bytesRead);
+                try {
+                    while ((bytesRead = inputStream.read(buffer)) > 0) {
+                        outputStream.write(buffer, 0, bytesRead);
+                    }
+                } finally {
+                    pool.release(buffer);
                 }
 
                 outputStream.flush();
@@ -126,10 +133,15 @@ public class IoUtils {
     public static void copy(InputStream inputStream,
             java.io.RandomAccessFile randomAccessFile) throws IOException {
         int bytesRead;
-        byte[] buffer = new byte[2048];
+        BufferPool pool = Engine.getBufferPool();
+        byte[] buffer = pool.acquireArray(BUFFER_SIZE);
 
-        while ((bytesRead = inputStream.read(buffer)) > 0) {
-            randomAccessFile.write(buffer, 0, bytesRead);
+        try {
+            while ((bytesRead = inputStream.read(buffer)) > 0) {
+                randomAccessFile.write(buffer, 0, bytesRead);
+            }
+        } finally {
+            pool.release(buffer);
         }
 
         inputStream.close();
@@ -137,7 +149,10 @@ public class IoUtils {
 
     // [ifndef gwt] method
     /**
-     * Writes a readable channel to a writable channel.
+     * Writes a readable channel to a writable channel. When the reading is
+     * done, the readable channel is closed. File channels are transferred
+     * directly, other blocking channels are copied through a pooled direct
+     * buffer.
      * 
      * @param readableChannel
      *            The readable channel.
@@ -148,7 +163,59 @@ public class IoUtils {
     public static void copy(ReadableByteChannel readableChannel,
             WritableByteChannel writableChannel) throws IOException {
         if ((readableChannel != null) && (writableChannel != null)) {
-            copy(getStream(readableChannel), getStream(writableChannel));
+            if (!isBlocking(readableChannel) || !isBlocking(writableChannel)) {
+                copy(getStream(readableChannel), getStream(writableChannel));
+                return;
+            }
+
+            try {
+                if (readableChannel instanceof FileChannel) {
+                    // Let the file system or the kernel do the copy
+                    FileChannel fileChannel = (FileChannel) readableChannel;
+                    long position = fileChannel.position();
+                    long size = fileChannel.size();
+                    long count = 1;
+
+                    while ((position < size) && (count > 0)) {
+                        count = fileChannel.transferTo(position, size
+                                - position, writableChannel);
+                        position += count;
+                    }
+
+                    fileChannel.position(position);
+                } else if (writableChannel instanceof FileChannel) {
+                    FileChannel fileChannel = (FileChannel) writableChannel;
+                    long position = fileChannel.position();
+                    long count;
+
+                    while ((count = fileChannel.transferFrom(readableChannel,
+                            position, BUFFER_SIZE)) > 0) {
+                        position += count;
+                    }
+
+                    fileChannel.position(position);
+                }
+
+                // Copy the remaining bytes, if any
+                BufferPool pool = Engine.getBufferPool();
+                ByteBuffer buffer = pool.acquireBuffer(BUFFER_SIZE, true);
+
+                try {
+                    while (readableChannel.read(buffer) != -1) {
+                        buffer.flip();
+
+                        while (buffer.hasRemaining()) {
+                            writableChannel.write(buffer);
+                        }
+
+                        buffer.clear();
+                    }
+                } finally {
+                    pool.release(buffer);
+                }
+            } finally {
+                readableChannel.close();
+            }
         }
     }
 
@@ -274,13 +341,22 @@ public class IoUtils {
         long result = -1L;
 
         if (input != null) {
-            byte[] buf = new byte[2048];
-            int read = input.read(buf);
-            result = (read == -1) ? -1 : 0;
+            // [ifndef gwt] instruction
+            byte[] buf = Engine.getBufferPool().acquireArray(BUFFER_SIZE);
+            // [ifdef gwt] instruction uncomment
+            // byte[] buf = new byte[2048];
 
-            while (read != -1) {
-                result += read;
-                read = input.read(buf);
+            try {
+                int read = input.read(buf);
+                result = (read == -1) ? -1 : 0;
+
+                while (read != -1) {
+                    result += read;
+                    read = input.read(buf);
+                }
+            } finally {
+                // [ifndef gwt] instruction
+                Engine.getBufferPool().release(buf);
             }
         }
 
@@ -0,0 +1,602 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.engine.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.restlet.data.Header;
+import org.restlet.data.MediaType;
+import org.restlet.engine.Engine;
+import org.restlet.representation.Representation;
+import org.restlet.util.Series;
+
+// [excludes gwt]
+/**
+ * Incremental reader of multipart entities such as "multipart/form-data" ones.
+ * Parts are read one after the other directly from the source stream, using a
+ * single fixed size buffer. By default, each part is streamed and the unread
+ * remainder of a part is skipped when the next one is read. When a spill
+ * threshold is set, each part is instead fully read when reached, kept in
+ * memory up to the threshold and written to a temporary file beyond it, so
+ * that it remains available after the next parts have been read.<br>
+ * <br>
+ * Instances are not thread-safe.
+ * 
+ * @author Jerome Louvel
+ * @see <a href="http://tools.ietf.org/html/rfc2046#section-5.1">RFC 2046 -
+ *      Multipart media type</a>
+ */
+public class MultipartReader implements Closeable {
+
+    /**
+     * Streams the content of the current part, up to the next delimiter.
+     */
+    private class PartInputStream extends InputStream {
+
+        /** Indicates if the delimiter following the part has been reached. */
+        private boolean ended;
+
+        /** Buffer for single byte reads. */
+        private final byte[] single = new byte[1];
+
+        /** The number of bytes read so far. */
+        private long size;
+
+        @Override
+        public int available() throws IOException {
+            return (ended || this != current) ? 0 : Math.max(0, dataLimit
+                    - position);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this == current) {
+                IoUtils.exhaust(this);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = read(single, 0, 1);
+            return (result == -1) ? -1 : (single[0] & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (ended || this != current) {
+                return -1;
+            } else if (len == 0) {
+                return 0;
+            }
+
+            int result = getDataLength();
+
+            if (result == -1) {
+                ended = true;
+            } else {
+                result = Math.min(result, len);
+                System.arraycopy(buffer, position, b, off, result);
+                position += result;
+                size += result;
+
+                if (maxPartSize >= 0 && size > maxPartSize) {
+                    throw new IOException("The part exceeds the maximum size of "
+                            + maxPartSize + " bytes");
+                }
+            }
+
+            return result;
+        }
+    }
+
+    /** The line separator. */
+    private static final byte[] CRLF = { '\r', '\n' };
+
+    /** The maximum size of the headers of a part. */
+    private static final int MAX_HEADERS_SIZE = 16384;
+
+    /** The buffer of bytes read from the source stream. */
+    private final byte[] buffer;
+
+    /** The currently streamed part. */
+    private PartInputStream current;
+
+    /**
+     * The index in the buffer before which bytes are known to belong to the
+     * current part.
+     */
+    private int dataLimit;
+
+    /** The delimiter preceding each part, including the leading CRLF. */
+    private final byte[] delimiter;
+
+    /** Indicates if the source stream is exhausted. */
+    private boolean exhausted;
+
+    /** Indicates if the closing delimiter has been read. */
+    private boolean finished;
+
+    /** The index after the last valid byte of the buffer. */
+    private int limit;
+
+    /** The maximum size of a part, or -1 if unlimited. */
+    private volatile long maxPartSize;
+
+    /** The maximum size of the whole entity, or -1 if unlimited. */
+    private volatile long maxTotalSize;
+
+    /** The index of the next byte to read in the buffer. */
+    private int position;
+
+    /** The source stream. */
+    private final InputStream source;
+
+    /** The directory where large parts are spilled. */
+    private volatile File spillDirectory;
+
+    /** The size above which buffered parts are spilled, or -1. */
+    private volatile long spillThreshold;
+
+    /** The number of bytes read from the source stream. */
+    private long totalSize;
+
+    /**
+     * Constructor.
+     * 
+     * @param source
+     *            The source stream.
+     * @param boundary
+     *            The boundary separating the parts.
+     */
+    public MultipartReader(InputStream source, String boundary) {
+        byte[] boundaryBytes = IoUtils.toByteArray(
+                ("\r\n--" + boundary).toCharArray(), "ISO-8859-1");
+        this.source = source;
+        this.delimiter = boundaryBytes;
+        this.buffer = new byte[Math.max(IoUtils.BUFFER_SIZE,
+                2 * delimiter.length + 4)];
+        this.maxPartSize = -1;
+        this.maxTotalSize = -1;
+        this.spillThreshold = -1;
+
+        // The first delimiter may not be preceded by a line separator
+        System.arraycopy(CRLF, 0, buffer, 0, CRLF.length);
+        this.limit = CRLF.length;
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param multipart
+     *            The multipart entity whose media type declares the boundary.
+     * @throws IOException
+     */
+    public MultipartReader(Representation multipart) throws IOException {
+        this(multipart.getStream(), getBoundary(multipart.getMediaType()));
+    }
+
+    /**
+     * Returns the boundary declared by a multipart media type.
+     * 
+     * @param mediaType
+     *            The multipart media type.
+     * @return The boundary.
+     * @throws IOException
+     *             If no boundary is declared.
+     */
+    private static String getBoundary(MediaType mediaType) throws IOException {
+        String result = (mediaType == null) ? null : mediaType.getParameters()
+                .getFirstValue("boundary", true);
+
+        if (result == null || result.length() == 0) {
+            throw new IOException("No boundary declared by the media type "
+                    + mediaType);
+        }
+
+        return result;
+    }
+
+    /**
+     * Closes the source stream.
+     */
+    public void close() throws IOException {
+        this.current = null;
+        this.finished = true;
+        this.source.close();
+    }
+
+    /**
+     * Reads more bytes from the source stream, compacting the buffer first.
+     * 
+     * @return True if bytes have been read.
+     * @throws IOException
+     */
+    private boolean fill() throws IOException {
+        if (exhausted) {
+            return false;
+        }
+
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            dataLimit -= position;
+            position = 0;
+        }
+
+        int read = source.read(buffer, limit, buffer.length - limit);
+
+        if (read == -1) {
+            exhausted = true;
+        } else {
+            limit += read;
+            totalSize += read;
+
+            if (maxTotalSize >= 0 && totalSize > maxTotalSize) {
+                throw new IOException(
+                        "The multipart entity exceeds the maximum size of "
+                                + maxTotalSize + " bytes");
+            }
+        }
+
+        return read > 0;
+    }
+
+    /**
+     * Returns the number of bytes of the current part that can be read from
+     * the buffer before the next delimiter, filling the buffer if necessary.
+     * 
+     * @return The number of readable bytes, or -1 if the delimiter has been
+     *         reached.
+     * @throws IOException
+     */
+    private int getDataLength() throws IOException {
+        while (true) {
+            if (dataLimit > position) {
+                return dataLimit - position;
+            }
+
+            int index = indexOfDelimiter();
+
+            if (index == position) {
+                return -1;
+            } else if (index > position) {
+                dataLimit = index;
+                return index - position;
+            }
+
+            // Keep the bytes that may start the delimiter
+            int safe = limit - position - (delimiter.length - 1);
+
+            if (safe > 0) {
+                dataLimit = position + safe;
+                return safe;
+            } else if (!fill() && exhausted) {
+                throw new IOException(
+                        "The multipart entity ended before its closing delimiter");
+            }
+        }
+    }
+
+    /**
+     * Returns the maximum size of a part, or -1 if unlimited.
+     * 
+     * @return The maximum size of a part.
+     */
+    public long getMaxPartSize() {
+        return maxPartSize;
+    }
+
+    /**
+     * Returns the maximum size of the whole multipart entity, or -1 if
+     * unlimited.
+     * 
+     * @return The maximum size of the whole multipart entity.
+     */
+    public long getMaxTotalSize() {
+        return maxTotalSize;
+    }
+
+    /**
+     * Returns the directory where large parts are spilled. If null, the
+     * default temporary directory is used.
+     * 
+     * @return The directory where large parts are spilled.
+     */
+    public File getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * Returns the size above which buffered parts are spilled to a temporary
+     * file, or -1 if parts are streamed.
+     * 
+     * @return The size above which buffered parts are spilled.
+     */
+    public long getSpillThreshold() {
+        return spillThreshold;
+    }
+
+    /**
+     * Returns the index of the delimiter within the buffered bytes, or -1.
+     * 
+     * @return The index of the delimiter, or -1.
+     */
+    private int indexOfDelimiter() {
+        int last = limit - delimiter.length;
+
+        for (int i = position; i <= last; i++) {
+            if (buffer[i] == '\r') {
+                int j = 1;
+
+                while (j < delimiter.length && buffer[i + j] == delimiter[j]) {
+                    j++;
+                }
+
+                if (j == delimiter.length) {
+                    return i;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Reads a byte from the buffer, filling it if necessary.
+     * 
+     * @return The byte read.
+     * @throws IOException
+     */
+    private int readByte() throws IOException {
+        if (position == limit && !fill()) {
+            throw new IOException(
+                    "The multipart entity ended before its closing delimiter");
+        }
+
+        return buffer[position++] & 0xFF;
+    }
+
+    /**
+     * Reads the delimiter located at the current position and the rest of its
+     * line.
+     * 
+     * @throws IOException
+     */
+    private void readDelimiter() throws IOException {
+        position += delimiter.length;
+        int first = readByte();
+        int second = readByte();
+
+        if (first == '-' && second == '-') {
+            finished = true;
+        } else {
+            // Skip the optional transport padding
+            while (first != '\r' || second != '\n') {
+                first = second;
+                second = readByte();
+            }
+        }
+    }
+
+    /**
+     * Reads the headers of a part.
+     * 
+     * @return The headers of the part.
+     * @throws IOException
+     */
+    private Series<Header> readHeaders() throws IOException {
+        Series<Header> result = new Series<Header>(Header.class);
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int headersSize = 0;
+
+        while (true) {
+            int next = readByte();
+
+            if (++headersSize > MAX_HEADERS_SIZE) {
+                throw new IOException("The headers of the part exceed "
+                        + MAX_HEADERS_SIZE + " bytes");
+            } else if (next != '\n') {
+                line.write(next);
+            } else {
+                String text = line.toString("UTF-8");
+                line.reset();
+
+                if (text.endsWith("\r")) {
+                    text = text.substring(0, text.length() - 1);
+                }
+
+                if (text.length() == 0) {
+                    return result;
+                } else if ((text.charAt(0) == ' ' || text.charAt(0) == '\t')
+                        && !result.isEmpty()) {
+                    // Folded header value
+                    Header header = result.get(result.size() - 1);
+                    header.setValue(header.getValue() + " " + text.trim());
+                } else {
+                    int colon = text.indexOf(':');
+
+                    if (colon > 0) {
+                        result.add(text.substring(0, colon).trim(), text
+                                .substring(colon + 1).trim());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the next part. The unread content of the previous part, if
+     * streamed, is skipped.
+     * 
+     * @return The next part or null if all the parts have been read.
+     * @throws IOException
+     */
+    public PartRepresentation readPart() throws IOException {
+        if (finished) {
+            return null;
+        }
+
+        // Skip the preamble or the rest of the previous part
+        skipData();
+        readDelimiter();
+
+        if (finished) {
+            this.current = null;
+            return null;
+        }
+
+        Series<Header> headers = readHeaders();
+        this.current = new PartInputStream();
+
+        if (spillThreshold < 0) {
+            return new PartRepresentation(this.current, headers,
+                    Representation.UNKNOWN_SIZE, null);
+        }
+
+        return spill(headers);
+    }
+
+    /**
+     * Sets the maximum size of a part, or -1 if unlimited.
+     * 
+     * @param maxPartSize
+     *            The maximum size of a part.
+     */
+    public void setMaxPartSize(long maxPartSize) {
+        this.maxPartSize = maxPartSize;
+    }
+
+    /**
+     * Sets the maximum size of the whole multipart entity, or -1 if unlimited.
+     * 
+     * @param maxTotalSize
+     *            The maximum size of the whole multipart entity.
+     */
+    public void setMaxTotalSize(long maxTotalSize) {
+        this.maxTotalSize = maxTotalSize;
+    }
+
+    /**
+     * Sets the directory where large parts are spilled. If null, the default
+     * temporary directory is used.
+     * 
+     * @param spillDirectory
+     *            The directory where large parts are spilled.
+     */
+    public void setSpillDirectory(File spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Sets the size above which buffered parts are spilled to a temporary
+     * file. A negative value means that parts are streamed.
+     * 
+     * @param spillThreshold
+     *            The size above which buffered parts are spilled.
+     */
+    public void setSpillThreshold(long spillThreshold) {
+        this.spillThreshold = spillThreshold;
+    }
+
+    /**
+     * Skips the remaining bytes before the next delimiter.
+     * 
+     * @throws IOException
+     */
+    private void skipData() throws IOException {
+        int length = getDataLength();
+
+        while (length != -1) {
+            position += length;
+            length = getDataLength();
+        }
+    }
+
+    /**
+     * Fully reads the current part, in memory up to the spill threshold and
+     * then into a temporary file.
+     * 
+     * @param headers
+     *            The headers of the part.
+     * @return The buffered part.
+     * @throws IOException
+     */
+    private PartRepresentation spill(Series<Header> headers)
+            throws IOException {
+        PartInputStream in = this.current;
+        ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        BufferPool pool = Engine.getBufferPool();
+        byte[] chunk = pool.acquireArray(IoUtils.BUFFER_SIZE);
+        File file = null;
+        OutputStream out = memory;
+        long size = 0;
+
+        try {
+            int read = in.read(chunk, 0, chunk.length);
+
+            while (read != -1) {
+                size += read;
+
+                if (file == null && size > spillThreshold) {
+                    file = File.createTempFile("restlet-part", ".tmp",
+                            spillDirectory);
+                    out = new FileOutputStream(file);
+                    memory.writeTo(out);
+                    memory = null;
+                }
+
+                out.write(chunk, 0, read);
+                read = in.read(chunk, 0, chunk.length);
+            }
+        } catch (IOException e) {
+            if (file != null) {
+                out.close();
+                IoUtils.delete(file);
+            }
+
+            throw e;
+        } finally {
+            pool.release(chunk);
+            this.current = null;
+        }
+
+        if (file == null) {
+            return new PartRepresentation(new ByteArrayInputStream(
+                    memory.toByteArray()), headers, size, null);
+        }
+
+        out.close();
+        return new PartRepresentation(new FileInputStream(file), headers,
+                size, file);
+    }
+
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.engine.io;
+
+import java.io.File;
+import java.io.InputStream;
+
+import org.restlet.data.Disposition;
+import org.restlet.data.Header;
+import org.restlet.data.Parameter;
+import org.restlet.engine.header.HeaderUtils;
+import org.restlet.representation.InputRepresentation;
+import org.restlet.util.Series;
+
+// [excludes gwt]
+/**
+ * Part of a multipart entity read by a {@link MultipartReader}. The entity
+ * headers of the part are reflected by the representation's properties such as
+ * the media type or the disposition, while all the part headers remain
+ * available via {@link #getHeaders()}.
+ * 
+ * @author Jerome Louvel
+ */
+public class PartRepresentation extends InputRepresentation {
+
+    /** The file where the content was spilled, if any. */
+    private volatile File file;
+
+    /** The headers of the part. */
+    private final Series<Header> headers;
+
+    /**
+     * Constructor.
+     * 
+     * @param inputStream
+     *            The content of the part.
+     * @param headers
+     *            The headers of the part.
+     * @param expectedSize
+     *            The size of the content if known.
+     * @param file
+     *            The file where the content was spilled, if any.
+     */
+    public PartRepresentation(InputStream inputStream, Series<Header> headers,
+            long expectedSize, File file) {
+        super(inputStream, null, expectedSize);
+        this.headers = headers;
+        this.file = file;
+        HeaderUtils.extractEntityHeaders(headers, this);
+    }
+
+    /**
+     * Returns the file where the content was spilled, or null if the content
+     * is streamed or buffered in memory. The file is deleted when the
+     * representation is released.
+     * 
+     * @return The file where the content was spilled.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the file name declared by the "Content-Disposition" header, if
+     * any.
+     * 
+     * @return The file name declared by the "Content-Disposition" header.
+     */
+    public String getFilename() {
+        return (getDisposition() == null) ? null : getDisposition()
+                .getFilename();
+    }
+
+    /**
+     * Returns the headers of the part.
+     * 
+     * @return The headers of the part.
+     */
+    public Series<Header> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Returns the name of the form field declared by the
+     * "Content-Disposition" header, if any.
+     * 
+     * @return The name of the form field.
+     */
+    public String getName() {
+        Disposition disposition = getDisposition();
+        Parameter name = (disposition == null) ? null : disposition
+                .getParameters().getFirst("name", true);
+        return (name == null) ? null : name.getValue();
+    }
+
+    /**
+     * Closes the input stream and deletes the spilled file, if any.
+     */
+    @Override
+    public void release() {
+        super.release();
+
+        if (this.file != null) {
+            IoUtils.delete(this.file);
+            this.file = null;
+        }
+    }
+
+}
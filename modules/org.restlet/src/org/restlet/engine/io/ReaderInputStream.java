@@ -33,6 +33,7 @@ import java.nio.CharBuffer;
 import java.nio.charset.CharsetEncoder;
 
 import org.restlet.data.CharacterSet;
+import org.restlet.engine.Engine;
 
 // [excludes gwt]
 /**
@@ -43,8 +44,11 @@ import org.restlet.data.CharacterSet;
  */
 public class ReaderInputStream extends InputStream {
 
-    /** The NIO byte buffer. */
-    private final ByteBuffer byteBuffer;
+    /** The empty buffer replacing the released one once closed. */
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    /** The NIO byte buffer, borrowed from the engine's buffer pool. */
+    private volatile ByteBuffer byteBuffer;
 
     /** The NIO character buffer. */
     private final CharBuffer charBuffer;
@@ -81,7 +85,7 @@ public class ReaderInputStream extends InputStream {
      */
     public ReaderInputStream(Reader reader, CharacterSet characterSet)
             throws IOException {
-        this.byteBuffer = ByteBuffer.allocate(1024);
+        this.byteBuffer = Engine.getBufferPool().acquireBuffer(1024, false);
         this.byteBuffer.flip();
         this.charBuffer = CharBuffer.allocate(1024);
         this.charBuffer.flip();
@@ -99,10 +103,18 @@ public class ReaderInputStream extends InputStream {
     }
 
     /**
-     * Closes the wrapped reader.
+     * Closes the wrapped reader and releases the byte buffer.
      */
     @Override
     public void close() throws IOException {
+        ByteBuffer buffer = this.byteBuffer;
+        this.byteBuffer = EMPTY;
+        this.endReached = true;
+
+        if (buffer != EMPTY) {
+            Engine.getBufferPool().release(buffer);
+        }
+
         this.reader.close();
     }
 
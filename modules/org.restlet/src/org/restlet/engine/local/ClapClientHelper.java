@@ -27,7 +27,10 @@ package org.restlet.engine.local;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.net.JarURLConnection;
+import java.net.URLConnection;
 import java.util.Date;
+import java.util.jar.JarEntry;
 import java.util.logging.Level;
 
 import org.restlet.Client;
@@ -38,6 +41,7 @@ import org.restlet.data.Method;
 import org.restlet.data.Protocol;
 import org.restlet.data.Reference;
 import org.restlet.data.Status;
+import org.restlet.data.Tag;
 import org.restlet.representation.InputRepresentation;
 import org.restlet.representation.Representation;
 import org.restlet.service.MetadataService;
@@ -133,6 +137,7 @@ public class ClapClientHelper extends LocalClientHelper {
                     String name = path.substring(path.lastIndexOf('/') + 1);
                     Entity.updateMetadata(name, output, true,
                             getMetadataService());
+                    updateTag(url, output);
 
                     // Update the response
                     response.setEntity(output);
@@ -188,4 +193,84 @@ public class ClapClientHelper extends LocalClientHelper {
                             + "\" not supported by the connector. Only CLAP is supported.");
         }
     }
+
+    /**
+     * Updates the entity tag of the representation of a class loader resource,
+     * according to the {@link #getTagMode()} parameter.
+     * 
+     * @param url
+     *            The URL of the resource.
+     * @param output
+     *            The representation to update.
+     * @throws IOException
+     */
+    private void updateTag(URL url, Representation output) throws IOException {
+        String mode = getTagMode();
+        String path = url.toString();
+        boolean jar = url.getProtocol().equals("jar");
+
+        if (jar && TAG_MODE_STRONG.equals(mode)) {
+            // Entries of loaded JAR files don't change
+            Tag tag = getCachedTag(path);
+
+            if (tag != null) {
+                output.setTag(tag);
+                return;
+            }
+        }
+
+        if (!TAG_MODE_NONE.equals(mode)) {
+            long size = -1;
+            long modificationTime = 0;
+
+            if (url.getProtocol().equals("file")) {
+                File file = new File(url.getFile());
+                size = file.length();
+                modificationTime = file.lastModified();
+            } else {
+                URLConnection connection = url.openConnection();
+
+                if (jar && (connection instanceof JarURLConnection)) {
+                    // Read the entry of the shared JAR file without opening
+                    // any stream
+                    connection.setUseCaches(true);
+                    JarEntry entry = ((JarURLConnection) connection)
+                            .getJarEntry();
+
+                    if (entry != null) {
+                        size = entry.getSize();
+                        modificationTime = entry.getTime();
+                    }
+                } else {
+                    try {
+                        size = connection.getContentLengthLong();
+                        modificationTime = connection.getLastModified();
+                    } finally {
+                        // Getting the headers may have opened the stream
+                        try {
+                            connection.getInputStream().close();
+                        } catch (IOException ioe) {
+                            getLogger().log(Level.FINE,
+                                    "Unable to close the connection of " + url,
+                                    ioe);
+                        }
+                    }
+                }
+            }
+
+            if (TAG_MODE_STRONG.equals(mode)) {
+                Tag tag = getCachedTag(path, size, modificationTime);
+
+                if (tag == null) {
+                    // Only read the resource again on a cache miss
+                    tag = getStrongTag(path, size, modificationTime,
+                            new InputRepresentation(url.openStream()));
+                }
+
+                output.setTag(tag);
+            } else if (TAG_MODE_WEAK.equals(mode)) {
+                output.setTag(getWeakTag(size, modificationTime));
+            }
+        }
+    }
 }
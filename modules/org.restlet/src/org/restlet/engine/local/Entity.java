@@ -311,6 +311,16 @@ public abstract class Entity {
         return metadataService;
     }
 
+    /**
+     * Returns the modification time, in milliseconds since the epoch. By
+     * default, returns 0 meaning that the time is unknown.
+     * 
+     * @return The modification time or 0 if unknown.
+     */
+    public long getModificationTime() {
+        return 0L;
+    }
+
     /**
      * Returns the name.
      * 
@@ -325,6 +335,17 @@ public abstract class Entity {
      */
     public abstract Entity getParent();
 
+    /**
+     * Returns the path uniquely identifying this entity, used for example as a
+     * key to cache its entity tag. By default, returns null meaning that the
+     * entity can't be identified.
+     * 
+     * @return The path uniquely identifying this entity or null.
+     */
+    public String getPath() {
+        return null;
+    }
+
     /**
      * Returns a representation of this local entity.
      * 
@@ -333,6 +354,16 @@ public abstract class Entity {
     public abstract Representation getRepresentation(
             MediaType defaultMediaType, int timeToLive);
 
+    /**
+     * Returns the size of the content in bytes. By default, returns -1 meaning
+     * that the size is unknown.
+     * 
+     * @return The size of the content or -1 if unknown.
+     */
+    public long getSize() {
+        return -1L;
+    }
+
     /**
      * Returns a variant corresponding to the extensions of this entity.
      * 
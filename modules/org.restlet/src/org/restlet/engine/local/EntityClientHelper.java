@@ -240,6 +240,7 @@ public abstract class EntityClientHelper extends LocalClientHelper {
                     output.setLocationRef(request.getResourceRef());
                     Entity.updateMetadata(entity.getName(), output, true,
                             getMetadataService());
+                    updateTag(entity, output);
                 }
             } else {
                 // We look for the possible variant which has the same
@@ -280,6 +281,7 @@ public abstract class EntityClientHelper extends LocalClientHelper {
                     output.setLocationRef(request.getResourceRef());
                     Entity.updateMetadata(entity.getName(), output, true,
                             getMetadataService());
+                    updateTag(uniqueVariant, output);
                 }
             }
         }
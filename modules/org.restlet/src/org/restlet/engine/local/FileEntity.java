@@ -98,6 +98,11 @@ public class FileEntity extends Entity {
         return file;
     }
 
+    @Override
+    public long getModificationTime() {
+        return getFile().lastModified();
+    }
+
     @Override
     public String getName() {
         return getFile().getName();
@@ -110,12 +115,22 @@ public class FileEntity extends Entity {
                 getMetadataService());
     }
 
+    @Override
+    public String getPath() {
+        return getFile().getAbsolutePath();
+    }
+
     @Override
     public Representation getRepresentation(MediaType defaultMediaType,
             int timeToLive) {
         return new FileRepresentation(getFile(), defaultMediaType, timeToLive);
     }
 
+    @Override
+    public long getSize() {
+        return getFile().length();
+    }
+
     @Override
     public boolean isDirectory() {
         // [ifndef gae] instruction
@@ -24,11 +24,19 @@
 
 package org.restlet.engine.local;
 
+import java.util.logging.Level;
+
 import org.restlet.Client;
 import org.restlet.Request;
 import org.restlet.Response;
+import org.restlet.data.Digest;
 import org.restlet.data.Reference;
+import org.restlet.data.Tag;
 import org.restlet.engine.connector.ClientHelper;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.engine.util.BoundedCache;
+import org.restlet.representation.DigesterRepresentation;
+import org.restlet.representation.Representation;
 
 /**
  * Connector to the local resources accessible via file system, class loaders
@@ -56,6 +64,22 @@ import org.restlet.engine.connector.ClientHelper;
  * parent application), falls back on this default language. To indicate that no
  * default language should be set, "" can be used.</td>
  * </tr>
+ * <tr>
+ * <td>tagMode</td>
+ * <td>String</td>
+ * <td>none</td>
+ * <td>Indicates how entity tags are generated for the representations of
+ * files, Zip entries and class loader resources. With "none", no tag is
+ * generated. With "weak", a weak tag is derived from the size and the
+ * modification date. With "strong", a strong tag is derived from a digest of
+ * the content, computed once and then cached.</td>
+ * </tr>
+ * <tr>
+ * <td>tagCacheSize</td>
+ * <td>int</td>
+ * <td>1000</td>
+ * <td>Maximum number of strong entity tags kept in memory.</td>
+ * </tr>
  * </table>
  * 
  * @see org.restlet.data.LocalReference
@@ -63,6 +87,50 @@ import org.restlet.engine.connector.ClientHelper;
  * @author Thierry Boileau
  */
 public abstract class LocalClientHelper extends ClientHelper {
+
+    /**
+     * Strong entity tag cached for a given size and modification time.
+     */
+    private static final class CachedTag {
+
+        /** The modification time of the content. */
+        private final long modificationTime;
+
+        /** The size of the content. */
+        private final long size;
+
+        /** The entity tag. */
+        private final Tag tag;
+
+        /**
+         * Constructor.
+         * 
+         * @param size
+         *            The size of the content.
+         * @param modificationTime
+         *            The modification time of the content.
+         * @param tag
+         *            The entity tag.
+         */
+        private CachedTag(long size, long modificationTime, Tag tag) {
+            this.size = size;
+            this.modificationTime = modificationTime;
+            this.tag = tag;
+        }
+    }
+
+    /** No entity tag is generated. */
+    public static final String TAG_MODE_NONE = "none";
+
+    /** Strong entity tags are derived from a digest of the content. */
+    public static final String TAG_MODE_STRONG = "strong";
+
+    /** Weak entity tags are derived from the size and modification date. */
+    public static final String TAG_MODE_WEAK = "weak";
+
+    /** The cache of strong entity tags, lazily created. */
+    private volatile BoundedCache<String, CachedTag> tagCache;
+
     /**
      * Constructor. Note that the common list of metadata associations based on
      * extensions is added, see the addCommonExtensions() method.
@@ -85,6 +153,132 @@ public abstract class LocalClientHelper extends ClientHelper {
         return getHelpedParameters().getFirstValue("defaultLanguage", "");
     }
 
+    /**
+     * Returns the strong entity tag cached for a given path, whatever the size
+     * and modification time of the content when it was computed. This is only
+     * suited to contents that can't change, such as the entries of loaded JAR
+     * files, as it doesn't require reading their metadata.
+     * 
+     * @param path
+     *            The path identifying the content.
+     * @return The cached strong entity tag or null.
+     */
+    protected Tag getCachedTag(String path) {
+        CachedTag cached = getTagCache().get(path);
+        return (cached == null) ? null : cached.tag;
+    }
+
+    /**
+     * Returns the strong entity tag cached for a given path, provided that the
+     * size and modification time of the content didn't change since it was
+     * computed.
+     * 
+     * @param path
+     *            The path identifying the content.
+     * @param size
+     *            The size of the content or -1 if unknown.
+     * @param modificationTime
+     *            The modification time of the content or 0 if unknown.
+     * @return The cached strong entity tag or null.
+     */
+    protected Tag getCachedTag(String path, long size, long modificationTime) {
+        CachedTag cached = getTagCache().get(path);
+
+        if ((cached != null) && (cached.size == size)
+                && (cached.modificationTime == modificationTime)) {
+            return cached.tag;
+        }
+
+        return null;
+    }
+
+    /**
+     * Computes the strong entity tag of a content by digesting it, and caches
+     * it for the given path, size and modification time. Callers should first
+     * look for a cached tag with
+     * {@link #getCachedTag(String, long, long)} in order to only read the
+     * content when needed.
+     * 
+     * @param path
+     *            The path identifying the content.
+     * @param size
+     *            The size of the content or -1 if unknown.
+     * @param modificationTime
+     *            The modification time of the content or 0 if unknown.
+     * @param content
+     *            The content to digest. It is released afterwards.
+     * @return The strong entity tag or null if it can't be computed.
+     */
+    protected Tag getStrongTag(String path, long size, long modificationTime,
+            Representation content) {
+        Tag result = null;
+
+        try {
+            DigesterRepresentation digester = new DigesterRepresentation(
+                    content);
+            digester.exhaust();
+            Digest digest = digester.getComputedDigest();
+
+            if (digest != null) {
+                result = new Tag(IoUtils.toHexString(digest.getValue()), false);
+                getTagCache().put(path,
+                        new CachedTag(size, modificationTime, result));
+            }
+        } catch (Exception e) {
+            getLogger().log(Level.WARNING,
+                    "Unable to compute the entity tag of " + path, e);
+        } finally {
+            content.release();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the cache of strong entity tags, creating it if necessary.
+     * 
+     * @return The cache of strong entity tags.
+     */
+    private BoundedCache<String, CachedTag> getTagCache() {
+        BoundedCache<String, CachedTag> result = this.tagCache;
+
+        if (result == null) {
+            synchronized (this) {
+                result = this.tagCache;
+
+                if (result == null) {
+                    result = new BoundedCache<String, CachedTag>(
+                            getTagCacheSize());
+                    this.tagCache = result;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the maximum number of strong entity tags kept in memory.
+     * 
+     * @return The maximum number of strong entity tags kept in memory.
+     */
+    public int getTagCacheSize() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "tagCacheSize", "1000"));
+    }
+
+    /**
+     * Returns the entity tag generation mode.
+     * 
+     * @return The entity tag generation mode.
+     * @see #TAG_MODE_NONE
+     * @see #TAG_MODE_STRONG
+     * @see #TAG_MODE_WEAK
+     */
+    public String getTagMode() {
+        return getHelpedParameters().getFirstValue("tagMode", TAG_MODE_NONE);
+    }
+
     /**
      * Returns the time to live for a file representation before it expires (in
      * seconds).
@@ -97,6 +291,25 @@ public abstract class LocalClientHelper extends ClientHelper {
                 "timeToLive", "600"));
     }
 
+    /**
+     * Returns the weak entity tag of a content based on its size and
+     * modification time.
+     * 
+     * @param size
+     *            The size of the content or -1 if unknown.
+     * @param modificationTime
+     *            The modification time of the content or 0 if unknown.
+     * @return The weak entity tag or null if both are unknown.
+     */
+    protected Tag getWeakTag(long size, long modificationTime) {
+        if ((size < 0) && (modificationTime <= 0)) {
+            return null;
+        }
+
+        return new Tag(Long.toHexString(size) + "-"
+                + Long.toHexString(modificationTime), true);
+    }
+
     /**
      * Handles a call. Note that this implementation will systematically
      * normalize and URI-decode the resource reference.
@@ -139,4 +352,37 @@ public abstract class LocalClientHelper extends ClientHelper {
      */
     protected abstract void handleLocal(Request request, Response response,
             String decodedPath);
+
+    /**
+     * Updates the entity tag of the representation of a local entity,
+     * according to the {@link #getTagMode()} parameter. Strong tags are only
+     * computed by reading the entity when they aren't already cached.
+     * 
+     * @param entity
+     *            The local entity.
+     * @param output
+     *            The representation to update.
+     */
+    protected void updateTag(Entity entity, Representation output) {
+        String mode = getTagMode();
+
+        if (!TAG_MODE_NONE.equals(mode) && (entity.getPath() != null)) {
+            if (TAG_MODE_STRONG.equals(mode)) {
+                String path = entity.getPath();
+                long size = entity.getSize();
+                long modificationTime = entity.getModificationTime();
+                Tag tag = getCachedTag(path, size, modificationTime);
+
+                if (tag == null) {
+                    tag = getStrongTag(path, size, modificationTime,
+                            entity.getRepresentation(output.getMediaType(), 0));
+                }
+
+                output.setTag(tag);
+            } else if (TAG_MODE_WEAK.equals(mode)) {
+                output.setTag(getWeakTag(entity.getSize(),
+                        entity.getModificationTime()));
+            }
+        }
+    }
 }
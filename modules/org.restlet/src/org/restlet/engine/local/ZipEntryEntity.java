@@ -120,6 +120,11 @@ public class ZipEntryEntity extends Entity {
         return result;
     }
 
+    @Override
+    public long getModificationTime() {
+        return Math.max(0L, entry.getTime());
+    }
+
     @Override
     public String getName() {
         return entry.getName();
@@ -136,6 +141,11 @@ public class ZipEntryEntity extends Entity {
                 getMetadataService());
     }
 
+    @Override
+    public String getPath() {
+        return zipFile.getName() + "!/" + entry.getName();
+    }
+
     @Override
     public Representation getRepresentation(MediaType defaultMediaType,
             int timeToLive) {
@@ -143,6 +153,11 @@ public class ZipEntryEntity extends Entity {
                 timeToLive);
     }
 
+    @Override
+    public long getSize() {
+        return entry.getSize();
+    }
+
     @Override
     public boolean isDirectory() {
         if ("".equals(entry.getName()))
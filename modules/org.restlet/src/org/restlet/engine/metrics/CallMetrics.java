@@ -0,0 +1,140 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// [excludes gwt]
+/**
+ * Metrics of the calls handled by a route or a resource method. It counts the
+ * calls per status class and records their latency.
+ * 
+ * @author Jerome Louvel
+ */
+public class CallMetrics {
+
+    /** The latency histogram. */
+    private final LatencyHistogram latency;
+
+    /** The method name, either the request method or a Java method. */
+    private final String method;
+
+    /** The name of the route or of the resource class. */
+    private final String name;
+
+    /** The number of calls per status class, from 0 (unknown) to 5 (5xx). */
+    private final AtomicLongArray statusCounts;
+
+    /**
+     * Constructor.
+     * 
+     * @param name
+     *            The name of the route or of the resource class.
+     * @param method
+     *            The method name.
+     */
+    public CallMetrics(String name, String method) {
+        this.name = name;
+        this.method = method;
+        this.latency = new LatencyHistogram();
+        this.statusCounts = new AtomicLongArray(6);
+    }
+
+    /**
+     * Returns the number of calls.
+     * 
+     * @return The number of calls.
+     */
+    public long getCount() {
+        return this.latency.getCount();
+    }
+
+    /**
+     * Returns the latency histogram.
+     * 
+     * @return The latency histogram.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Returns the method name, either the request method or the name of the
+     * Java method of an annotated resource.
+     * 
+     * @return The method name.
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns the name of the route template or of the resource class.
+     * 
+     * @return The name of the route template or of the resource class.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of calls whose response status is in a given class.
+     * 
+     * @param statusClass
+     *            The status class, from 1 (1xx) to 5 (5xx), or 0 for the
+     *            unknown status codes.
+     * @return The number of calls.
+     */
+    public long getStatusCount(int statusClass) {
+        return this.statusCounts.get(statusClass);
+    }
+
+    /**
+     * Records a call.
+     * 
+     * @param statusCode
+     *            The response status code.
+     * @param nanos
+     *            The call duration in nanoseconds.
+     */
+    public void record(int statusCode, long nanos) {
+        int statusClass = statusCode / 100;
+        this.statusCounts.incrementAndGet(((statusClass < 1) || (statusClass > 5)) ? 0
+                : statusClass);
+        this.latency.record(nanos);
+    }
+
+    /**
+     * Clears the recorded calls.
+     */
+    public void reset() {
+        for (int i = 0; i < 6; i++) {
+            this.statusCounts.set(i, 0);
+        }
+
+        this.latency.reset();
+    }
+
+}
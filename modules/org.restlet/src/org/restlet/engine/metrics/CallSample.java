@@ -0,0 +1,138 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.metrics;
+
+import org.restlet.Request;
+
+// [excludes gwt]
+/**
+ * Information collected on a call measured by the metrics service. It is
+ * stored in the request attributes by the {@link MetricsFilter}, then completed
+ * by the routes and the resources that handle the call.
+ * 
+ * @author Jerome Louvel
+ */
+public class CallSample {
+
+    /** The name of the request attribute holding the sample. */
+    public static final String ATTRIBUTE = "org.restlet.callSample";
+
+    /**
+     * Appends the template pattern of a route that handles a request to its
+     * sample, if any.
+     * 
+     * @param request
+     *            The request to update.
+     * @param pattern
+     *            The template pattern of the route.
+     */
+    public static void addRoute(Request request, String pattern) {
+        CallSample sample = (CallSample) request.getAttributes().get(ATTRIBUTE);
+
+        if (sample != null) {
+            sample.route = (sample.route == null) ? pattern : sample.route
+                    + pattern;
+        }
+    }
+
+    /**
+     * Sets the resource that handles a request in its sample, if any.
+     * 
+     * @param request
+     *            The request to update.
+     * @param resourceClass
+     *            The class of the resource.
+     * @param method
+     *            The request method or the Java method invoked.
+     */
+    public static void setResource(Request request, Class<?> resourceClass,
+            String method) {
+        CallSample sample = (CallSample) request.getAttributes().get(ATTRIBUTE);
+
+        if (sample != null) {
+            sample.resource = resourceClass.getName();
+            sample.resourceMethod = method;
+        }
+    }
+
+    /** The resource class name. */
+    private volatile String resource;
+
+    /** The request method or the Java method invoked on the resource. */
+    private volatile String resourceMethod;
+
+    /** The concatenated template patterns of the matched routes. */
+    private volatile String route;
+
+    /** The start time in nanoseconds. */
+    private final long startTime;
+
+    /**
+     * Constructor.
+     * 
+     * @param startTime
+     *            The start time in nanoseconds.
+     */
+    public CallSample(long startTime) {
+        this.startTime = startTime;
+    }
+
+    /**
+     * Returns the resource class name.
+     * 
+     * @return The resource class name or null.
+     */
+    public String getResource() {
+        return resource;
+    }
+
+    /**
+     * Returns the request method or the Java method invoked on the resource.
+     * 
+     * @return The resource method or null.
+     */
+    public String getResourceMethod() {
+        return resourceMethod;
+    }
+
+    /**
+     * Returns the concatenated template patterns of the matched routes.
+     * 
+     * @return The route or null.
+     */
+    public String getRoute() {
+        return route;
+    }
+
+    /**
+     * Returns the start time.
+     * 
+     * @return The start time in nanoseconds.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+}
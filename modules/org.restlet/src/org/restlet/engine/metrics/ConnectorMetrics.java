@@ -0,0 +1,211 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.restlet.Server;
+import org.restlet.engine.connector.ServerHelper;
+
+// [excludes gwt]
+/**
+ * Gauges of a server connector: calls in progress, handled calls, entity bytes
+ * received and sent, and the state of the worker threads when known. Started
+ * server helpers register their metrics so that they can be published by the
+ * metrics services.
+ * 
+ * @author Jerome Louvel
+ */
+public class ConnectorMetrics {
+
+    /** The metrics of the started server connectors. */
+    private static final List<ConnectorMetrics> registered = new CopyOnWriteArrayList<ConnectorMetrics>();
+
+    /**
+     * Returns the metrics of the started server connectors.
+     * 
+     * @return The metrics of the started server connectors.
+     */
+    public static List<ConnectorMetrics> getRegistered() {
+        return registered;
+    }
+
+    /** The number of calls in progress. */
+    private final AtomicLong activeCalls;
+
+    /** The number of request entity bytes received. */
+    private final AtomicLong bytesIn;
+
+    /** The number of response entity bytes sent. */
+    private final AtomicLong bytesOut;
+
+    /** The worker threads executor. */
+    private volatile ThreadPoolExecutor executor;
+
+    /** The server helper. */
+    private final ServerHelper helper;
+
+    /** The number of handled calls. */
+    private final AtomicLong totalCalls;
+
+    /**
+     * Constructor.
+     * 
+     * @param helper
+     *            The server helper.
+     */
+    public ConnectorMetrics(ServerHelper helper) {
+        this.helper = helper;
+        this.activeCalls = new AtomicLong();
+        this.bytesIn = new AtomicLong();
+        this.bytesOut = new AtomicLong();
+        this.totalCalls = new AtomicLong();
+    }
+
+    /**
+     * Records the end of a call.
+     * 
+     * @param bytesOut
+     *            The size of the response entity or -1 if unknown.
+     */
+    public void callEnded(long bytesOut) {
+        this.activeCalls.decrementAndGet();
+
+        if (bytesOut > 0) {
+            this.bytesOut.addAndGet(bytesOut);
+        }
+    }
+
+    /**
+     * Records the start of a call.
+     * 
+     * @param bytesIn
+     *            The size of the request entity or -1 if unknown.
+     */
+    public void callStarted(long bytesIn) {
+        this.activeCalls.incrementAndGet();
+        this.totalCalls.incrementAndGet();
+
+        if (bytesIn > 0) {
+            this.bytesIn.addAndGet(bytesIn);
+        }
+    }
+
+    /**
+     * Returns the number of calls in progress.
+     * 
+     * @return The number of calls in progress.
+     */
+    public long getActiveCalls() {
+        return this.activeCalls.get();
+    }
+
+    /**
+     * Returns the number of request entity bytes received, for the entities
+     * whose size was known.
+     * 
+     * @return The number of request entity bytes received.
+     */
+    public long getBytesIn() {
+        return this.bytesIn.get();
+    }
+
+    /**
+     * Returns the number of response entity bytes sent, for the entities whose
+     * size was known.
+     * 
+     * @return The number of response entity bytes sent.
+     */
+    public long getBytesOut() {
+        return this.bytesOut.get();
+    }
+
+    /**
+     * Returns the worker threads executor.
+     * 
+     * @return The worker threads executor or null.
+     */
+    public ThreadPoolExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Returns the connector name, made of its first protocol and its actual
+     * port, such as "HTTP:8182".
+     * 
+     * @return The connector name.
+     */
+    public String getName() {
+        Server server = this.helper.getHelped();
+        String protocol = ((server == null) || server.getProtocols().isEmpty()) ? "unknown"
+                : server.getProtocols().get(0).getName();
+        Object port = this.helper.getAttributes().get("ephemeralPort");
+
+        if (!(port instanceof Integer) || (((Integer) port) <= 0)) {
+            port = (server == null) ? -1 : server.getPort();
+        }
+
+        return protocol + ":" + port;
+    }
+
+    /**
+     * Returns the number of handled calls.
+     * 
+     * @return The number of handled calls.
+     */
+    public long getTotalCalls() {
+        return this.totalCalls.get();
+    }
+
+    /**
+     * Registers these metrics as the ones of a started connector.
+     */
+    public void register() {
+        if (!registered.contains(this)) {
+            registered.add(this);
+        }
+    }
+
+    /**
+     * Sets the worker threads executor.
+     * 
+     * @param executor
+     *            The worker threads executor.
+     */
+    public void setExecutor(ThreadPoolExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Unregisters these metrics when the connector is stopped.
+     */
+    public void unregister() {
+        registered.remove(this);
+    }
+
+}
@@ -0,0 +1,230 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// [excludes gwt]
+/**
+ * Lock-free histogram of latencies, recorded with a microsecond resolution.
+ * Like HDR histograms, values are counted in log-linear buckets: each power of
+ * two range is split into {@link #SUB_BUCKETS} linear buckets, bounding the
+ * relative error of the reported percentiles to about 3%, whatever the
+ * magnitude of the values. Values below {@link #SUB_BUCKETS} * 2 microseconds
+ * are counted exactly, values above about 19 hours are counted in the last
+ * bucket.<br>
+ * <br>
+ * Recording a value costs a few atomic increments and never allocates, so
+ * histograms can be updated on the hot path by concurrent threads. Reading
+ * them while values are recorded gives a consistent enough snapshot for
+ * monitoring purpose.
+ * 
+ * @author Jerome Louvel
+ */
+public class LatencyHistogram {
+
+    /** The number of linear buckets per power of two range. */
+    public static final int SUB_BUCKETS = 32;
+
+    /** The number of bits of the linear buckets. */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /** The highest power of two counted with the relative precision. */
+    private static final int MAX_EXPONENT = 36;
+
+    /** The total number of buckets. */
+    private static final int BUCKETS = 2 * SUB_BUCKETS
+            + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    /**
+     * Returns the bucket index of a value.
+     * 
+     * @param value
+     *            The value in microseconds.
+     * @return The bucket index.
+     */
+    static int getIndex(long value) {
+        int result;
+
+        if (value < 2 * SUB_BUCKETS) {
+            result = (value < 0) ? 0 : (int) value;
+        } else {
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+
+            if (exponent > MAX_EXPONENT) {
+                result = BUCKETS - 1;
+            } else {
+                int shift = exponent - SUB_BUCKET_BITS;
+                result = 2 * SUB_BUCKETS + (shift - 1) * SUB_BUCKETS
+                        + (int) ((value >> shift) & (SUB_BUCKETS - 1));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the highest value counted in a bucket.
+     * 
+     * @param index
+     *            The bucket index.
+     * @return The highest value in microseconds.
+     */
+    static long getHighestValue(int index) {
+        long result;
+
+        if (index < 2 * SUB_BUCKETS) {
+            result = index;
+        } else {
+            int shift = (index - 2 * SUB_BUCKETS) / SUB_BUCKETS + 1;
+            long sub = (index - 2 * SUB_BUCKETS) % SUB_BUCKETS;
+            result = ((SUB_BUCKETS + sub + 1) << shift) - 1;
+        }
+
+        return result;
+    }
+
+    /** The counts per bucket. */
+    private final AtomicLongArray counts;
+
+    /** The highest recorded value in microseconds. */
+    private final AtomicLong max;
+
+    /** The number of recorded values. */
+    private final AtomicLong totalCount;
+
+    /** The sum of the recorded values in microseconds. */
+    private final AtomicLong totalValue;
+
+    /**
+     * Constructor.
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.max = new AtomicLong();
+        this.totalCount = new AtomicLong();
+        this.totalValue = new AtomicLong();
+    }
+
+    /**
+     * Returns the number of recorded values.
+     * 
+     * @return The number of recorded values.
+     */
+    public long getCount() {
+        return this.totalCount.get();
+    }
+
+    /**
+     * Returns the highest recorded value.
+     * 
+     * @return The highest recorded value in microseconds.
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     * 
+     * @return The mean of the recorded values in microseconds.
+     */
+    public double getMean() {
+        long count = getCount();
+        return (count == 0) ? 0 : (double) getTotal() / count;
+    }
+
+    /**
+     * Returns the sum of the recorded values.
+     * 
+     * @return The sum of the recorded values in microseconds.
+     */
+    public long getTotal() {
+        return this.totalValue.get();
+    }
+
+    /**
+     * Returns the value below which a given percentage of the recorded values
+     * fall. The returned value is the highest value of its bucket, bounded by
+     * the highest recorded value.
+     * 
+     * @param percentile
+     *            The percentile, between 0 and 100.
+     * @return The value at the given percentile in microseconds.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long result = 0;
+        long count = getCount();
+
+        if (count > 0) {
+            long rank = (long) Math.ceil(Math.min(100, Math.max(0, percentile))
+                    / 100 * count);
+            long seen = 0;
+
+            for (int i = 0; (i < BUCKETS) && (seen < Math.max(1, rank)); i++) {
+                seen += this.counts.get(i);
+                result = getHighestValue(i);
+            }
+
+            result = Math.min(result, getMax());
+        }
+
+        return result;
+    }
+
+    /**
+     * Records a latency.
+     * 
+     * @param nanos
+     *            The latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        long value = nanos / 1000;
+        this.counts.incrementAndGet(getIndex(value));
+        this.totalValue.addAndGet(value);
+        this.totalCount.incrementAndGet();
+
+        long current = this.max.get();
+
+        while ((value > current) && !this.max.compareAndSet(current, value)) {
+            current = this.max.get();
+        }
+    }
+
+    /**
+     * Clears the recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.counts.set(i, 0);
+        }
+
+        this.max.set(0);
+        this.totalCount.set(0);
+        this.totalValue.set(0);
+    }
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.metrics;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.routing.Filter;
+import org.restlet.service.MetricsService;
+
+// [excludes gwt]
+/**
+ * Filter measuring the calls for the metrics service. It stores a
+ * {@link CallSample} in the request attributes, completed by the routes and
+ * resources handling the call, and records it once the call is handled.
+ * 
+ * @author Jerome Louvel
+ */
+public class MetricsFilter extends Filter {
+
+    /** The name of the request attribute holding the enclosing sample. */
+    private static final String ATTRIBUTE_PARENT = "org.restlet.callSample.parent";
+
+    /** The metrics service. */
+    private final MetricsService metricsService;
+
+    /**
+     * Constructor.
+     * 
+     * @param context
+     *            The context.
+     * @param metricsService
+     *            The metrics service.
+     */
+    public MetricsFilter(Context context, MetricsService metricsService) {
+        super(context);
+        this.metricsService = metricsService;
+    }
+
+    @Override
+    protected void afterHandle(Request request, Response response) {
+        CallSample sample = (CallSample) request.getAttributes().get(
+                CallSample.ATTRIBUTE);
+
+        if (sample != null) {
+            this.metricsService.record(sample, request, response,
+                    System.nanoTime() - sample.getStartTime());
+
+            // Restore the sample of an enclosing application, if any
+            Object parent = request.getAttributes().remove(ATTRIBUTE_PARENT);
+
+            if (parent == null) {
+                request.getAttributes().remove(CallSample.ATTRIBUTE);
+            } else {
+                request.getAttributes().put(CallSample.ATTRIBUTE, parent);
+            }
+        }
+    }
+
+    @Override
+    protected int beforeHandle(Request request, Response response) {
+        Object parent = request.getAttributes().put(CallSample.ATTRIBUTE,
+                new CallSample(System.nanoTime()));
+
+        if (parent != null) {
+            request.getAttributes().put(ATTRIBUTE_PARENT, parent);
+        }
+
+        return CONTINUE;
+    }
+
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.metrics;
+
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ReflectionException;
+
+import org.restlet.service.MetricsService;
+
+// [excludes gwt]
+/**
+ * Management bean publishing the metrics of a metrics service. Each exposed
+ * metric is a read-only attribute, named like in the text exposition format.
+ * The "reset" operation clears the recorded calls.
+ * 
+ * @author Jerome Louvel
+ */
+public class MetricsMBean implements DynamicMBean {
+
+    /** The metrics service. */
+    private final MetricsService metricsService;
+
+    /**
+     * Constructor.
+     * 
+     * @param metricsService
+     *            The metrics service.
+     */
+    public MetricsMBean(MetricsService metricsService) {
+        this.metricsService = metricsService;
+    }
+
+    public Object getAttribute(String attribute)
+            throws AttributeNotFoundException, MBeanException,
+            ReflectionException {
+        Object result = this.metricsService.getSnapshot().get(attribute);
+
+        if (result == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        return result;
+    }
+
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList result = new AttributeList();
+        Map<String, Number> snapshot = this.metricsService.getSnapshot();
+
+        for (String attribute : attributes) {
+            if (snapshot.containsKey(attribute)) {
+                result.add(new Attribute(attribute, snapshot.get(attribute)));
+            }
+        }
+
+        return result;
+    }
+
+    public MBeanInfo getMBeanInfo() {
+        Map<String, Number> snapshot = this.metricsService.getSnapshot();
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[snapshot
+                .size()];
+        int i = 0;
+
+        for (Map.Entry<String, Number> entry : snapshot.entrySet()) {
+            attributes[i++] = new MBeanAttributeInfo(entry.getKey(), entry
+                    .getValue().getClass().getName(), entry.getKey(), true,
+                    false, false);
+        }
+
+        MBeanOperationInfo reset = new MBeanOperationInfo("reset",
+                "Clears the recorded calls", new MBeanParameterInfo[0],
+                "void", MBeanOperationInfo.ACTION);
+        return new MBeanInfo(getClass().getName(), "Restlet metrics",
+                attributes, null, new MBeanOperationInfo[] { reset }, null);
+    }
+
+    public Object invoke(String actionName, Object[] params, String[] signature)
+            throws MBeanException, ReflectionException {
+        if (!"reset".equals(actionName)) {
+            throw new ReflectionException(new NoSuchMethodException(
+                    actionName));
+        }
+
+        this.metricsService.reset();
+        return null;
+    }
+
+    public void setAttribute(Attribute attribute)
+            throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Read-only attribute: "
+                + attribute.getName());
+    }
+
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+}
@@ -26,10 +26,13 @@ package org.restlet.engine.resource;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
 
+import org.restlet.engine.util.MemberInvoker;
+
 // [excludes gwt]
 /**
  * Descriptor for Restlet annotations.
@@ -143,6 +146,9 @@ public abstract class AnnotationInfo {
     /** The upper implementation of the annotated Java method. */
     protected final java.lang.reflect.Method javaMethodImpl;
 
+    /** The invoker of the annotated Java method, lazily created. */
+    private volatile MemberInvoker javaMethodInvoker;
+
     /**
      * Constructor.
      * 
@@ -281,6 +287,31 @@ public abstract class AnnotationInfo {
         return javaMethod;
     }
 
+    /**
+     * Invokes the annotated Java method on the given target. The method is
+     * bound to a method handle on first use, avoiding the cost of reflective
+     * calls for the subsequent invocations.
+     * 
+     * @param target
+     *            The target object.
+     * @param args
+     *            The method arguments.
+     * @return The object returned by the method.
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException
+     */
+    public Object invoke(Object target, Object... args)
+            throws IllegalAccessException, InvocationTargetException {
+        MemberInvoker invoker = this.javaMethodInvoker;
+
+        if (invoker == null) {
+            invoker = new MemberInvoker(getJavaMethod());
+            this.javaMethodInvoker = invoker;
+        }
+
+        return invoker.invokeMethod(target, args);
+    }
+
     @Override
     public String toString() {
         return "AnnotationInfo [javaMethod: " + javaMethod + ", javaClass: "
@@ -60,6 +60,9 @@ public class MethodAnnotationInfo extends AnnotationInfo {
     /** The optional query part of the annotation value. */
     private final String query;
 
+    /** The input types of the Java method, lazily resolved. */
+    private volatile Class<?>[] javaInputTypes;
+
     /** The matching Restlet method. */
     private final Method restletMethod;
 
@@ -158,16 +161,23 @@ public class MethodAnnotationInfo extends AnnotationInfo {
     }
 
     /**
-     * Returns the input types of the Java method.
+     * Returns the input types of the Java method. They are resolved on first
+     * call, then cached. The returned array must not be modified.
      * 
      * @return The input types of the Java method.
      */
     public Class<?>[] getJavaInputTypes() {
-        int count = getJavaMethod().getParameterTypes().length;
-        Class<?>[] classes = new Class[count];
+        Class<?>[] classes = this.javaInputTypes;
+
+        if (classes == null) {
+            int count = getJavaMethod().getParameterTypes().length;
+            classes = new Class[count];
+
+            for (int i = 0; i < count; i++) {
+                classes[i] = getJavaInputType(i);
+            }
 
-        for (int i = 0; i < count; i++) {
-            classes[i] = getJavaInputType(i);
+            this.javaInputTypes = classes;
         }
 
         return classes;
@@ -0,0 +1,432 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Compact map of message attributes, specialized for a few entries accessed by
+ * one thread at a time. Keys and values are stored side by side in a single
+ * open-addressed table with linear probing, so that an empty map costs two
+ * small objects and a lookup touches a single array.<br>
+ * <br>
+ * Removed entries leave a marker in the table until the next rehash, so that
+ * the iterators keep returning each entry present during the whole iteration
+ * exactly once, like the ones of {@link java.util.concurrent.ConcurrentHashMap}.
+ * However, the updates aren't synchronized: the map must only be shared
+ * between threads via a safe publication, which is the case of the messages
+ * handed over by the connectors and the task service. Null keys and values
+ * aren't supported.
+ * 
+ * @author Jerome Louvel
+ */
+public class AttributeMap extends AbstractMap<String, Object> implements
+        ConcurrentMap<String, Object> {
+
+    /**
+     * Map entry returned by the iterators. Setting its value updates the map.
+     */
+    private final class AttributeEntry extends
+            AbstractMap.SimpleEntry<String, Object> {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructor.
+         * 
+         * @param key
+         *            The entry key.
+         * @param value
+         *            The entry value.
+         */
+        private AttributeEntry(String key, Object value) {
+            super(key, value);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    /**
+     * Iterator over the entries of a table. The next entry is read in advance,
+     * so that concurrent removals can't disturb the iteration.
+     */
+    private final class EntryIterator implements
+            Iterator<Map.Entry<String, Object>> {
+
+        /** The index of the slot following the next entry. */
+        private int index;
+
+        /** The key of the last entry returned. */
+        private String lastKey;
+
+        /** The key of the next entry. */
+        private String nextKey;
+
+        /** The value of the next entry. */
+        private Object nextValue;
+
+        /** The table iterated. */
+        private final Object[] table;
+
+        /**
+         * Constructor.
+         * 
+         * @param table
+         *            The table to iterate.
+         */
+        private EntryIterator(Object[] table) {
+            this.table = table;
+            this.index = 0;
+            advance();
+        }
+
+        /**
+         * Reads the next entry of the table, if any.
+         */
+        private void advance() {
+            this.nextKey = null;
+            this.nextValue = null;
+
+            while ((this.nextKey == null) && (this.index < this.table.length)) {
+                Object key = this.table[this.index];
+                Object value = this.table[this.index + 1];
+                this.index += 2;
+
+                if ((key != null) && (key != REMOVED) && (value != null)) {
+                    this.nextKey = (String) key;
+                    this.nextValue = value;
+                }
+            }
+        }
+
+        public boolean hasNext() {
+            return this.nextKey != null;
+        }
+
+        public Map.Entry<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Map.Entry<String, Object> result = new AttributeEntry(
+                    this.nextKey, this.nextValue);
+            this.lastKey = this.nextKey;
+            advance();
+            return result;
+        }
+
+        public void remove() {
+            if (this.lastKey == null) {
+                throw new IllegalStateException();
+            }
+
+            AttributeMap.this.remove(this.lastKey);
+            this.lastKey = null;
+        }
+    }
+
+    /** The initial number of slots. */
+    private static final int INITIAL_SLOTS = 8;
+
+    /** The marker of a removed key. */
+    private static final Object REMOVED = new Object();
+
+    /**
+     * Returns the index of the first slot to probe for a given key.
+     * 
+     * @param key
+     *            The key.
+     * @param length
+     *            The table length.
+     * @return The index of the key in the table.
+     */
+    private static int indexOf(Object key, int length) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return (h << 1) & (length - 1);
+    }
+
+    /** The number of removal markers in the table. */
+    private int removed;
+
+    /** The number of entries. */
+    private int size;
+
+    /** The keys and values, side by side. */
+    private Object[] table;
+
+    /**
+     * Constructor.
+     */
+    public AttributeMap() {
+        this.table = new Object[INITIAL_SLOTS << 1];
+    }
+
+    @Override
+    public void clear() {
+        if (this.size + this.removed > 0) {
+            // Iterators in progress keep the previous table
+            this.table = new Object[this.table.length];
+            this.size = 0;
+            this.removed = 0;
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public void clear() {
+                AttributeMap.this.clear();
+            }
+
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new EntryIterator(table);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Returns the index of a key in the table.
+     * 
+     * @param key
+     *            The key to look for.
+     * @return The index of the key or -1 if not found.
+     */
+    private int find(Object key) {
+        if (key == null) {
+            throw new NullPointerException("Null keys aren't supported");
+        }
+
+        Object[] tab = this.table;
+        int index = indexOf(key, tab.length);
+
+        for (Object k = tab[index]; k != null; k = tab[index]) {
+            if ((k == key) || key.equals(k)) {
+                return index;
+            }
+
+            index = (index + 2) & (tab.length - 1);
+        }
+
+        return -1;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = find(key);
+        return (index < 0) ? null : this.table[index + 1];
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        return put(key, value, false);
+    }
+
+    /**
+     * Puts an entry in the map.
+     * 
+     * @param key
+     *            The entry key.
+     * @param value
+     *            The entry value.
+     * @param onlyIfAbsent
+     *            True if an existing value must be kept.
+     * @return The previous value or null.
+     */
+    private Object put(String key, Object value, boolean onlyIfAbsent) {
+        if (value == null) {
+            throw new NullPointerException("Null values aren't supported");
+        }
+
+        int index = find(key);
+
+        if (index >= 0) {
+            Object result = this.table[index + 1];
+
+            if (!onlyIfAbsent) {
+                this.table[index + 1] = value;
+            }
+
+            return result;
+        }
+
+        // Keep at least half of the slots free
+        if ((this.size + this.removed + 1) << 2 > this.table.length) {
+            rehash();
+        }
+
+        Object[] tab = this.table;
+        index = indexOf(key, tab.length);
+
+        while ((tab[index] != null) && (tab[index] != REMOVED)) {
+            index = (index + 2) & (tab.length - 1);
+        }
+
+        if (tab[index] == REMOVED) {
+            this.removed--;
+        }
+
+        tab[index] = key;
+        tab[index + 1] = value;
+        this.size++;
+        return null;
+    }
+
+    public Object putIfAbsent(String key, Object value) {
+        return put(key, value, true);
+    }
+
+    /**
+     * Copies the entries into a new table, dropping the removal markers and
+     * doubling its length if half of the slots are used by entries. The
+     * previous table is left untouched for the iterators in progress.
+     */
+    private void rehash() {
+        Object[] tab = this.table;
+        int length = ((this.size << 2) >= tab.length) ? tab.length << 1
+                : tab.length;
+        Object[] newTab = new Object[length];
+
+        for (int i = 0; i < tab.length; i += 2) {
+            Object key = tab[i];
+
+            if ((key != null) && (key != REMOVED)) {
+                int index = indexOf(key, length);
+
+                while (newTab[index] != null) {
+                    index = (index + 2) & (length - 1);
+                }
+
+                newTab[index] = key;
+                newTab[index + 1] = tab[i + 1];
+            }
+        }
+
+        this.table = newTab;
+        this.removed = 0;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int index = find(key);
+
+        if (index < 0) {
+            return null;
+        }
+
+        Object result = this.table[index + 1];
+        removeAt(index);
+        return result;
+    }
+
+    public boolean remove(Object key, Object value) {
+        int index = find(key);
+
+        if ((index >= 0) && this.table[index + 1].equals(value)) {
+            removeAt(index);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Removes the entry at a given index, leaving a marker so that the probe
+     * sequences and the iterators in progress aren't disturbed.
+     * 
+     * @param index
+     *            The index of the key.
+     */
+    private void removeAt(int index) {
+        this.table[index] = REMOVED;
+        this.table[index + 1] = null;
+        this.size--;
+        this.removed++;
+    }
+
+    public Object replace(String key, Object value) {
+        if (value == null) {
+            throw new NullPointerException("Null values aren't supported");
+        }
+
+        int index = find(key);
+
+        if (index < 0) {
+            return null;
+        }
+
+        Object result = this.table[index + 1];
+        this.table[index + 1] = value;
+        return result;
+    }
+
+    public boolean replace(String key, Object oldValue, Object newValue) {
+        if (newValue == null) {
+            throw new NullPointerException("Null values aren't supported");
+        }
+
+        int index = find(key);
+
+        if ((index >= 0) && this.table[index + 1].equals(oldValue)) {
+            this.table[index + 1] = newValue;
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread-safe cache holding a bounded number of entries. Lookups are lock-free.
+ * When the maximum size is exceeded, entries are evicted using a second chance
+ * algorithm approximating a least recently used policy: each lookup marks the
+ * entry as used, and the eviction removes the entries that haven't been used
+ * since the previous eviction pass.
+ * 
+ * @author Jerome Louvel
+ * @param <K>
+ *            The key type.
+ * @param <V>
+ *            The value type.
+ */
+public class BoundedCache<K, V> {
+
+    /**
+     * Cache entry.
+     * 
+     * @param <V>
+     *            The value type.
+     */
+    private static final class Entry<V> {
+
+        /** Indicates if the entry was used since the last eviction pass. */
+        private volatile boolean used;
+
+        /** The cached value. */
+        private final V value;
+
+        /**
+         * Constructor. New entries are marked as used so that they survive
+         * the next eviction pass.
+         * 
+         * @param value
+         *            The cached value.
+         */
+        private Entry(V value) {
+            this.used = true;
+            this.value = value;
+        }
+    }
+
+    /** The entries. */
+    private final ConcurrentMap<K, Entry<V>> entries;
+
+    /** The lock serializing the eviction passes. */
+    private final Object evictionLock;
+
+    /** The maximum number of entries. */
+    private final int maxSize;
+
+    /**
+     * Constructor.
+     * 
+     * @param maxSize
+     *            The maximum number of entries.
+     */
+    public BoundedCache(int maxSize) {
+        this.entries = new ConcurrentHashMap<K, Entry<V>>();
+        this.evictionLock = new Object();
+        this.maxSize = Math.max(1, maxSize);
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * Evicts entries until the cache size is within its bounds.
+     */
+    private void evict() {
+        synchronized (this.evictionLock) {
+            Map.Entry<K, Entry<V>> mapEntry;
+
+            // Two passes are enough as the first one resets all usage markers
+            for (int pass = 0; (pass < 2) && (size() > this.maxSize); pass++) {
+                for (Iterator<Map.Entry<K, Entry<V>>> iter = this.entries
+                        .entrySet().iterator(); (size() > this.maxSize)
+                        && iter.hasNext();) {
+                    mapEntry = iter.next();
+
+                    if (mapEntry.getValue().used) {
+                        mapEntry.getValue().used = false;
+                    } else {
+                        iter.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the value cached for a given key.
+     * 
+     * @param key
+     *            The key.
+     * @return The cached value or null.
+     */
+    public V get(K key) {
+        Entry<V> entry = this.entries.get(key);
+
+        if (entry == null) {
+            return null;
+        }
+
+        if (!entry.used) {
+            entry.used = true;
+        }
+
+        return entry.value;
+    }
+
+    /**
+     * Returns the maximum number of entries.
+     * 
+     * @return The maximum number of entries.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Caches a value, replacing any previous value for the same key.
+     * 
+     * @param key
+     *            The key.
+     * @param value
+     *            The value to cache.
+     * @return The previous value or null.
+     */
+    public V put(K key, V value) {
+        Entry<V> previous = this.entries.put(key, new Entry<V>(value));
+
+        if (size() > this.maxSize) {
+            evict();
+        }
+
+        return (previous == null) ? null : previous.value;
+    }
+
+    /**
+     * Caches a value unless a value is already cached for the same key.
+     * 
+     * @param key
+     *            The key.
+     * @param value
+     *            The value to cache.
+     * @return The value cached for this key, either the previous or the given
+     *         one.
+     */
+    public V putIfAbsent(K key, V value) {
+        Entry<V> previous = this.entries
+                .putIfAbsent(key, new Entry<V>(value));
+
+        if (previous != null) {
+            return previous.value;
+        }
+
+        if (size() > this.maxSize) {
+            evict();
+        }
+
+        return value;
+    }
+
+    /**
+     * Removes the value cached for a given key.
+     * 
+     * @param key
+     *            The key.
+     * @return The removed value or null.
+     */
+    public V remove(K key) {
+        Entry<V> previous = this.entries.remove(key);
+        return (previous == null) ? null : previous.value;
+    }
+
+    /**
+     * Returns the number of entries.
+     * 
+     * @return The number of entries.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+}
@@ -0,0 +1,531 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import org.restlet.Application;
+import org.restlet.Context;
+import org.restlet.engine.metrics.LatencyHistogram;
+
+/**
+ * Scheduled executor service running its immediate tasks in a work-stealing
+ * {@link ForkJoinPool} and its delayed and periodic tasks in a separate timer
+ * executor.<br>
+ * <br>
+ * The immediate tasks submitted while an {@link Application} is current are
+ * run in the partition of this application, which bounds the number of its
+ * tasks running or waiting in the pool and the number of its tasks queued
+ * beyond this limit. Tasks exceeding both limits are rejected. This way, a busy
+ * application can't fill the pool at the expense of the other applications
+ * sharing it. Tasks submitted outside of any application, such as connector
+ * tasks, aren't limited.<br>
+ * <br>
+ * The time spent by the immediate tasks waiting for a thread and running are
+ * recorded, globally and per application.
+ * 
+ * @author Jerome Louvel
+ */
+public class ForkJoinScheduledExecutorService extends AbstractExecutorService
+        implements ScheduledExecutorService {
+
+    /** Tasks of a single application, bounded by a bulkhead. */
+    private class Partition {
+
+        /** Indicates if the queued tasks have been drained. */
+        private boolean drained;
+
+        /** The tasks waiting for a free slot. */
+        private final ArrayDeque<Task> queue;
+
+        /** The recorded queue times. */
+        private final LatencyHistogram queueTimes;
+
+        /** The recorded run times. */
+        private final LatencyHistogram runTimes;
+
+        /** The number of tasks submitted to the pool and not yet completed. */
+        private int running;
+
+        /**
+         * Constructor.
+         */
+        public Partition() {
+            this.queue = new ArrayDeque<Task>();
+            this.queueTimes = new LatencyHistogram();
+            this.runTimes = new LatencyHistogram();
+        }
+
+        /**
+         * Removes and returns the queued tasks. Tasks submitted afterwards are
+         * rejected.
+         * 
+         * @return The queued tasks.
+         */
+        public synchronized List<Runnable> drain() {
+            List<Runnable> result = new ArrayList<Runnable>(this.queue.size());
+
+            for (Task task : this.queue) {
+                result.add(task.command);
+            }
+
+            this.queue.clear();
+            this.drained = true;
+            return result;
+        }
+
+        /**
+         * Submits a task to the pool if a slot is free, otherwise queues it.
+         * 
+         * @param task
+         *            The task to execute.
+         */
+        public void execute(Task task) {
+            boolean submit = false;
+
+            synchronized (this) {
+                if (this.drained) {
+                    throw new RejectedExecutionException(
+                            "The executor service is shut down");
+                } else if (this.running < getApplicationConcurrency()) {
+                    this.running++;
+                    submit = true;
+                } else if (this.queue.size() < getApplicationQueueSize()) {
+                    this.queue.add(task);
+                } else {
+                    throw new RejectedExecutionException(
+                            "The task limits of the application are reached");
+                }
+            }
+
+            if (submit) {
+                try {
+                    getPool().execute(task);
+                } catch (RuntimeException e) {
+                    // Hand the slot over to the queued tasks
+                    release();
+                    throw e;
+                }
+            }
+        }
+
+        /**
+         * Releases the slot of a completed task, submitting the next queued
+         * task if any. If the pool rejects it, for example after a shutdown,
+         * the queued tasks are run in the current thread instead, which keeps
+         * the pool from terminating until they complete.
+         */
+        public void release() {
+            for (;;) {
+                Task next;
+
+                synchronized (this) {
+                    next = this.queue.poll();
+
+                    if (next == null) {
+                        this.running--;
+                        return;
+                    }
+                }
+
+                try {
+                    getPool().execute(next);
+                    return;
+                } catch (RejectedExecutionException ree) {
+                    try {
+                        next.runCommand();
+                    } catch (Throwable t) {
+                        Context.getCurrentLogger().log(Level.WARNING,
+                                "Unable to run a queued task", t);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Task recording its queue and run times. */
+    private class Task implements Runnable {
+
+        /** The actual task. */
+        private final Runnable command;
+
+        /** The partition of the task or null. */
+        private final Partition partition;
+
+        /** The time at which the task was submitted, in nanoseconds. */
+        private final long submitted;
+
+        /**
+         * Constructor.
+         * 
+         * @param command
+         *            The actual task.
+         * @param partition
+         *            The partition of the task or null.
+         */
+        public Task(Runnable command, Partition partition) {
+            this.command = command;
+            this.partition = partition;
+            this.submitted = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            try {
+                runCommand();
+            } finally {
+                if (this.partition != null) {
+                    this.partition.release();
+                }
+            }
+        }
+
+        /**
+         * Runs the actual task, recording its queue and run times.
+         */
+        public void runCommand() {
+            long started = System.nanoTime();
+            getQueueTimes().record(started - this.submitted);
+
+            if (this.partition != null) {
+                this.partition.queueTimes.record(started - this.submitted);
+            }
+
+            try {
+                this.command.run();
+            } finally {
+                long duration = System.nanoTime() - started;
+                getRunTimes().record(duration);
+
+                if (this.partition != null) {
+                    this.partition.runTimes.record(duration);
+                }
+            }
+        }
+    }
+
+    /** The number of created pools, used to name the threads. */
+    private static final AtomicInteger POOLS = new AtomicInteger();
+
+    /**
+     * The maximum number of tasks of an application running or waiting in the
+     * pool.
+     */
+    private volatile int applicationConcurrency;
+
+    /**
+     * The maximum number of tasks of an application queued beyond the
+     * concurrency limit.
+     */
+    private volatile int applicationQueueSize;
+
+    /** The partitions per application. */
+    private final Map<Application, Partition> partitions;
+
+    /** The work-stealing pool running the immediate tasks. */
+    private final ForkJoinPool pool;
+
+    /** The recorded queue times. */
+    private final LatencyHistogram queueTimes;
+
+    /** The recorded run times. */
+    private final LatencyHistogram runTimes;
+
+    /** The executor running the delayed and periodic tasks. */
+    private final ScheduledExecutorService timer;
+
+    /**
+     * Constructor.
+     * 
+     * @param parallelism
+     *            The target parallelism of the work-stealing pool.
+     * @param timerThreads
+     *            The number of threads of the timer executor.
+     * @param daemon
+     *            Indicates if the threads are daemon threads.
+     * @param threadFactory
+     *            The factory of the timer threads.
+     */
+    public ForkJoinScheduledExecutorService(int parallelism, int timerThreads,
+            final boolean daemon, ThreadFactory threadFactory) {
+        final String prefix = "restlet-fj-" + POOLS.incrementAndGet()
+                + "-worker-";
+        this.applicationConcurrency = Math.max(1, parallelism / 2);
+        this.applicationQueueSize = Integer.MAX_VALUE;
+        this.partitions = new WeakHashMap<Application, Partition>();
+        this.queueTimes = new LatencyHistogram();
+        this.runTimes = new LatencyHistogram();
+        this.timer = Executors.newScheduledThreadPool(timerThreads,
+                threadFactory);
+        this.pool = new ForkJoinPool(parallelism,
+                new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                        ForkJoinWorkerThread result = new ForkJoinWorkerThread(
+                                pool) {
+                        };
+                        result.setName(prefix + count.incrementAndGet());
+                        result.setDaemon(daemon);
+                        return result;
+                    }
+                }, null, true);
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        return getPool().awaitTermination(timeout, unit)
+                && this.timer.awaitTermination(
+                        deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+
+        Partition partition = getPartition(Application.getCurrent());
+
+        if (partition == null) {
+            getPool().execute(new Task(command, null));
+        } else if (isShutdown()) {
+            throw new RejectedExecutionException(
+                    "The executor service is shut down");
+        } else {
+            partition.execute(new Task(command, partition));
+        }
+    }
+
+    /**
+     * Returns the maximum number of tasks of an application running or
+     * waiting in the pool. Half of the parallelism by default.
+     * 
+     * @return The maximum number of tasks of an application running or
+     *         waiting in the pool.
+     */
+    public int getApplicationConcurrency() {
+        return applicationConcurrency;
+    }
+
+    /**
+     * Returns the maximum number of tasks of an application queued beyond the
+     * concurrency limit. Unbounded by default.
+     * 
+     * @return The maximum number of tasks of an application queued beyond the
+     *         concurrency limit.
+     */
+    public int getApplicationQueueSize() {
+        return applicationQueueSize;
+    }
+
+    /**
+     * Returns the partition of an application, creating it if needed.
+     * 
+     * @param application
+     *            The application or null.
+     * @return The partition of the application or null.
+     */
+    private Partition getPartition(Application application) {
+        Partition result = null;
+
+        if (application != null) {
+            synchronized (this.partitions) {
+                result = this.partitions.get(application);
+
+                if (result == null) {
+                    result = new Partition();
+                    this.partitions.put(application, result);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the work-stealing pool running the immediate tasks.
+     * 
+     * @return The work-stealing pool running the immediate tasks.
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Returns the times spent by the immediate tasks waiting for a thread.
+     * 
+     * @return The times spent by the immediate tasks waiting for a thread.
+     */
+    public LatencyHistogram getQueueTimes() {
+        return queueTimes;
+    }
+
+    /**
+     * Returns the times spent by the immediate tasks of an application waiting
+     * for a thread, including the time spent in the partition queue.
+     * 
+     * @param application
+     *            The application.
+     * @return The times spent by the tasks of the application waiting for a
+     *         thread or null if the application is null.
+     */
+    public LatencyHistogram getQueueTimes(Application application) {
+        Partition partition = getPartition(application);
+        return (partition == null) ? null : partition.queueTimes;
+    }
+
+    /**
+     * Returns the times spent running the immediate tasks.
+     * 
+     * @return The times spent running the immediate tasks.
+     */
+    public LatencyHistogram getRunTimes() {
+        return runTimes;
+    }
+
+    /**
+     * Returns the times spent running the immediate tasks of an application.
+     * 
+     * @param application
+     *            The application.
+     * @return The times spent running the tasks of the application or null
+     *         if the application is null.
+     */
+    public LatencyHistogram getRunTimes(Application application) {
+        Partition partition = getPartition(application);
+        return (partition == null) ? null : partition.runTimes;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return getPool().isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return getPool().isTerminated() && this.timer.isTerminated();
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay,
+            TimeUnit unit) {
+        return this.timer.schedule(callable, delay, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay,
+            TimeUnit unit) {
+        return this.timer.schedule(command, delay, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command,
+            long initialDelay, long period, TimeUnit unit) {
+        return this.timer.scheduleAtFixedRate(command, initialDelay, period,
+                unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command,
+            long initialDelay, long delay, TimeUnit unit) {
+        return this.timer.scheduleWithFixedDelay(command, initialDelay, delay,
+                unit);
+    }
+
+    /**
+     * Sets the maximum number of tasks of an application running or waiting
+     * in the pool.
+     * 
+     * @param applicationConcurrency
+     *            The maximum number of tasks of an application running or
+     *            waiting in the pool.
+     */
+    public void setApplicationConcurrency(int applicationConcurrency) {
+        this.applicationConcurrency = applicationConcurrency;
+    }
+
+    /**
+     * Sets the maximum number of tasks of an application queued beyond the
+     * concurrency limit.
+     * 
+     * @param applicationQueueSize
+     *            The maximum number of tasks of an application queued beyond
+     *            the concurrency limit.
+     */
+    public void setApplicationQueueSize(int applicationQueueSize) {
+        this.applicationQueueSize = applicationQueueSize;
+    }
+
+    /**
+     * Initiates an orderly shutdown. The tasks still queued in the partitions
+     * are run by the threads completing the previous tasks of the same
+     * application.
+     */
+    @Override
+    public void shutdown() {
+        getPool().shutdown();
+        this.timer.shutdown();
+    }
+
+    /**
+     * Attempts to stop all the tasks. The tasks still queued in the partitions
+     * are returned with the ones waiting in the timer executor.
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> result = new ArrayList<Runnable>();
+
+        synchronized (this.partitions) {
+            for (Partition partition : this.partitions.values()) {
+                result.addAll(partition.drain());
+            }
+        }
+
+        result.addAll(getPool().shutdownNow());
+        result.addAll(this.timer.shutdownNow());
+        return result;
+    }
+
+}
@@ -24,11 +24,10 @@
 
 package org.restlet.engine.util;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -37,27 +36,145 @@ import org.restlet.Context;
 import org.restlet.data.CharacterSet;
 import org.restlet.data.Form;
 import org.restlet.data.Parameter;
+import org.restlet.engine.io.IoUtils;
 import org.restlet.representation.Representation;
 import org.restlet.util.Series;
 
 /**
- * Form reader.
+ * Form reader. Parameters are pulled one at a time from the underlying byte
+ * stream, character reader or string, with {@link #readNextParameter()}.
+ * Percent-escapes are decoded in place into reusable buffers, so that a
+ * parameter costs a single string for its name and one for its value. The
+ * values of the parameters that are not looked for by the selective methods
+ * such as {@link #readFirstValue(String)} are skipped without being decoded
+ * nor buffered.
  * 
  * @author Jerome Louvel
  */
 public class FormReader {
-    /** The encoding to use, decoding is enabled, see {@link #decode}. */
+    /** The initial size of the name and value buffers. */
+    private static final int TOKEN_SIZE = 64;
+
+    /** The buffer of bytes read from the stream. */
+    private volatile byte[] bytes;
+
+    /**
+     * The encoding to use, decoding is enabled, see {@link #decode}. Also used
+     * to decode the non ASCII bytes of a stream.
+     */
     private volatile CharacterSet characterSet;
 
+    // [ifndef gwt] member
+    /** The buffer of characters read from the reader. */
+    private volatile char[] chars;
+
     /** Indicates if the parameters should be decoded. */
     private volatile boolean decode;
 
+    /** The index after the last unit available in the read buffer. */
+    private volatile int limit;
+
+    /** The buffer of the current parameter name. */
+    private volatile char[] name;
+
+    /** The length of the current parameter name. */
+    private volatile int nameLength;
+
+    /** The index of the next unit to read in the read buffer. */
+    private volatile int position;
+
+    // [ifndef gwt] member
+    /** The form reader. */
+    private volatile java.io.Reader reader;
+
+    /** The buffer of the pending bytes to decode with the character set. */
+    private volatile byte[] run;
+
+    /** Indicates if the pending bytes are all ASCII bytes. */
+    private volatile boolean runAscii;
+
+    /** The number of pending bytes to decode with the character set. */
+    private volatile int runLength;
+
     /** The separator character used between parameters. */
     private volatile char separator;
 
     /** The form stream. */
     private volatile InputStream stream;
 
+    /** The form string. */
+    private volatile String text;
+
+    /** The buffer of the current parameter value. */
+    private volatile char[] value;
+
+    /** The length of the current parameter value. */
+    private volatile int valueLength;
+
+    /** Indicates if the current parameter name is followed by a value. */
+    private volatile boolean valuePending;
+
+    /**
+     * Constructor.
+     * 
+     * @param stream
+     *            The web form content.
+     * @param characterSet
+     *            The character set of the content. Set to null to use UTF-8.
+     * @param separator
+     *            The separator character used between parameters.
+     * @param decode
+     *            Indicates if the parameters should be decoded using the given
+     *            character set.
+     */
+    public FormReader(InputStream stream, CharacterSet characterSet,
+            char separator, boolean decode) {
+        this.decode = decode;
+        this.stream = stream;
+        this.separator = separator;
+        this.characterSet = (characterSet == null) ? CharacterSet.UTF_8
+                : characterSet;
+    }
+
+    // [ifndef gwt] method
+    /**
+     * Constructor.
+     * 
+     * @param channel
+     *            The web form content.
+     * @param characterSet
+     *            The character set of the content. Set to null to use UTF-8.
+     * @param decode
+     *            Indicates if the parameters should be decoded using the given
+     *            character set.
+     */
+    public FormReader(java.nio.channels.ReadableByteChannel channel,
+            CharacterSet characterSet, boolean decode) {
+        this(java.nio.channels.Channels.newInputStream(channel),
+                characterSet, '&', decode);
+    }
+
+    // [ifndef gwt] method
+    /**
+     * Constructor.
+     * 
+     * @param reader
+     *            The web form content.
+     * @param characterSet
+     *            The character set used to decode the percent-escapes. Set to
+     *            null to leave the data encoded.
+     * @param decode
+     *            Indicates if the parameters should be decoded using the given
+     *            character set.
+     */
+    public FormReader(java.io.Reader reader, CharacterSet characterSet,
+            boolean decode) {
+        this.decode = decode;
+        this.reader = reader;
+        this.separator = '&';
+        this.characterSet = characterSet;
+    }
+
     /**
      * Constructor.<br>
      * In case the representation does not define a character set, the UTF-8
@@ -87,15 +204,8 @@ public class FormReader {
      */
     public FormReader(Representation representation, boolean decode)
             throws IOException {
-        this.decode = decode;
-        this.stream = representation.getStream();
-        this.separator = '&';
-
-        if (representation.getCharacterSet() != null) {
-            this.characterSet = representation.getCharacterSet();
-        } else {
-            this.characterSet = CharacterSet.UTF_8;
-        }
+        this(representation.getStream(), representation.getCharacterSet(),
+                '&', decode);
     }
 
     /**
@@ -143,12 +253,8 @@ public class FormReader {
     public FormReader(String parametersString, CharacterSet characterSet,
             char separator, boolean decode) {
         this.decode = decode;
-        // [ifndef gwt] instruction
-        this.stream = new ByteArrayInputStream(parametersString.getBytes());
-        // [ifdef gwt] instruction uncomment
-        // this.stream = new
-        // org.restlet.engine.io.StringInputStream(parametersString);
-
+        this.text = parametersString;
+        this.limit = parametersString.length();
         this.characterSet = characterSet;
         this.separator = separator;
     }
@@ -160,21 +266,32 @@ public class FormReader {
      *            The target parameter series.
      */
     public void addParameters(Series<Parameter> parameters) {
-        boolean readNext = true;
-        Parameter param = null;
+        addParameters(parameters, null);
+    }
 
-        if (this.stream != null) {
+    /**
+     * Adds the parameters whose name is in the given collection into a given
+     * series. The values of the other parameters are skipped.
+     * 
+     * @param parameters
+     *            The target parameter series.
+     * @param names
+     *            The names of the parameters to add or null to add all of
+     *            them.
+     */
+    public void addParameters(Series<Parameter> parameters,
+            Collection<String> names) {
+        if (isAvailable()) {
             // Let's read all form parameters
             try {
-                while (readNext) {
-                    param = readNextParameter();
+                while (readName()) {
+                    String name = new String(this.name, 0, this.nameLength);
 
-                    if (param != null) {
+                    if ((names == null) || names.contains(name)) {
                         // Add parsed parameter to the form
-                        parameters.add(param);
+                        parameters.add(new Parameter(name, readValue(true)));
                     } else {
-                        // Last parameter parsed
-                        readNext = false;
+                        readValue(false);
                     }
                 }
             } catch (IOException ioe) {
@@ -185,7 +302,7 @@ public class FormReader {
             }
 
             try {
-                this.stream.close();
+                close();
             } catch (IOException ioe) {
                 Context.getCurrentLogger().log(Level.WARNING,
                         "Unable to close the form input stream", ioe);
@@ -193,6 +310,191 @@ public class FormReader {
         }
     }
 
+    /**
+     * Appends a character to the current token.
+     * 
+     * @param c
+     *            The character to append.
+     * @param toName
+     *            True if the current token is the name, false if it is the
+     *            value.
+     */
+    private void append(char c, boolean toName) {
+        if (toName) {
+            if (this.nameLength == this.name.length) {
+                this.name = grow(this.name);
+            }
+
+            this.name[this.nameLength++] = c;
+        } else {
+            if (this.valueLength == this.value.length) {
+                this.value = grow(this.value);
+            }
+
+            this.value[this.valueLength++] = c;
+        }
+    }
+
+    /**
+     * Appends a byte to the pending bytes to decode with the character set.
+     * 
+     * @param b
+     *            The byte to append.
+     */
+    private void appendByte(int b) {
+        if (this.run == null) {
+            this.run = new byte[TOKEN_SIZE];
+        } else if (this.runLength == this.run.length) {
+            byte[] larger = new byte[this.run.length * 2];
+            System.arraycopy(this.run, 0, larger, 0, this.runLength);
+            this.run = larger;
+        }
+
+        this.runAscii &= (b < 0x80);
+        this.run[this.runLength++] = (byte) b;
+    }
+
+    /**
+     * Closes the underlying source.
+     * 
+     * @throws IOException
+     */
+    private void close() throws IOException {
+        this.position = this.limit;
+        this.text = null;
+
+        if (this.stream != null) {
+            this.stream.close();
+            this.stream = null;
+        }
+
+        // [ifndef gwt]
+        if (this.reader != null) {
+            this.reader.close();
+            this.reader = null;
+        }
+        // [enddef]
+    }
+
+    /**
+     * Refills the read buffer from the stream or the reader.
+     * 
+     * @return True if some units were read, false if the end was reached.
+     * @throws IOException
+     */
+    private boolean fill() throws IOException {
+        int count = -1;
+
+        if (this.stream != null) {
+            if (this.bytes == null) {
+                this.bytes = new byte[IoUtils.BUFFER_SIZE];
+            }
+
+            count = this.stream.read(this.bytes, 0, this.bytes.length);
+        }
+
+        // [ifndef gwt]
+        if (this.reader != null) {
+            if (this.chars == null) {
+                this.chars = new char[IoUtils.BUFFER_SIZE];
+            }
+
+            count = this.reader.read(this.chars, 0, this.chars.length);
+        }
+        // [enddef]
+
+        if (count > 0) {
+            this.position = 0;
+            this.limit = count;
+        }
+
+        return count > 0;
+    }
+
+    /**
+     * Decodes the pending bytes with the character set and appends them to the
+     * current token.
+     * 
+     * @param toName
+     *            True if the current token is the name, false if it is the
+     *            value.
+     * @throws IOException
+     */
+    private void flush(boolean toName) throws IOException {
+        if (this.runLength > 0) {
+            if (this.runAscii) {
+                for (int i = 0; i < this.runLength; i++) {
+                    append((char) this.run[i], toName);
+                }
+            } else {
+                String decoded = new String(this.run, 0, this.runLength,
+                        getCharacterSetName());
+
+                for (int i = 0; i < decoded.length(); i++) {
+                    append(decoded.charAt(i), toName);
+                }
+            }
+
+            this.runLength = 0;
+        }
+
+        this.runAscii = true;
+    }
+
+    /**
+     * Returns the name of the character set used to decode bytes.
+     * 
+     * @return The name of the character set used to decode bytes.
+     */
+    private String getCharacterSetName() {
+        return (this.characterSet == null) ? CharacterSet.UTF_8.getName()
+                : this.characterSet.getName();
+    }
+
+    /**
+     * Returns a copy of the given buffer twice larger.
+     * 
+     * @param buffer
+     *            The buffer to grow.
+     * @return The larger buffer.
+     */
+    private char[] grow(char[] buffer) {
+        char[] result = new char[buffer.length * 2];
+        System.arraycopy(buffer, 0, result, 0, buffer.length);
+        return result;
+    }
+
+    /**
+     * Indicates if the form content can be read.
+     * 
+     * @return True if the form content can be read.
+     */
+    private boolean isAvailable() {
+        // [ifndef gwt] instruction
+        return (this.stream != null) || (this.text != null)
+                || (this.reader != null);
+        // [ifdef gwt] instruction uncomment
+        // return (this.stream != null) || (this.text != null);
+    }
+
+    /**
+     * Indicates if the current parameter name is equal to the given one,
+     * without creating a string.
+     * 
+     * @param name
+     *            The name to compare.
+     * @return True if the current parameter name is equal to the given one.
+     */
+    private boolean isName(String name) {
+        boolean result = (name.length() == this.nameLength);
+
+        for (int i = 0; result && (i < this.nameLength); i++) {
+            result = (name.charAt(i) == this.name[i]);
+        }
+
+        return result;
+    }
+
     /**
      * Reads all the parameters.
      * 
@@ -203,7 +505,7 @@ public class FormReader {
     public Form read() throws IOException {
         Form result = new Form();
 
-        if (this.stream != null) {
+        if (isAvailable()) {
             Parameter param = readNextParameter();
 
             while (param != null) {
@@ -211,7 +513,7 @@ public class FormReader {
                 param = readNextParameter();
             }
 
-            this.stream.close();
+            close();
         }
 
         return result;
@@ -228,25 +530,95 @@ public class FormReader {
     public Parameter readFirstParameter(String name) throws IOException {
         Parameter result = null;
 
-        if (this.stream != null) {
-            Parameter param = readNextParameter();
-
-            while ((param != null) && (result == null)) {
-                if (param.getName().equals(name)) {
-                    result = param;
+        if (isAvailable()) {
+            while ((result == null) && readName()) {
+                if (isName(name)) {
+                    result = new Parameter(name, readValue(true));
+                } else {
+                    readValue(false);
                 }
-
-                param = readNextParameter();
             }
 
-            this.stream.close();
+            close();
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads the value of the first parameter with the given name. The reading
+     * stops as soon as the parameter is found and the values of the preceding
+     * parameters are skipped, so the whole form is never materialized.
+     * 
+     * @param name
+     *            The parameter name to match.
+     * @return The parameter value or null if the parameter was not found or
+     *         has no value.
+     * @throws IOException
+     */
+    public String readFirstValue(String name) throws IOException {
+        Parameter param = readFirstParameter(name);
+        return (param == null) ? null : param.getValue();
+    }
+
+    /**
+     * Reads the hexadecimal digit of a percent-escape.
+     * 
+     * @return The value of the digit.
+     * @throws IOException
+     */
+    private int readHexDigit() throws IOException {
+        int unit = readUnit();
+        int result = Character.digit(unit, 16);
+
+        if (unit == -1) {
+            throw new IllegalArgumentException(
+                    "Incomplete trailing escape (%) pattern");
+        } else if (result == -1) {
+            throw new IllegalArgumentException(
+                    "Illegal hex characters in escape (%) pattern");
         }
 
         return result;
     }
 
     /**
-     * Reads the next parameter available or null.
+     * Reads the next parameter name. The value of the previous parameter is
+     * skipped if it wasn't read.
+     * 
+     * @return True if a parameter name was read, false if the end was reached.
+     * @throws IOException
+     *             If the name could not be read.
+     */
+    private boolean readName() throws IOException {
+        boolean result = false;
+        int terminator = 0;
+
+        if (this.valuePending) {
+            readValue(false);
+        }
+
+        while (!result && (terminator != -1)) {
+            terminator = readToken(true, true);
+
+            if (this.nameLength > 0) {
+                result = true;
+                this.valuePending = (terminator == '=');
+            } else if (terminator == '=') {
+                throw new IOException(
+                        "Empty parameter name detected. Please check your form data");
+            } else if (terminator != -1) {
+                Context.getCurrentLogger()
+                        .fine("Empty parameter name detected. Please check your form data");
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads the next parameter available or null. This is the pull-style way
+     * to iterate over large forms without materializing them.
      * 
      * @return The next parameter available or null.
      * @throws IOException
@@ -255,53 +627,9 @@ public class FormReader {
     public Parameter readNextParameter() throws IOException {
         Parameter result = null;
 
-        if (this.stream != null) {
-            try {
-                boolean readingName = true;
-                boolean readingValue = false;
-                StringBuilder nameBuffer = new StringBuilder();
-                StringBuilder valueBuffer = new StringBuilder();
-                int nextChar = 0;
-
-                while ((result == null) && (nextChar != -1)) {
-                    nextChar = this.stream.read();
-
-                    if (readingName) {
-                        if (nextChar == '=') {
-                            if (nameBuffer.length() > 0) {
-                                readingName = false;
-                                readingValue = true;
-                            } else {
-                                throw new IOException(
-                                        "Empty parameter name detected. Please check your form data");
-                            }
-                        } else if ((nextChar == this.separator)
-                                || (nextChar == -1)) {
-                            if (nameBuffer.length() > 0) {
-                                result = FormUtils.create(nameBuffer, null,
-                                        this.decode, this.characterSet);
-                            } else if (nextChar == -1) {
-                                // Do nothing return null preference
-                            } else {
-                                Context.getCurrentLogger()
-                                        .fine("Empty parameter name detected. Please check your form data");
-                            }
-                        } else {
-                            nameBuffer.append((char) nextChar);
-                        }
-                    } else if (readingValue) {
-                        if ((nextChar == this.separator) || (nextChar == -1)) {
-                            result = FormUtils.create(nameBuffer, valueBuffer,
-                                    this.decode, this.characterSet);
-                        } else {
-                            valueBuffer.append((char) nextChar);
-                        }
-                    }
-                }
-            } catch (UnsupportedEncodingException uee) {
-                throw new IOException(
-                        "Unsupported encoding. Please contact the administrator");
-            }
+        if (readName()) {
+            result = new Parameter(new String(this.name, 0, this.nameLength),
+                    readValue(true));
         }
 
         return result;
@@ -321,11 +649,15 @@ public class FormReader {
     public Object readParameter(String name) throws IOException {
         Object result = null;
 
-        if (this.stream != null) {
-            Parameter param = readNextParameter();
+        if (isAvailable()) {
+            while (readName()) {
+                if (isName(name)) {
+                    Object value = readValue(true);
+
+                    if (value == null) {
+                        value = Series.EMPTY_VALUE;
+                    }
 
-            while (param != null) {
-                if (param.getName().equals(name)) {
                     if (result != null) {
                         List<Object> values = null;
 
@@ -340,24 +672,16 @@ public class FormReader {
                             result = values;
                         }
 
-                        if (param.getValue() == null) {
-                            values.add(Series.EMPTY_VALUE);
-                        } else {
-                            values.add(param.getValue());
-                        }
+                        values.add(value);
                     } else {
-                        if (param.getValue() == null) {
-                            result = Series.EMPTY_VALUE;
-                        } else {
-                            result = param.getValue();
-                        }
+                        result = value;
                     }
+                } else {
+                    readValue(false);
                 }
-
-                param = readNextParameter();
             }
 
-            this.stream.close();
+            close();
         }
 
         return result;
@@ -376,13 +700,20 @@ public class FormReader {
     @SuppressWarnings("unchecked")
     public void readParameters(Map<String, Object> parameters)
             throws IOException {
-        if (this.stream != null) {
-            Parameter param = readNextParameter();
+        if (isAvailable()) {
             Object currentValue = null;
 
-            while (param != null) {
-                if (parameters.containsKey(param.getName())) {
-                    currentValue = parameters.get(param.getName());
+            while (readName()) {
+                String name = new String(this.name, 0, this.nameLength);
+
+                if (parameters.containsKey(name)) {
+                    Object value = readValue(true);
+
+                    if (value == null) {
+                        value = Series.EMPTY_VALUE;
+                    }
+
+                    currentValue = parameters.get(name);
 
                     if (currentValue != null) {
                         List<Object> values = null;
@@ -395,27 +726,133 @@ public class FormReader {
                             // Create a list of values
                             values = new ArrayList<Object>();
                             values.add(currentValue);
-                            parameters.put(param.getName(), values);
+                            parameters.put(name, values);
                         }
 
-                        if (param.getValue() == null) {
-                            values.add(Series.EMPTY_VALUE);
-                        } else {
-                            values.add(param.getValue());
-                        }
+                        values.add(value);
                     } else {
-                        if (param.getValue() == null) {
-                            parameters.put(param.getName(), Series.EMPTY_VALUE);
-                        } else {
-                            parameters.put(param.getName(), param.getValue());
-                        }
+                        parameters.put(name, value);
                     }
+                } else {
+                    readValue(false);
                 }
+            }
 
-                param = readNextParameter();
+            close();
+        }
+    }
+
+    /**
+     * Reads the next unit, either a byte of the stream or a character of the
+     * reader or of the string.
+     * 
+     * @return The next unit or -1 if the end was reached.
+     * @throws IOException
+     */
+    private int readUnit() throws IOException {
+        int result = -1;
+
+        if ((this.position < this.limit) || fill()) {
+            if (this.text != null) {
+                result = this.text.charAt(this.position++);
+            } else if (this.stream != null) {
+                result = this.bytes[this.position++] & 0xff;
             }
+            // [ifndef gwt]
+            else {
+                result = this.chars[this.position++];
+            }
+            // [enddef]
+        }
 
-            this.stream.close();
+        return result;
+    }
+
+    /**
+     * Reads the current token up to its terminator. When decoding, the
+     * percent-escapes and the '+' characters are decoded in place.
+     * 
+     * @param toName
+     *            True if the token is a name, false if it is a value.
+     * @param keep
+     *            Indicates if the token should be kept, otherwise it is
+     *            skipped.
+     * @return The terminator read, either '=' for a name, the separator or -1.
+     * @throws IOException
+     */
+    private int readToken(boolean toName, boolean keep) throws IOException {
+        boolean decoding = this.decode && (this.characterSet != null);
+        boolean end = false;
+        int result = 0;
+
+        if (keep) {
+            if (toName) {
+                if (this.name == null) {
+                    this.name = new char[TOKEN_SIZE];
+                }
+
+                this.nameLength = 0;
+            } else {
+                if (this.value == null) {
+                    this.value = new char[TOKEN_SIZE];
+                }
+
+                this.valueLength = 0;
+            }
+
+            this.runAscii = true;
         }
+
+        while (!end) {
+            int unit = readUnit();
+
+            if ((unit == -1) || (unit == this.separator)
+                    || (toName && (unit == '='))) {
+                end = true;
+                result = unit;
+            } else if (!keep) {
+                // Skip the unit
+            } else if (decoding && (unit == '%')) {
+                appendByte((readHexDigit() << 4) + readHexDigit());
+            } else if ((this.stream != null) && (unit >= 0x80)) {
+                // Non ASCII byte to decode with the character set
+                appendByte(unit);
+            } else {
+                flush(toName);
+                append((decoding && (unit == '+')) ? ' ' : (char) unit,
+                        toName);
+            }
+        }
+
+        if (keep) {
+            flush(toName);
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads the value of the current parameter.
+     * 
+     * @param keep
+     *            Indicates if the value should be kept, otherwise it is
+     *            skipped without being decoded nor buffered.
+     * @return The value or null if the parameter has no value or if the value
+     *         isn't kept.
+     * @throws IOException
+     */
+    private String readValue(boolean keep) throws IOException {
+        String result = null;
+
+        if (this.valuePending) {
+            this.valuePending = false;
+            readToken(false, keep);
+
+            if (keep) {
+                result = new String(this.value, 0, this.valueLength);
+            }
+        }
+
+        return result;
     }
 }
@@ -25,6 +25,7 @@
 package org.restlet.engine.util;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.logging.Level;
@@ -258,6 +259,26 @@ public class FormUtils {
      *            Indicates if the parameters should be decoded.
      */
     public static void parse(Form form, Representation post, boolean decode) {
+        parse(form, post, decode, null);
+    }
+
+    /**
+     * Parses a post into a given form, only keeping the parameters whose name
+     * is in the given collection. The values of the other parameters are
+     * skipped without being decoded.
+     * 
+     * @param form
+     *            The target form.
+     * @param post
+     *            The posted form.
+     * @param decode
+     *            Indicates if the parameters should be decoded.
+     * @param names
+     *            The names of the parameters to keep or null to keep all of
+     *            them.
+     */
+    public static void parse(Form form, Representation post, boolean decode,
+            Collection<String> names) {
         if (post != null) {
             if (post.isAvailable()) {
                 FormReader fr = null;
@@ -271,7 +292,7 @@ public class FormUtils {
                 }
 
                 if (fr != null) {
-                    fr.addParameters(form);
+                    fr.addParameters(form, names);
                 }
             } else {
                 Context.getCurrentLogger()
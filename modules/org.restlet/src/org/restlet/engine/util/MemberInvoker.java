@@ -0,0 +1,276 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.util;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Invokes a reflected constructor, method or field setter. On first use, the
+ * member is bound to a method handle which is then reused by each invocation,
+ * avoiding the access checks and the argument copies of the reflection API.
+ * When the member can't be bound, or when the runtime doesn't support method
+ * handles, the reflection API is used instead.<br>
+ * <br>
+ * Note that exceptions thrown by the invoked member, including the argument
+ * conversion errors, are wrapped into an {@link InvocationTargetException}.
+ * 
+ * @author Jerome Louvel
+ */
+public class MemberInvoker {
+
+    // [ifndef android] member
+    /** The bound method handle, taking the target and an array of arguments. */
+    private volatile java.lang.invoke.MethodHandle handle;
+
+    /** Indicates if the binding of the method handle was attempted. */
+    private volatile boolean bound;
+
+    /** The reflected constructor, method or field. */
+    private final AccessibleObject member;
+
+    /** The number of arguments expected. */
+    private final int parameterCount;
+
+    /**
+     * Constructor.
+     * 
+     * @param constructor
+     *            The constructor to invoke.
+     */
+    public MemberInvoker(Constructor<?> constructor) {
+        this(constructor, constructor.getParameterTypes().length);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param field
+     *            The field to set.
+     */
+    public MemberInvoker(Field field) {
+        this(field, 1);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param member
+     *            The reflected member.
+     * @param parameterCount
+     *            The number of arguments expected.
+     */
+    private MemberInvoker(AccessibleObject member, int parameterCount) {
+        this.member = member;
+        this.parameterCount = parameterCount;
+        this.bound = false;
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param method
+     *            The method to invoke.
+     */
+    public MemberInvoker(Method method) {
+        this(method, method.getParameterTypes().length);
+    }
+
+    // [ifndef android] method
+    /**
+     * Binds the member to a method handle taking the target object and an
+     * array of arguments. Static members ignore the target object.
+     * 
+     * @return The method handle or null if the member can't be bound.
+     */
+    private java.lang.invoke.MethodHandle bind() {
+        java.lang.invoke.MethodHandle result = null;
+        java.lang.invoke.MethodHandles.Lookup lookup = java.lang.invoke.MethodHandles
+                .lookup();
+
+        try {
+            boolean hasTarget;
+
+            if (this.member instanceof Method) {
+                Method method = (Method) this.member;
+                result = lookup.unreflect(method).asFixedArity();
+                hasTarget = !Modifier.isStatic(method.getModifiers());
+            } else if (this.member instanceof Constructor) {
+                result = lookup.unreflectConstructor(
+                        (Constructor<?>) this.member).asFixedArity();
+                hasTarget = false;
+            } else {
+                Field field = (Field) this.member;
+                result = lookup.unreflectSetter(field);
+                hasTarget = !Modifier.isStatic(field.getModifiers());
+            }
+
+            if (!hasTarget) {
+                result = java.lang.invoke.MethodHandles.dropArguments(result,
+                        0, Object.class);
+            }
+
+            result = result.asType(
+                    java.lang.invoke.MethodType
+                            .genericMethodType(this.parameterCount + 1))
+                    .asSpreader(Object[].class, this.parameterCount);
+        } catch (IllegalAccessException e) {
+            result = null;
+        } catch (RuntimeException e) {
+            result = null;
+        }
+
+        return result;
+    }
+
+    // [ifndef android] method
+    /**
+     * Returns the bound method handle, binding it on first use.
+     * 
+     * @return The bound method handle or null if the member can't be bound.
+     */
+    private java.lang.invoke.MethodHandle getHandle() {
+        if (!this.bound) {
+            this.handle = bind();
+            this.bound = true;
+        }
+
+        return this.handle;
+    }
+
+    /**
+     * Returns the reflected constructor, method or field.
+     * 
+     * @return The reflected constructor, method or field.
+     */
+    public AccessibleObject getMember() {
+        return member;
+    }
+
+    /**
+     * Invokes the member.
+     * 
+     * @param target
+     *            The target object, ignored for constructors and static
+     *            members.
+     * @param args
+     *            The arguments.
+     * @return The result of the invocation, the new instance for a
+     *         constructor, or null for void methods and field setters.
+     * @throws IllegalAccessException
+     * @throws InstantiationException
+     * @throws InvocationTargetException
+     */
+    private Object invoke(Object target, Object[] args)
+            throws IllegalAccessException, InstantiationException,
+            InvocationTargetException {
+        Object[] arguments = (args == null) ? new Object[0] : args;
+
+        if (arguments.length != this.parameterCount) {
+            throw new IllegalArgumentException("Wrong number of arguments for "
+                    + this.member + ": " + arguments.length);
+        }
+
+        // [ifndef android]
+        java.lang.invoke.MethodHandle boundHandle = getHandle();
+
+        if (boundHandle != null) {
+            try {
+                return (Object) boundHandle.invokeExact(target, arguments);
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+        // [enddef]
+
+        Object result = null;
+
+        if (this.member instanceof Method) {
+            result = ((Method) this.member).invoke(target, arguments);
+        } else if (this.member instanceof Constructor) {
+            result = ((Constructor<?>) this.member).newInstance(arguments);
+        } else {
+            ((Field) this.member).set(target, arguments[0]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Invokes the method.
+     * 
+     * @param target
+     *            The target object, ignored for static methods.
+     * @param args
+     *            The arguments.
+     * @return The result of the invocation or null for void methods.
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException
+     */
+    public Object invokeMethod(Object target, Object... args)
+            throws IllegalAccessException, InvocationTargetException {
+        try {
+            return invoke(target, args);
+        } catch (InstantiationException e) {
+            // Not thrown for methods
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates a new instance with the constructor.
+     * 
+     * @param args
+     *            The constructor arguments.
+     * @return The new instance.
+     * @throws IllegalAccessException
+     * @throws InstantiationException
+     * @throws InvocationTargetException
+     */
+    public Object newInstance(Object... args) throws IllegalAccessException,
+            InstantiationException, InvocationTargetException {
+        return invoke(null, args);
+    }
+
+    /**
+     * Sets the value of the field.
+     * 
+     * @param target
+     *            The target object, ignored for static fields.
+     * @param value
+     *            The value to set.
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException
+     */
+    public void setValue(Object target, Object value)
+            throws IllegalAccessException, InvocationTargetException {
+        invokeMethod(target, value);
+    }
+
+}
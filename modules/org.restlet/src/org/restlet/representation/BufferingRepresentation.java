@@ -24,18 +24,26 @@
 
 package org.restlet.representation;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.Reader;
 import java.io.Writer;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 
 import org.restlet.Context;
+import org.restlet.engine.Engine;
+import org.restlet.engine.io.BufferPool;
 import org.restlet.engine.io.IoUtils;
 import org.restlet.util.WrapperRepresentation;
 
@@ -45,19 +53,485 @@ import org.restlet.util.WrapperRepresentation;
  * representations or when you want to reuse a transient representation several
  * times.<br>
  * <br>
- * Be careful as this class could create potentially very large byte buffers in
- * memory that could impact your application performance.
+ * The content is buffered in a chain of fixed-size segments borrowed from the
+ * engine's {@link BufferPool}, so that large contents never require a single
+ * contiguous array. Once the buffered size exceeds the spill threshold, the
+ * content overflows to a temporary file that is memory-mapped when the
+ * buffering completes. In both cases, the content can be replayed as many
+ * times as needed through {@link #getStream()}, {@link #getChannel()} or the
+ * write methods without copying it again. The temporary file is deleted as soon
+ * as it is mapped.<br>
+ * <br>
+ * Calling {@link #release()} ends the exchange and discards the buffered
+ * content, unless the representation is replayable, for example while a
+ * request may still be retried. In this case, {@link #releaseBuffer()} must be
+ * called once the content isn't needed anymore. The memory segments only
+ * return to the pool once all the streams and channels reading them are
+ * closed.
  * 
  * @author Thierry Boileau
  */
 public class BufferingRepresentation extends WrapperRepresentation {
 
-    /** The cached content as an array of bytes. */
-    private volatile byte[] buffer;
+    /**
+     * The buffered content. It counts the views reading its segments, so that
+     * they are only returned to the pool once released and no longer read.
+     */
+    private class Content {
+
+        /** The temporary file that couldn't be deleted when mapped, if any. */
+        private File file;
+
+        /** Indicates if the memory segments were borrowed from the pool. */
+        private final boolean pooled;
+
+        /** Indicates if the content has been released. */
+        private boolean released;
+
+        /** The buffered segments. */
+        private final List<ByteBuffer> segments;
+
+        /** The size of the buffered content. */
+        private final long size;
+
+        /** Indicates if the content has spilled to a temporary file. */
+        private final boolean spilled;
+
+        /** The number of views currently reading the segments. */
+        private int views;
+
+        /**
+         * Constructor.
+         * 
+         * @param segments
+         *            The buffered segments.
+         * @param size
+         *            The size of the buffered content.
+         * @param pooled
+         *            True if the memory segments were borrowed from the pool.
+         * @param spilled
+         *            True if the content has spilled to a temporary file.
+         * @param file
+         *            The temporary file still to delete, if any.
+         */
+        private Content(List<ByteBuffer> segments, long size, boolean pooled,
+                boolean spilled, File file) {
+            this.segments = segments;
+            this.size = size;
+            this.pooled = pooled;
+            this.spilled = spilled;
+            this.file = file;
+        }
+
+        /**
+         * Registers a new view reading the segments.
+         * 
+         * @return True if the view can read the segments, false if the content
+         *         has been released.
+         */
+        private synchronized boolean acquire() {
+            if (this.released) {
+                return false;
+            }
+
+            this.views++;
+            return true;
+        }
+
+        /**
+         * Releases the content. The segments are returned to the pool, and
+         * the temporary file deleted, once no view reads them.
+         */
+        private synchronized void release() {
+            if (!this.released) {
+                this.released = true;
+
+                if (this.views == 0) {
+                    free();
+                }
+            }
+        }
+
+        /**
+         * Unregisters a view reading the segments.
+         */
+        private synchronized void releaseView() {
+            this.views--;
+
+            if (this.released && (this.views == 0)) {
+                free();
+            }
+        }
+
+        /**
+         * Returns the memory segments to the pool and deletes the temporary
+         * file, if any.
+         */
+        private void free() {
+            if (this.pooled) {
+                releaseSegments(this.segments);
+            }
+
+            if (this.file != null) {
+                deleteFile(this.file);
+                this.file = null;
+            }
+        }
+    }
+
+    /**
+     * Stream and channel reading the buffered segments without copying them.
+     */
+    private static class SegmentsInputStream extends InputStream implements
+            ReadableByteChannel {
+
+        /** The content read, released when the stream is closed. */
+        private final Content content;
+
+        /** The index of the current segment. */
+        private int index;
+
+        /** Indicates if the stream is open. */
+        private volatile boolean open;
+
+        /** Independent views of the buffered segments. */
+        private final ByteBuffer[] segments;
+
+        /**
+         * Constructor.
+         * 
+         * @param content
+         *            The buffered content, already acquired for this stream.
+         */
+        public SegmentsInputStream(Content content) {
+            this.content = content;
+            this.index = 0;
+            this.open = true;
+            this.segments = new ByteBuffer[content.segments.size()];
+
+            for (int i = 0; i < this.segments.length; i++) {
+                this.segments[i] = content.segments.get(i).duplicate();
+            }
+        }
+
+        @Override
+        public int available() {
+            long result = 0;
+
+            for (int i = this.index; i < this.segments.length; i++) {
+                result += this.segments[i].remaining();
+            }
+
+            return (int) Math.min(result, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public void close() {
+            if (this.open) {
+                this.open = false;
+                this.content.releaseView();
+            }
+        }
+
+        /**
+         * Returns the current segment with remaining bytes or null if the end
+         * is reached.
+         * 
+         * @return The current segment or null.
+         * @throws IOException
+         *             If the stream is closed.
+         */
+        private ByteBuffer current() throws IOException {
+            if (!this.open) {
+                throw new ClosedChannelException();
+            }
+
+            while ((this.index < this.segments.length)
+                    && !this.segments[this.index].hasRemaining()) {
+                this.index++;
+            }
+
+            return (this.index < this.segments.length) ? this.segments[this.index]
+                    : null;
+        }
+
+        public boolean isOpen() {
+            return this.open;
+        }
+
+        @Override
+        public int read() throws IOException {
+            ByteBuffer current = current();
+            return (current == null) ? -1 : current.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            ByteBuffer current = current();
+
+            if (current == null) {
+                return -1;
+            }
+
+            int result = Math.min(len, current.remaining());
+            current.get(b, off, result);
+            return result;
+        }
+
+        public int read(ByteBuffer target) throws IOException {
+            ByteBuffer current = current();
+
+            if (current == null) {
+                return -1;
+            }
+
+            int result = 0;
+
+            while ((current != null) && target.hasRemaining()) {
+                int length = Math.min(target.remaining(), current.remaining());
+                ByteBuffer slice = current.slice();
+                slice.limit(length);
+                target.put(slice);
+                current.position(current.position() + length);
+                result += length;
+                current = current();
+            }
+
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long result = 0;
+            ByteBuffer current = current();
+
+            while ((current != null) && (result < n)) {
+                int length = (int) Math.min(n - result, current.remaining());
+                current.position(current.position() + length);
+                result += length;
+                current = current();
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Output stream filling pooled segments, then a temporary file once the
+     * spill threshold is exceeded.
+     */
+    private class SegmentsOutputStream extends OutputStream {
+
+        /** The current segment array. */
+        private byte[] array;
+
+        /** The temporary file, once spilled. */
+        private File file;
+
+        /** The temporary file output, once spilled. */
+        private OutputStream fileOutput;
+
+        /** The number of bytes in the current segment array. */
+        private int length;
+
+        /** The filled segments. */
+        private final List<ByteBuffer> segments;
+
+        /** The total number of bytes written. */
+        private long size;
+
+        /**
+         * Constructor.
+         */
+        public SegmentsOutputStream() {
+            this.segments = new ArrayList<ByteBuffer>();
+        }
+
+        /**
+         * Discards the written content.
+         */
+        private void discard() {
+            if (this.array != null) {
+                getPool().release(this.array);
+                this.array = null;
+            }
+
+            releaseSegments(this.segments);
+
+            if (this.fileOutput != null) {
+                try {
+                    this.fileOutput.close();
+                } catch (IOException e) {
+                    Context.getCurrentLogger().log(Level.FINE,
+                            "Unable to close the buffering file", e);
+                }
+            }
+
+            if (this.file != null) {
+                deleteFile(this.file);
+                this.file = null;
+            }
+        }
+
+        /**
+         * Completes the buffering, mapping the temporary file if the content
+         * has spilled. The temporary file is then deleted right away, the
+         * mapping remaining valid until it is garbage collected.
+         * 
+         * @return The buffered content.
+         * @throws IOException
+         */
+        private Content finish() throws IOException {
+            if (this.fileOutput == null) {
+                if (this.array != null) {
+                    this.segments.add(ByteBuffer.wrap(this.array, 0,
+                            this.length));
+                    this.array = null;
+                }
+
+                return new Content(this.segments, this.size, true, false, null);
+            }
+
+            this.fileOutput.close();
+            List<ByteBuffer> result = new ArrayList<ByteBuffer>();
+            RandomAccessFile raf = new RandomAccessFile(this.file, "r");
+
+            try {
+                FileChannel channel = raf.getChannel();
+
+                for (long position = 0; position < this.size; position += MAPPING_SIZE) {
+                    result.add(channel.map(FileChannel.MapMode.READ_ONLY,
+                            position,
+                            Math.min(MAPPING_SIZE, this.size - position)));
+                }
+            } finally {
+                raf.close();
+            }
+
+            // Some platforms can't delete a mapped file, in which case the
+            // content deletes it once released.
+            File remaining = IoUtils.delete(this.file) ? null : this.file;
+            this.file = null;
+            return new Content(result, this.size, false, true, remaining);
+        }
+
+        /**
+         * Moves the content written so far to a temporary file.
+         * 
+         * @throws IOException
+         */
+        private void spill() throws IOException {
+            this.file = File.createTempFile("restlet-buffer", ".tmp",
+                    getSpillDirectory());
+            this.fileOutput = new FileOutputStream(this.file);
+
+            for (ByteBuffer segment : this.segments) {
+                this.fileOutput.write(segment.array(), 0, segment.limit());
+            }
+
+            releaseSegments(this.segments);
+            this.segments.clear();
+
+            if (this.array != null) {
+                this.fileOutput.write(this.array, 0, this.length);
+                getPool().release(this.array);
+                this.array = null;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.size += len;
+
+            if ((this.fileOutput == null) && (getSpillThreshold() >= 0)
+                    && (this.size > getSpillThreshold())) {
+                spill();
+            }
+
+            if (this.fileOutput != null) {
+                this.fileOutput.write(b, off, len);
+                return;
+            }
+
+            while (len > 0) {
+                if (this.array == null) {
+                    this.array = getPool().acquireArray(SEGMENT_SIZE);
+                    this.length = 0;
+                }
+
+                int count = Math.min(len, this.array.length - this.length);
+                System.arraycopy(b, off, this.array, this.length, count);
+                this.length += count;
+                off += count;
+                len -= count;
+
+                if (this.length == this.array.length) {
+                    this.segments.add(ByteBuffer.wrap(this.array));
+                    this.array = null;
+                }
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            long threshold = getSpillThreshold();
+
+            if ((this.array != null) && (this.fileOutput == null)
+                    && ((threshold < 0) || (this.size < threshold))) {
+                this.array[this.length++] = (byte) b;
+                this.size++;
+
+                if (this.length == this.array.length) {
+                    this.segments.add(ByteBuffer.wrap(this.array));
+                    this.array = null;
+                }
+            } else {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+        }
+    }
+
+    /** The default spill threshold, 4 MB. */
+    public static final long DEFAULT_SPILL_THRESHOLD = 4 * 1024 * 1024;
+
+    /** The maximum size of each mapped region of the temporary file. */
+    private static final long MAPPING_SIZE = 1 << 30;
+
+    /** The size of the memory segments. */
+    private static final int SEGMENT_SIZE = 16 * 1024;
+
+    /**
+     * Deletes a temporary file.
+     * 
+     * @param file
+     *            The file to delete.
+     */
+    private static void deleteFile(File file) {
+        if (!IoUtils.delete(file)) {
+            Context.getCurrentLogger().log(Level.FINE,
+                    "Unable to delete the buffering file " + file);
+        }
+    }
 
     /** Indicates if the wrapped entity has been already cached. */
     private volatile boolean buffered;
 
+    /** The buffered content. */
+    private volatile Content content;
+
+    /** Indicates if the buffered content survives a call to release(). */
+    private volatile boolean replayable;
+
+    /** The directory of the temporary file, or null for the default one. */
+    private volatile File spillDirectory;
+
+    /** The size above which the content spills to a file, or -1. */
+    private volatile long spillThreshold;
+
     /**
      * Constructor.
      * 
@@ -65,22 +539,58 @@ public class BufferingRepresentation extends WrapperRepresentation {
      *            The representation to buffer.
      */
     public BufferingRepresentation(Representation bufferedRepresentation) {
+        this(bufferedRepresentation, DEFAULT_SPILL_THRESHOLD);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param bufferedRepresentation
+     *            The representation to buffer.
+     * @param spillThreshold
+     *            The size above which the content spills to a temporary file,
+     *            or -1 to always buffer in memory.
+     */
+    public BufferingRepresentation(Representation bufferedRepresentation,
+            long spillThreshold) {
         super(bufferedRepresentation);
+        this.spillThreshold = spillThreshold;
         setTransient(false);
     }
 
+    /**
+     * Returns the buffered content, registering a new view reading it.
+     * 
+     * @return The buffered content or null.
+     * @throws IOException
+     */
+    private Content acquireContent() throws IOException {
+        buffer();
+        Content current = this.content;
+        return ((current != null) && current.acquire()) ? current : null;
+    }
+
     /**
      * Buffers the content of the wrapped entity.
      * 
      * @throws IOException
      */
-    private void buffer() throws IOException {
+    private synchronized void buffer() throws IOException {
         if (!isBuffered()) {
             if (getWrappedRepresentation().isAvailable()) {
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                getWrappedRepresentation().write(baos);
-                baos.flush();
-                setBuffer(baos.toByteArray());
+                SegmentsOutputStream sos = new SegmentsOutputStream();
+
+                try {
+                    getWrappedRepresentation().write(sos);
+                    this.content = sos.finish();
+                } catch (IOException e) {
+                    sos.discard();
+                    throw e;
+                } catch (RuntimeException e) {
+                    sos.discard();
+                    throw e;
+                }
+
                 setBuffered(true);
             }
         }
@@ -92,18 +602,53 @@ public class BufferingRepresentation extends WrapperRepresentation {
     }
 
     /**
-     * Returns the buffered content as an array of bytes.
+     * Returns the buffered content as an array of bytes. Note that the
+     * segments are copied into a new array for each call.
      * 
      * @return The buffered content as an array of bytes.
      */
     protected byte[] getBuffer() {
-        return buffer;
+        Content current = this.content;
+
+        if ((current == null) || !current.acquire()) {
+            return null;
+        }
+
+        try {
+            if (current.size > Integer.MAX_VALUE) {
+                throw new IllegalStateException(
+                        "The buffered content is too large for an array of bytes");
+            }
+
+            byte[] result = new byte[(int) current.size];
+            int offset = 0;
+
+            for (ByteBuffer segment : current.segments) {
+                ByteBuffer view = segment.duplicate();
+                int length = view.remaining();
+                view.get(result, offset, length);
+                offset += length;
+            }
+
+            return result;
+        } finally {
+            current.releaseView();
+        }
     }
 
     @Override
-    public java.nio.channels.ReadableByteChannel getChannel()
-            throws IOException {
-        return IoUtils.getChannel(getStream());
+    public ReadableByteChannel getChannel() throws IOException {
+        Content current = acquireContent();
+        return (current != null) ? new SegmentsInputStream(current) : null;
+    }
+
+    /**
+     * Returns the engine's buffer pool.
+     * 
+     * @return The engine's buffer pool.
+     */
+    private BufferPool getPool() {
+        return Engine.getBufferPool();
     }
 
     @Override
@@ -121,24 +666,44 @@ public class BufferingRepresentation extends WrapperRepresentation {
                     "Unable to buffer the wrapped representation", e);
         }
 
-        return (getBuffer() != null) ? getBuffer().length : -1l;
+        Content current = this.content;
+        return (current != null) ? current.size : -1l;
+    }
+
+    /**
+     * Returns the directory of the temporary file, or null for the default
+     * temporary directory.
+     * 
+     * @return The directory of the temporary file.
+     */
+    public File getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * Returns the size above which the content spills to a temporary file, or
+     * -1 if it is always buffered in memory.
+     * 
+     * @return The spill threshold.
+     */
+    public long getSpillThreshold() {
+        return spillThreshold;
     }
 
     @Override
     public InputStream getStream() throws IOException {
-        buffer();
-        return (getBuffer() != null) ? new ByteArrayInputStream(getBuffer())
-                : null;
+        Content current = acquireContent();
+        return (current != null) ? new SegmentsInputStream(current) : null;
     };
 
     @Override
     public String getText() throws IOException {
         buffer();
+        byte[] content = getBuffer();
 
-        if (getBuffer() != null) {
-            return (getCharacterSet() != null) ? new String(getBuffer(),
-                    getCharacterSet().toCharset().name()) : new String(
-                    getBuffer());
+        if (content != null) {
+            return (getCharacterSet() != null) ? new String(content,
+                    getCharacterSet().toCharset().name()) : new String(content);
         }
 
         return null;
@@ -165,14 +730,92 @@ public class BufferingRepresentation extends WrapperRepresentation {
         return buffered;
     }
 
+    /**
+     * Indicates if the buffered content survives a call to {@link #release()}
+     * , so that the entity can be sent again, for example when retrying a
+     * request. In this case, {@link #releaseBuffer()} must be called once the
+     * content isn't needed anymore. Default value is false.
+     * 
+     * @return True if the buffered content survives a call to
+     *         {@link #release()}.
+     */
+    public boolean isReplayable() {
+        return replayable;
+    }
+
+    /**
+     * Indicates if the buffered content has spilled to a temporary file.
+     * 
+     * @return True if the buffered content has spilled to a temporary file.
+     */
+    public boolean isSpilled() {
+        Content current = this.content;
+        return (current != null) && current.spilled;
+    }
+
+    /**
+     * Releases the wrapped representation and, unless the representation is
+     * replayable, discards the buffered content. A replayable representation
+     * buffers the wrapped content first if needed.
+     */
+    @Override
+    public void release() {
+        if (isReplayable()) {
+            try {
+                buffer();
+            } catch (IOException e) {
+                Context.getCurrentLogger().log(Level.WARNING,
+                        "Unable to buffer the wrapped representation", e);
+            }
+        } else {
+            releaseBuffer();
+        }
+
+        super.release();
+    }
+
+    /**
+     * Discards the buffered content. The memory segments are returned to the
+     * engine's buffer pool once all the streams and channels reading them are
+     * closed, and the temporary file, if still present, is then deleted.
+     */
+    public synchronized void releaseBuffer() {
+        Content current = this.content;
+        this.content = null;
+
+        if (current != null) {
+            current.release();
+        }
+
+        setBuffered(false);
+    }
+
+    /**
+     * Returns heap segments to the engine's buffer pool.
+     * 
+     * @param segments
+     *            The segments to release.
+     */
+    private void releaseSegments(List<ByteBuffer> segments) {
+        for (ByteBuffer segment : segments) {
+            getPool().release(segment.array());
+        }
+    }
+
     /**
      * Sets the buffered content as an array of bytes.
      * 
      * @param buffer
      *            The buffered content as an array of bytes.
      */
-    protected void setBuffer(byte[] buffer) {
-        this.buffer = buffer;
+    protected synchronized void setBuffer(byte[] buffer) {
+        releaseBuffer();
+
+        if (buffer != null) {
+            List<ByteBuffer> list = new ArrayList<ByteBuffer>(1);
+            list.add(ByteBuffer.wrap(buffer));
+            this.content = new Content(list, buffer.length, false, false, null);
+        }
     }
 
     /**
@@ -185,21 +828,87 @@ public class BufferingRepresentation extends WrapperRepresentation {
         this.buffered = buffered;
     }
 
+    /**
+     * Indicates if the buffered content survives a call to {@link #release()}
+     * .
+     * 
+     * @param replayable
+     *            True if the buffered content survives a call to
+     *            {@link #release()}.
+     */
+    public void setReplayable(boolean replayable) {
+        this.replayable = replayable;
+    }
+
+    /**
+     * Sets the directory of the temporary file.
+     * 
+     * @param spillDirectory
+     *            The directory of the temporary file, or null for the default
+     *            temporary directory.
+     */
+    public void setSpillDirectory(File spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Sets the size above which the content spills to a temporary file. Only
+     * applies to content not yet buffered.
+     * 
+     * @param spillThreshold
+     *            The spill threshold, or -1 to always buffer in memory.
+     */
+    public void setSpillThreshold(long spillThreshold) {
+        this.spillThreshold = spillThreshold;
+    }
+
     @Override
     public void write(OutputStream outputStream) throws IOException {
-        buffer();
+        Content current = acquireContent();
 
-        if (getBuffer() != null) {
-            outputStream.write(getBuffer());
+        if (current != null) {
+            try {
+                WritableByteChannel channel = null;
+
+                for (ByteBuffer segment : current.segments) {
+                    if (segment.hasArray()) {
+                        outputStream.write(segment.array(),
+                                segment.arrayOffset() + segment.position(),
+                                segment.remaining());
+                    } else {
+                        if (channel == null) {
+                            channel = IoUtils.getChannel(outputStream);
+                        }
+
+                        ByteBuffer view = segment.duplicate();
+
+                        while (view.hasRemaining()) {
+                            channel.write(view);
+                        }
+                    }
+                }
+            } finally {
+                current.releaseView();
+            }
         }
     }
 
     @Override
     public void write(WritableByteChannel writableChannel) throws IOException {
-        buffer();
+        Content current = acquireContent();
+
+        if (current != null) {
+            try {
+                for (ByteBuffer segment : current.segments) {
+                    ByteBuffer view = segment.duplicate();
 
-        if (getBuffer() != null) {
-            writableChannel.write(ByteBuffer.wrap(getBuffer()));
+                    while (view.hasRemaining()) {
+                        writableChannel.write(view);
+                    }
+                }
+            } finally {
+                current.releaseView();
+            }
         }
     }
 
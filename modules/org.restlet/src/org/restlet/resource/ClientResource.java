@@ -1119,9 +1119,19 @@ public class ClientResource extends Resource {
             List<Reference> references, int retryAttempt, Uniform next) {
         if (next != null) {
             // [ifndef gwt]
+            org.restlet.representation.BufferingRepresentation requestBuffer = null;
+
             // Check if request entity buffering must be done
             if (isRequestEntityBuffering()) {
+                Representation entity = request.getEntity();
                 request.bufferEntity();
+
+                // Discard the buffer after the last retry or redirection
+                if ((request.getEntity() != entity)
+                        && (request.getEntity() instanceof org.restlet.representation.BufferingRepresentation)) {
+                    requestBuffer = (org.restlet.representation.BufferingRepresentation) request
+                            .getEntity();
+                }
             }
             // [enddef]
 
@@ -1166,6 +1176,11 @@ public class ClientResource extends Resource {
                 }
             }
 
+            // The request entity won't be sent again
+            if (requestBuffer != null) {
+                requestBuffer.releaseBuffer();
+            }
+
             // Check if response entity buffering must be done
             if (isResponseEntityBuffering()) {
                 response.bufferEntity();
@@ -47,6 +47,7 @@ import org.restlet.data.Method;
 import org.restlet.data.Reference;
 import org.restlet.data.ServerInfo;
 import org.restlet.data.Status;
+import org.restlet.engine.metrics.CallSample;
 import org.restlet.engine.resource.AnnotationInfo;
 import org.restlet.engine.resource.AnnotationUtils;
 import org.restlet.engine.resource.MethodAnnotationInfo;
@@ -483,18 +484,22 @@ public abstract class ServerResource extends Resource {
             Variant variant) throws ResourceException {
         Representation result = null;
         Class<?>[] parameterTypes = annotationInfo.getJavaInputTypes();
+        CallSample.setResource(getRequest(), getClass(), annotationInfo
+                .getJavaMethod().getName());
 
         // Invoke the annotated method and get the resulting object.
         Object resultObject = null;
 
         try {
             if (parameterTypes.length > 0) {
-                List<Object> parameters = new ArrayList<Object>();
+                Object[] parameters = new Object[parameterTypes.length];
                 Object parameter = null;
 
-                for (Class<?> parameterType : parameterTypes) {
+                for (int i = 0; i < parameterTypes.length; i++) {
+                    Class<?> parameterType = parameterTypes[i];
+
                     if (Variant.class.equals(parameterType)) {
-                        parameters.add(variant);
+                        parameters[i] = variant;
                     } else {
                         if (getRequestEntity() != null
                                 && getRequestEntity().isAvailable()
@@ -513,14 +518,13 @@ public abstract class ServerResource extends Resource {
                             parameter = null;
                         }
 
-                        parameters.add(parameter);
+                        parameters[i] = parameter;
                     }
                 }
 
-                resultObject = annotationInfo.getJavaMethod().invoke(this,
-                        parameters.toArray());
+                resultObject = annotationInfo.invoke(this, parameters);
             } else {
-                resultObject = annotationInfo.getJavaMethod().invoke(this);
+                resultObject = annotationInfo.invoke(this);
             }
 
             if (resultObject != null) {
@@ -1032,6 +1036,8 @@ public abstract class ServerResource extends Resource {
     @Override
     public Representation handle() {
         Representation result = null;
+        CallSample.setResource(getRequest(), getClass(),
+                (getMethod() == null) ? "" : getMethod().getName());
 
         // If the resource is not available after initialization and if this a
         // retrieval method, then return a "not found" response.
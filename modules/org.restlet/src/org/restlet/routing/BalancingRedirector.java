@@ -0,0 +1,652 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.routing;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import org.restlet.Client;
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Reference;
+import org.restlet.data.Status;
+
+/**
+ * Redirector acting as a load balancing reverse proxy. The calls are forwarded
+ * to one of several upstream target URI patterns, selected in a round robin
+ * fashion or based on the lowest number of calls in flight. Only the
+ * {@link #MODE_SERVER_OUTBOUND} and {@link #MODE_SERVER_INBOUND} modes are
+ * affected, other modes behave like the parent {@link Redirector} using the
+ * first upstream.<br>
+ * <br>
+ * Request and response entities are never buffered by this Restlet, they are
+ * streamed between the client and the upstream connectors. Upstreams that
+ * repeatedly fail (connector errors or 502, 503 and 504 statuses) are ejected
+ * for a configurable duration, and per-upstream metrics are maintained.<br>
+ * <br>
+ * By default, the calls go through the same dispatcher as the parent
+ * {@link Redirector}. In order to control the reuse of upstream connections, a
+ * dedicated {@link Client} can be set. Its connection pooling can then be
+ * tuned with the parameters of the selected client connector. This client is
+ * started and stopped with this Restlet.<br>
+ * <br>
+ * Concurrency note: instances of this class or its subclasses can be invoked by
+ * several threads at the same time and therefore must be thread-safe.
+ * 
+ * @author Jerome Louvel
+ */
+public class BalancingRedirector extends Redirector {
+
+    /**
+     * Upstream target with its health state and metrics.
+     */
+    public static class Upstream {
+
+        /** The number of consecutive failures. */
+        private final AtomicInteger consecutiveFailures;
+
+        /** The time until which the upstream is ejected, in milliseconds. */
+        private volatile long ejectedUntil;
+
+        /** The number of failed calls. */
+        private final AtomicLong failures;
+
+        /** The number of calls in flight. */
+        private final AtomicInteger inFlight;
+
+        /** The maximum latency, in nanoseconds. */
+        private final AtomicLong maxLatency;
+
+        /** The number of calls. */
+        private final AtomicLong requests;
+
+        /** The compiled target URI pattern. */
+        private final Template template;
+
+        /** The target URI pattern. */
+        private final String targetTemplate;
+
+        /** The total latency, in nanoseconds. */
+        private final AtomicLong totalLatency;
+
+        /**
+         * Constructor.
+         * 
+         * @param targetTemplate
+         *            The target URI pattern.
+         */
+        public Upstream(String targetTemplate) {
+            this.targetTemplate = targetTemplate;
+            this.template = new Template(targetTemplate);
+            this.consecutiveFailures = new AtomicInteger();
+            this.ejectedUntil = 0L;
+            this.failures = new AtomicLong();
+            this.inFlight = new AtomicInteger();
+            this.maxLatency = new AtomicLong();
+            this.requests = new AtomicLong();
+            this.totalLatency = new AtomicLong();
+        }
+
+        /**
+         * Returns the average latency until the response is received, in
+         * milliseconds.
+         * 
+         * @return The average latency, in milliseconds.
+         */
+        public double getAverageLatency() {
+            long count = getRequests();
+            return (count == 0) ? 0D
+                    : (this.totalLatency.get() / (double) count) / 1000000D;
+        }
+
+        /**
+         * Returns the number of consecutive failures.
+         * 
+         * @return The number of consecutive failures.
+         */
+        public int getConsecutiveFailures() {
+            return this.consecutiveFailures.get();
+        }
+
+        /**
+         * Returns the number of failed calls.
+         * 
+         * @return The number of failed calls.
+         */
+        public long getFailures() {
+            return this.failures.get();
+        }
+
+        /**
+         * Returns the number of calls in flight.
+         * 
+         * @return The number of calls in flight.
+         */
+        public int getInFlight() {
+            return this.inFlight.get();
+        }
+
+        /**
+         * Returns the maximum latency until the response is received, in
+         * milliseconds.
+         * 
+         * @return The maximum latency, in milliseconds.
+         */
+        public double getMaxLatency() {
+            return this.maxLatency.get() / 1000000D;
+        }
+
+        /**
+         * Returns the number of calls.
+         * 
+         * @return The number of calls.
+         */
+        public long getRequests() {
+            return this.requests.get();
+        }
+
+        /**
+         * Returns the compiled target URI pattern.
+         * 
+         * @return The compiled target URI pattern.
+         */
+        protected Template getTemplate() {
+            return this.template;
+        }
+
+        /**
+         * Returns the target URI pattern.
+         * 
+         * @return The target URI pattern.
+         */
+        public String getTargetTemplate() {
+            return this.targetTemplate;
+        }
+
+        /**
+         * Indicates if the upstream is currently ejected.
+         * 
+         * @return True if the upstream is currently ejected.
+         */
+        public boolean isEjected() {
+            return isEjected(System.currentTimeMillis());
+        }
+
+        /**
+         * Indicates if the upstream is ejected at a given time.
+         * 
+         * @param now
+         *            The current time, in milliseconds.
+         * @return True if the upstream is ejected.
+         */
+        private boolean isEjected(long now) {
+            return now < this.ejectedUntil;
+        }
+
+        /**
+         * Records the end of a call.
+         * 
+         * @param latency
+         *            The latency of the call, in nanoseconds.
+         * @param failed
+         *            Indicates if the call failed.
+         * @param maxFailures
+         *            The number of consecutive failures before ejection.
+         * @param ejectionDuration
+         *            The ejection duration, in milliseconds.
+         * @return True if the upstream has just been ejected.
+         */
+        private boolean record(long latency, boolean failed, int maxFailures,
+                long ejectionDuration) {
+            long max;
+            this.inFlight.decrementAndGet();
+            this.totalLatency.addAndGet(latency);
+
+            do {
+                max = this.maxLatency.get();
+            } while ((latency > max)
+                    && !this.maxLatency.compareAndSet(max, latency));
+
+            if (failed) {
+                this.failures.incrementAndGet();
+
+                if (this.consecutiveFailures.incrementAndGet() >= maxFailures) {
+                    this.consecutiveFailures.set(0);
+                    this.ejectedUntil = System.currentTimeMillis()
+                            + ejectionDuration;
+                    return true;
+                }
+            } else {
+                this.consecutiveFailures.set(0);
+            }
+
+            return false;
+        }
+
+        /**
+         * Records the start of a call.
+         */
+        private void start() {
+            this.requests.incrementAndGet();
+            this.inFlight.incrementAndGet();
+        }
+
+        @Override
+        public String toString() {
+            return this.targetTemplate;
+        }
+    }
+
+    /** Selects the upstream with the lowest number of calls in flight. */
+    public static final int BALANCING_LEAST_IN_FLIGHT = 2;
+
+    /** Selects the upstreams in turn. */
+    public static final int BALANCING_ROUND_ROBIN = 1;
+
+    /** The balancing strategy. */
+    private volatile int balancing;
+
+    /** The optional dedicated client. */
+    private volatile Client client;
+
+    /** The position of the next upstream to consider. */
+    private final AtomicInteger cursor;
+
+    /** The ejection duration, in milliseconds. */
+    private volatile long ejectionDuration;
+
+    /** The number of consecutive failures before ejecting an upstream. */
+    private volatile int maxFailures;
+
+    /** The upstream targets. */
+    private final List<Upstream> upstreams;
+
+    /**
+     * Constructor for the {@link #MODE_SERVER_OUTBOUND} mode and round robin
+     * balancing.
+     * 
+     * @param context
+     *            The context.
+     * @param targetTemplates
+     *            The templates to build the target URIs of each upstream.
+     */
+    public BalancingRedirector(Context context, String... targetTemplates) {
+        this(context, MODE_SERVER_OUTBOUND, BALANCING_ROUND_ROBIN,
+                targetTemplates);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param context
+     *            The context.
+     * @param mode
+     *            The redirection mode.
+     * @param balancing
+     *            The balancing strategy.
+     * @param targetTemplates
+     *            The templates to build the target URIs of each upstream.
+     */
+    public BalancingRedirector(Context context, int mode, int balancing,
+            String... targetTemplates) {
+        super(context, (targetTemplates.length > 0) ? targetTemplates[0]
+                : null, mode);
+        this.balancing = balancing;
+        this.cursor = new AtomicInteger();
+        this.ejectionDuration = 30000L;
+        this.maxFailures = 3;
+        this.upstreams = new CopyOnWriteArrayList<Upstream>();
+
+        for (String targetTemplate : targetTemplates) {
+            addUpstream(targetTemplate);
+        }
+    }
+
+    /**
+     * Adds an upstream target.
+     * 
+     * @param targetTemplate
+     *            The template to build the target URI of the upstream.
+     * @return The added upstream.
+     */
+    public Upstream addUpstream(String targetTemplate) {
+        Upstream result = new Upstream(targetTemplate);
+        this.upstreams.add(result);
+
+        if (getTargetTemplate() == null) {
+            setTargetTemplate(targetTemplate);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the balancing strategy.
+     * 
+     * @return The balancing strategy.
+     */
+    public int getBalancing() {
+        return balancing;
+    }
+
+    /**
+     * Returns the optional dedicated client.
+     * 
+     * @return The optional dedicated client.
+     */
+    public Client getClient() {
+        return client;
+    }
+
+    /**
+     * Returns the ejection duration of failing upstreams, in milliseconds.
+     * Default value is 30 seconds.
+     * 
+     * @return The ejection duration, in milliseconds.
+     */
+    public long getEjectionDuration() {
+        return ejectionDuration;
+    }
+
+    /**
+     * Returns the number of consecutive failures before ejecting an upstream.
+     * Default value is 3.
+     * 
+     * @return The number of consecutive failures before ejecting an upstream.
+     */
+    public int getMaxFailures() {
+        return maxFailures;
+    }
+
+    /**
+     * Returns the next Restlet to forward the calls to. Returns the dedicated
+     * client if set, or the dispatcher used by the parent {@link Redirector}
+     * otherwise.
+     * 
+     * @return The next Restlet to forward the calls to.
+     */
+    protected Restlet getNext() {
+        Restlet result = getClient();
+
+        if (result == null) {
+            if (getMode() == MODE_SERVER_INBOUND) {
+                result = getContext().getServerDispatcher();
+            } else {
+                result = (getApplication() == null) ? null : getApplication()
+                        .getOutboundRoot();
+
+                if (result == null) {
+                    result = getContext().getClientDispatcher();
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the modifiable list of upstream targets.
+     * 
+     * @return The modifiable list of upstream targets.
+     */
+    public List<Upstream> getUpstreams() {
+        return upstreams;
+    }
+
+    @Override
+    public void handle(Request request, Response response) {
+        if ((getMode() != MODE_SERVER_OUTBOUND)
+                && (getMode() != MODE_SERVER_INBOUND)) {
+            super.handle(request, response);
+        } else {
+            Upstream upstream = select();
+
+            if (upstream == null) {
+                getLogger().warning(
+                        "No upstream available for the proxied call to "
+                                + request.getResourceRef());
+                response.setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
+            } else {
+                Reference targetRef = getTargetRef(upstream, request, response);
+
+                if (request.isLoggable()) {
+                    getLogger().log(Level.FINE,
+                            "Proxying call to upstream: " + targetRef);
+                }
+
+                proxy(upstream, getNext(), targetRef, request, response);
+            }
+        }
+    }
+
+    /**
+     * Returns the target reference of a given upstream by resolving its URI
+     * template variables.
+     * 
+     * @param upstream
+     *            The selected upstream.
+     * @param request
+     *            The request to handle.
+     * @param response
+     *            The response to update.
+     * @return The target reference to redirect to.
+     */
+    protected Reference getTargetRef(Upstream upstream, Request request,
+            Response response) {
+        String target = upstream.getTemplate().format(request, response);
+        Reference result = new Reference(target);
+
+        if (result.isRelative()) {
+            // Be sure to keep the resource's base reference.
+            result = new Reference(request.getResourceRef(), target);
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates if a response denotes a failure of the upstream.
+     * 
+     * @param response
+     *            The upstream response.
+     * @return True if the response denotes a failure of the upstream.
+     */
+    protected boolean isFailure(Response response) {
+        Status status = response.getStatus();
+        return status.isConnectorError()
+                || Status.SERVER_ERROR_BAD_GATEWAY.equals(status)
+                || Status.SERVER_ERROR_SERVICE_UNAVAILABLE.equals(status)
+                || Status.SERVER_ERROR_GATEWAY_TIMEOUT.equals(status);
+    }
+
+    /**
+     * Forwards a call to a given upstream, recording the metrics and the
+     * health of the upstream. The entities are not buffered.
+     * 
+     * @param upstream
+     *            The selected upstream.
+     * @param next
+     *            The next Restlet to forward the call to.
+     * @param targetRef
+     *            The target reference with URI variables resolved.
+     * @param request
+     *            The request to handle.
+     * @param response
+     *            The response to update.
+     */
+    protected void proxy(Upstream upstream, Restlet next, Reference targetRef,
+            Request request, Response response) {
+        if (next == null) {
+            getLogger().warning(
+                    "No next Restlet provided for server redirection to "
+                            + targetRef);
+            return;
+        }
+
+        Reference resourceRef = request.getResourceRef();
+        boolean failed = true;
+        long start = System.nanoTime();
+        upstream.start();
+
+        try {
+            // Reset the protocol and let the dispatcher handle the protocol
+            request.setProtocol(null);
+            request.setResourceRef(targetRef);
+            rewrite(request);
+            next.handle(request, response);
+            failed = isFailure(response);
+        } finally {
+            if (upstream.record(System.nanoTime() - start, failed,
+                    getMaxFailures(), getEjectionDuration())) {
+                getLogger().warning(
+                        "Ejecting upstream " + upstream + " for "
+                                + getEjectionDuration() + " ms");
+            }
+
+            request.setResourceRef(resourceRef);
+        }
+
+        // Allow for response rewriting and clean the headers
+        response.setEntity(rewrite(response.getEntity()));
+        rewrite(response);
+
+        if ((getMode() == MODE_SERVER_OUTBOUND)
+                && (response.getEntity() != null)
+                && !resourceRef.getScheme().equalsIgnoreCase(
+                        targetRef.getScheme())) {
+            // Distinct protocol, this data cannot be exposed.
+            response.getEntity().setLocationRef((Reference) null);
+        }
+
+        // In case of redirection, we may have to rewrite the redirect URI
+        rewriteLocation(request, response, upstream.getTargetTemplate());
+    }
+
+    /**
+     * Selects the upstream to forward the next call to, skipping the ejected
+     * ones.
+     * 
+     * @return The selected upstream or null if none is available.
+     */
+    protected Upstream select() {
+        Upstream result = null;
+        Upstream upstream;
+        int size = this.upstreams.size();
+
+        if (size > 0) {
+            long now = System.currentTimeMillis();
+            int start = (this.cursor.getAndIncrement() & Integer.MAX_VALUE)
+                    % size;
+
+            for (int i = 0; i < size; i++) {
+                try {
+                    upstream = this.upstreams.get((start + i) % size);
+                } catch (IndexOutOfBoundsException e) {
+                    // Concurrently removed upstream
+                    continue;
+                }
+
+                if (!upstream.isEjected(now)) {
+                    if (getBalancing() != BALANCING_LEAST_IN_FLIGHT) {
+                        return upstream;
+                    } else if ((result == null)
+                            || (upstream.getInFlight() < result.getInFlight())) {
+                        result = upstream;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Sets the balancing strategy.
+     * 
+     * @param balancing
+     *            The balancing strategy.
+     * @see #BALANCING_LEAST_IN_FLIGHT
+     * @see #BALANCING_ROUND_ROBIN
+     */
+    public void setBalancing(int balancing) {
+        this.balancing = balancing;
+    }
+
+    /**
+     * Sets the optional dedicated client. It is started and stopped with this
+     * Restlet.
+     * 
+     * @param client
+     *            The optional dedicated client.
+     */
+    public void setClient(Client client) {
+        this.client = client;
+    }
+
+    /**
+     * Sets the ejection duration of failing upstreams, in milliseconds.
+     * 
+     * @param ejectionDuration
+     *            The ejection duration, in milliseconds.
+     */
+    public void setEjectionDuration(long ejectionDuration) {
+        this.ejectionDuration = ejectionDuration;
+    }
+
+    /**
+     * Sets the number of consecutive failures before ejecting an upstream.
+     * 
+     * @param maxFailures
+     *            The number of consecutive failures before ejecting an
+     *            upstream.
+     */
+    public void setMaxFailures(int maxFailures) {
+        this.maxFailures = maxFailures;
+    }
+
+    @Override
+    public synchronized void start() throws Exception {
+        if ((getClient() != null) && getClient().isStopped()) {
+            getClient().start();
+        }
+
+        super.start();
+    }
+
+    @Override
+    public synchronized void stop() throws Exception {
+        super.stop();
+
+        if ((getClient() != null) && getClient().isStarted()) {
+            getClient().stop();
+        }
+    }
+
+}
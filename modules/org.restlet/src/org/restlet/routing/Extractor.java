@@ -24,7 +24,9 @@
 
 package org.restlet.routing;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.restlet.Context;
@@ -33,6 +35,7 @@ import org.restlet.Response;
 import org.restlet.Restlet;
 import org.restlet.data.Cookie;
 import org.restlet.data.Form;
+import org.restlet.engine.util.FormUtils;
 import org.restlet.representation.Representation;
 import org.restlet.util.Series;
 
@@ -153,7 +156,15 @@ public class Extractor extends Filter {
         if (!getEntityExtracts().isEmpty()) {
             Representation entity = request.getEntity();
             if (entity != null) {
-                Form form = new Form(entity);
+                // Only keep the extracted parameters, skipping the other values
+                Set<String> names = new HashSet<String>();
+
+                for (ExtractInfo ei : getEntityExtracts()) {
+                    names.add(ei.parameter);
+                }
+
+                Form form = new Form();
+                FormUtils.parse(form, entity, true, names);
 
                 for (ExtractInfo ei : getEntityExtracts()) {
                     if (ei.first) {
@@ -199,17 +199,20 @@ public class Redirector extends Restlet {
      * redirection template. Returns null in case it cannot compute the new
      * reference.
      * 
+     * @param targetTemplate
+     *            The target URI pattern used for the redirection.
      * @param locationRef
      *            The reference to translate.
      * @param request
      *            The current request.
      * @return The new location of the given reference.
      */
-    private String getLocation(Reference locationRef, Request request) {
+    private String getLocation(String targetTemplate, Reference locationRef,
+            Request request) {
         Reference resourceRef = request.getResourceRef();
         Reference baseRef = resourceRef.getBaseRef();
 
-        Template rt = new Template(this.targetTemplate);
+        Template rt = new Template(targetTemplate);
         rt.setLogger(getLogger());
         int matched = rt.parse(locationRef.toString(), request);
 
@@ -463,10 +466,27 @@ public class Redirector extends Restlet {
      *            The response to update.
      */
     public void rewriteLocation(Request request, Response response) {
+        rewriteLocation(request, response, this.targetTemplate);
+    }
+
+    /**
+     * Rewrite the location of the response, and the Location of the entity, if
+     * any, based on a given target URI pattern.
+     * 
+     * @param request
+     *            The request to handle.
+     * @param response
+     *            The response to update.
+     * @param targetTemplate
+     *            The target URI pattern used for the redirection.
+     */
+    protected void rewriteLocation(Request request, Response response,
+            String targetTemplate) {
         if (response.getLocationRef() != null) {
             Reference locationRef = response.getLocationRef();
 
-            String newLocation = getLocation(locationRef, request);
+            String newLocation = getLocation(targetTemplate, locationRef,
+                    request);
             if (newLocation != null) {
                 response.setLocationRef(newLocation);
             }
@@ -475,7 +495,8 @@ public class Redirector extends Restlet {
                 && response.getEntity().getLocationRef() != null) {
             Reference locationRef = response.getEntity().getLocationRef();
 
-            String newLocation = getLocation(locationRef, request);
+            String newLocation = getLocation(targetTemplate, locationRef,
+                    request);
             if (newLocation != null) {
                 response.getEntity().setLocationRef(newLocation);
             }
@@ -25,13 +25,11 @@
 package org.restlet.routing;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.restlet.Context;
 import org.restlet.Request;
@@ -66,177 +64,18 @@ public class Template {
     /** Mode where characters at the beginning must match the template. */
     public static final int MODE_STARTS_WITH = 1;
 
-    /**
-     * Appends to a pattern a repeating group of a given content based on a
-     * class of characters.
-     * 
-     * @param pattern
-     *            The pattern to append to.
-     * @param content
-     *            The content of the group.
-     * @param required
-     *            Indicates if the group is required.
-     */
-    private static void appendClass(StringBuilder pattern, String content,
-            boolean required) {
-
-        pattern.append("(");
-
-        if (content.equals(".")) {
-            // Special case for the TYPE_ALL variable type because the
-            // dot looses its meaning inside a character class
-            pattern.append(content);
-        } else {
-            pattern.append("[").append(content).append(']');
-        }
-
-        if (required) {
-            pattern.append("+");
-        } else {
-            pattern.append("*");
-        }
-
-        pattern.append(")");
-    }
-
-    /**
-     * Appends to a pattern a repeating group of a given content based on a
-     * non-capturing group.
-     * 
-     * @param pattern
-     *            The pattern to append to.
-     * @param content
-     *            The content of the group.
-     * @param required
-     *            Indicates if the group is required.
-     */
-    private static void appendGroup(StringBuilder pattern, String content,
-            boolean required) {
-        pattern.append("((?:").append(content).append(')');
-
-        if (required) {
-            pattern.append("+");
-        } else {
-            pattern.append("*");
-        }
-
-        pattern.append(")");
-    }
-
-    /**
-     * Returns the Regex pattern string corresponding to a variable.
-     * 
-     * @param variable
-     *            The variable.
-     * @return The Regex pattern string corresponding to a variable.
-     */
-    private static String getVariableRegex(Variable variable) {
-        String result = null;
-
-        if (variable.isFixed()) {
-            result = "(" + Pattern.quote(variable.getDefaultValue()) + ")";
-        } else {
-            // Expressions to create character classes
-            final String ALL = ".";
-            final String ALPHA = "a-zA-Z";
-            final String DIGIT = "\\d";
-            final String ALPHA_DIGIT = ALPHA + DIGIT;
-            final String HEXA = DIGIT + "ABCDEFabcdef";
-            final String URI_UNRESERVED = ALPHA_DIGIT + "\\-\\.\\_\\~";
-            final String URI_GEN_DELIMS = "\\:\\/\\?\\#\\[\\]\\@";
-            final String URI_SUB_DELIMS = "\\!\\$\\&\\'\\(\\)\\*\\+\\,\\;\\=";
-            final String URI_RESERVED = URI_GEN_DELIMS + URI_SUB_DELIMS;
-            final String WORD = "\\w";
-
-            // Basic rules expressed by the HTTP rfc.
-            final String CRLF = "\\r\\n";
-            final String CTL = "\\p{Cntrl}";
-            final String LWS = CRLF + "\\ \\t";
-            final String SEPARATOR = "\\(\\)\\<\\>\\@\\,\\;\\:\\[\\]\"\\/\\\\?\\=\\{\\}\\ \\t";
-            final String TOKEN = "[^" + SEPARATOR + "]";
-            final String COMMENT = "[^" + CTL + "]" + "[^\\(\\)]" + LWS;
-            final String COMMENT_ATTRIBUTE = "[^\\;\\(\\)]";
-
-            // Expressions to create non-capturing groups
-            final String PCT_ENCODED = "\\%[" + HEXA + "][" + HEXA + "]";
-            // final String PCHAR = "[" + URI_UNRESERVED + "]|(?:" + PCT_ENCODED
-            // + ")|[" + URI_SUB_DELIMS + "]|\\:|\\@";
-            final String PCHAR = "[" + URI_UNRESERVED + URI_SUB_DELIMS
-                    + "\\:\\@]|(?:" + PCT_ENCODED + ")";
-            final String QUERY = PCHAR + "|\\/|\\?";
-            final String FRAGMENT = QUERY;
-            final String URI_PATH = PCHAR + "|\\/";
-            final String URI_ALL = "[" + URI_RESERVED + URI_UNRESERVED
-                    + "]|(?:" + PCT_ENCODED + ")";
-
-            // Special case of query parameter characters
-            final String QUERY_PARAM_DELIMS = "\\!\\$\\'\\(\\)\\*\\+\\,\\;";
-            final String QUERY_PARAM_CHAR = "[" + URI_UNRESERVED
-                    + QUERY_PARAM_DELIMS + "\\:\\@]|(?:" + PCT_ENCODED + ")";
-            final String QUERY_PARAM = QUERY_PARAM_CHAR + "|\\/|\\?";
-
-            final StringBuilder coreRegex = new StringBuilder();
-
-            switch (variable.getType()) {
-            case Variable.TYPE_ALL:
-                appendClass(coreRegex, ALL, variable.isRequired());
-                break;
-            case Variable.TYPE_ALPHA:
-                appendClass(coreRegex, ALPHA, variable.isRequired());
-                break;
-            case Variable.TYPE_DIGIT:
-                appendClass(coreRegex, DIGIT, variable.isRequired());
-                break;
-            case Variable.TYPE_ALPHA_DIGIT:
-                appendClass(coreRegex, ALPHA_DIGIT, variable.isRequired());
-                break;
-            case Variable.TYPE_URI_ALL:
-                appendGroup(coreRegex, URI_ALL, variable.isRequired());
-                break;
-            case Variable.TYPE_URI_UNRESERVED:
-                appendClass(coreRegex, URI_UNRESERVED, variable.isRequired());
-                break;
-            case Variable.TYPE_WORD:
-                appendClass(coreRegex, WORD, variable.isRequired());
-                break;
-            case Variable.TYPE_URI_FRAGMENT:
-                appendGroup(coreRegex, FRAGMENT, variable.isRequired());
-                break;
-            case Variable.TYPE_URI_PATH:
-                appendGroup(coreRegex, URI_PATH, variable.isRequired());
-                break;
-            case Variable.TYPE_URI_QUERY:
-                appendGroup(coreRegex, QUERY, variable.isRequired());
-                break;
-            case Variable.TYPE_URI_QUERY_PARAM:
-                appendGroup(coreRegex, QUERY_PARAM, variable.isRequired());
-                break;
-            case Variable.TYPE_URI_SEGMENT:
-                appendGroup(coreRegex, PCHAR, variable.isRequired());
-                break;
-            case Variable.TYPE_TOKEN:
-                appendClass(coreRegex, TOKEN, variable.isRequired());
-                break;
-            case Variable.TYPE_COMMENT:
-                appendClass(coreRegex, COMMENT, variable.isRequired());
-                break;
-            case Variable.TYPE_COMMENT_ATTRIBUTE:
-                appendClass(coreRegex, COMMENT_ATTRIBUTE, variable.isRequired());
-                break;
-            }
-
-            result = coreRegex.toString();
-        }
-
-        return result;
-    }
-
     /** The default variable to use when no matching variable descriptor exists. */
     private volatile Variable defaultVariable;
 
     /** True if the variables must be encoded when formatting the template. */
     private volatile boolean encodingVariables;
 
+    /**
+     * The pattern compiled for formatting, independently of the variable
+     * descriptors.
+     */
+    private volatile TemplateMatcher formatter;
+
     /** The logger to use. */
     private volatile Logger logger;
 
@@ -246,11 +85,8 @@ public class Template {
     /** The pattern to use for formatting or parsing. */
     private volatile String pattern;
 
-    /** The internal Regex pattern. */
-    private volatile Pattern regexPattern;
-
-    /** The sequence of Regex variable names as found in the pattern string. */
-    private volatile List<String> regexVariables;
+    /** The compiled pattern. */
+    private volatile TemplateMatcher matcher;
 
     /** The map of variables associated to the route's template. */
     private final Map<String, Variable> variables;
@@ -331,7 +167,8 @@ public class Template {
                 defaultRequired, defaultFixed);
         this.matchingMode = matchingMode;
         this.variables = new ConcurrentHashMap<String, Variable>();
-        this.regexPattern = null;
+        this.matcher = null;
+        this.formatter = null;
         this.encodingVariables = encodingVariables;
     }
 
@@ -370,80 +207,48 @@ public class Template {
      */
     public String format(Resolver<?> resolver) {
         final StringBuilder result = new StringBuilder();
-        StringBuilder varBuffer = null;
-        char next;
-        boolean inVariable = false;
-        final int patternLength = getPattern().length();
-        for (int i = 0; i < patternLength; i++) {
-            next = getPattern().charAt(i);
 
-            if (inVariable) {
-                if (Reference.isUnreserved(next)) {
-                    // Append to the variable name
-                    varBuffer.append(next);
-                } else if (next == '}') {
-                    // End of variable detected
-                    if (varBuffer.length() == 0) {
-                        getLogger().warning(
-                                "Empty pattern variables are not allowed : "
-                                        + this.regexPattern);
-                    } else {
-                        final String varName = varBuffer.toString();
-                        Object varValue = resolver.resolve(varName);
-
-                        Variable var = getVariables().get(varName);
-
-                        // Use the default values instead
-                        if (varValue == null) {
-                            if (var == null) {
-                                var = getDefaultVariable();
-                            }
-
-                            if (var != null) {
-                                varValue = var.getDefaultValue();
-                            }
-                        }
-
-                        String varValueString = (varValue == null) ? null
-                                : varValue.toString();
-
-                        if (this.encodingVariables) {
-                            // In case the values must be encoded.
-                            if (var != null) {
-                                result.append(var.encode(varValueString));
-                            } else {
-                                result.append(Reference.encode(varValueString));
-                            }
-                        } else {
-                            if ((var != null) && var.isEncodingOnFormat()) {
-                                result.append(Reference.encode(varValueString));
-                            } else {
-                                result.append(varValueString);
-                            }
-                        }
+        for (TemplateMatcher.Instruction instruction : getFormatter()
+                .getInstructions()) {
+            final String varName = instruction.getName();
 
-                        // Reset the variable name buffer
-                        varBuffer = new StringBuilder();
+            if (varName == null) {
+                result.append(instruction.getText());
+            } else {
+                Object varValue = resolver.resolve(varName);
+                Variable var = getVariables().get(varName);
+
+                // Use the default values instead
+                if (varValue == null) {
+                    if (var == null) {
+                        var = getDefaultVariable();
+                    }
+
+                    if (var != null) {
+                        varValue = var.getDefaultValue();
                     }
-                    inVariable = false;
-                } else {
-                    getLogger().warning(
-                            "An invalid character was detected inside a pattern variable : "
-                                    + this.regexPattern);
                 }
-            } else {
-                if (next == '{') {
-                    inVariable = true;
-                    varBuffer = new StringBuilder();
-                } else if (next == '}') {
-                    getLogger().warning(
-                            "An invalid character was detected inside a pattern variable : "
-                                    + this.regexPattern);
+
+                String varValueString = (varValue == null) ? null : varValue
+                        .toString();
+
+                if (this.encodingVariables) {
+                    // In case the values must be encoded.
+                    if (var != null) {
+                        result.append(var.encode(varValueString));
+                    } else {
+                        result.append(Reference.encode(varValueString));
+                    }
                 } else {
-                    result.append(next);
+                    if ((var != null) && var.isEncodingOnFormat()) {
+                        result.append(Reference.encode(varValueString));
+                    } else {
+                        result.append(varValueString);
+                    }
                 }
             }
         }
+
         return result.toString();
     }
 
@@ -456,6 +261,29 @@ public class Template {
         return this.defaultVariable;
     }
 
+    /**
+     * Returns the pattern compiled for formatting, compiling it on first call.
+     * Unlike the matcher, it doesn't depend on the variable descriptors, which
+     * can still be changed after formatting.
+     * 
+     * @return The pattern compiled for formatting.
+     */
+    private TemplateMatcher getFormatter() {
+        // Lazy initialization with double-check.
+        TemplateMatcher f = this.formatter;
+        if (f == null) {
+            synchronized (this) {
+                f = this.formatter;
+                if (f == null) {
+                    this.formatter = f = TemplateMatcher.compile(getPattern(),
+                            Collections.<String, Variable> emptyMap(),
+                            getDefaultVariable(), getLogger());
+                }
+            }
+        }
+        return f;
+    }
+
     /**
      * Returns the logger to use.
      * 
@@ -484,108 +312,24 @@ public class Template {
     }
 
     /**
-     * Compiles the URI pattern into a Regex pattern.
+     * Returns the matcher compiled from the pattern, compiling it on first
+     * call.
      * 
-     * @return The Regex pattern.
+     * @return The compiled matcher.
      */
-    private Pattern getRegexPattern() {
-        if (this.regexPattern == null) {
-            synchronized (this) {
-                if (this.regexPattern == null) {
-                    getRegexVariables().clear();
-                    final StringBuilder patternBuffer = new StringBuilder();
-                    StringBuilder varBuffer = null;
-                    char next;
-                    boolean inVariable = false;
-                    for (int i = 0; i < getPattern().length(); i++) {
-                        next = getPattern().charAt(i);
-
-                        if (inVariable) {
-                            if (Reference.isUnreserved(next)) {
-                                // Append to the variable name
-                                varBuffer.append(next);
-                            } else if (next == '}') {
-                                // End of variable detected
-                                if (varBuffer.length() == 0) {
-                                    getLogger().warning(
-                                            "Empty pattern variables are not allowed : "
-                                                    + this.regexPattern);
-                                } else {
-                                    final String varName = varBuffer.toString();
-                                    final int varIndex = getRegexVariables()
-                                            .indexOf(varName);
-
-                                    if (varIndex != -1) {
-                                        // The variable is used several times in
-                                        // the pattern, ensure that this
-                                        // constraint is enforced when parsing.
-                                        patternBuffer.append("\\"
-                                                + (varIndex + 1));
-                                    } else {
-                                        // New variable detected. Insert a
-                                        // capturing group.
-                                        getRegexVariables().add(varName);
-                                        Variable var = getVariables().get(
-                                                varName);
-                                        if (var == null) {
-                                            var = getDefaultVariable();
-                                        }
-                                        patternBuffer
-                                                .append(getVariableRegex(var));
-                                    }
-
-                                    // Reset the variable name buffer
-                                    varBuffer = new StringBuilder();
-                                }
-                                inVariable = false;
-
-                            } else {
-                                getLogger().warning(
-                                        "An invalid character was detected inside a pattern variable : "
-                                                + this.regexPattern);
-                            }
-                        } else {
-                            if (next == '{') {
-                                inVariable = true;
-                                varBuffer = new StringBuilder();
-                            } else if (next == '}') {
-                                getLogger().warning(
-                                        "An invalid character was detected inside a pattern variable : "
-                                                + this.regexPattern);
-                            } else {
-                                patternBuffer.append(quote(next));
-                            }
-                        }
-                    }
-
-                    this.regexPattern = Pattern.compile(patternBuffer
-                            .toString());
-                }
-            }
-        }
-
-        return this.regexPattern;
-    }
-
-    /**
-     * Returns the sequence of Regex variable names as found in the pattern
-     * string.
-     * 
-     * @return The sequence of Regex variable names as found in the pattern
-     *         string.
-     */
-    private List<String> getRegexVariables() {
+    private TemplateMatcher getMatcher() {
         // Lazy initialization with double-check.
-        List<String> rv = this.regexVariables;
-        if (rv == null) {
+        TemplateMatcher m = this.matcher;
+        if (m == null) {
             synchronized (this) {
-                rv = this.regexVariables;
-                if (rv == null) {
-                    this.regexVariables = rv = new CopyOnWriteArrayList<String>();
+                m = this.matcher;
+                if (m == null) {
+                    this.matcher = m = TemplateMatcher.compile(getPattern(),
+                            getVariables(), getDefaultVariable(), getLogger());
                 }
             }
         }
-        return rv;
+        return m;
     }
 
     /**
@@ -649,7 +393,7 @@ public class Template {
      * 
      * @return The modifiable map of variables.
      */
-    public synchronized Map<String, Variable> getVariables() {
+    public Map<String, Variable> getVariables() {
         return this.variables;
     }
 
@@ -671,27 +415,8 @@ public class Template {
      * @return The number of matched characters or -1 if the match failed.
      */
     public int match(String formattedString) {
-        int result = -1;
-
-        try {
-            if (formattedString != null) {
-                final Matcher matcher = getRegexPattern().matcher(
-                        formattedString);
-
-                if ((getMatchingMode() == MODE_EQUALS) && matcher.matches()) {
-                    result = matcher.end();
-                } else if ((getMatchingMode() == MODE_STARTS_WITH)
-                        && matcher.lookingAt()) {
-                    result = matcher.end();
-                }
-            }
-        } catch (StackOverflowError soe) {
-            getLogger().warning(
-                    "StackOverflowError exception encountered while matching this string : "
-                            + formattedString);
-        }
-
-        return result;
+        return (formattedString == null) ? -1 : getMatcher().match(
+                formattedString, getMatchingMode() == MODE_EQUALS).getEnd();
     }
 
     /**
@@ -733,44 +458,31 @@ public class Template {
         int result = -1;
 
         if (formattedString != null) {
-            try {
-                Matcher matcher = getRegexPattern().matcher(formattedString);
-                boolean matched = ((getMatchingMode() == MODE_EQUALS) && matcher
-                        .matches())
-                        || ((getMatchingMode() == MODE_STARTS_WITH) && matcher
-                                .lookingAt());
-
-                if (matched) {
-                    // Update the number of matched characters
-                    result = matcher.end();
-
-                    // Update the attributes with the variables value
-                    String attributeName = null;
-                    String attributeValue = null;
-
-                    for (int i = 0; i < getRegexVariables().size(); i++) {
-                        attributeName = getRegexVariables().get(i);
-                        attributeValue = matcher.group(i + 1);
-                        Variable var = getVariables().get(attributeName);
-
-                        if ((var != null) && var.isDecodingOnParse()) {
-                            attributeValue = Reference.decode(attributeValue);
-                        }
-
-                        if (loggable) {
-                            getLogger().fine(
-                                    "Template variable \"" + attributeName
-                                            + "\" matched with value \""
-                                            + attributeValue + "\"");
-                        }
-
-                        variables.put(attributeName, attributeValue);
+            TemplateMatcher m = getMatcher();
+            TemplateMatcher.Match match = m.match(formattedString,
+                    getMatchingMode() == MODE_EQUALS);
+            result = match.getEnd();
+
+            if (result != -1) {
+                // Update the attributes with the variables value
+                for (int i = 0; i < m.getVariableCount(); i++) {
+                    String attributeName = m.getName(i);
+                    String attributeValue = match.getValue(i);
+                    Variable var = getVariables().get(attributeName);
+
+                    if ((var != null) && var.isDecodingOnParse()) {
+                        attributeValue = Reference.decode(attributeValue);
                     }
+
+                    if (loggable) {
+                        getLogger().fine(
+                                "Template variable \"" + attributeName
+                                        + "\" matched with value \""
+                                        + attributeValue + "\"");
+                    }
+
+                    variables.put(attributeName, attributeValue);
                 }
-            } catch (StackOverflowError soe) {
-                getLogger().warning(
-                        "StackOverflowError exception encountered while matching this string : "
-                                + formattedString);
             }
         }
 
@@ -796,53 +508,6 @@ public class Template {
                 request.isLoggable());
     }
 
-    /**
-     * Quotes special characters that could be taken for special Regex
-     * characters.
-     * 
-     * @param character
-     *            The character to quote if necessary.
-     * @return The quoted character.
-     */
-    private String quote(char character) {
-        switch (character) {
-        case '[':
-            return "\\[";
-        case ']':
-            return "\\]";
-        case '.':
-            return "\\.";
-        case '\\':
-            return "\\\\";
-        case '$':
-            return "\\$";
-        case '^':
-            return "\\^";
-        case '?':
-            return "\\?";
-        case '*':
-            return "\\*";
-        case '|':
-            return "\\|";
-        case '(':
-            return "\\(";
-        case ')':
-            return "\\)";
-        case ':':
-            return "\\:";
-        case '-':
-            return "\\-";
-        case '!':
-            return "\\!";
-        case '<':
-            return "\\<";
-        case '>':
-            return "\\>";
-        default:
-            return Character.toString(character);
-        }
-    }
-
     /**
      * Sets the variable to use, if no variable is given.
      * 
@@ -850,6 +515,7 @@ public class Template {
      */
     public void setDefaultVariable(Variable defaultVariable) {
         this.defaultVariable = defaultVariable;
+        this.matcher = null;
     }
 
     /**
@@ -891,7 +557,8 @@ public class Template {
      */
     public void setPattern(String pattern) {
         this.pattern = pattern;
-        this.regexPattern = null;
+        this.matcher = null;
+        this.formatter = null;
     }
 
     /**
@@ -0,0 +1,586 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.restlet.data.Reference;
+
+/**
+ * Compiled form of a {@link Template} pattern. The pattern is turned into a
+ * short sequence of instructions (literal text, variable, fixed variable or
+ * reference to a previously captured variable) that is interpreted directly
+ * against the formatted string, without relying on regular expressions.<br>
+ * <br>
+ * Variables are matched greedily, as regular expressions would, but a variable
+ * followed by a literal text starting with a character it can't contain never
+ * needs to give back characters, which makes the matching of common URI
+ * templates deterministic. Instances are immutable and can be shared by
+ * concurrent threads.
+ * 
+ * @author Jerome Louvel
+ */
+final class TemplateMatcher {
+
+    /**
+     * Single instruction of a compiled template.
+     */
+    static final class Instruction {
+
+        /** Instruction matching a previously captured variable. */
+        static final int BACK_REFERENCE = 3;
+
+        /** Instruction matching a fixed variable. */
+        static final int FIXED = 2;
+
+        /** Instruction matching a literal text. */
+        static final int LITERAL = 0;
+
+        /** Instruction matching a variable. */
+        static final int VARIABLE = 1;
+
+        /** The index of the captured variable, if any. */
+        private final int group;
+
+        /** The kind of instruction. */
+        private final int kind;
+
+        /** The name of the variable, if any. */
+        private final String name;
+
+        /** Indicates if the variable never needs to give back characters. */
+        private boolean possessive;
+
+        /** Indicates if the variable requires at least one character. */
+        private final boolean required;
+
+        /** The literal text or the value of the fixed variable. */
+        private final String text;
+
+        /** The type of the variable. */
+        private final int type;
+
+        /**
+         * Constructor.
+         * 
+         * @param kind
+         *            The kind of instruction.
+         * @param text
+         *            The literal text or the value of the fixed variable.
+         * @param name
+         *            The name of the variable, if any.
+         * @param group
+         *            The index of the captured variable, if any.
+         * @param type
+         *            The type of the variable.
+         * @param required
+         *            Indicates if the variable requires at least one
+         *            character.
+         */
+        private Instruction(int kind, String text, String name, int group,
+                int type, boolean required) {
+            this.kind = kind;
+            this.text = text;
+            this.name = name;
+            this.group = group;
+            this.type = type;
+            this.required = required;
+        }
+
+        /**
+         * Returns the kind of instruction.
+         * 
+         * @return The kind of instruction.
+         */
+        int getKind() {
+            return kind;
+        }
+
+        /**
+         * Returns the name of the variable, or null for a literal text.
+         * 
+         * @return The name of the variable.
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the literal text or the value of the fixed variable.
+         * 
+         * @return The literal text or the value of the fixed variable.
+         */
+        String getText() {
+            return text;
+        }
+    }
+
+    /**
+     * Result of the latest match of a thread. The buffer is reused by the
+     * following matches of the same thread, and lets a parsing following a
+     * match of the same string avoid matching it again.
+     */
+    static final class Match {
+
+        /** The start and end indexes of each captured variable. */
+        private int[] bounds = new int[16];
+
+        /** The number of matched characters or -1. */
+        private int end;
+
+        /** The matched string. */
+        private String input;
+
+        /** Indicates if the whole string had to be matched. */
+        private boolean entire;
+
+        /** The matcher that produced the result. */
+        private TemplateMatcher matcher;
+
+        /**
+         * Returns the number of matched characters or -1 if the match failed.
+         * 
+         * @return The number of matched characters or -1.
+         */
+        int getEnd() {
+            return end;
+        }
+
+        /**
+         * Returns the value captured for a given variable.
+         * 
+         * @param group
+         *            The index of the variable.
+         * @return The value captured.
+         */
+        String getValue(int group) {
+            return input.substring(bounds[2 * group], bounds[2 * group + 1]);
+        }
+    }
+
+    /** The buffer of the latest match of each thread. */
+    private static final ThreadLocal<Match> MATCHES = new ThreadLocal<Match>() {
+        @Override
+        protected Match initialValue() {
+            return new Match();
+        }
+    };
+
+    /**
+     * Compiles a template pattern.
+     * 
+     * @param pattern
+     *            The pattern to compile.
+     * @param variables
+     *            The variable descriptors.
+     * @param defaultVariable
+     *            The variable used when no descriptor is found.
+     * @param logger
+     *            The logger used to report syntax errors.
+     * @return The compiled pattern.
+     */
+    static TemplateMatcher compile(String pattern,
+            Map<String, Variable> variables, Variable defaultVariable,
+            Logger logger) {
+        List<Instruction> instructions = new ArrayList<Instruction>();
+        List<String> names = new ArrayList<String>();
+        StringBuilder literal = new StringBuilder();
+        StringBuilder varBuffer = null;
+        boolean inVariable = false;
+
+        for (int i = 0; i < pattern.length(); i++) {
+            char next = pattern.charAt(i);
+
+            if (inVariable) {
+                if (Reference.isUnreserved(next)) {
+                    // Append to the variable name
+                    varBuffer.append(next);
+                } else if (next == '}') {
+                    // End of variable detected
+                    if (varBuffer.length() == 0) {
+                        logger.warning("Empty pattern variables are not allowed : "
+                                + pattern);
+                    } else {
+                        if (literal.length() > 0) {
+                            instructions.add(new Instruction(
+                                    Instruction.LITERAL, literal.toString(),
+                                    null, -1, 0, false));
+                            literal.setLength(0);
+                        }
+
+                        String name = varBuffer.toString();
+                        int group = names.indexOf(name);
+
+                        if (group != -1) {
+                            // The variable is used several times in the
+                            // pattern, ensure that this constraint is enforced
+                            // when parsing.
+                            instructions.add(new Instruction(
+                                    Instruction.BACK_REFERENCE, null, name,
+                                    group, 0, false));
+                        } else {
+                            Variable var = variables.get(name);
+
+                            if (var == null) {
+                                var = defaultVariable;
+                            }
+
+                            names.add(name);
+                            instructions.add(new Instruction(
+                                    var.isFixed() ? Instruction.FIXED
+                                            : Instruction.VARIABLE, var
+                                            .getDefaultValue(), name, names
+                                            .size() - 1, var.getType(), var
+                                            .isRequired()));
+                        }
+                    }
+
+                    inVariable = false;
+                } else {
+                    logger.warning("An invalid character was detected inside a pattern variable : "
+                            + pattern);
+                }
+            } else if (next == '{') {
+                inVariable = true;
+                varBuffer = new StringBuilder();
+            } else if (next == '}') {
+                logger.warning("An invalid character was detected inside a pattern variable : "
+                        + pattern);
+            } else {
+                literal.append(next);
+            }
+        }
+
+        if (literal.length() > 0) {
+            instructions.add(new Instruction(Instruction.LITERAL, literal
+                    .toString(), null, -1, 0, false));
+        }
+
+        return new TemplateMatcher(
+                instructions.toArray(new Instruction[instructions.size()]),
+                names.toArray(new String[names.size()]));
+    }
+
+    /**
+     * Indicates if a character can start a unit of a variable type.
+     * 
+     * @param type
+     *            The variable type.
+     * @param character
+     *            The character.
+     * @return True if the character can start a unit of the variable type.
+     */
+    private static boolean isStart(int type, char character) {
+        return isValid(type, character)
+                || (character == '%' && isPercentEncoding(type));
+    }
+
+    /**
+     * Indicates if a character is an hexadecimal digit.
+     * 
+     * @param character
+     *            The character.
+     * @return True if the character is an hexadecimal digit.
+     */
+    private static boolean isHexa(char character) {
+        return (character >= '0' && character <= '9')
+                || (character >= 'A' && character <= 'F')
+                || (character >= 'a' && character <= 'f');
+    }
+
+    /**
+     * Indicates if a variable type accepts percent-encoded characters.
+     * 
+     * @param type
+     *            The variable type.
+     * @return True if the variable type accepts percent-encoded characters.
+     */
+    private static boolean isPercentEncoding(int type) {
+        switch (type) {
+        case Variable.TYPE_URI_ALL:
+        case Variable.TYPE_URI_FRAGMENT:
+        case Variable.TYPE_URI_PATH:
+        case Variable.TYPE_URI_QUERY:
+        case Variable.TYPE_URI_QUERY_PARAM:
+        case Variable.TYPE_URI_SEGMENT:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Indicates if a character can be contained in a variable of the given
+     * type, percent-encoding excepted.
+     * 
+     * @param type
+     *            The variable type.
+     * @param c
+     *            The character.
+     * @return True if the character can be contained in the variable.
+     */
+    private static boolean isValid(int type, char c) {
+        switch (type) {
+        case Variable.TYPE_ALL:
+            // Line terminators excluded
+            return (c != '\n') && (c != '\r') && (c != 0x85)
+                    && (c != 0x2028) && (c != 0x2029);
+        case Variable.TYPE_ALPHA:
+            return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z'));
+        case Variable.TYPE_ALPHA_DIGIT:
+            return isValid(Variable.TYPE_ALPHA, c)
+                    || isValid(Variable.TYPE_DIGIT, c);
+        case Variable.TYPE_COMMENT:
+            return true;
+        case Variable.TYPE_COMMENT_ATTRIBUTE:
+            return (c != ';') && (c != '(') && (c != ')');
+        case Variable.TYPE_DIGIT:
+            return (c >= '0') && (c <= '9');
+        case Variable.TYPE_TOKEN:
+            return "()<>@,;:[]\"/\\?={} \t".indexOf(c) == -1;
+        case Variable.TYPE_URI_ALL:
+            return Reference.isReserved(c) || Reference.isUnreserved(c);
+        case Variable.TYPE_URI_FRAGMENT:
+        case Variable.TYPE_URI_QUERY:
+            return isValid(Variable.TYPE_URI_SEGMENT, c) || (c == '/')
+                    || (c == '?');
+        case Variable.TYPE_URI_PATH:
+            return isValid(Variable.TYPE_URI_SEGMENT, c) || (c == '/');
+        case Variable.TYPE_URI_QUERY_PARAM:
+            return Reference.isUnreserved(c) || ("!$'()*+,;:@/?".indexOf(c) != -1);
+        case Variable.TYPE_URI_SCHEME:
+            return isValid(Variable.TYPE_ALPHA_DIGIT, c) || (c == '+')
+                    || (c == '-') || (c == '.');
+        case Variable.TYPE_URI_SEGMENT:
+            return Reference.isUnreserved(c) || Reference.isSubDelimiter(c)
+                    || (c == ':') || (c == '@');
+        case Variable.TYPE_URI_UNRESERVED:
+            return Reference.isUnreserved(c);
+        case Variable.TYPE_WORD:
+            return isValid(Variable.TYPE_ALPHA_DIGIT, c) || (c == '_');
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Returns the index after the longest sequence of units of a variable type
+     * found at a given position.
+     * 
+     * @param input
+     *            The string to match.
+     * @param position
+     *            The start position.
+     * @param type
+     *            The variable type.
+     * @return The index after the longest sequence.
+     */
+    private static int scan(String input, int position, int type) {
+        boolean percentEncoding = isPercentEncoding(type);
+        int length = input.length();
+        int result = position;
+
+        while (result < length) {
+            char c = input.charAt(result);
+
+            if (isValid(type, c)) {
+                result++;
+            } else if (percentEncoding && (c == '%') && (result + 2 < length)
+                    && isHexa(input.charAt(result + 1))
+                    && isHexa(input.charAt(result + 2))) {
+                result += 3;
+            } else {
+                break;
+            }
+        }
+
+        return result;
+    }
+
+    /** The instructions. */
+    private final Instruction[] instructions;
+
+    /** The names of the captured variables, in order of appearance. */
+    private final String[] names;
+
+    /**
+     * Constructor.
+     * 
+     * @param instructions
+     *            The instructions.
+     * @param names
+     *            The names of the captured variables.
+     */
+    private TemplateMatcher(Instruction[] instructions, String[] names) {
+        this.instructions = instructions;
+        this.names = names;
+
+        for (int i = 0; i < instructions.length; i++) {
+            Instruction instruction = instructions[i];
+
+            if (instruction.kind == Instruction.VARIABLE) {
+                Instruction next = (i + 1 < instructions.length) ? instructions[i + 1]
+                        : null;
+                instruction.possessive = (next == null)
+                        || ((next.kind == Instruction.LITERAL || next.kind == Instruction.FIXED)
+                                && (next.text.length() > 0) && !isStart(
+                                    instruction.type, next.text.charAt(0)));
+            }
+        }
+    }
+
+    /**
+     * Returns the instructions.
+     * 
+     * @return The instructions.
+     */
+    Instruction[] getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * Returns the name of a captured variable.
+     * 
+     * @param group
+     *            The index of the variable.
+     * @return The name of the variable.
+     */
+    String getName(int group) {
+        return names[group];
+    }
+
+    /**
+     * Returns the number of captured variables.
+     * 
+     * @return The number of captured variables.
+     */
+    int getVariableCount() {
+        return names.length;
+    }
+
+    /**
+     * Matches a string against the compiled pattern. The result is stored in
+     * a buffer specific to the current thread and only remains valid until
+     * the next match of the thread.
+     * 
+     * @param input
+     *            The string to match.
+     * @param entire
+     *            True if the whole string must be matched, false if only its
+     *            beginning.
+     * @return The result of the match.
+     */
+    Match match(String input, boolean entire) {
+        Match result = MATCHES.get();
+
+        if ((result.matcher != this) || (result.entire != entire)
+                || !input.equals(result.input)) {
+            if (result.bounds.length < 2 * names.length) {
+                result.bounds = new int[2 * names.length];
+            }
+
+            result.matcher = null;
+            result.input = input;
+            result.entire = entire;
+            result.end = match(input, 0, 0, result.bounds, entire);
+            result.matcher = this;
+        }
+
+        return result;
+    }
+
+    /**
+     * Matches the instructions starting at a given index.
+     * 
+     * @param input
+     *            The string to match.
+     * @param index
+     *            The index of the instruction.
+     * @param position
+     *            The position in the string.
+     * @param bounds
+     *            The start and end indexes of the captured variables.
+     * @param entire
+     *            True if the whole string must be matched.
+     * @return The number of matched characters or -1.
+     */
+    private int match(String input, int index, int position, int[] bounds,
+            boolean entire) {
+        if (index == instructions.length) {
+            return (!entire || position == input.length()) ? position : -1;
+        }
+
+        Instruction instruction = instructions[index];
+
+        switch (instruction.kind) {
+        case Instruction.LITERAL:
+        case Instruction.FIXED:
+            String text = instruction.text;
+
+            if (!input.startsWith(text, position)) {
+                return -1;
+            }
+
+            if (instruction.kind == Instruction.FIXED) {
+                bounds[2 * instruction.group] = position;
+                bounds[2 * instruction.group + 1] = position + text.length();
+            }
+
+            return match(input, index + 1, position + text.length(), bounds,
+                    entire);
+        case Instruction.BACK_REFERENCE:
+            int start = bounds[2 * instruction.group];
+            int length = bounds[2 * instruction.group + 1] - start;
+
+            if (!input.regionMatches(position, input, start, length)) {
+                return -1;
+            }
+
+            return match(input, index + 1, position + length, bounds, entire);
+        default:
+            int min = instruction.required ? position + 1 : position;
+            boolean percentEncoding = isPercentEncoding(instruction.type);
+
+            for (int end = scan(input, position, instruction.type); end >= min;) {
+                bounds[2 * instruction.group] = position;
+                bounds[2 * instruction.group + 1] = end;
+                int result = match(input, index + 1, end, bounds, entire);
+
+                if ((result != -1) || instruction.possessive) {
+                    return result;
+                }
+
+                // Give back the last unit
+                end -= (percentEncoding && (end - 3 >= position) && (input
+                        .charAt(end - 3) == '%')) ? 3 : 1;
+            }
+
+            return -1;
+        }
+    }
+
+}
@@ -31,6 +31,7 @@ import org.restlet.Response;
 import org.restlet.Restlet;
 import org.restlet.data.Reference;
 import org.restlet.data.Status;
+import org.restlet.engine.metrics.CallSample;
 
 /**
  * Filter scoring the affinity of calls with the attached Restlet. The score is
@@ -114,6 +115,7 @@ public class TemplateRoute extends Route {
     protected int beforeHandle(Request request, Response response) {
         // 1 - Parse the template variables and adjust the base reference
         if (getTemplate() != null) {
+            CallSample.addRoute(request, getTemplate().getPattern());
             String remainingPart = request.getResourceRef().getRemainingPart(
                     false, isMatchingQuery());
             int matchedLength = getTemplate().parse(remainingPart, request);
@@ -24,12 +24,19 @@
 
 package org.restlet.service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.restlet.Request;
+import org.restlet.data.ClientInfo;
+import org.restlet.data.Metadata;
+import org.restlet.data.Preference;
 import org.restlet.engine.application.Conneg;
 import org.restlet.engine.application.FlexibleConneg;
 import org.restlet.engine.application.StrictConneg;
+import org.restlet.engine.resource.VariantInfo;
+import org.restlet.engine.util.BoundedCache;
 import org.restlet.representation.Variant;
 
 /**
@@ -41,6 +48,85 @@ import org.restlet.representation.Variant;
  */
 public class ConnegService extends Service {
 
+    /**
+     * Key of the negotiation results cache. It captures the client
+     * preferences, the query of the resource reference, the default metadata
+     * and the list of variants.
+     */
+    private static final class CacheKey {
+
+        /** The negotiation criteria except the variants. */
+        private final Object[] criteria;
+
+        /** The precomputed hash code. */
+        private final int hashCode;
+
+        /** The variants to negotiate. */
+        private final Variant[] variants;
+
+        /**
+         * Constructor.
+         * 
+         * @param criteria
+         *            The negotiation criteria except the variants.
+         * @param variants
+         *            The variants to negotiate.
+         */
+        private CacheKey(Object[] criteria, Variant[] variants) {
+            this.criteria = criteria;
+            this.variants = variants;
+            int result = Arrays.hashCode(criteria);
+
+            for (Variant variant : variants) {
+                result = 31 * result
+                        + ((variant.getMediaType() == null) ? 0 : variant
+                                .getMediaType().hashCode());
+            }
+
+            this.hashCode = result;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (object == this) {
+                return true;
+            }
+
+            if (!(object instanceof CacheKey)) {
+                return false;
+            }
+
+            CacheKey other = (CacheKey) object;
+
+            if ((this.hashCode != other.hashCode)
+                    || (this.variants.length != other.variants.length)
+                    || !Arrays.equals(this.criteria, other.criteria)) {
+                return false;
+            }
+
+            for (int i = 0; i < this.variants.length; i++) {
+                if ((this.variants[i].getClass() != other.variants[i]
+                        .getClass())
+                        || !this.variants[i].equals(other.variants[i])) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+
+    /** The cache of negotiation results, lazily created. */
+    private volatile BoundedCache<CacheKey, Integer> cache;
+
+    /** The maximum number of negotiation results cached. */
+    private volatile int cacheSize;
+
     /**
      * Indicates if the conneg algorithm should strictly respect client
      * preferences or be more flexible.
@@ -62,9 +148,136 @@ public class ConnegService extends Service {
      */
     public ConnegService(boolean enabled) {
         super(enabled);
+        this.cacheSize = 500;
         this.strict = false;
     }
 
+    /**
+     * Adds the preferences to the negotiation criteria.
+     * 
+     * @param preferences
+     *            The preferences to add.
+     * @param criteria
+     *            The criteria to update.
+     */
+    private void addCriteria(
+            List<? extends Preference<? extends Metadata>> preferences,
+            List<Object> criteria) {
+        criteria.add(preferences.size());
+
+        for (Preference<? extends Metadata> preference : preferences) {
+            criteria.add(preference.getMetadata());
+            criteria.add(preference.getQuality());
+
+            if ((preference.getParameters() == null)
+                    || preference.getParameters().isEmpty()) {
+                criteria.add(null);
+            } else {
+                criteria.add(preference.getParameters().toString());
+            }
+        }
+    }
+
+    /**
+     * Clears the cache of negotiation results.
+     */
+    public void clearCache() {
+        BoundedCache<CacheKey, Integer> current = this.cache;
+
+        if (current != null) {
+            current.clear();
+        }
+    }
+
+    /**
+     * Creates the key of the negotiation results cache.
+     * 
+     * @param variants
+     *            The list of variants to compare.
+     * @param request
+     *            The request including client preferences.
+     * @param metadataService
+     *            The metadata service used to get default metadata values.
+     * @return The cache key or null if the result can't be cached.
+     */
+    private CacheKey createCacheKey(List<? extends Variant> variants,
+            Request request, MetadataService metadataService) {
+        ClientInfo clientInfo = request.getClientInfo();
+
+        if ((variants == null) || variants.isEmpty() || (clientInfo == null)) {
+            return null;
+        }
+
+        Variant[] variantArray = new Variant[variants.size()];
+
+        for (int i = 0; i < variantArray.length; i++) {
+            Variant variant = variants.get(i);
+
+            // Representations aren't cached as they would be retained by the
+            // cache and as their metadata are mutable
+            if ((variant == null)
+                    || ((variant.getClass() != Variant.class) && (variant
+                            .getClass() != VariantInfo.class))) {
+                return null;
+            }
+
+            variantArray[i] = variant;
+        }
+
+        List<Object> criteria = new ArrayList<Object>();
+        criteria.add(isStrict());
+        criteria.add(metadataService);
+
+        if (metadataService != null) {
+            criteria.add(metadataService.getDefaultCharacterSet());
+            criteria.add(metadataService.getDefaultEncoding());
+            criteria.add(metadataService.getDefaultLanguage());
+            criteria.add(metadataService.getDefaultMediaType());
+        }
+
+        criteria.add((request.getResourceRef() == null) ? null : request
+                .getResourceRef().getQuery());
+        addCriteria(clientInfo.getAcceptedCharacterSets(), criteria);
+        addCriteria(clientInfo.getAcceptedEncodings(), criteria);
+        addCriteria(clientInfo.getAcceptedLanguages(), criteria);
+        addCriteria(clientInfo.getAcceptedMediaTypes(), criteria);
+        return new CacheKey(criteria.toArray(), variantArray);
+    }
+
+    /**
+     * Returns the cache of negotiation results, creating it if necessary.
+     * 
+     * @return The cache of negotiation results.
+     */
+    private BoundedCache<CacheKey, Integer> getCache() {
+        BoundedCache<CacheKey, Integer> result = this.cache;
+
+        if (result == null) {
+            synchronized (this) {
+                result = this.cache;
+
+                if (result == null) {
+                    result = new BoundedCache<CacheKey, Integer>(
+                            getCacheSize());
+                    this.cache = result;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the maximum number of negotiation results cached. Results are
+     * cached by client preferences and list of variants. The default value is
+     * 500, zero disables the cache.
+     * 
+     * @return The maximum number of negotiation results cached.
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
     /**
      * Returns the best variant representation for a given resource according
      * the the client preferences.<br>
@@ -84,9 +297,34 @@ public class ConnegService extends Service {
      */
     public Variant getPreferredVariant(List<? extends Variant> variants,
             Request request, MetadataService metadataService) {
+        CacheKey key = (getCacheSize() > 0) ? createCacheKey(variants,
+                request, metadataService) : null;
+
+        if (key != null) {
+            Integer index = getCache().get(key);
+
+            if (index != null) {
+                return (index < 0) ? null : variants.get(index);
+            }
+        }
+
         Conneg conneg = isStrict() ? new StrictConneg(request, metadataService)
                 : new FlexibleConneg(request, metadataService);
-        return conneg.getPreferredVariant(variants);
+        Variant result = conneg.getPreferredVariant(variants);
+
+        if (key != null) {
+            int index = -1;
+
+            for (int i = 0; (index < 0) && (i < variants.size()); i++) {
+                if (variants.get(i) == result) {
+                    index = i;
+                }
+            }
+
+            getCache().put(key, index);
+        }
+
+        return result;
     }
 
     /**
@@ -100,6 +338,18 @@ public class ConnegService extends Service {
         return strict;
     }
 
+    /**
+     * Sets the maximum number of negotiation results cached. Zero disables the
+     * cache.
+     * 
+     * @param cacheSize
+     *            The maximum number of negotiation results cached.
+     */
+    public synchronized void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+        this.cache = null;
+    }
+
     /**
      * Indicates if the conneg algorithm should strictly respect client
      * preferences or be more flexible.
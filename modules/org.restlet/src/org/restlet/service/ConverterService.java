@@ -32,9 +32,11 @@ import java.util.logging.Level;
 import org.restlet.Context;
 import org.restlet.data.MediaType;
 import org.restlet.data.Preference;
+import org.restlet.data.Protocol;
 import org.restlet.engine.Engine;
 import org.restlet.engine.converter.ConverterHelper;
 import org.restlet.engine.converter.ConverterUtils;
+import org.restlet.engine.converter.PassThroughRepresentation;
 import org.restlet.engine.resource.VariantInfo;
 import org.restlet.representation.Representation;
 import org.restlet.representation.Variant;
@@ -48,17 +50,30 @@ import org.restlet.resource.Resource;
  * Root object classes used for conversion shouldn't be generic classes
  * otherwise important contextual type information will be missing at runtime
  * due to Java type erasure mechanism. If needed, create a fully resolved
- * subclasses and/or a container classes.
+ * subclasses and/or a container classes.<br>
+ * <br>
+ * When the pass-through mode is enabled, objects exchanged via internal RIAP
+ * calls are wrapped into a {@link PassThroughRepresentation} and handed over
+ * by reference to the receiving resource, without being serialized. The
+ * conversion only happens if the content of the representation is actually
+ * read, for example when it leaves the JVM.
  * 
  * @author Jerome Louvel
  */
 public class ConverterService extends Service {
 
+    /**
+     * Indicates if objects exchanged via internal calls are passed by
+     * reference.
+     */
+    private volatile boolean passThrough;
+
     /**
      * Constructor.
      */
     public ConverterService() {
         super();
+        this.passThrough = false;
     }
 
     /**
@@ -69,6 +84,7 @@ public class ConverterService extends Service {
      */
     public ConverterService(boolean enabled) {
         super(enabled);
+        this.passThrough = false;
     }
 
     /**
@@ -89,6 +105,19 @@ public class ConverterService extends Service {
         return null;
     }
 
+    /**
+     * Returns the object handed over to the receiving side of an internal
+     * pass-through call. By default, the same instance is returned. Subclasses
+     * can override this method in order to return a defensive copy.
+     * 
+     * @param source
+     *            The object passed through.
+     * @return The object to hand over.
+     */
+    protected Object copyPassThrough(Object source) {
+        return source;
+    }
+
     /**
      * Creates a patch representation by calculating a diff between initial and
      * modified representations.
@@ -164,6 +193,34 @@ public class ConverterService extends Service {
         return ConverterUtils.getVariants(source, target);
     }
 
+    /**
+     * Indicates if objects exchanged via internal RIAP calls are passed by
+     * reference instead of being serialized. Default value is false.
+     * 
+     * @return True if objects exchanged via internal calls are passed by
+     *         reference.
+     */
+    public boolean isPassThrough() {
+        return passThrough;
+    }
+
+    /**
+     * Indicates if a given object can be passed by reference in the context of
+     * the given resource. This is the case when the pass-through mode is
+     * enabled and when the current call is an internal RIAP call.
+     * 
+     * @param source
+     *            The source object to convert.
+     * @param resource
+     *            The parent resource.
+     * @return True if the object can be passed by reference.
+     */
+    protected boolean isPassThrough(Object source, Resource resource) {
+        return isPassThrough() && !(source instanceof Representation)
+                && (resource != null) && (resource.getRequest() != null)
+                && Protocol.RIAP.equals(resource.getRequest().getProtocol());
+    }
+
     /**
      * Reverts a patch representation from a modified representation in order to
      * obtain the initial one. The patch must have a recognized media type in
@@ -183,6 +240,18 @@ public class ConverterService extends Service {
         return null;
     }
 
+    /**
+     * Indicates if objects exchanged via internal RIAP calls are passed by
+     * reference instead of being serialized.
+     * 
+     * @param passThrough
+     *            True if objects exchanged via internal calls are passed by
+     *            reference.
+     */
+    public void setPassThrough(boolean passThrough) {
+        this.passThrough = passThrough;
+    }
+
     /**
      * Converts a Representation into a regular Java object.
      * 
@@ -209,12 +278,25 @@ public class ConverterService extends Service {
      * @return The converted Java object.
      * @throws IOException
      */
+    @SuppressWarnings("unchecked")
     public <T> T toObject(Representation source, Class<T> target,
             Resource resource) throws IOException {
         T result = null;
         boolean loggable = (resource == null) ? true : resource.isLoggable();
 
-        if ((source != null) && source.isAvailable() && (source.getSize() != 0)) {
+        if ((source instanceof PassThroughRepresentation)
+                && !((PassThroughRepresentation<?>) source).isConverted()) {
+            Object object = ((PassThroughRepresentation<?>) source)
+                    .getObject();
+
+            if ((target == null) || target.isInstance(object)) {
+                // Directly hand over the object, without conversion
+                result = (T) copyPassThrough(object);
+            }
+        }
+
+        if ((result == null) && (source != null) && source.isAvailable()
+                && (source.getSize() != 0)) {
             ConverterHelper ch = ConverterUtils.getBestHelper(source, target,
                     resource);
 
@@ -339,7 +421,12 @@ public class ConverterService extends Service {
                 }
             }
 
-            result = ch.toRepresentation(source, target, resource);
+            if (isPassThrough(source, resource)) {
+                result = new PassThroughRepresentation<Object>(source, target,
+                        ch, resource);
+            } else {
+                result = ch.toRepresentation(source, target, resource);
+            }
 
             if (result != null) {
                 // Copy the variant metadata if necessary
@@ -0,0 +1,257 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.service;
+
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.restlet.Application;
+import org.restlet.Component;
+import org.restlet.engine.metrics.LatencyHistogram;
+import org.restlet.engine.util.ForkJoinScheduledExecutorService;
+
+// [excludes gwt]
+/**
+ * Task service running the immediate tasks in a work-stealing
+ * {@link java.util.concurrent.ForkJoinPool} instead of the FIFO queue of a
+ * scheduled thread pool. Delayed and periodic tasks keep their usual semantics
+ * and are run by a separate timer executor.<br>
+ * <br>
+ * The tasks submitted on behalf of an application are isolated by bulkhead
+ * limits: at most {@link #getApplicationConcurrency()} of them run or wait in
+ * the pool at the same time, and at most {@link #getApplicationQueueSize()}
+ * more are queued, beyond which they are rejected. This prevents a busy
+ * application from starving the other applications of the same
+ * {@link Component}. The time spent by the tasks waiting for a thread and
+ * running are recorded, globally and per application.<br>
+ * <br>
+ * To use it, replace the task service of the component before attaching the
+ * applications:
+ * 
+ * <pre>
+ * component.setTaskService(new ForkJoinTaskService());
+ * </pre>
+ * 
+ * @author Jerome Louvel
+ * @see ForkJoinScheduledExecutorService
+ */
+public class ForkJoinTaskService extends TaskService {
+
+    /**
+     * The maximum number of tasks of an application running or waiting in the
+     * pool.
+     */
+    private volatile int applicationConcurrency;
+
+    /**
+     * The maximum number of tasks of an application queued beyond the
+     * concurrency limit.
+     */
+    private volatile int applicationQueueSize;
+
+    /** The current executor service. */
+    private volatile ForkJoinScheduledExecutorService executorService;
+
+    /** The number of threads of the timer executor. */
+    private volatile int timerThreads;
+
+    /**
+     * Constructor. The parallelism is the number of available processors.
+     */
+    public ForkJoinTaskService() {
+        this(true);
+    }
+
+    /**
+     * Constructor. The parallelism is the number of available processors.
+     * 
+     * @param enabled
+     *            True if the service has been enabled.
+     */
+    public ForkJoinTaskService(boolean enabled) {
+        this(enabled, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param enabled
+     *            True if the service has been enabled.
+     * @param parallelism
+     *            The target parallelism of the work-stealing pool.
+     */
+    public ForkJoinTaskService(boolean enabled, int parallelism) {
+        super(enabled, parallelism);
+        setDaemon(true);
+        this.applicationConcurrency = Math.max(1, parallelism / 2);
+        this.applicationQueueSize = Integer.MAX_VALUE;
+        this.timerThreads = 1;
+    }
+
+    /**
+     * Creates a new executor service backed by a work-stealing pool.
+     * 
+     * @param parallelism
+     *            The target parallelism of the work-stealing pool.
+     * @return A new executor service.
+     */
+    @Override
+    protected ScheduledExecutorService createExecutorService(int parallelism) {
+        ForkJoinScheduledExecutorService result = new ForkJoinScheduledExecutorService(
+                parallelism, getTimerThreads(), isDaemon(),
+                createThreadFactory());
+        result.setApplicationConcurrency(getApplicationConcurrency());
+        result.setApplicationQueueSize(getApplicationQueueSize());
+        this.executorService = result;
+        return result;
+    }
+
+    /**
+     * Returns the maximum number of tasks of an application running or
+     * waiting in the pool. Half of the parallelism by default.
+     * 
+     * @return The maximum number of tasks of an application running or
+     *         waiting in the pool.
+     */
+    public int getApplicationConcurrency() {
+        return applicationConcurrency;
+    }
+
+    /**
+     * Returns the maximum number of tasks of an application queued beyond the
+     * concurrency limit. Unbounded by default.
+     * 
+     * @return The maximum number of tasks of an application queued beyond the
+     *         concurrency limit.
+     */
+    public int getApplicationQueueSize() {
+        return applicationQueueSize;
+    }
+
+    /**
+     * Returns the times spent by the immediate tasks waiting for a thread.
+     * 
+     * @return The times spent by the immediate tasks waiting for a thread or
+     *         null if the service hasn't been started.
+     */
+    public LatencyHistogram getQueueTimes() {
+        ForkJoinScheduledExecutorService executor = this.executorService;
+        return (executor == null) ? null : executor.getQueueTimes();
+    }
+
+    /**
+     * Returns the times spent by the immediate tasks of an application waiting
+     * for a thread.
+     * 
+     * @param application
+     *            The application.
+     * @return The times spent by the tasks of the application waiting for a
+     *         thread or null if the service hasn't been started or the
+     *         application is null.
+     */
+    public LatencyHistogram getQueueTimes(Application application) {
+        ForkJoinScheduledExecutorService executor = this.executorService;
+        return (executor == null) ? null : executor.getQueueTimes(application);
+    }
+
+    /**
+     * Returns the times spent running the immediate tasks.
+     * 
+     * @return The times spent running the immediate tasks or null if the
+     *         service hasn't been started.
+     */
+    public LatencyHistogram getRunTimes() {
+        ForkJoinScheduledExecutorService executor = this.executorService;
+        return (executor == null) ? null : executor.getRunTimes();
+    }
+
+    /**
+     * Returns the times spent running the immediate tasks of an application.
+     * 
+     * @param application
+     *            The application.
+     * @return The times spent running the tasks of the application or null if
+     *         the service hasn't been started or the application is null.
+     */
+    public LatencyHistogram getRunTimes(Application application) {
+        ForkJoinScheduledExecutorService executor = this.executorService;
+        return (executor == null) ? null : executor.getRunTimes(application);
+    }
+
+    /**
+     * Returns the number of threads of the timer executor running the delayed
+     * and periodic tasks. One by default.
+     * 
+     * @return The number of threads of the timer executor.
+     */
+    public int getTimerThreads() {
+        return timerThreads;
+    }
+
+    /**
+     * Sets the maximum number of tasks of an application running or waiting
+     * in the pool.
+     * 
+     * @param applicationConcurrency
+     *            The maximum number of tasks of an application running or
+     *            waiting in the pool.
+     */
+    public void setApplicationConcurrency(int applicationConcurrency) {
+        this.applicationConcurrency = applicationConcurrency;
+        ForkJoinScheduledExecutorService executor = this.executorService;
+
+        if (executor != null) {
+            executor.setApplicationConcurrency(applicationConcurrency);
+        }
+    }
+
+    /**
+     * Sets the maximum number of tasks of an application queued beyond the
+     * concurrency limit.
+     * 
+     * @param applicationQueueSize
+     *            The maximum number of tasks of an application queued beyond
+     *            the concurrency limit.
+     */
+    public void setApplicationQueueSize(int applicationQueueSize) {
+        this.applicationQueueSize = applicationQueueSize;
+        ForkJoinScheduledExecutorService executor = this.executorService;
+
+        if (executor != null) {
+            executor.setApplicationQueueSize(applicationQueueSize);
+        }
+    }
+
+    /**
+     * Sets the number of threads of the timer executor. Applied when the
+     * service is started.
+     * 
+     * @param timerThreads
+     *            The number of threads of the timer executor.
+     */
+    public void setTimerThreads(int timerThreads) {
+        this.timerThreads = timerThreads;
+    }
+
+}
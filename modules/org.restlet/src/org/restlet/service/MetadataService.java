@@ -25,7 +25,10 @@
 package org.restlet.service;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.restlet.data.CharacterSet;
@@ -41,10 +44,80 @@ import org.restlet.engine.application.MetadataExtension;
  * {@link #addCommonExtensions()} method.<br>
  * <br>
  * Internally, the mappings are stored as a list of "extension, metadata" pairs.
+ * Lookups by extension or by metadata are served by hash indexes built from
+ * this list. Those indexes are immutable snapshots rebuilt each time the
+ * mappings are modified, so concurrent readers never need to lock.
  * 
  * @author Jerome Louvel
  */
 public class MetadataService extends Service {
+
+    /**
+     * Immutable snapshot of the mappings, indexed by extension name and by
+     * metadata.
+     */
+    private static final class MappingIndex {
+
+        /** The first extension name mapped to each metadata. */
+        private final Map<Metadata, String> extensions;
+
+        /** The ordered list of metadata mapped to each extension name. */
+        private final Map<String, List<Metadata>> metadata;
+
+        /**
+         * Constructor.
+         * 
+         * @param mappings
+         *            The ordered list of mappings to index.
+         */
+        public MappingIndex(List<MetadataExtension> mappings) {
+            this.extensions = new HashMap<Metadata, String>();
+            this.metadata = new HashMap<String, List<Metadata>>();
+
+            for (MetadataExtension mapping : mappings) {
+                List<Metadata> list = this.metadata.get(mapping.getName());
+
+                if (list == null) {
+                    list = new ArrayList<Metadata>(2);
+                    this.metadata.put(mapping.getName(), list);
+                }
+
+                list.add(mapping.getMetadata());
+
+                if ((mapping.getMetadata() != null)
+                        && !this.extensions.containsKey(mapping.getMetadata())) {
+                    this.extensions.put(mapping.getMetadata(),
+                            mapping.getName());
+                }
+            }
+        }
+
+        /**
+         * Returns the first extension name mapped to the given metadata.
+         * 
+         * @param metadata
+         *            The metadata.
+         * @return The first extension name or null.
+         */
+        public String getExtension(Metadata metadata) {
+            return this.extensions.get(metadata);
+        }
+
+        /**
+         * Returns the ordered list of metadata mapped to the given extension
+         * name.
+         * 
+         * @param extension
+         *            The extension name.
+         * @return The ordered list of metadata, never null.
+         */
+        public List<Metadata> getMetadata(String extension) {
+            List<Metadata> result = this.metadata.get(extension);
+            return (result == null) ? Collections.<Metadata> emptyList()
+                    : result;
+        }
+    }
+
     /** The default character set for textual representations. */
     private volatile CharacterSet defaultCharacterSet;
 
@@ -57,6 +130,9 @@ public class MetadataService extends Service {
     /** The default media type for representations. */
     private volatile MediaType defaultMediaType;
 
+    /** The current snapshot of the indexed mappings. */
+    private volatile MappingIndex index;
+
     /** The list of mappings between extension names and metadata. */
     private final List<MetadataExtension> mappings;
 
@@ -75,6 +151,7 @@ public class MetadataService extends Service {
         // [ifdef gwt] instruction uncomment
         // this.defaultMediaType = MediaType.APPLICATION_JSON;
         this.mappings = new CopyOnWriteArrayList<MetadataExtension>();
+        this.index = new MappingIndex(this.mappings);
         addCommonExtensions();
     }
 
@@ -214,7 +291,7 @@ public class MetadataService extends Service {
      * <li>zip: Zip archive</li>
      * </ul>
      */
-    public void addCommonExtensions() {
+    public synchronized void addCommonExtensions() {
         List<MetadataExtension> dm = new ArrayList<MetadataExtension>();
 
         ext(dm, "en", Language.ENGLISH);
@@ -367,6 +444,7 @@ public class MetadataService extends Service {
 
         // Add all those mappings
         this.mappings.addAll(dm);
+        updateIndex();
     }
 
     /**
@@ -393,8 +471,8 @@ public class MetadataService extends Service {
      * @param preferred
      *            indicates if this mapping is the preferred one.
      */
-    public void addExtension(String extension, Metadata metadata,
-            boolean preferred) {
+    public synchronized void addExtension(String extension,
+            Metadata metadata, boolean preferred) {
         if (preferred) {
             // Add the mapping at the beginning of the list
             this.mappings.add(0, new MetadataExtension(extension, metadata));
@@ -402,13 +480,16 @@ public class MetadataService extends Service {
             // Add the mapping at the end of the list
             this.mappings.add(new MetadataExtension(extension, metadata));
         }
+
+        updateIndex();
     }
 
     /**
      * clears the mappings for all extensions.
      */
-    public void clearExtensions() {
+    public synchronized void clearExtensions() {
         this.mappings.clear();
+        updateIndex();
     }
 
     /**
@@ -484,14 +565,13 @@ public class MetadataService extends Service {
 
         if (extension != null) {
             // Look for all registered convenient mapping.
-            for (MetadataExtension metadataExtension : this.mappings) {
-                if (extension.equals(metadataExtension.getName())
-                        && (metadataExtension.getMetadata() instanceof CharacterSet)) {
+            for (Metadata metadata : this.index.getMetadata(extension)) {
+                if (metadata instanceof CharacterSet) {
                     if (result == null) {
                         result = new ArrayList<CharacterSet>();
                     }
 
-                    result.add(metadataExtension.getCharacterSet());
+                    result.add((CharacterSet) metadata);
                 }
             }
         }
@@ -565,14 +645,13 @@ public class MetadataService extends Service {
 
         if (extension != null) {
             // Look for all registered convenient mapping.
-            for (MetadataExtension metadataExtension : this.mappings) {
-                if (extension.equals(metadataExtension.getName())
-                        && (metadataExtension.getMetadata() instanceof Language)) {
+            for (Metadata metadata : this.index.getMetadata(extension)) {
+                if (metadata instanceof Language) {
                     if (result == null) {
                         result = new ArrayList<Language>();
                     }
 
-                    result.add(metadataExtension.getLanguage());
+                    result.add((Language) metadata);
                 }
             }
         }
@@ -611,14 +690,13 @@ public class MetadataService extends Service {
 
         if (extension != null) {
             // Look for all registered convenient mapping.
-            for (MetadataExtension metadataExtension : this.mappings) {
-                if (extension.equals(metadataExtension.getName())
-                        && (metadataExtension.getMetadata() instanceof MediaType)) {
+            for (Metadata metadata : this.index.getMetadata(extension)) {
+                if (metadata instanceof MediaType) {
                     if (result == null) {
                         result = new ArrayList<MediaType>();
                     }
 
-                    result.add(metadataExtension.getMediaType());
+                    result.add((MediaType) metadata);
                 }
             }
         }
@@ -638,15 +716,10 @@ public class MetadataService extends Service {
         List<Metadata> result = null;
 
         if (extension != null) {
-            // Look for all registered convenient mapping.
-            for (MetadataExtension metadataExtension : this.mappings) {
-                if (extension.equals(metadataExtension.getName())) {
-                    if (result == null) {
-                        result = new ArrayList<Metadata>();
-                    }
+            List<Metadata> list = this.index.getMetadata(extension);
 
-                    result.add(metadataExtension.getMetadata());
-                }
+            if (!list.isEmpty()) {
+                result = new ArrayList<Metadata>(list);
             }
         }
 
@@ -744,15 +817,7 @@ public class MetadataService extends Service {
      * @return The first extension mapping to this metadata.
      */
     public String getExtension(Metadata metadata) {
-        if (metadata != null) {
-            // Look for the first registered convenient mapping.
-            for (final MetadataExtension metadataExtension : this.mappings) {
-                if (metadata.equals(metadataExtension.getMetadata())) {
-                    return metadataExtension.getName();
-                }
-            }
-        }
-        return null;
+        return (metadata == null) ? null : this.index.getExtension(metadata);
     }
 
     /**
@@ -816,10 +881,10 @@ public class MetadataService extends Service {
     public Metadata getMetadata(String extension) {
         if (extension != null) {
             // Look for the first registered convenient mapping.
-            for (final MetadataExtension metadataExtension : this.mappings) {
-                if (extension.equals(metadataExtension.getName())) {
-                    return metadataExtension.getMetadata();
-                }
+            List<Metadata> list = this.index.getMetadata(extension);
+
+            if (!list.isEmpty()) {
+                return list.get(0);
             }
         }
 
@@ -890,4 +955,12 @@ public class MetadataService extends Service {
         this.defaultMediaType = defaultMediaType;
     }
 
+    /**
+     * Rebuilds the snapshot of the indexed mappings. Must be called after each
+     * modification of the mappings list.
+     */
+    private void updateIndex() {
+        this.index = new MappingIndex(this.mappings);
+    }
+
 }
@@ -0,0 +1,547 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.logging.Level;
+
+import org.restlet.Application;
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.engine.metrics.CallMetrics;
+import org.restlet.engine.metrics.CallSample;
+import org.restlet.engine.metrics.ConnectorMetrics;
+import org.restlet.engine.metrics.Gauge;
+import org.restlet.engine.metrics.LatencyHistogram;
+import org.restlet.engine.metrics.MetricsFilter;
+import org.restlet.engine.metrics.MetricsRestlet;
+import org.restlet.routing.Filter;
+
+// [excludes gwt]
+/**
+ * Application service recording metrics on the handled calls. For each route
+ * template and for each resource method, it counts the calls per response
+ * status class and records their latency in a lock-free histogram. It also
+ * publishes the gauges of the started server connectors, such as the calls in
+ * progress, the entity bytes received and sent, and the active and queued
+ * worker threads, as well as custom gauges.<br>
+ * <br>
+ * Routes are named after the concatenated template patterns of the matched
+ * {@link org.restlet.routing.TemplateRoute} instances, for example
+ * "/accounts/{id}/orders". Resources are named after their class and the Java
+ * method invoked by annotation, or the request method otherwise.<br>
+ * <br>
+ * The metrics are published as a management bean named
+ * "org.restlet:type=Metrics,name=&lt;name&gt;" in the platform MBean server,
+ * and can be exposed with a text format compatible with common monitoring
+ * systems by attaching the Restlet returned by
+ * {@link #createEndpoint(Context)}:
+ * 
+ * <pre>
+ * router.attach(&quot;/metrics&quot;, getMetricsService().createEndpoint(getContext()));
+ * </pre>
+ * 
+ * @author Jerome Louvel
+ * @see org.restlet.engine.metrics.LatencyHistogram
+ */
+public class MetricsService extends Service {
+
+    /** The latency percentiles exposed. */
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+    /** The names of the status classes. */
+    private static final String[] STATUS_CLASSES = { "unknown", "1xx", "2xx",
+            "3xx", "4xx", "5xx" };
+
+    /**
+     * Returns a metric name with its labels.
+     * 
+     * @param name
+     *            The metric name.
+     * @param labels
+     *            The label names and values.
+     * @return The metric name with its labels.
+     */
+    private static String getKey(String name, String... labels) {
+        StringBuilder sb = new StringBuilder(name);
+
+        for (int i = 0; i < labels.length; i += 2) {
+            sb.append((i == 0) ? '{' : ',').append(labels[i]).append("=\"");
+
+            for (int j = 0; j < labels[i + 1].length(); j++) {
+                char c = labels[i + 1].charAt(j);
+
+                if (c == '\\' || c == '"') {
+                    sb.append('\\').append(c);
+                } else if (c == '\n') {
+                    sb.append("\\n");
+                } else {
+                    sb.append(c);
+                }
+            }
+
+            sb.append('"');
+        }
+
+        return (labels.length > 0) ? sb.append('}').toString() : sb
+                .toString();
+    }
+
+    /** The custom gauges. */
+    private final Map<String, Gauge> gauges;
+
+    /** Indicates if the metrics are published as a management bean. */
+    private volatile boolean jmxEnabled;
+
+    /** The name of the management bean, once registered. */
+    private volatile Object mbeanName;
+
+    /** The name of the service. */
+    private volatile String name;
+
+    /** The metrics per resource class and method. */
+    private final ConcurrentMap<String, ConcurrentMap<String, CallMetrics>> resourceMetrics;
+
+    /** The metrics per route and request method. */
+    private final ConcurrentMap<String, ConcurrentMap<String, CallMetrics>> routeMetrics;
+
+    /** The metrics of all the calls. */
+    private final CallMetrics totalMetrics;
+
+    /**
+     * Constructor.
+     */
+    public MetricsService() {
+        this(true);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param enabled
+     *            True if the service has been enabled.
+     */
+    public MetricsService(boolean enabled) {
+        super(enabled);
+        this.gauges = new ConcurrentHashMap<String, Gauge>();
+        this.jmxEnabled = true;
+        this.resourceMetrics = new ConcurrentHashMap<String, ConcurrentMap<String, CallMetrics>>();
+        this.routeMetrics = new ConcurrentHashMap<String, ConcurrentMap<String, CallMetrics>>();
+        this.totalMetrics = new CallMetrics("", "");
+    }
+
+    /**
+     * Adds call metrics to a snapshot.
+     * 
+     * @param snapshot
+     *            The snapshot to update.
+     * @param prefix
+     *            The metric names prefix.
+     * @param metrics
+     *            The call metrics.
+     * @param labels
+     *            The label names and values.
+     */
+    private void addMetrics(Map<String, Number> snapshot, String prefix,
+            CallMetrics metrics, String... labels) {
+        String[] statusLabels = new String[labels.length + 2];
+        System.arraycopy(labels, 0, statusLabels, 0, labels.length);
+        statusLabels[labels.length] = "status";
+
+        for (int i = 0; i < STATUS_CLASSES.length; i++) {
+            long count = metrics.getStatusCount(i);
+
+            if (count > 0) {
+                statusLabels[labels.length + 1] = STATUS_CLASSES[i];
+                snapshot.put(getKey(prefix + "_requests_total", statusLabels),
+                        count);
+            }
+        }
+
+        LatencyHistogram latency = metrics.getLatency();
+        String[] quantileLabels = new String[labels.length + 2];
+        System.arraycopy(labels, 0, quantileLabels, 0, labels.length);
+        quantileLabels[labels.length] = "quantile";
+
+        for (double percentile : PERCENTILES) {
+            quantileLabels[labels.length + 1] = Double
+                    .toString(percentile / 100);
+            snapshot.put(getKey(prefix + "_duration_seconds", quantileLabels),
+                    latency.getValueAtPercentile(percentile) / 1e6);
+        }
+
+        snapshot.put(getKey(prefix + "_duration_seconds_sum", labels),
+                latency.getTotal() / 1e6);
+        snapshot.put(getKey(prefix + "_duration_seconds_count", labels),
+                latency.getCount());
+        snapshot.put(getKey(prefix + "_duration_seconds_max", labels),
+                latency.getMax() / 1e6);
+    }
+
+    /**
+     * Creates a new Restlet exposing the metrics with the text exposition
+     * format.
+     * 
+     * @param context
+     *            The context.
+     * @return The new Restlet.
+     */
+    public Restlet createEndpoint(Context context) {
+        return new MetricsRestlet(context, this);
+    }
+
+    @Override
+    public Filter createInboundFilter(Context context) {
+        return new MetricsFilter(context, this);
+    }
+
+    /**
+     * Returns the modifiable map of custom gauges, exposed under their name.
+     * 
+     * @return The modifiable map of custom gauges.
+     */
+    public Map<String, Gauge> getGauges() {
+        return gauges;
+    }
+
+    /**
+     * Returns the metrics for a given name and method, creating them if
+     * needed.
+     * 
+     * @param metrics
+     *            The metrics map to look into.
+     * @param name
+     *            The route or resource name.
+     * @param method
+     *            The method name.
+     * @return The matching metrics.
+     */
+    private CallMetrics getMetrics(
+            ConcurrentMap<String, ConcurrentMap<String, CallMetrics>> metrics,
+            String name, String method) {
+        ConcurrentMap<String, CallMetrics> methods = metrics.get(name);
+
+        if (methods == null) {
+            methods = new ConcurrentHashMap<String, CallMetrics>();
+            ConcurrentMap<String, CallMetrics> current = metrics.putIfAbsent(
+                    name, methods);
+
+            if (current != null) {
+                methods = current;
+            }
+        }
+
+        CallMetrics result = methods.get(method);
+
+        if (result == null) {
+            result = new CallMetrics(name, method);
+            CallMetrics current = methods.putIfAbsent(method, result);
+
+            if (current != null) {
+                result = current;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the name of the service, used to name its management bean. By
+     * default, the name of the current application is used when the service
+     * is started.
+     * 
+     * @return The name of the service.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the metrics per resource class and method.
+     * 
+     * @return The metrics per resource class and method.
+     */
+    public List<CallMetrics> getResourceMetrics() {
+        return toList(this.resourceMetrics);
+    }
+
+    /**
+     * Returns the metrics per route and request method.
+     * 
+     * @return The metrics per route and request method.
+     */
+    public List<CallMetrics> getRouteMetrics() {
+        return toList(this.routeMetrics);
+    }
+
+    /**
+     * Returns the current value of all the exposed metrics, by name. Names
+     * follow the text exposition format, with their labels. Durations are
+     * expressed in seconds.
+     * 
+     * @return The current value of all the exposed metrics.
+     */
+    public Map<String, Number> getSnapshot() {
+        Map<String, Number> result = new LinkedHashMap<String, Number>();
+        addMetrics(result, "restlet", getTotalMetrics());
+
+        for (CallMetrics metrics : getRouteMetrics()) {
+            addMetrics(result, "restlet_route", metrics, "route",
+                    metrics.getName(), "method", metrics.getMethod());
+        }
+
+        for (CallMetrics metrics : getResourceMetrics()) {
+            addMetrics(result, "restlet_resource", metrics, "resource",
+                    metrics.getName(), "method", metrics.getMethod());
+        }
+
+        for (ConnectorMetrics metrics : ConnectorMetrics.getRegistered()) {
+            String connector = metrics.getName();
+            result.put(getKey("restlet_connector_active_calls", "connector",
+                    connector), metrics.getActiveCalls());
+            result.put(getKey("restlet_connector_calls_total", "connector",
+                    connector), metrics.getTotalCalls());
+            result.put(getKey("restlet_connector_received_bytes_total",
+                    "connector", connector), metrics.getBytesIn());
+            result.put(getKey("restlet_connector_sent_bytes_total",
+                    "connector", connector), metrics.getBytesOut());
+            ThreadPoolExecutor executor = metrics.getExecutor();
+
+            if (executor != null) {
+                result.put(getKey("restlet_connector_active_threads",
+                        "connector", connector), executor.getActiveCount());
+                result.put(getKey("restlet_connector_pool_threads",
+                        "connector", connector), executor.getPoolSize());
+                result.put(getKey("restlet_connector_queued_calls",
+                        "connector", connector), executor.getQueue().size());
+            }
+        }
+
+        for (Map.Entry<String, Gauge> entry : getGauges().entrySet()) {
+            result.put(entry.getKey(), entry.getValue().getValue());
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the metrics of all the calls.
+     * 
+     * @return The metrics of all the calls.
+     */
+    public CallMetrics getTotalMetrics() {
+        return totalMetrics;
+    }
+
+    /**
+     * Indicates if the metrics are published as a management bean in the
+     * platform MBean server when the service is started. True by default.
+     * 
+     * @return True if the metrics are published as a management bean.
+     */
+    public boolean isJmxEnabled() {
+        return jmxEnabled;
+    }
+
+    /**
+     * Records a call. Invoked by the filter created by
+     * {@link #createInboundFilter(Context)} once a call is handled.
+     * 
+     * @param sample
+     *            The call sample.
+     * @param request
+     *            The request handled.
+     * @param response
+     *            The response returned.
+     * @param nanos
+     *            The call duration in nanoseconds.
+     */
+    public void record(CallSample sample, Request request, Response response,
+            long nanos) {
+        int statusCode = (response.getStatus() == null) ? 0 : response
+                .getStatus().getCode();
+        getTotalMetrics().record(statusCode, nanos);
+
+        if (sample.getRoute() != null) {
+            String method = (request.getMethod() == null) ? "" : request
+                    .getMethod().getName();
+            getMetrics(this.routeMetrics, sample.getRoute(), method).record(
+                    statusCode, nanos);
+        }
+
+        if (sample.getResource() != null) {
+            getMetrics(this.resourceMetrics, sample.getResource(),
+                    sample.getResourceMethod()).record(statusCode, nanos);
+        }
+    }
+
+    // [ifndef android, gae] method
+    /**
+     * Publishes the metrics as a management bean in the platform MBean server.
+     */
+    private void registerMBean() {
+        try {
+            String mbeanName = getName();
+
+            if (mbeanName == null) {
+                Application application = Application.getCurrent();
+                mbeanName = (application == null) ? null : application
+                        .getName();
+
+                if (mbeanName == null) {
+                    mbeanName = (application == null) ? Integer
+                            .toHexString(System.identityHashCode(this))
+                            : application.getClass().getSimpleName();
+                }
+            }
+
+            javax.management.ObjectName objectName = new javax.management.ObjectName(
+                    "org.restlet:type=Metrics,name="
+                            + javax.management.ObjectName.quote(mbeanName));
+            java.lang.management.ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(
+                            new org.restlet.engine.metrics.MetricsMBean(this),
+                            objectName);
+            this.mbeanName = objectName;
+        } catch (Exception e) {
+            Context.getCurrentLogger().log(Level.WARNING,
+                    "Unable to register the metrics management bean", e);
+        }
+    }
+
+    /**
+     * Clears the recorded calls. The gauges aren't affected.
+     */
+    public void reset() {
+        getTotalMetrics().reset();
+        this.resourceMetrics.clear();
+        this.routeMetrics.clear();
+    }
+
+    /**
+     * Indicates if the metrics are published as a management bean in the
+     * platform MBean server when the service is started.
+     * 
+     * @param jmxEnabled
+     *            True if the metrics are published as a management bean.
+     */
+    public void setJmxEnabled(boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+    }
+
+    /**
+     * Sets the name of the service, used to name its management bean.
+     * 
+     * @param name
+     *            The name of the service.
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public synchronized void start() throws Exception {
+        if (isEnabled() && isStopped() && isJmxEnabled()) {
+            // [ifndef android, gae] instruction
+            registerMBean();
+        }
+
+        super.start();
+    }
+
+    @Override
+    public synchronized void stop() throws Exception {
+        if (this.mbeanName != null) {
+            // [ifndef android, gae] instruction
+            unregisterMBean();
+        }
+
+        super.stop();
+    }
+
+    /**
+     * Flattens a metrics map.
+     * 
+     * @param metrics
+     *            The metrics map.
+     * @return The list of metrics.
+     */
+    private List<CallMetrics> toList(
+            ConcurrentMap<String, ConcurrentMap<String, CallMetrics>> metrics) {
+        List<CallMetrics> result = new ArrayList<CallMetrics>();
+
+        for (ConcurrentMap<String, CallMetrics> methods : metrics.values()) {
+            result.addAll(methods.values());
+        }
+
+        return result;
+    }
+
+    // [ifndef android, gae] method
+    /**
+     * Removes the management bean from the platform MBean server.
+     */
+    private void unregisterMBean() {
+        try {
+            java.lang.management.ManagementFactory.getPlatformMBeanServer()
+                    .unregisterMBean(
+                            (javax.management.ObjectName) this.mbeanName);
+        } catch (Exception e) {
+            Context.getCurrentLogger().log(Level.WARNING,
+                    "Unable to unregister the metrics management bean", e);
+        } finally {
+            this.mbeanName = null;
+        }
+    }
+
+    /**
+     * Writes the metrics with the text exposition format, one metric per line.
+     * 
+     * @param writer
+     *            The writer to use.
+     * @throws IOException
+     */
+    public void writeExposition(Writer writer) throws IOException {
+        for (Map.Entry<String, Number> entry : getSnapshot().entrySet()) {
+            writer.write(entry.getKey());
+            writer.write(' ');
+            writer.write(entry.getValue().toString());
+            writer.write('\n');
+        }
+
+        writer.flush();
+    }
+
+}